@@ -0,0 +1,137 @@
+/*
+Copyright 2015 Rudolf Fiala
+
+This file is part of Alpheus AFP Parser.
+
+Alpheus AFP Parser is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Alpheus AFP Parser is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Alpheus AFP Parser.  If not, see <http://www.gnu.org/licenses/>
+*/
+package com.mgz.afp.enums;
+
+import com.mgz.afp.base.StructuredFieldIntroducerView;
+import com.mgz.afp.exceptions.AFPParserException;
+import com.mgz.afp.triplets.Triplet.TripletID;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the per structured field cost of decoding the {@link SFTypeID} and {@link TripletID}
+ * through the code tables, compared with the former linear scans over values().
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EnumLookupBenchmark {
+  private int[][] sfTypeIDs;
+  private short[] tripletIDs;
+  private ByteBuffer sfiBuffer;
+  private final StructuredFieldIntroducerView sfiView = new StructuredFieldIntroducerView();
+
+  static SFTypeID linearScanSFTypeID(int sfClass, int sfType, int sfCategory) {
+    for (SFTypeID sfTypeID : SFTypeID.values()) {
+      if (sfTypeID.sfClass.val == sfClass
+          && sfTypeID.sfType.val == sfType
+          && sfTypeID.sfCategory.val == sfCategory) {
+        return sfTypeID;
+      }
+    }
+    return SFTypeID.Undefined;
+  }
+
+  static TripletID linearScanTripletID(short codeByte) throws AFPParserException {
+    for (TripletID id : TripletID.values()) {
+      if (id.toByte() == codeByte) {
+        return id;
+      }
+    }
+    throw new AFPParserException("undefined");
+  }
+
+  @Setup
+  public void setup() {
+    SFTypeID[] mix = {
+        SFTypeID.BPG_BeginPage, SFTypeID.BAG_BeginActiveEnvironmentGroup, SFTypeID.MCF_MapCodedFont_Format2,
+        SFTypeID.PGD_PageDescriptor, SFTypeID.PTX_PresentationTextData, SFTypeID.IPD_ImagePictureData,
+        SFTypeID.TLE_TagLogicalElement, SFTypeID.XMD_XMLDescriptor, SFTypeID.EPG_EndPage
+    };
+    sfTypeIDs = new int[mix.length][];
+    sfiBuffer = ByteBuffer.allocate(mix.length * 8);
+    for (int i = 0; i < mix.length; i++) {
+      byte[] id = mix[i].toBytes();
+      sfTypeIDs[i] = new int[] {id[0] & 0xFF, id[1] & 0xFF, id[2] & 0xFF};
+      sfiBuffer.putShort((short) 8).put(id).put((byte) 0).putShort((short) 0);
+    }
+    TripletID[] triplets = {
+        TripletID.FullyQualifiedName, TripletID.MappingOption, TripletID.ObjectClassification,
+        TripletID.MeasurementUnits, TripletID.ObjectAreaSize, TripletID.ColorSpecification,
+        TripletID.ObjectContainerPresentationSpaceSize, TripletID.ImageResolution
+    };
+    tripletIDs = new short[triplets.length];
+    for (int i = 0; i < triplets.length; i++) {
+      tripletIDs[i] = (short) triplets[i].toByte();
+    }
+  }
+
+  @Benchmark
+  public void sfTypeIDTable(Blackhole bh) {
+    for (int[] id : sfTypeIDs) {
+      bh.consume(SFTypeID.valueOf(id[0], id[1], id[2]));
+    }
+  }
+
+  @Benchmark
+  public void sfTypeIDLinearScan(Blackhole bh) {
+    for (int[] id : sfTypeIDs) {
+      bh.consume(linearScanSFTypeID(id[0], id[1], id[2]));
+    }
+  }
+
+  @Benchmark
+  public void sfiHeaderDecode(Blackhole bh) throws AFPParserException {
+    sfiBuffer.rewind();
+    while (sfiBuffer.hasRemaining()) {
+      sfiView.refill(sfiBuffer);
+      bh.consume(sfiView.toStructuredFieldIntroducer());
+    }
+  }
+
+  @Benchmark
+  public void tripletIDTable(Blackhole bh) throws AFPParserException {
+    for (short id : tripletIDs) {
+      bh.consume(TripletID.valueOf(id));
+    }
+  }
+
+  @Benchmark
+  public void tripletIDLinearScan(Blackhole bh) throws AFPParserException {
+    for (short id : tripletIDs) {
+      bh.consume(linearScanTripletID(id));
+    }
+  }
+}
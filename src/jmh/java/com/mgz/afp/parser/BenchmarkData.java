@@ -0,0 +1,268 @@
+/*
+Copyright 2015 Rudolf Fiala
+
+This file is part of Alpheus AFP Parser.
+
+Alpheus AFP Parser is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Alpheus AFP Parser is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Alpheus AFP Parser.  If not, see <http://www.gnu.org/licenses/>
+*/
+package com.mgz.afp.parser;
+
+import com.mgz.afp.base.StructuredFieldBaseData;
+import com.mgz.afp.base.StructuredFieldIntroducer;
+import com.mgz.afp.enums.SFTypeID;
+import com.mgz.afp.foca.CPC_CodePageControl;
+import com.mgz.afp.foca.FNC_FontControl;
+import com.mgz.util.Constants;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Synthetic, deterministic payloads of the structured field families measured by the benchmarks.
+ * All payloads are built in memory, no AFP files are needed.
+ */
+final class BenchmarkData {
+  private static final byte[] EBCDIC_TEXT = "The quick brown fox jumps over the lazy dog 0123456789".getBytes(Constants.cpIBM500);
+
+  private BenchmarkData() {
+  }
+
+  /**
+   * A mix of frequently used triplets: CGCSGID, FQN, resource local ID, measurement units, object
+   * area size.
+   */
+  static byte[] triplets(Random random, int nrOfRepetitions) {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    for (int i = 0; i < nrOfRepetitions; i++) {
+      write(baos, 0x06, 0x01, 0x00, 0x00, 0x01, 0xF4);
+      write(baos, 0x0C, 0x02, 0x8E, 0x00);
+      baos.write(EBCDIC_TEXT, random.nextInt(EBCDIC_TEXT.length - 8), 8);
+      write(baos, 0x04, 0x24, 0x05, random.nextInt(0xFE) + 1);
+      write(baos, 0x08, 0x4B, 0x00, 0x00, 0x38, 0x40, 0x38, 0x40);
+      write(baos, 0x09, 0x4C, 0x02, 0x00, random.nextInt(0x80), random.nextInt(0x100), 0x00, random.nextInt(0x80), random.nextInt(0x100));
+    }
+    return baos.toByteArray();
+  }
+
+  /**
+   * PTOCA text lines made of chained control sequences: AMI, AMB, SCFL, STC, and TRN.
+   */
+  static byte[] ptx(Random random, int nrOfLines) {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    write(baos, 0x2B, 0xD3);
+    for (int i = 0; i < nrOfLines; i++) {
+      write(baos, 0x04, 0xC7, 0x00, random.nextInt(0x100));
+      write(baos, 0x04, 0xD3, (i >> 4) & 0xFF, (i << 4) & 0xFF);
+      write(baos, 0x03, 0xF1, 1 + random.nextInt(4));
+      write(baos, 0x04, 0x75, 0x00, 0x08);
+      int textLength = 10 + random.nextInt(EBCDIC_TEXT.length - 10);
+      write(baos, 2 + textLength, 0xDB);
+      baos.write(EBCDIC_TEXT, 0, textLength);
+    }
+    return baos.toByteArray();
+  }
+
+  /**
+   * A GOCA segment (BeginSegment command followed by drawing orders): color, lines, and an area
+   * with a box.
+   */
+  static byte[] gocaSegment(Random random, int nrOfOrders) {
+    ByteArrayOutputStream orders = new ByteArrayOutputStream();
+    for (int i = 0; i < nrOfOrders; i++) {
+      write(orders, 0x0A, random.nextInt(0x10));
+      int nrOfPoints = 2 + random.nextInt(10);
+      write(orders, 0xC1, nrOfPoints * 4);
+      for (int p = 0; p < nrOfPoints * 4; p++) {
+        orders.write(random.nextInt(0x80));
+      }
+      write(orders, 0x68, 0x00);
+      write(orders, 0x81, 0x04, 0x01, random.nextInt(0x100), 0x02, random.nextInt(0x100));
+      write(orders, 0x60, 0x00);
+    }
+    byte[] orderData = orders.toByteArray();
+
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    write(baos, 0x70, 0x0C);
+    baos.write(EBCDIC_TEXT, 0, 4);
+    write(baos, 0x00, 0x00, orderData.length >> 8, orderData.length & 0xFF);
+    baos.write(EBCDIC_TEXT, 4, 4);
+    baos.write(orderData, 0, orderData.length);
+    return baos.toByteArray();
+  }
+
+  /**
+   * A large chart: a GOCA segment of polylines (GLINE) with the maximum of 63 points each. The
+   * segment holds up to 64KB of drawing orders.
+   */
+  static byte[] gocaChart(Random random, int nrOfLines) {
+    ByteArrayOutputStream orders = new ByteArrayOutputStream();
+    for (int i = 0; i < nrOfLines; i++) {
+      write(orders, 0xC1, 63 * 4);
+      int y = random.nextInt(0x4000);
+      for (int x = 0; x < 63 * 40; x += 40) {
+        y = Math.max(0, Math.min(0x7FFF, y + random.nextInt(400) - 200));
+        write(orders, x >> 8, x & 0xFF, y >> 8, y & 0xFF);
+      }
+    }
+    byte[] orderData = orders.toByteArray();
+
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    write(baos, 0x70, 0x0C);
+    baos.write(EBCDIC_TEXT, 0, 4);
+    write(baos, 0x00, 0x00, orderData.length >> 8, orderData.length & 0xFF);
+    baos.write(EBCDIC_TEXT, 4, 4);
+    baos.write(orderData, 0, orderData.length);
+    return baos.toByteArray();
+  }
+
+  /**
+   * An IOCA image segment with image size, encoding, IDE size, and uncompressed image data.
+   */
+  static byte[] ipd(Random random, int imageDataLength) {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    write(baos, 0x70, 0x00);
+    write(baos, 0x91, 0x01, 0xFF);
+    write(baos, 0x94, 0x09, 0x00, 0x09, 0x60, 0x09, 0x60, 0x00, 0x80, 0x00, 0x80);
+    write(baos, 0x95, 0x02, 0x03, 0x01);
+    write(baos, 0x96, 0x01, 0x01);
+    while (imageDataLength > 0) {
+      int len = Math.min(imageDataLength, 4096);
+      write(baos, 0xFE, 0x92, len >> 8, len & 0xFF);
+      for (int i = 0; i < len; i++) {
+        baos.write(random.nextInt(0x100));
+      }
+      imageDataLength -= len;
+    }
+    write(baos, 0x93, 0x00);
+    write(baos, 0x71, 0x00);
+    return baos.toByteArray();
+  }
+
+  /**
+   * FNI repeating groups of 28 bytes, see {@link #fontControl()}.
+   */
+  static byte[] fni(Random random, int nrOfRepeatingGroups) {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    for (int i = 0; i < nrOfRepeatingGroups; i++) {
+      baos.write(EBCDIC_TEXT, random.nextInt(EBCDIC_TEXT.length - 8), 8);
+      for (int j = 8; j < 28; j++) {
+        baos.write(random.nextInt(0x80));
+      }
+    }
+    return baos.toByteArray();
+  }
+
+  /**
+   * Single byte CPI repeating groups of 10 bytes, see {@link #codePageControl()}.
+   */
+  static byte[] cpi(Random random, int nrOfRepeatingGroups) {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    for (int i = 0; i < nrOfRepeatingGroups; i++) {
+      baos.write(EBCDIC_TEXT, random.nextInt(EBCDIC_TEXT.length - 8), 8);
+      write(baos, 0x00, i & 0xFF);
+    }
+    return baos.toByteArray();
+  }
+
+  static FNC_FontControl fontControl() {
+    FNC_FontControl fnc = new FNC_FontControl();
+    fnc.setFniRepeatingGroupLength((short) 28);
+    return fnc;
+  }
+
+  static CPC_CodePageControl codePageControl() {
+    CPC_CodePageControl cpc = new CPC_CodePageControl();
+    cpc.setCpiRepeatingGroupLength(CPC_CodePageControl.CPIRepeatingGroupLength.SingleByteCodePage);
+    return cpc;
+  }
+
+  /**
+   * Wraps the given payload into a complete structured field of the given type.
+   */
+  static byte[] structuredField(SFTypeID sfTypeID, byte[] payload) {
+    StructuredFieldIntroducer sfi = new StructuredFieldIntroducer();
+    sfi.setSFTypeID(sfTypeID);
+    StructuredFieldBaseData sf = new StructuredFieldBaseData();
+    sf.setStructuredFieldIntroducer(sfi);
+    sf.setData(payload);
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    try {
+      sf.writeAFP(baos, new AFPParserConfiguration());
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+    return baos.toByteArray();
+  }
+
+  /**
+   * A page mix of BPG, PTX, GAD, IPD, NOP, and EPG structured fields, repeated the given number of
+   * times.
+   */
+  static byte[] afpStream(long seed, int nrOfPages) {
+    Random random = new Random(seed);
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    byte[] name = new byte[8];
+    System.arraycopy(EBCDIC_TEXT, 0, name, 0, 8);
+    for (int p = 0; p < nrOfPages; p++) {
+      write(baos, structuredField(SFTypeID.BPG_BeginPage, name));
+      for (int i = 0; i < 5; i++) {
+        write(baos, structuredField(SFTypeID.PTX_PresentationTextData, ptx(random, 40)));
+      }
+      write(baos, structuredField(SFTypeID.GAD_GraphicsData, gocaSegment(random, 20)));
+      write(baos, structuredField(SFTypeID.IPD_ImagePictureData, ipd(random, 8000)));
+      write(baos, structuredField(SFTypeID.NOP_NoOperation, EBCDIC_TEXT));
+      write(baos, structuredField(SFTypeID.EPG_EndPage, name));
+    }
+    return baos.toByteArray();
+  }
+
+  /**
+   * A mixed mode file of line data records with ANSI carriage control and a NOP structured field
+   * every 100 records. Records are preceded by an RDW or, if not, followed by a line feed.
+   */
+  static byte[] lineData(long seed, int nrOfRecords, boolean isRDW) {
+    Random random = new Random(seed);
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    byte[] nop = structuredField(SFTypeID.NOP_NoOperation, EBCDIC_TEXT);
+    for (int r = 0; r < nrOfRecords; r++) {
+      int length = r % 100 == 0 ? nop.length : 1 + 20 + random.nextInt(112);
+      if (isRDW) {
+        write(baos, (length + 4) >> 8, (length + 4) & 0xFF, 0x00, 0x00);
+      }
+      if (r % 100 == 0) {
+        write(baos, nop);
+      } else {
+        baos.write(r % 60 == 1 ? 0xF1 : 0x40);
+        for (int i = 1; i < length; i++) {
+          baos.write(EBCDIC_TEXT[(r + i) % EBCDIC_TEXT.length]);
+        }
+      }
+      if (!isRDW) {
+        baos.write(0x0A);
+      }
+    }
+    return baos.toByteArray();
+  }
+
+  private static void write(ByteArrayOutputStream baos, byte[] data) {
+    baos.write(data, 0, data.length);
+  }
+
+  private static void write(ByteArrayOutputStream baos, int... bytes) {
+    for (int b : bytes) {
+      baos.write(b);
+    }
+  }
+}
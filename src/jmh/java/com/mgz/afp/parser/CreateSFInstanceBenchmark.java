@@ -0,0 +1,118 @@
+/*
+Copyright 2015 Rudolf Fiala
+
+This file is part of Alpheus AFP Parser.
+
+Alpheus AFP Parser is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Alpheus AFP Parser is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Alpheus AFP Parser.  If not, see <http://www.gnu.org/licenses/>
+*/
+package com.mgz.afp.parser;
+
+import com.mgz.afp.base.StructuredField;
+import com.mgz.afp.base.StructuredFieldIntroducer;
+import com.mgz.afp.enums.SFTypeID;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link AFPParser#createSFInstance(StructuredFieldIntroducer)}, which is backed by the
+ * {@link StructuredFieldRegistry}, with the former approach of probing all AFP packages by {@link
+ * Class#forName(String)} for every structured field.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CreateSFInstanceBenchmark {
+  private static final String afpPackagePrefix = "com.mgz.afp.";
+  private static final String[] afpPackages = {
+      afpPackagePrefix + "modca.",
+      afpPackagePrefix + "ptoca.",
+      afpPackagePrefix + "foca.",
+      afpPackagePrefix + "ioca.",
+      afpPackagePrefix + "goca.",
+      afpPackagePrefix + "bcoca.",
+      afpPackagePrefix + "lineData.",
+      afpPackagePrefix + "modca_L."
+  };
+
+  private StructuredFieldIntroducer[] sfis;
+
+  /**
+   * The former implementation of {@link AFPParser#createSFInstance(StructuredFieldIntroducer)}.
+   */
+  static StructuredField reflectiveCreateSFInstance(StructuredFieldIntroducer sfi) {
+    StructuredField sf = null;
+    for (String afpPackage : afpPackages) {
+      Class<?> clazz;
+      try {
+        String className = afpPackage + sfi.getSFTypeID().name();
+        clazz = Class.forName(className);
+        sf = (StructuredField) clazz.newInstance();
+      } catch (Exception cnfex) {
+        continue;
+      }
+    }
+
+    if (sf == null) {
+      sf = new com.mgz.afp.base.Undefined();
+    }
+    sf.setStructuredFieldIntroducer(sfi);
+    return sf;
+  }
+
+  @Setup
+  public void setup() {
+    // A typical mix of a page: BPG, environment group, text, graphics and image data.
+    SFTypeID[] mix = {
+        SFTypeID.BPG_BeginPage, SFTypeID.BAG_BeginActiveEnvironmentGroup, SFTypeID.MCF_MapCodedFont_Format2,
+        SFTypeID.PGD_PageDescriptor, SFTypeID.PTD_PresentationTextDataDescriptor_Format2, SFTypeID.EAG_EndActiveEnvironmentGroup,
+        SFTypeID.BPT_BeginPresentationTextObject, SFTypeID.PTX_PresentationTextData, SFTypeID.PTX_PresentationTextData,
+        SFTypeID.EPT_EndPresentationTextObject, SFTypeID.GAD_GraphicsData, SFTypeID.IPD_ImagePictureData,
+        SFTypeID.BDA_BarCodeData, SFTypeID.CAT_ColorAttributeTable, SFTypeID.EPG_EndPage
+    };
+    sfis = new StructuredFieldIntroducer[mix.length];
+    for (int i = 0; i < mix.length; i++) {
+      sfis[i] = new StructuredFieldIntroducer();
+      sfis[i].setSFTypeID(mix[i]);
+    }
+  }
+
+  @Benchmark
+  public void registry(Blackhole bh) {
+    for (StructuredFieldIntroducer sfi : sfis) {
+      bh.consume(AFPParser.createSFInstance(sfi));
+    }
+  }
+
+  @Benchmark
+  public void reflective(Blackhole bh) {
+    for (StructuredFieldIntroducer sfi : sfis) {
+      bh.consume(reflectiveCreateSFInstance(sfi));
+    }
+  }
+}
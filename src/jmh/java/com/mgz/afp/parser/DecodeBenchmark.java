@@ -0,0 +1,82 @@
+/*
+Copyright 2015 Rudolf Fiala
+
+This file is part of Alpheus AFP Parser.
+
+Alpheus AFP Parser is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Alpheus AFP Parser is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Alpheus AFP Parser.  If not, see <http://www.gnu.org/licenses/>
+*/
+package com.mgz.afp.parser;
+
+import com.mgz.afp.exceptions.AFPParserException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures decodeAFP() per {@link PayloadFamily}: triplets, PTOCA control sequences, GOCA drawing
+ * orders, IOCA segments, FNI and CPI repeating groups. Every operation decodes {@link
+ * #NR_OF_PAYLOADS} synthetic structured field payloads, see {@link ThroughputCounters} for MB/s
+ * and SFs/s.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DecodeBenchmark {
+  static final int NR_OF_PAYLOADS = 64;
+
+  @Param({"Triplet", "PTX", "GAD", "IPD", "FNI", "CPI"})
+  PayloadFamily family;
+
+  private byte[][] payloads;
+  private long nrOfBytes;
+  private AFPParserConfiguration config;
+
+  @Setup
+  public void setup() throws AFPParserException {
+    Random random = new Random(4711);
+    config = PayloadFamily.createConfiguration();
+    payloads = new byte[NR_OF_PAYLOADS][];
+    nrOfBytes = 0;
+    for (int i = 0; i < payloads.length; i++) {
+      payloads[i] = family.createPayload(random);
+      nrOfBytes += payloads[i].length;
+      // Fail early on invalid synthetic data.
+      family.decode(payloads[i], config);
+    }
+  }
+
+  @Benchmark
+  public void decode(ThroughputCounters counters, Blackhole bh) throws AFPParserException {
+    for (byte[] payload : payloads) {
+      bh.consume(family.decode(payload, config));
+    }
+    counters.add(nrOfBytes, payloads.length);
+  }
+}
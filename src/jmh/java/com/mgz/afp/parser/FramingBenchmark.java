@@ -0,0 +1,116 @@
+/*
+Copyright 2015 Rudolf Fiala
+
+This file is part of Alpheus AFP Parser.
+
+Alpheus AFP Parser is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Alpheus AFP Parser is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Alpheus AFP Parser.  If not, see <http://www.gnu.org/licenses/>
+*/
+package com.mgz.afp.parser;
+
+import com.mgz.afp.base.StructuredField;
+import com.mgz.afp.exceptions.AFPParserException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link AFPParser#parseNextSF()} over a synthetic AFP stream of pages with PTX, GAD, IPD,
+ * and NOP structured fields: framing only (parse to base data, shallow), framing from a memory
+ * mapped file, and fully decoding. See {@link ThroughputCounters} for MB/s and SFs/s.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FramingBenchmark {
+  private byte[] afp;
+  private File afpFile;
+
+  @Setup
+  public void setup() throws IOException {
+    afp = BenchmarkData.afpStream(4711, 100);
+    afpFile = File.createTempFile(FramingBenchmark.class.getSimpleName(), ".afp");
+    FileOutputStream fos = new FileOutputStream(afpFile);
+    try {
+      fos.write(afp);
+    } finally {
+      fos.close();
+    }
+  }
+
+  @TearDown
+  public void tearDown() {
+    afpFile.delete();
+  }
+
+  private void parse(AFPParserConfiguration pc, ThroughputCounters counters, Blackhole bh) throws AFPParserException {
+    AFPParser parser = new AFPParser(pc);
+    StructuredField sf;
+    while ((sf = parser.parseNextSF()) != null) {
+      bh.consume(sf);
+    }
+    parser.quitParsing();
+    counters.add(afp.length, parser.getNrOfSFBuilt());
+  }
+
+  @Benchmark
+  public void framingToBaseData(ThroughputCounters counters, Blackhole bh) throws AFPParserException {
+    AFPParserConfiguration pc = new AFPParserConfiguration();
+    pc.setInputStream(new ByteArrayInputStream(afp));
+    pc.setParseToStructuredFieldsBaseData(true);
+    parse(pc, counters, bh);
+  }
+
+  @Benchmark
+  public void framingShallow(ThroughputCounters counters, Blackhole bh) throws AFPParserException {
+    AFPParserConfiguration pc = new AFPParserConfiguration();
+    pc.setInputStream(new ByteArrayInputStream(afp));
+    pc.setBuildShallow(true);
+    parse(pc, counters, bh);
+  }
+
+  @Benchmark
+  public void framingMemoryMapped(ThroughputCounters counters, Blackhole bh) throws AFPParserException {
+    AFPParserConfiguration pc = new AFPParserConfiguration();
+    pc.setAFPFile(afpFile);
+    pc.setMemoryMapped(true);
+    pc.setParseToStructuredFieldsBaseData(true);
+    parse(pc, counters, bh);
+  }
+
+  @Benchmark
+  public void fullyDecoding(ThroughputCounters counters, Blackhole bh) throws AFPParserException {
+    AFPParserConfiguration pc = new AFPParserConfiguration();
+    pc.setInputStream(new ByteArrayInputStream(afp));
+    parse(pc, counters, bh);
+  }
+}
@@ -0,0 +1,130 @@
+/*
+Copyright 2015 Rudolf Fiala
+
+This file is part of Alpheus AFP Parser.
+
+Alpheus AFP Parser is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Alpheus AFP Parser is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Alpheus AFP Parser.  If not, see <http://www.gnu.org/licenses/>
+*/
+package com.mgz.afp.parser;
+
+import com.mgz.afp.exceptions.AFPParserException;
+import com.mgz.afp.goca.GAD_DrawingOrder;
+import com.mgz.afp.goca.GAD_DrawingOrder.DrawingOrder_HasPoints;
+import com.mgz.afp.goca.GAD_DrawingOrder.GOCA_Point;
+import com.mgz.afp.goca.GAD_GraphicsData;
+import com.mgz.afp.goca.GOCA_PointList;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures GOCA point handling on a large chart (see {@link BenchmarkData#gocaChart(Random, int)}):
+ * decoding into {@link GOCA_PointList}, reading the coordinates packed and as {@link GOCA_Point}
+ * objects, and writing. {@link #decodePointObjects(Blackhole)} decodes the points into an ArrayList
+ * of {@link GOCA_Point}s, as drawing orders did before.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GocaPointsBenchmark {
+  private static final int NR_OF_LINES = 250;
+
+  private byte[] payload;
+  private GAD_GraphicsData.BeginSegment segment;
+  private AFPParserConfiguration config;
+  private ByteArrayOutputStream baos;
+
+  @Setup
+  public void setup() throws AFPParserException {
+    config = PayloadFamily.createConfiguration();
+    payload = BenchmarkData.gocaChart(new Random(4711), NR_OF_LINES);
+    segment = new GAD_GraphicsData.BeginSegment();
+    segment.decodeAFP(payload, 0, payload.length, config);
+    baos = new ByteArrayOutputStream(payload.length);
+  }
+
+  @Benchmark
+  public void decodePacked(ThroughputCounters counters, Blackhole bh) throws AFPParserException {
+    GAD_GraphicsData.BeginSegment decoded = new GAD_GraphicsData.BeginSegment();
+    decoded.decodeAFP(payload, 0, payload.length, config);
+    long sum = 0;
+    for (GAD_DrawingOrder order : decoded.getDrawingOrders()) {
+      GOCA_PointList points = (GOCA_PointList) ((DrawingOrder_HasPoints) order).getPoints();
+      for (int i = 0; i < points.size(); i++) {
+        sum += points.getXCoordinate(i) + points.getYCoordinate(i);
+      }
+    }
+    bh.consume(sum);
+    counters.add(payload.length, 1);
+  }
+
+  @Benchmark
+  public void decodeAdapter(ThroughputCounters counters, Blackhole bh) throws AFPParserException {
+    GAD_GraphicsData.BeginSegment decoded = new GAD_GraphicsData.BeginSegment();
+    decoded.decodeAFP(payload, 0, payload.length, config);
+    long sum = 0;
+    for (GAD_DrawingOrder order : decoded.getDrawingOrders()) {
+      for (GOCA_Point point : ((DrawingOrder_HasPoints) order).getPoints()) {
+        sum += point.getxCoordinate() + point.getyCoordinate();
+      }
+    }
+    bh.consume(sum);
+    counters.add(payload.length, 1);
+  }
+
+  @Benchmark
+  public void decodePointObjects(Blackhole bh) {
+    // Skip BeginSegment header, decode every GLINE like the former ArrayList based implementation.
+    int pos = 14;
+    while (pos < payload.length) {
+      int length = payload[pos + 1] & 0xFF;
+      List<GOCA_Point> points = new ArrayList<GOCA_Point>();
+      for (int p = pos + 2; p < pos + 2 + length; p += 4) {
+        GOCA_Point point = new GOCA_Point();
+        point.setxCoordinate((short) ((payload[p] << 8) | (payload[p + 1] & 0xFF)));
+        point.setyCoordinate((short) ((payload[p + 2] << 8) | (payload[p + 3] & 0xFF)));
+        points.add(point);
+      }
+      bh.consume(points);
+      pos += 2 + length;
+    }
+  }
+
+  @Benchmark
+  public void write(ThroughputCounters counters, Blackhole bh) throws IOException {
+    baos.reset();
+    segment.writeAFP(baos, config);
+    bh.consume(baos.size());
+    counters.add(payload.length, 1);
+  }
+}
@@ -0,0 +1,87 @@
+/*
+Copyright 2015 Rudolf Fiala
+
+This file is part of Alpheus AFP Parser.
+
+Alpheus AFP Parser is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Alpheus AFP Parser is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Alpheus AFP Parser.  If not, see <http://www.gnu.org/licenses/>
+*/
+package com.mgz.afp.parser;
+
+import com.mgz.afp.exceptions.AFPParserException;
+import com.mgz.afp.parser.LineDataRecordReader.RecordFormat;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link LineDataRecordReader} framing a mixed mode file of line data records and
+ * structured fields: RDW records from a stream and from a direct buffer, and line feed delimited
+ * records. See {@link ThroughputCounters} for MB/s and records/s.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LineDataBenchmark {
+  private byte[] rdw;
+  private ByteBuffer rdwDirect;
+  private byte[] delimited;
+
+  @Setup
+  public void setup() {
+    rdw = BenchmarkData.lineData(4711, 100000, true);
+    rdwDirect = ByteBuffer.allocateDirect(rdw.length);
+    rdwDirect.put(rdw).flip();
+    delimited = BenchmarkData.lineData(4711, 100000, false);
+  }
+
+  private void read(LineDataRecordReader reader, long nrOfBytes, ThroughputCounters counters, Blackhole bh) throws AFPParserException {
+    reader.setCarriageControl(true);
+    while (reader.next()) {
+      bh.consume(reader.getCarriageControl());
+      bh.consume(reader.getDataLength());
+    }
+    counters.add(nrOfBytes, reader.getNrOfRecords());
+  }
+
+  @Benchmark
+  public void rdwStream(ThroughputCounters counters, Blackhole bh) throws AFPParserException {
+    read(new LineDataRecordReader(new ByteArrayInputStream(rdw), RecordFormat.RDW), rdw.length, counters, bh);
+  }
+
+  @Benchmark
+  public void rdwDirectBuffer(ThroughputCounters counters, Blackhole bh) throws AFPParserException {
+    read(new LineDataRecordReader(rdwDirect, RecordFormat.RDW), rdw.length, counters, bh);
+  }
+
+  @Benchmark
+  public void delimitedStream(ThroughputCounters counters, Blackhole bh) throws AFPParserException {
+    read(new LineDataRecordReader(new ByteArrayInputStream(delimited), RecordFormat.Delimited), delimited.length, counters, bh);
+  }
+}
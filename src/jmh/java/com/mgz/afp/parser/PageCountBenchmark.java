@@ -0,0 +1,151 @@
+/*
+Copyright 2015 Rudolf Fiala
+
+This file is part of Alpheus AFP Parser.
+
+Alpheus AFP Parser is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Alpheus AFP Parser is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Alpheus AFP Parser.  If not, see <http://www.gnu.org/licenses/>
+*/
+package com.mgz.afp.parser;
+
+import com.mgz.afp.base.StructuredField;
+import com.mgz.afp.base.StructuredFieldBaseName;
+import com.mgz.afp.base.StructuredFieldIntroducer;
+import com.mgz.afp.base.StructuredFieldIntroducerView;
+import com.mgz.afp.enums.SFTypeID;
+import com.mgz.afp.exceptions.AFPParserException;
+import com.mgz.afp.modca.BPG_BeginPage;
+import com.mgz.afp.modca.EPG_EndPage;
+import com.mgz.afp.modca.NOP_NoOperation;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.EnumSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counts the pages of an in memory AFP stream, building all structured fields versus building only
+ * BPG by {@link AFPParserConfiguration#setSFTypeIDFilter(EnumSet)}, versus scanning SFIs with
+ * {@link AFPParser#scanNextSF()}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PageCountBenchmark {
+  private static final int NR_OF_PAGES = 500;
+  private byte[] afp;
+
+  private static void writeSF(ByteArrayOutputStream os, StructuredFieldBaseName sf, SFTypeID sfTypeID, AFPParserConfiguration pc) throws Exception {
+    StructuredFieldIntroducer sfi = new StructuredFieldIntroducer();
+    sfi.setSFTypeID(sfTypeID);
+    sf.setStructuredFieldIntroducer(sfi);
+    sf.setName("PAGE0001");
+    sf.writeAFP(os, pc);
+  }
+
+  @Setup
+  public void setup() throws Exception {
+    AFPParserConfiguration pc = new AFPParserConfiguration();
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    for (int p = 0; p < NR_OF_PAGES; p++) {
+      writeSF(os, new BPG_BeginPage(), SFTypeID.BPG_BeginPage, pc);
+      for (int i = 0; i < 20; i++) {
+        NOP_NoOperation nop = new NOP_NoOperation();
+        StructuredFieldIntroducer sfi = new StructuredFieldIntroducer();
+        sfi.setSFTypeID(SFTypeID.NOP_NoOperation);
+        nop.setStructuredFieldIntroducer(sfi);
+        nop.setData(new byte[500 + i * 100]);
+        nop.writeAFP(os, pc);
+      }
+      writeSF(os, new EPG_EndPage(), SFTypeID.EPG_EndPage, pc);
+    }
+    afp = os.toByteArray();
+  }
+
+  private AFPParserConfiguration createConfiguration() {
+    AFPParserConfiguration pc = new AFPParserConfiguration();
+    pc.setInputStream(new ByteArrayInputStream(afp));
+    return pc;
+  }
+
+  @Benchmark
+  public int buildAll() throws AFPParserException {
+    AFPParser parser = new AFPParser(createConfiguration());
+    int pageCount = 0;
+    StructuredField sf;
+    while ((sf = parser.parseNextSF()) != null) {
+      if (sf instanceof BPG_BeginPage) {
+        pageCount++;
+      }
+    }
+    parser.quitParsing();
+    return pageCount;
+  }
+
+  @Benchmark
+  public int filtered() throws AFPParserException {
+    AFPParserConfiguration pc = createConfiguration();
+    pc.setSFTypeIDFilter(EnumSet.of(SFTypeID.BPG_BeginPage));
+    AFPParser parser = new AFPParser(pc);
+    int pageCount = 0;
+    while (parser.parseNextSF() != null) {
+      pageCount++;
+    }
+    parser.quitParsing();
+    return pageCount;
+  }
+
+  @Benchmark
+  public int filteredHandler() throws AFPParserException {
+    AFPParserConfiguration pc = createConfiguration();
+    pc.setSFTypeIDFilter(EnumSet.of(SFTypeID.BPG_BeginPage));
+    AFPParser parser = new AFPParser(pc);
+    final int[] pageCount = new int[1];
+    parser.parse(new AFPStreamHandler() {
+      @Override
+      public void onBegin(StructuredField sf) {
+        pageCount[0]++;
+      }
+    });
+    parser.quitParsing();
+    return pageCount[0];
+  }
+
+  @Benchmark
+  public int scan() throws AFPParserException {
+    AFPParser parser = new AFPParser(createConfiguration());
+    int pageCount = 0;
+    StructuredFieldIntroducerView sfi;
+    while ((sfi = parser.scanNextSF()) != null) {
+      if (sfi.getSFTypeID() == SFTypeID.BPG_BeginPage) {
+        pageCount++;
+      }
+    }
+    parser.quitParsing();
+    return pageCount;
+  }
+}
@@ -0,0 +1,169 @@
+/*
+Copyright 2015 Rudolf Fiala
+
+This file is part of Alpheus AFP Parser.
+
+Alpheus AFP Parser is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Alpheus AFP Parser is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Alpheus AFP Parser.  If not, see <http://www.gnu.org/licenses/>
+*/
+package com.mgz.afp.parser;
+
+import com.mgz.afp.base.StructuredField;
+import com.mgz.afp.base.StructuredFieldIntroducer;
+import com.mgz.afp.enums.SFTypeID;
+import com.mgz.afp.exceptions.AFPParserException;
+import com.mgz.afp.foca.CPI_CodePageIndex;
+import com.mgz.afp.foca.FNI_FontIndex;
+import com.mgz.afp.goca.GAD_GraphicsData;
+import com.mgz.afp.ioca.IPD_ImagePictureData;
+import com.mgz.afp.modca.NOP_NoOperation;
+import com.mgz.afp.ptoca.PTX_PresentationTextData;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The families of structured field payloads measured by {@link DecodeBenchmark} and {@link
+ * WriteBenchmark}.
+ */
+public enum PayloadFamily {
+  Triplet {
+    @Override
+    byte[] createPayload(Random random) {
+      return BenchmarkData.triplets(random, 40);
+    }
+
+    @Override
+    Object decode(byte[] payload, AFPParserConfiguration config) {
+      return TripletParser.parseTriplets(payload, 0, -1, config);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    void write(Object decoded, OutputStream os, AFPParserConfiguration config) throws IOException {
+      for (com.mgz.afp.triplets.Triplet triplet : (List<com.mgz.afp.triplets.Triplet>) decoded) {
+        triplet.writeAFP(os, config);
+      }
+    }
+  },
+  PTX {
+    @Override
+    byte[] createPayload(Random random) {
+      return BenchmarkData.ptx(random, 60);
+    }
+
+    @Override
+    Object decode(byte[] payload, AFPParserConfiguration config) throws AFPParserException {
+      PTX_PresentationTextData ptx = (PTX_PresentationTextData) decodeSF(new PTX_PresentationTextData(), SFTypeID.PTX_PresentationTextData, payload, config);
+      // Control sequences are decoded lazily.
+      ptx.getControlSequences();
+      return ptx;
+    }
+  },
+  GAD {
+    @Override
+    byte[] createPayload(Random random) {
+      return BenchmarkData.gocaSegment(random, 60);
+    }
+
+    @Override
+    Object decode(byte[] payload, AFPParserConfiguration config) throws AFPParserException {
+      GAD_GraphicsData.BeginSegment segment = new GAD_GraphicsData.BeginSegment();
+      segment.decodeAFP(payload, 0, payload.length, config);
+      return segment;
+    }
+
+    @Override
+    void write(Object decoded, OutputStream os, AFPParserConfiguration config) throws IOException {
+      ((GAD_GraphicsData.BeginSegment) decoded).writeAFP(os, config);
+    }
+  },
+  IPD {
+    @Override
+    byte[] createPayload(Random random) {
+      return BenchmarkData.ipd(random, 16000);
+    }
+
+    @Override
+    Object decode(byte[] payload, AFPParserConfiguration config) throws AFPParserException {
+      return decodeSF(new IPD_ImagePictureData(), SFTypeID.IPD_ImagePictureData, payload, config);
+    }
+  },
+  FNI {
+    @Override
+    byte[] createPayload(Random random) {
+      return BenchmarkData.fni(random, 250);
+    }
+
+    @Override
+    Object decode(byte[] payload, AFPParserConfiguration config) throws AFPParserException {
+      return decodeSF(new FNI_FontIndex(), SFTypeID.FNI_FontIndex, payload, config);
+    }
+  },
+  CPI {
+    @Override
+    byte[] createPayload(Random random) {
+      return BenchmarkData.cpi(random, 250);
+    }
+
+    @Override
+    Object decode(byte[] payload, AFPParserConfiguration config) throws AFPParserException {
+      return decodeSF(new CPI_CodePageIndex(), SFTypeID.CPI_CodePageIndex, payload, config);
+    }
+  },
+  NOP {
+    @Override
+    byte[] createPayload(Random random) {
+      byte[] payload = new byte[8000];
+      random.nextBytes(payload);
+      return payload;
+    }
+
+    @Override
+    Object decode(byte[] payload, AFPParserConfiguration config) throws AFPParserException {
+      return decodeSF(new NOP_NoOperation(), SFTypeID.NOP_NoOperation, payload, config);
+    }
+  };
+
+  private static StructuredField decodeSF(StructuredField sf, SFTypeID sfTypeID, byte[] payload, AFPParserConfiguration config) throws AFPParserException {
+    StructuredFieldIntroducer sfi = new StructuredFieldIntroducer();
+    sfi.setSFTypeID(sfTypeID);
+    sf.setStructuredFieldIntroducer(sfi);
+    sf.decodeAFP(payload, 0, -1, config);
+    return sf;
+  }
+
+  /**
+   * Returns a configuration that provides the FNC and CPC needed to decode FNI and CPI.
+   */
+  static AFPParserConfiguration createConfiguration() {
+    AFPParserConfiguration config = new AFPParserConfiguration();
+    config.setCurrentFontControl(BenchmarkData.fontControl());
+    config.setCurrentPageControl(BenchmarkData.codePageControl());
+    return config;
+  }
+
+  abstract byte[] createPayload(Random random);
+
+  abstract Object decode(byte[] payload, AFPParserConfiguration config) throws AFPParserException;
+
+  /**
+   * Writes the decoded payload. Structured fields are written by {@link
+   * StructuredField#writeAFP(OutputStream, AFPParserConfiguration)}, including SFI.
+   */
+  void write(Object decoded, OutputStream os, AFPParserConfiguration config) throws IOException {
+    ((StructuredField) decoded).writeAFP(os, config);
+  }
+}
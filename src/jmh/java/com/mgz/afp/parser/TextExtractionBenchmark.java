@@ -0,0 +1,93 @@
+/*
+Copyright 2015 Rudolf Fiala
+
+This file is part of Alpheus AFP Parser.
+
+Alpheus AFP Parser is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Alpheus AFP Parser is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Alpheus AFP Parser.  If not, see <http://www.gnu.org/licenses/>
+*/
+package com.mgz.afp.parser;
+
+import com.mgz.afp.exceptions.AFPParserException;
+import com.mgz.afp.ptoca.controlSequence.PTOCAControlSequence;
+import com.mgz.afp.ptoca.controlSequence.PTOCAControlSequence.TRN_TransparentData;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares TRN text extraction from PTX payloads by decoding {@link PTOCAControlSequence} objects
+ * with extraction by {@link PTOCATextRunExtractor}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TextExtractionBenchmark {
+  private byte[][] payloads;
+  private long nrOfBytes;
+  private AFPParserConfiguration config;
+  private PTOCATextRunExtractor extractor;
+
+  @Setup
+  public void setup() {
+    Random random = new Random(4711);
+    config = PayloadFamily.createConfiguration();
+    extractor = new PTOCATextRunExtractor(config.getAfpCharSet());
+    payloads = new byte[DecodeBenchmark.NR_OF_PAYLOADS][];
+    nrOfBytes = 0;
+    for (int i = 0; i < payloads.length; i++) {
+      payloads[i] = BenchmarkData.ptx(random, 40);
+      nrOfBytes += payloads[i].length;
+    }
+  }
+
+  @Benchmark
+  public void controlSequences(ThroughputCounters counters, Blackhole bh) throws AFPParserException {
+    for (byte[] payload : payloads) {
+      for (PTOCAControlSequence cs : PTOCAControlSequenceParser.parseControlSequences(payload, 0, -1, config)) {
+        if (cs instanceof TRN_TransparentData) {
+          bh.consume(((TRN_TransparentData) cs).getTransparentData());
+        }
+      }
+    }
+    counters.add(nrOfBytes, payloads.length);
+  }
+
+  @Benchmark
+  public void textRunExtractor(ThroughputCounters counters, Blackhole bh) throws AFPParserException {
+    for (byte[] payload : payloads) {
+      extractor.resetState();
+      extractor.reset(payload, 0, -1);
+      while (extractor.nextTextRun()) {
+        bh.consume(extractor.getText());
+        bh.consume(extractor.getInlinePosition());
+      }
+    }
+    counters.add(nrOfBytes, payloads.length);
+  }
+}
@@ -0,0 +1,51 @@
+/*
+Copyright 2015 Rudolf Fiala
+
+This file is part of Alpheus AFP Parser.
+
+Alpheus AFP Parser is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Alpheus AFP Parser is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Alpheus AFP Parser.  If not, see <http://www.gnu.org/licenses/>
+*/
+package com.mgz.afp.parser;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Secondary benchmark results, reported by JMH per second next to the primary result: megabytes
+ * of AFP data processed (MB/s) and structured fields (SFs/s) or, for families below structured
+ * field level, items (triplets, control sequences, drawing orders, segments, repeating groups)
+ * processed.
+ */
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+@State(Scope.Thread)
+public class ThroughputCounters {
+  private static final double MB = 1024 * 1024;
+
+  public double megabytes;
+  public long structuredFields;
+
+  @Setup(Level.Iteration)
+  public void reset() {
+    megabytes = 0;
+    structuredFields = 0;
+  }
+
+  void add(long nrOfBytes, long nrOfStructuredFields) {
+    megabytes += nrOfBytes / MB;
+    structuredFields += nrOfStructuredFields;
+  }
+}
@@ -0,0 +1,104 @@
+/*
+Copyright 2015 Rudolf Fiala
+
+This file is part of Alpheus AFP Parser.
+
+Alpheus AFP Parser is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Alpheus AFP Parser is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Alpheus AFP Parser.  If not, see <http://www.gnu.org/licenses/>
+*/
+package com.mgz.afp.parser;
+
+import com.mgz.afp.triplets.Triplet;
+import com.mgz.afp.triplets.Triplet.TripletID;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the instantiation of triplets by the {@link TripletRegistry} with the former approach of
+ * {@link Class#forName(String)} for every triplet, and measures the parsing of a triplet heavy
+ * payload.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TripletParserBenchmark {
+  private byte[] payload;
+  private TripletID[] tripletIDs;
+  private AFPParserConfiguration config;
+
+  /**
+   * The former implementation of {@link TripletParser#createTripletInstance(TripletID)}.
+   */
+  static Triplet reflectiveCreateTripletInstance(TripletID tid) {
+    Triplet triplet = null;
+    try {
+      Class<?> clazz = Class.forName(Triplet.class.getName() + "$" + tid.name());
+      triplet = (Triplet) clazz.newInstance();
+    } catch (Exception cnfex) {
+      // NOP.
+    }
+    if (triplet == null) {
+      triplet = new Triplet.Undefined();
+    }
+    triplet.setTripletID(tid);
+    return triplet;
+  }
+
+  @Setup
+  public void setup() {
+    config = PayloadFamily.createConfiguration();
+    payload = BenchmarkData.triplets(new Random(4711), 200);
+    List<Triplet> triplets = TripletParser.parseTriplets(payload, 0, -1, config);
+    tripletIDs = new TripletID[triplets.size()];
+    for (int i = 0; i < tripletIDs.length; i++) {
+      tripletIDs[i] = triplets.get(i).getTripletID();
+    }
+  }
+
+  @Benchmark
+  public void createRegistry(Blackhole bh) {
+    for (TripletID tripletID : tripletIDs) {
+      bh.consume(TripletParser.createTripletInstance(tripletID));
+    }
+  }
+
+  @Benchmark
+  public void createReflective(Blackhole bh) {
+    for (TripletID tripletID : tripletIDs) {
+      bh.consume(reflectiveCreateTripletInstance(tripletID));
+    }
+  }
+
+  @Benchmark
+  public void parseTriplets(ThroughputCounters counters, Blackhole bh) {
+    bh.consume(TripletParser.parseTriplets(payload, 0, -1, config));
+    counters.add(payload.length, 1);
+  }
+}
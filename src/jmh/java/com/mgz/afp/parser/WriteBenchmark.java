@@ -0,0 +1,96 @@
+/*
+Copyright 2015 Rudolf Fiala
+
+This file is part of Alpheus AFP Parser.
+
+Alpheus AFP Parser is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Alpheus AFP Parser is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Alpheus AFP Parser.  If not, see <http://www.gnu.org/licenses/>
+*/
+package com.mgz.afp.parser;
+
+import com.mgz.afp.exceptions.AFPParserException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures writeAFP() (which ends in writeFullStructuredField() for structured fields) of decoded
+ * payloads per {@link PayloadFamily}, and the decode/write round trip. See {@link
+ * ThroughputCounters} for MB/s and SFs/s.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class WriteBenchmark {
+  @Param({"Triplet", "PTX", "GAD", "IPD", "FNI", "CPI", "NOP"})
+  PayloadFamily family;
+
+  private byte[][] payloads;
+  private Object[] decoded;
+  private long nrOfBytes;
+  private AFPParserConfiguration config;
+  private ByteArrayOutputStream os;
+
+  @Setup
+  public void setup() throws AFPParserException {
+    Random random = new Random(4711);
+    config = PayloadFamily.createConfiguration();
+    payloads = new byte[DecodeBenchmark.NR_OF_PAYLOADS][];
+    decoded = new Object[payloads.length];
+    nrOfBytes = 0;
+    for (int i = 0; i < payloads.length; i++) {
+      payloads[i] = family.createPayload(random);
+      decoded[i] = family.decode(payloads[i], config);
+      nrOfBytes += payloads[i].length;
+    }
+    os = new ByteArrayOutputStream((int) nrOfBytes * 2);
+  }
+
+  @Benchmark
+  public void write(ThroughputCounters counters, Blackhole bh) throws IOException {
+    os.reset();
+    for (Object sf : decoded) {
+      family.write(sf, os, config);
+    }
+    bh.consume(os.size());
+    counters.add(os.size(), decoded.length);
+  }
+
+  @Benchmark
+  public void roundTrip(ThroughputCounters counters, Blackhole bh) throws IOException, AFPParserException {
+    os.reset();
+    for (byte[] payload : payloads) {
+      family.write(family.decode(payload, config), os, config);
+    }
+    bh.consume(os.size());
+    counters.add(nrOfBytes, payloads.length);
+  }
+}
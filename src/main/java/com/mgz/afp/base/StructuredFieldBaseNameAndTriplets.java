@@ -21,8 +21,10 @@ package com.mgz.afp.base;
 import com.mgz.afp.base.annotations.AFPField;
 import com.mgz.afp.exceptions.AFPParserException;
 import com.mgz.afp.parser.AFPParserConfiguration;
+import com.mgz.afp.parser.LazyTripletList;
 import com.mgz.afp.parser.TripletParser;
 import com.mgz.afp.triplets.Triplet;
+import com.mgz.afp.triplets.Triplet.TripletID;
 import com.mgz.util.Constants;
 import com.mgz.util.UtilCharacterEncoding;
 
@@ -42,7 +44,7 @@ public abstract class StructuredFieldBaseNameAndTriplets extends StructuredField
     super.decodeAFP(sfData, offset, length, config);
     int actualLength = getActualLength(sfData, offset, length);
     if (actualLength > 8) {
-      triplets = TripletParser.parseTriplets(sfData, 8, sfData.length - 8, config);
+      triplets = new LazyTripletList(sfData, offset + 8, actualLength - 8, config);
     } else {
       triplets = null;
     }
@@ -54,19 +56,27 @@ public abstract class StructuredFieldBaseNameAndTriplets extends StructuredField
     if (name != null) {
       baos.write(UtilCharacterEncoding.stringToByteArray(name, config.getAfpCharSet(), 8, Constants.EBCDIC_ID_FILLER));
     }
-    if (triplets != null) {
-      for (Triplet triplet : triplets) {
-        triplet.writeAFP(baos, config);
-      }
-    }
+    TripletParser.writeTriplets(triplets, baos, config);
     writeFullStructuredField(os, baos.toByteArray());
   }
 
+  /**
+   * Returns the triplets. Decoded triplets are held by a {@link LazyTripletList}, the triplets are
+   * parsed on first access.
+   */
   @Override
   public final List<Triplet> getTriplets() {
     return triplets;
   }
 
+  /**
+   * Returns the first triplet of the given {@link TripletID}, or null if there is none. Decodes
+   * only the found triplet if the triplets have not been accessed yet.
+   */
+  public final Triplet getTriplet(TripletID tripletID) throws AFPParserException {
+    return TripletParser.getTriplet(triplets, tripletID);
+  }
+
   @Override
   public final void setTriplets(List<Triplet> triplets) {
     this.triplets = triplets;
@@ -21,8 +21,10 @@ package com.mgz.afp.base;
 import com.mgz.afp.base.annotations.AFPField;
 import com.mgz.afp.exceptions.AFPParserException;
 import com.mgz.afp.parser.AFPParserConfiguration;
+import com.mgz.afp.parser.LazyTripletList;
 import com.mgz.afp.parser.TripletParser;
 import com.mgz.afp.triplets.Triplet;
+import com.mgz.afp.triplets.Triplet.TripletID;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
@@ -40,7 +42,7 @@ public abstract class StructuredFieldBaseTriplets extends StructuredField implem
     int actualLength = getActualLength(sfData, offset, length);
     triplets = null;
     if (actualLength > 0) {
-      triplets = TripletParser.parseTriplets(sfData, offset, actualLength, config);
+      triplets = new LazyTripletList(sfData, offset, actualLength, config);
     }
 
   }
@@ -48,19 +50,27 @@ public abstract class StructuredFieldBaseTriplets extends StructuredField implem
   @Override
   public void writeAFP(OutputStream os, AFPParserConfiguration config) throws IOException {
     ByteArrayOutputStream baos = new ByteArrayOutputStream();
-    if (triplets != null) {
-      for (Triplet triplet : triplets) {
-        triplet.writeAFP(baos, config);
-      }
-    }
+    TripletParser.writeTriplets(triplets, baos, config);
     writeFullStructuredField(os, baos.toByteArray());
   }
 
+  /**
+   * Returns the triplets. Decoded triplets are held by a {@link LazyTripletList}, the triplets are
+   * parsed on first access.
+   */
   @Override
   public final List<Triplet> getTriplets() {
     return triplets;
   }
 
+  /**
+   * Returns the first triplet of the given {@link TripletID}, or null if there is none. Decodes
+   * only the found triplet if the triplets have not been accessed yet.
+   */
+  public final Triplet getTriplet(TripletID tripletID) throws AFPParserException {
+    return TripletParser.getTriplet(triplets, tripletID);
+  }
+
   @Override
   public final void setTriplets(List<Triplet> triplets) {
     this.triplets = triplets;
@@ -0,0 +1,211 @@
+/*
+Copyright 2015 Rudolf Fiala
+
+This file is part of Alpheus AFP Parser.
+
+Alpheus AFP Parser is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Alpheus AFP Parser is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Alpheus AFP Parser.  If not, see <http://www.gnu.org/licenses/>
+*/
+package com.mgz.afp.base;
+
+import com.mgz.afp.enums.SFFlag;
+import com.mgz.afp.enums.SFTypeID;
+import com.mgz.afp.exceptions.AFPParserException;
+import com.mgz.util.IntCodeTable;
+
+import java.nio.ByteBuffer;
+import java.nio.BufferUnderflowException;
+
+/**
+ * Mutable, reusable view of a Structured Field Introducer (SFI). Unlike {@link
+ * StructuredFieldIntroducer} the view keeps the SFI in primitive fields and the flag byte as is, so
+ * it can be refilled in place for every structured field without allocating. Use {@link
+ * #toStructuredFieldIntroducer()} to materialize a {@link StructuredFieldIntroducer} on demand.<br>
+ * <br> A view is not thread safe, and its content is only valid until it is refilled.
+ */
+public final class StructuredFieldIntroducerView {
+  /**
+   * Maximum length of an SFI including the extension.
+   */
+  public static final int MAX_LENGTH = 8 + 255;
+
+  private long fileOffset;
+  private int sfLength;
+  private int sfTypeCode;
+  private int flagByte;
+  private int reserved;
+  private int extensionLength;
+  private final byte[] extension = new byte[254];
+
+  /**
+   * Returns true, if the flag byte of the SFI header (the 8 bytes without extension) in the given
+   * array at the given offset indicates an SFI extension.
+   */
+  public static boolean hasExtension(byte[] sfiHeader, int offset) {
+    return SFFlag.hasExtension.isSet(sfiHeader[offset + 5]);
+  }
+
+  /**
+   * Refills this view from the SFI in the given array at the given offset. The SFI length field is
+   * expected at the offset, the leading 0x5A is not part of the SFI. If the SFI has an extension,
+   * the array has to contain the extension, too.
+   */
+  public void refill(byte[] sfi, int offset) throws AFPParserException {
+    if (offset < 0 || offset + 8 > sfi.length) {
+      throw new AFPParserException("Failed to decode SFI header.");
+    }
+    sfLength = ((sfi[offset] & 0xFF) << 8) | (sfi[offset + 1] & 0xFF);
+    sfTypeCode = IntCodeTable.pack(sfi[offset + 2], sfi[offset + 3], sfi[offset + 4]);
+    flagByte = sfi[offset + 5] & 0xFF;
+    reserved = ((sfi[offset + 6] & 0xFF) << 8) | (sfi[offset + 7] & 0xFF);
+    if (SFFlag.hasExtension.isSet(flagByte)) {
+      if (offset + 9 > sfi.length) {
+        throw new AFPParserException("Failed to decode SFI extension data.");
+      }
+      extensionLength = sfi[offset + 8] & 0xFF;
+      if (extensionLength < 1 || offset + 8 + extensionLength > sfi.length) {
+        throw new AFPParserException("Failed to decode SFI extension data.");
+      }
+      System.arraycopy(sfi, offset + 9, extension, 0, extensionLength - 1);
+    } else {
+      extensionLength = 0;
+    }
+  }
+
+  /**
+   * Refills this view from the given {@link ByteBuffer}, starting at the buffer's current position.
+   * The SFI length field is expected at the current position, the leading 0x5A is not part of the
+   * SFI. After return the buffer is positioned at the first byte of the structured field's payload.
+   */
+  public void refill(ByteBuffer buffer) throws AFPParserException {
+    try {
+      sfLength = buffer.getShort() & 0xFFFF;
+      int sfClass = buffer.get();
+      int sfType = buffer.get();
+      int sfCategory = buffer.get();
+      sfTypeCode = IntCodeTable.pack(sfClass, sfType, sfCategory);
+      flagByte = buffer.get() & 0xFF;
+      reserved = buffer.getShort() & 0xFFFF;
+      if (SFFlag.hasExtension.isSet(flagByte)) {
+        extensionLength = buffer.get() & 0xFF;
+        if (extensionLength < 1) {
+          throw new AFPParserException("Failed to decode SFI extension data.");
+        }
+        buffer.get(extension, 0, extensionLength - 1);
+      } else {
+        extensionLength = 0;
+      }
+    } catch (BufferUnderflowException ex) {
+      throw new AFPParserException("Failed to decode SFI header.", ex);
+    }
+  }
+
+  /**
+   * Returns a new {@link StructuredFieldIntroducer} with the content of this view.
+   */
+  public StructuredFieldIntroducer toStructuredFieldIntroducer() {
+    StructuredFieldIntroducer sfi = new StructuredFieldIntroducer();
+    sfi.sfLength = sfLength;
+    sfi.sfTypeID = getSFTypeID();
+    sfi.flagByte = SFFlag.valueOf(flagByte);
+    sfi.reserved = reserved;
+    if (extensionLength > 0) {
+      sfi.extenstionLength = (short) extensionLength;
+      sfi.extenstion = new byte[extensionLength - 1];
+      System.arraycopy(extension, 0, sfi.extenstion, 0, sfi.extenstion.length);
+    }
+    sfi.setFileOffset(fileOffset);
+    return sfi;
+  }
+
+  /**
+   * Returns the position in the file where the structured field begins. A structured field begins
+   * with the 0x5A byte.
+   */
+  public long getFileOffset() {
+    return fileOffset;
+  }
+
+  public void setFileOffset(long fileOffset) {
+    this.fileOffset = fileOffset;
+  }
+
+  /**
+   * Returns the length of the structured field, SFI and payload, without the leading 0x5A.
+   */
+  public int getSFLength() {
+    return sfLength;
+  }
+
+  /**
+   * Returns the class, type, and category byte of the structured field type ID packed into an int,
+   * see {@link IntCodeTable#pack(int, int, int)}.
+   */
+  public int getSFTypeCode() {
+    return sfTypeCode;
+  }
+
+  public SFTypeID getSFTypeID() {
+    return SFTypeID.valueOf(sfTypeCode >>> 16, (sfTypeCode >>> 8) & 0xFF, sfTypeCode & 0xFF);
+  }
+
+  public int getFlagByte() {
+    return flagByte;
+  }
+
+  public boolean isFlagSet(SFFlag flag) {
+    return flag.isSet(flagByte);
+  }
+
+  public int getReserved() {
+    return reserved;
+  }
+
+  /**
+   * Returns the length of the SFI extension including its length byte, or 0 if the SFI has no
+   * extension.
+   */
+  public int getExtensionLength() {
+    return extensionLength;
+  }
+
+  /**
+   * Returns the SFI extension data byte at the given index.
+   */
+  public byte getExtensionData(int index) {
+    if (index < 0 || index >= extensionLength - 1) {
+      throw new IndexOutOfBoundsException("Index " + index + " is outside of the SFI extension data.");
+    }
+    return extension[index];
+  }
+
+  public int getLengthOfStructuredFieldIntroducerIncludingExtension() {
+    return 8 + extensionLength;
+  }
+
+  /**
+   * Returns the length of the payload including padding.
+   */
+  public int getLengthOfGrossPayload() {
+    return sfLength - 8 - extensionLength;
+  }
+
+  @Override
+  public String toString() {
+    return "StructuredFieldIntroducerView{" +
+        "sfTypeID=" + getSFTypeID() +
+        ", fileOffset=0x" + Long.toHexString(fileOffset) +
+        ", sfLength=" + sfLength +
+        '}';
+  }
+}
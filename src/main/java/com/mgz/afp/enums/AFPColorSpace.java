@@ -18,6 +18,8 @@ along with Alpheus AFP Parser.  If not, see <http://www.gnu.org/licenses/>
 */
 package com.mgz.afp.enums;
 
+import com.mgz.util.ByteCodeTable;
+
 /**
  * Color spaces in AFP.
  */
@@ -35,13 +37,16 @@ public enum AFPColorSpace {
     this.code = code;
   }
 
-  public static AFPColorSpace valueOf(byte code) {
-    for (AFPColorSpace cs : values()) {
-      if (cs.code == code) {
-        return cs;
-      }
+  private static final ByteCodeTable<AFPColorSpace> codeTable = new ByteCodeTable<AFPColorSpace>();
+
+  static {
+    for (AFPColorSpace v : values()) {
+      codeTable.put(v.code, v);
     }
-    return null;
+  }
+
+  public static AFPColorSpace valueOf(byte code) {
+    return codeTable.get(code);
   }
 
   public int toByte() {
@@ -19,6 +19,7 @@ along with Alpheus AFP Parser.  If not, see <http://www.gnu.org/licenses/>
 package com.mgz.afp.enums;
 
 import com.mgz.afp.exceptions.AFPParserException;
+import com.mgz.util.IntCodeTable;
 import com.mgz.util.UtilBinaryDecoding;
 
 /**
@@ -72,11 +73,18 @@ public enum AFPColorValue {
     this.blue = blue;
   }
 
+  private static final IntCodeTable<AFPColorValue> codeTable = new IntCodeTable<AFPColorValue>();
+
+  static {
+    for (AFPColorValue v : values()) {
+      codeTable.put(v.code, v);
+    }
+  }
+
   public static AFPColorValue valueOf(int code) throws AFPParserException {
-    for (AFPColorValue cv : values()) {
-      if (cv.code == code) {
-        return cv;
-      }
+    AFPColorValue cv = codeTable.get(code);
+    if (cv != null) {
+      return cv;
     }
     throw new AFPParserException(AFPColorValue.class.getSimpleName() + ": color code 0x" + Integer.toHexString(code) + " is undefined.");
   }
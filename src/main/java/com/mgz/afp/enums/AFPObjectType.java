@@ -18,6 +18,8 @@ along with Alpheus AFP Parser.  If not, see <http://www.gnu.org/licenses/>
 */
 package com.mgz.afp.enums;
 
+import com.mgz.util.ByteCodeTable;
+
 public enum AFPObjectType {
   PageSegment(0x5F),
   OtherObjectData(0x92),
@@ -31,13 +33,16 @@ public enum AFPObjectType {
     this.code = code;
   }
 
-  public static AFPObjectType valueOf(short code) {
-    for (AFPObjectType ot : values()) {
-      if (ot.code == code) {
-        return ot;
-      }
+  private static final ByteCodeTable<AFPObjectType> codeTable = new ByteCodeTable<AFPObjectType>();
+
+  static {
+    for (AFPObjectType v : values()) {
+      codeTable.put(v.code, v);
     }
-    return null;
+  }
+
+  public static AFPObjectType valueOf(short code) {
+    return codeTable.get(code);
   }
 
   public int toByte() {
@@ -18,6 +18,7 @@ along with Alpheus AFP Parser.  If not, see <http://www.gnu.org/licenses/>
 */
 package com.mgz.afp.enums;
 
+import com.mgz.util.IntCodeTable;
 import com.mgz.util.UtilBinaryDecoding;
 
 public enum AFPOrientation {
@@ -32,13 +33,16 @@ public enum AFPOrientation {
     this.code = orientationCode;
   }
 
-  public static AFPOrientation valueOf(int orientationCode) {
-    for (AFPOrientation ori : values()) {
-      if (ori.code == orientationCode) {
-        return ori;
-      }
+  private static final IntCodeTable<AFPOrientation> codeTable = new IntCodeTable<AFPOrientation>();
+
+  static {
+    for (AFPOrientation v : values()) {
+      codeTable.put(v.code, v);
     }
-    return null;
+  }
+
+  public static AFPOrientation valueOf(int orientationCode) {
+    return codeTable.get(orientationCode);
   }
 
   public byte[] toBytes() {
@@ -18,6 +18,8 @@ along with Alpheus AFP Parser.  If not, see <http://www.gnu.org/licenses/>
 */
 package com.mgz.afp.enums;
 
+import com.mgz.util.ByteCodeTable;
+
 public enum AFPUnitBase {
   Inches10(0x00),
   Centimeter10(0x01),
@@ -28,13 +30,16 @@ public enum AFPUnitBase {
     this.code = code;
   }
 
-  public static AFPUnitBase valueOf(byte unitBaseCode) {
-    for (AFPUnitBase ub : values()) {
-      if (ub.code == unitBaseCode) {
-        return ub;
-      }
+  private static final ByteCodeTable<AFPUnitBase> codeTable = new ByteCodeTable<AFPUnitBase>();
+
+  static {
+    for (AFPUnitBase v : values()) {
+      codeTable.put(v.code, v);
     }
-    return null;
+  }
+
+  public static AFPUnitBase valueOf(byte unitBaseCode) {
+    return codeTable.get(unitBaseCode);
   }
 
   public byte toByte() {
@@ -18,6 +18,8 @@ along with Alpheus AFP Parser.  If not, see <http://www.gnu.org/licenses/>
 */
 package com.mgz.afp.enums;
 
+import com.mgz.util.ByteCodeTable;
+
 /**
  * The structured field category code. It identifies the lowest level component that can be
  * constructed using the structured field, such as document, active environment group, page, or
@@ -79,11 +81,18 @@ public enum SFCategory {
     this.val = val;
   }
 
+  private static final ByteCodeTable<SFCategory> codeTable = new ByteCodeTable<SFCategory>();
+
+  static {
+    for (SFCategory v : values()) {
+      codeTable.put(v.val, v);
+    }
+  }
+
   public static SFCategory valueOf(int sfCategoryByte) {
-    for (SFCategory sfCategory : SFCategory.values()) {
-      if (sfCategory.val == sfCategoryByte) {
-        return sfCategory;
-      }
+    SFCategory sfCategory = codeTable.get(sfCategoryByte);
+    if (sfCategory != null) {
+      return sfCategory;
     }
     return Undefined;
   }
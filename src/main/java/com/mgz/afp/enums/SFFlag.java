@@ -21,21 +21,23 @@ package com.mgz.afp.enums;
 import java.util.EnumSet;
 
 public enum SFFlag {
-  isSegmented,
-  hasExtension,
-  isPadded;
+  isSegmented(0x80),
+  hasExtension(0x20),
+  isPadded(0x08);
+
+  private final int mask;
+
+  SFFlag(int mask) {
+    this.mask = mask;
+  }
 
   public static EnumSet<SFFlag> valueOf(int flagByte) {
     EnumSet<SFFlag> result = EnumSet.noneOf(SFFlag.class);
 
-    if ((flagByte & 0x80) != 0) {
-      result.add(isSegmented);
-    }
-    if ((flagByte & 0x20) != 0) {
-      result.add(hasExtension);
-    }
-    if ((flagByte & 0x08) != 0) {
-      result.add(isPadded);
+    for (SFFlag flag : values()) {
+      if (flag.isSet(flagByte)) {
+        result.add(flag);
+      }
     }
 
     return result;
@@ -47,16 +49,24 @@ public enum SFFlag {
   public static int toByte(EnumSet<SFFlag> flags) {
     int result = 0;
 
-    if (flags.contains(isSegmented)) {
-      result += 0x80;
-    }
-    if (flags.contains(hasExtension)) {
-      result += 0x20;
-    }
-    if (flags.contains(isPadded)) {
-      result += 0x08;
+    for (SFFlag flag : flags) {
+      result |= flag.mask;
     }
 
     return result;
   }
+
+  /**
+   * Returns the bit of this flag in the AFP SF FlagByte.
+   */
+  public int getMask() {
+    return mask;
+  }
+
+  /**
+   * Returns true if this flag is set in the given AFP SF FlagByte.
+   */
+  public boolean isSet(int flagByte) {
+    return (flagByte & mask) != 0;
+  }
 }
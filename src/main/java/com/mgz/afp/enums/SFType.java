@@ -18,6 +18,8 @@ along with Alpheus AFP Parser.  If not, see <http://www.gnu.org/licenses/>
 */
 package com.mgz.afp.enums;
 
+import com.mgz.util.ByteCodeTable;
+
 
 /**
  * The structured field type code. The type code identifies the function of the structured field,
@@ -133,11 +135,18 @@ public enum SFType {
     this.val = val;
   }
 
+  private static final ByteCodeTable<SFType> codeTable = new ByteCodeTable<SFType>();
+
+  static {
+    for (SFType v : values()) {
+      codeTable.put(v.val, v);
+    }
+  }
+
   public static SFType valueOf(int sfTypeByte) {
-    for (SFType sfType : SFType.values()) {
-      if (sfType.val == sfTypeByte) {
-        return sfType;
-      }
+    SFType sfType = codeTable.get(sfTypeByte);
+    if (sfType != null) {
+      return sfType;
     }
     return Undefined;
   }
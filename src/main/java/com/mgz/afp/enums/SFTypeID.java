@@ -18,6 +18,8 @@ along with Alpheus AFP Parser.  If not, see <http://www.gnu.org/licenses/>
 */
 package com.mgz.afp.enums;
 
+import com.mgz.util.IntCodeTable;
+
 import java.io.IOException;
 import java.io.InputStream;
 
@@ -184,20 +186,31 @@ public enum SFTypeID {
     this.sfCategory = SFCategory.valueOf(sfCategory);
   }
 
+  /**
+   * Maps the three SF type ID bytes, packed into 24 bits, to the {@link SFTypeID}.
+   */
+  private static final IntCodeTable<SFTypeID> codeTable = new IntCodeTable<SFTypeID>(values().length);
+
+  static {
+    for (SFTypeID v : values()) {
+      codeTable.put(IntCodeTable.pack(v.sfClass.val, v.sfType.val, v.sfCategory.val), v);
+    }
+  }
+
   public static SFTypeID parse(InputStream is) throws IOException {
     int sfClass = is.read();
     int sfType = is.read();
     int sfCategory = is.read();
 
-    for (SFTypeID sfTypeID : SFTypeID.values()) {
-      if (sfTypeID.sfClass.val == sfClass
-          && sfTypeID.sfType.val == sfType
-          && sfTypeID.sfCategory.val == sfCategory) {
-        return sfTypeID;
-      }
-    }
+    return valueOf(sfClass, sfType, sfCategory);
+  }
 
-    return Undefined;
+  /**
+   * Returns the {@link SFTypeID} for the given three SF type ID bytes, or {@link #Undefined}.
+   */
+  public static SFTypeID valueOf(int sfClass, int sfType, int sfCategory) {
+    SFTypeID sfTypeID = codeTable.get(IntCodeTable.pack(sfClass, sfType, sfCategory));
+    return sfTypeID != null ? sfTypeID : Undefined;
   }
 
   public byte[] toBytes() {
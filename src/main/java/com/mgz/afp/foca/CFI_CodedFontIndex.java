@@ -139,8 +139,8 @@ public class CFI_CodedFontIndex extends StructuredField {
     public void decodeAFP(byte[] sfData, int offset, int length, AFPParserConfiguration config) throws AFPParserException {
       checkDataLength(sfData, offset, length, CFIRepeatingGroupLength);
 
-      fcsName = new String(sfData, offset, 8, config.getAfpCharSet());
-      cpName = new String(sfData, offset + 8, 8, config.getAfpCharSet());
+      fcsName = UtilCharacterEncoding.decodeName(sfData, offset, 8, config.getAfpCharSet());
+      cpName = UtilCharacterEncoding.decodeName(sfData, offset + 8, 8, config.getAfpCharSet());
       svSize = UtilBinaryDecoding.parseInt(sfData, offset + 16, 2);
       shScale = UtilBinaryDecoding.parseInt(sfData, offset + 18, 2);
       section = UtilBinaryDecoding.parseShort(sfData, offset + 24, 1);
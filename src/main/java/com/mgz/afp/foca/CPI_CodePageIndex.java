@@ -32,6 +32,8 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.EnumSet;
 import java.util.List;
 
@@ -40,6 +42,11 @@ public class CPI_CodePageIndex extends StructuredField {
 
   @AFPField
   List<CPI_RepeatingGroup> repeatingGroups;
+  /**
+   * Lookup index of {@link #repeatingGroups}, built on first lookup. Null if the repeating groups
+   * have been changed since the index was built.
+   */
+  private volatile Index index;
 
   @Override
   public void decodeAFP(byte[] sfData, int offset, int length, AFPParserConfiguration config) throws AFPParserException {
@@ -60,7 +67,7 @@ public class CPI_CodePageIndex extends StructuredField {
       while (pos < actualLength) {
 
         CPI_RepeatingGroup cpirg = new CPI_RepeatingGroup();
-        cpirg.graphicCharacterGID = new String(sfData, offset + pos, 8, cpIBM500);
+        cpirg.graphicCharacterGID = UtilCharacterEncoding.decodeName(sfData, offset + pos, 8, cpIBM500);
         cpirg.graphicCharacterUseFlags = GraphicCharacterUseFlag.valueOf(sfData[offset + pos + 8] & 0xFF);
         cpirg.codePoint = UtilBinaryDecoding.parseInt(sfData, offset + pos + 9, nrOfBytes);
 
@@ -68,6 +75,7 @@ public class CPI_CodePageIndex extends StructuredField {
 
         if (cpiRGLen.isUnicodeScalarValues() && pos < actualLength) {
           short numberOfUnicodeScalarValues = UtilBinaryDecoding.parseShort(sfData, offset + pos, 1);
+          pos++;
           if (numberOfUnicodeScalarValues > 0) {
             cpirg.unicodeScalarValues = new ArrayList<Long>(numberOfUnicodeScalarValues);
             checkDataLength(sfData, offset, length, minLength + 1 + (numberOfUnicodeScalarValues * 4));
@@ -88,6 +96,7 @@ public class CPI_CodePageIndex extends StructuredField {
     } else {
       repeatingGroups = null;
     }
+    index = null;
   }
 
   @Override
@@ -116,10 +125,166 @@ public class CPI_CodePageIndex extends StructuredField {
     writeFullStructuredField(os, baos.toByteArray());
   }
 
+  /**
+   * Returns the list of {@link CPI_RepeatingGroup}s, in the order they have been decoded. Call {@link
+   * #invalidateIndex()} after changing the list or one of its repeating groups directly.
+   */
   public List<CPI_RepeatingGroup> getRepeatingGroups() {
     return repeatingGroups;
   }
 
+  public void setRepeatingGroups(List<CPI_RepeatingGroup> repeatingGroups) {
+    this.repeatingGroups = repeatingGroups;
+    index = null;
+  }
+
+  public void addRepeatingGroup(CPI_RepeatingGroup repeatingGroup) {
+    if (repeatingGroups == null) {
+      repeatingGroups = new ArrayList<CPI_RepeatingGroup>();
+    }
+    repeatingGroups.add(repeatingGroup);
+    index = null;
+  }
+
+  /**
+   * Discards the lookup index, so it is rebuilt on the next lookup. Needed only if the list
+   * returned by {@link #getRepeatingGroups()}, or one of its repeating groups, has been changed
+   * directly.
+   */
+  public void invalidateIndex() {
+    index = null;
+  }
+
+  /**
+   * Returns the {@link CPI_RepeatingGroup} of the given code point, or null. Uses binary search.
+   */
+  public CPI_RepeatingGroup getRepeatingGroupByCodePoint(int codePoint) {
+    Index idx = getIndex();
+    int i = Arrays.binarySearch(idx.codePoints, codePoint);
+    return i >= 0 ? idx.byCodePoint[i] : null;
+  }
+
+  /**
+   * Returns the {@link CPI_RepeatingGroup} of the given GCGID, or null. If more than one code point
+   * is mapped to the GCGID, the one with the lowest code point is returned. Uses binary search.
+   */
+  public CPI_RepeatingGroup getRepeatingGroupByGCGID(String gcgid) {
+    Index idx = getIndex();
+    if (gcgid == null) {
+      return null;
+    }
+    int low = 0;
+    int high = idx.byGCGID.length - 1;
+    CPI_RepeatingGroup found = null;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int cmp = idx.byGCGID[mid].graphicCharacterGID.compareTo(gcgid);
+      if (cmp < 0) {
+        low = mid + 1;
+      } else {
+        if (cmp == 0) {
+          found = idx.byGCGID[mid];
+        }
+        high = mid - 1;
+      }
+    }
+    return found;
+  }
+
+  /**
+   * Returns the {@link CPI_RepeatingGroup} the given Unicode scalar value is mapped to, or null.
+   * Returns always null if the {@link CPIRepeatingGroupLength} of the code page has no Unicode
+   * scalar values. Uses binary search.
+   */
+  public CPI_RepeatingGroup getRepeatingGroupByUnicodeScalarValue(long unicodeScalarValue) {
+    Index idx = getIndex();
+    int i = Arrays.binarySearch(idx.unicodeScalarValues, unicodeScalarValue);
+    return i >= 0 ? idx.byUnicodeScalarValue[i] : null;
+  }
+
+  private Index getIndex() {
+    Index idx = index;
+    if (idx == null) {
+      synchronized (this) {
+        idx = index;
+        if (idx == null) {
+          idx = index = new Index(repeatingGroups);
+        }
+      }
+    }
+    return idx;
+  }
+
+  /**
+   * Sorted arrays of the repeating groups for binary search. Immutable once built.
+   */
+  private static final class Index {
+    private static final CPI_RepeatingGroup[] EMPTY = new CPI_RepeatingGroup[0];
+
+    final int[] codePoints;
+    final CPI_RepeatingGroup[] byCodePoint;
+    final CPI_RepeatingGroup[] byGCGID;
+    final long[] unicodeScalarValues;
+    final CPI_RepeatingGroup[] byUnicodeScalarValue;
+
+    Index(List<CPI_RepeatingGroup> repeatingGroups) {
+      CPI_RepeatingGroup[] rgs = repeatingGroups != null ? repeatingGroups.toArray(EMPTY) : EMPTY;
+
+      // Sort (code point, index) pairs packed into longs, which keeps the first of duplicates.
+      long[] keys = new long[rgs.length];
+      for (int i = 0; i < rgs.length; i++) {
+        keys[i] = ((long) rgs[i].codePoint << 32) | i;
+      }
+      Arrays.sort(keys);
+      int n = 0;
+      int[] cps = new int[rgs.length];
+      CPI_RepeatingGroup[] sorted = new CPI_RepeatingGroup[rgs.length];
+      for (long key : keys) {
+        int codePoint = (int) (key >>> 32);
+        if (n == 0 || cps[n - 1] != codePoint) {
+          cps[n] = codePoint;
+          sorted[n++] = rgs[(int) key];
+        }
+      }
+      codePoints = Arrays.copyOf(cps, n);
+      byCodePoint = Arrays.copyOf(sorted, n);
+
+      byGCGID = byCodePoint.clone();
+      Arrays.sort(byGCGID, new Comparator<CPI_RepeatingGroup>() {
+        @Override
+        public int compare(CPI_RepeatingGroup rg1, CPI_RepeatingGroup rg2) {
+          return rg1.graphicCharacterGID.compareTo(rg2.graphicCharacterGID);
+        }
+      });
+
+      int nrOfUSVs = 0;
+      for (CPI_RepeatingGroup rg : rgs) {
+        nrOfUSVs += rg.unicodeScalarValues != null ? rg.unicodeScalarValues.size() : 0;
+      }
+      keys = new long[nrOfUSVs];
+      int k = 0;
+      for (int i = 0; i < rgs.length; i++) {
+        if (rgs[i].unicodeScalarValues != null) {
+          for (Long usv : rgs[i].unicodeScalarValues) {
+            // Values beyond 31 bits are no Unicode scalar values and would break the packing.
+            if (usv != null && usv >= 0 && usv <= Integer.MAX_VALUE) {
+              keys[k++] = (usv << 32) | i;
+            }
+          }
+        }
+      }
+      nrOfUSVs = k;
+      keys = Arrays.copyOf(keys, nrOfUSVs);
+      Arrays.sort(keys);
+      unicodeScalarValues = new long[nrOfUSVs];
+      byUnicodeScalarValue = new CPI_RepeatingGroup[nrOfUSVs];
+      for (k = 0; k < nrOfUSVs; k++) {
+        unicodeScalarValues[k] = keys[k] >>> 32;
+        byUnicodeScalarValue[k] = rgs[(int) keys[k]];
+      }
+    }
+  }
+
   public enum GraphicCharacterUseFlag {
     /**
      * When this flag is set, the character is an invalid coded character (see “Invalid Coded
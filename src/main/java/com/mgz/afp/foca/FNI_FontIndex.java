@@ -35,11 +35,18 @@ import java.util.*;
 
 
 public class FNI_FontIndex extends StructuredField {
+  private static final ComparatorForFNIRepeatinGroups COMPARATOR_BY_GCGID = new ComparatorForFNIRepeatinGroups();
+
   /**
    * Associated {@link FNC_FontControl} SF that specifies the repeating group length.
    */
   @AFPField
   List<FNI_RepeatingGroup> repeatingGroups;
+  /**
+   * True if {@link #repeatingGroups} is ordered by GCGID. Cleared by the methods that mutate the
+   * list, so the list is sorted only once after it has been changed.
+   */
+  private volatile boolean isSorted;
 
 
   @Override
@@ -61,6 +68,8 @@ public class FNI_FontIndex extends StructuredField {
       pos += repeatingGroupLength;
     }
 
+    isSorted = false;
+    ensureSorted();
   }
 
   @Override
@@ -68,11 +77,7 @@ public class FNI_FontIndex extends StructuredField {
     ByteArrayOutputStream baos = new ByteArrayOutputStream();
 
     if (repeatingGroups != null) {
-      if (repeatingGroups.size() > 1) {
-        synchronized (repeatingGroups) {
-          Collections.sort(repeatingGroups, new ComparatorForFNIRepeatinGroups());
-        }
-      }
+      ensureSorted();
       for (FNI_RepeatingGroup rg : repeatingGroups) {
         rg.writeAFP(baos, config);
       }
@@ -81,48 +86,106 @@ public class FNI_FontIndex extends StructuredField {
     writeFullStructuredField(os, baos.toByteArray());
   }
 
+  /**
+   * Sorts {@link #repeatingGroups} by GCGID, unless it is sorted already.
+   */
+  private void ensureSorted() {
+    if (!isSorted) {
+      synchronized (this) {
+        if (!isSorted) {
+          List<FNI_RepeatingGroup> rgs = repeatingGroups;
+          if (rgs != null && rgs.size() > 1) {
+            boolean isOrdered = true;
+            for (int i = 1; i < rgs.size() && isOrdered; i++) {
+              isOrdered = COMPARATOR_BY_GCGID.compare(rgs.get(i - 1), rgs.get(i)) <= 0;
+            }
+            if (!isOrdered) {
+              Collections.sort(rgs, COMPARATOR_BY_GCGID);
+            }
+          }
+          isSorted = true;
+        }
+      }
+    }
+  }
+
   /**
    * Returns the list of {@link FNI_RepeatingGroup}s. The returning list is ordered by {@link
-   * FNI_RepeatingGroup#graphicCharacterGlobalID_GCGID}.
+   * FNI_RepeatingGroup#graphicCharacterGlobalID_GCGID}. The list is sorted only if it has been
+   * changed by {@link #setRepeatingGroups(List)} or {@link #addRepeatingGroup(FNI_RepeatingGroup)}
+   * since it was last sorted; call {@link #invalidateIndex()} after changing the list or a GCGID
+   * directly.
    *
    * @return ordered list of {@link FNI_RepeatingGroup}s.
    */
   public List<FNI_RepeatingGroup> getRepeatingGroups() {
-    if (repeatingGroups != null && repeatingGroups.size() > 1) {
-      synchronized (repeatingGroups) {
-        Collections.sort(repeatingGroups, new ComparatorForFNIRepeatinGroups());
-      }
-    }
+    ensureSorted();
     return repeatingGroups;
   }
 
   /**
-   * Set the list of {@link FNI_RepeatingGroup}s. Orderes the given list by {@link
-   * FNI_RepeatingGroup#graphicCharacterGlobalID_GCGID}.
+   * Set the list of {@link FNI_RepeatingGroup}s. The list is ordered by {@link
+   * FNI_RepeatingGroup#graphicCharacterGlobalID_GCGID} on its next use.
    *
    * @param repeatingGroups list of {@link FNI_RepeatingGroup}s.
    */
   public void setRepeatingGroups(List<FNI_RepeatingGroup> repeatingGroups) {
     this.repeatingGroups = repeatingGroups;
-    synchronized (repeatingGroups) {
-      Collections.sort(repeatingGroups, new ComparatorForFNIRepeatinGroups());
-    }
+    isSorted = false;
   }
 
   /**
-   * Adds the given {@link FNI_RepeatingGroup} to the list of repeating groups and orders the list
-   * by {@link FNI_RepeatingGroup#graphicCharacterGlobalID_GCGID}.
+   * Adds the given {@link FNI_RepeatingGroup} to the list of repeating groups. The list is ordered
+   * by {@link FNI_RepeatingGroup#graphicCharacterGlobalID_GCGID} on its next use.
    */
   public void addRepeatingGroup(FNI_RepeatingGroup repeatinGroup) {
     if (repeatingGroups == null) {
       repeatingGroups = new ArrayList<FNI_FontIndex.FNI_RepeatingGroup>();
-      repeatingGroups.add(repeatinGroup);
-    } else {
-      repeatingGroups.add(repeatinGroup);
-      synchronized (repeatingGroups) {
-        Collections.sort(repeatingGroups, new ComparatorForFNIRepeatinGroups());
+    }
+    repeatingGroups.add(repeatinGroup);
+    isSorted = false;
+  }
+
+  /**
+   * Marks the list of repeating groups as changed, so it is sorted again on its next use. Needed
+   * only if the list returned by {@link #getRepeatingGroups()}, or the GCGID of one of its
+   * repeating groups, has been changed directly.
+   */
+  public void invalidateIndex() {
+    isSorted = false;
+  }
+
+  /**
+   * Returns the index of the {@link FNI_RepeatingGroup} of the given GCGID in {@link
+   * #getRepeatingGroups()}, or -1. Uses binary search.
+   */
+  public int indexOf(String gcgid) {
+    List<FNI_RepeatingGroup> rgs = getRepeatingGroups();
+    if (rgs == null || gcgid == null) {
+      return -1;
+    }
+    int low = 0;
+    int high = rgs.size() - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int cmp = rgs.get(mid).graphicCharacterGlobalID_GCGID.compareTo(gcgid);
+      if (cmp < 0) {
+        low = mid + 1;
+      } else if (cmp > 0) {
+        high = mid - 1;
+      } else {
+        return mid;
       }
     }
+    return -1;
+  }
+
+  /**
+   * Returns the {@link FNI_RepeatingGroup} of the given GCGID, or null. Uses binary search.
+   */
+  public FNI_RepeatingGroup getRepeatingGroup(String gcgid) {
+    int index = indexOf(gcgid);
+    return index >= 0 ? repeatingGroups.get(index) : null;
   }
 
   public static class FNI_RepeatingGroup implements IAFPDecodeableWriteable {
@@ -154,7 +217,7 @@ public class FNI_FontIndex extends StructuredField {
     public void decodeAFP(byte[] sfData, int offset, int length, AFPParserConfiguration config) throws AFPParserException {
       repeatingGroupLength = (short) (length != -1 ? length : sfData.length - offset);
 
-      graphicCharacterGlobalID_GCGID = new String(sfData, offset, 8, Constants.cpIBM500);
+      graphicCharacterGlobalID_GCGID = UtilCharacterEncoding.decodeName(sfData, offset, 8, Constants.cpIBM500);
       characterIncrement = UtilBinaryDecoding.parseShort(sfData, offset + 8, 2);
       if (repeatingGroupLength > 10) {
         ascenderHeight = UtilBinaryDecoding.parseShort(sfData, offset + 10, 2);
@@ -0,0 +1,198 @@
+/*
+Copyright 2015 Rudolf Fiala
+
+This file is part of Alpheus AFP Parser.
+
+Alpheus AFP Parser is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Alpheus AFP Parser is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Alpheus AFP Parser.  If not, see <http://www.gnu.org/licenses/>
+*/
+package com.mgz.afp.foca;
+
+import com.mgz.afp.base.StructuredField;
+import com.mgz.afp.exceptions.AFPParserException;
+import com.mgz.afp.foca.CPC_CodePageControl.DefaultCharacterUseFlag;
+import com.mgz.afp.foca.CPI_CodePageIndex.CPI_RepeatingGroup;
+import com.mgz.afp.foca.CPI_CodePageIndex.GraphicCharacterUseFlag;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Immutable code page, decoded from the CPC and CPI structured fields of a code page (BCP..ECP)
+ * into primitive tables: code point to GCGID and code point to graphic character use flags. Code
+ * points below 256 are looked up by a direct index, other code points by binary search.<br> <br> A
+ * table is safe for concurrent readers. Use {@link FontResourceCache} to build a code page once and
+ * share it.
+ */
+public final class FOCA_CodePageTable extends FOCA_ResourceTable {
+  private final int nrOfBytesPerCodePoint;
+  private final String defaultGCGID;
+  private final int defaultUseFlags;
+  private final int spaceCodePoint;
+  /**
+   * Code points, in ascending order.
+   */
+  private final int[] codePoints;
+  private final String[] gcgids;
+  private final byte[] useFlags;
+  /**
+   * Index into {@link #codePoints} of the code points 0..255, or -1.
+   */
+  private final short[] singleByteIndex = new short[256];
+
+  private FOCA_CodePageTable(String name, long contentHash, CPC_CodePageControl cpc, List<CPI_RepeatingGroup> repeatingGroups) {
+    super(name, contentHash);
+    if (cpc != null) {
+      nrOfBytesPerCodePoint = cpc.getCpiRepeatingGroupLength().nrOfBytes();
+      defaultGCGID = cpc.getDefaultGraphicCharacterGlobalID();
+      defaultUseFlags = DefaultCharacterUseFlag.toByte(cpc.getDefaultCharacterUseFlags());
+      spaceCodePoint = nrOfBytesPerCodePoint == 1 ? cpc.getSpaceCharacterCodePoint()
+          : (cpc.getSpaceCharacterSectionNumber() << 8) | cpc.getSpaceCharacterCodePoint();
+    } else {
+      nrOfBytesPerCodePoint = 1;
+      defaultGCGID = null;
+      defaultUseFlags = 0;
+      spaceCodePoint = 0x40;
+    }
+
+    Collections.sort(repeatingGroups, new Comparator<CPI_RepeatingGroup>() {
+      @Override
+      public int compare(CPI_RepeatingGroup rg1, CPI_RepeatingGroup rg2) {
+        return rg1.getCodePoint() < rg2.getCodePoint() ? -1 : rg1.getCodePoint() == rg2.getCodePoint() ? 0 : 1;
+      }
+    });
+    int n = repeatingGroups.size();
+    codePoints = new int[n];
+    gcgids = new String[n];
+    useFlags = new byte[n];
+    Arrays.fill(singleByteIndex, (short) -1);
+    for (int i = 0; i < n; i++) {
+      CPI_RepeatingGroup rg = repeatingGroups.get(i);
+      codePoints[i] = rg.getCodePoint();
+      gcgids[i] = rg.getGraphicCharacterGID();
+      useFlags[i] = rg.getGraphicCharacterUseFlags() != null ? (byte) GraphicCharacterUseFlag.toByte(rg.getGraphicCharacterUseFlags()) : 0;
+      if (codePoints[i] >= 0 && codePoints[i] < 256) {
+        singleByteIndex[codePoints[i]] = (short) i;
+      }
+    }
+  }
+
+  /**
+   * Builds a code page table of the given structured fields of a code page. Only the {@link
+   * CPC_CodePageControl} and the {@link CPI_CodePageIndex}es are used, all other structured fields
+   * are ignored.
+   *
+   * @throws AFPParserException if the structured fields contain no {@link CPI_CodePageIndex}.
+   */
+  public static FOCA_CodePageTable build(String name, long contentHash, List<? extends StructuredField> codePage) throws AFPParserException {
+    CPC_CodePageControl cpc = null;
+    List<CPI_RepeatingGroup> repeatingGroups = null;
+    for (StructuredField sf : codePage) {
+      if (sf instanceof CPC_CodePageControl) {
+        cpc = (CPC_CodePageControl) sf;
+      } else if (sf instanceof CPI_CodePageIndex) {
+        if (repeatingGroups == null) {
+          repeatingGroups = new ArrayList<CPI_RepeatingGroup>();
+        }
+        List<CPI_RepeatingGroup> rgs = ((CPI_CodePageIndex) sf).getRepeatingGroups();
+        if (rgs != null) {
+          repeatingGroups.addAll(rgs);
+        }
+      }
+    }
+    if (repeatingGroups == null) {
+      throw new AFPParserException("The code page " + name + " has no " + CPI_CodePageIndex.class.getSimpleName() + ".");
+    }
+    return new FOCA_CodePageTable(name, contentHash, cpc, repeatingGroups);
+  }
+
+  /**
+   * Returns the index of the given code point in the table, or -1 if the code page does not define
+   * the code point.
+   */
+  public int indexOf(int codePoint) {
+    if (codePoint >= 0 && codePoint < 256) {
+      return singleByteIndex[codePoint];
+    }
+    int index = Arrays.binarySearch(codePoints, codePoint);
+    return index >= 0 ? index : -1;
+  }
+
+  /**
+   * Returns the GCGID of the given code point, or the default GCGID of the code page if the code
+   * point is not defined.
+   */
+  public String getGCGID(int codePoint) {
+    int index = indexOf(codePoint);
+    return index >= 0 ? gcgids[index] : defaultGCGID;
+  }
+
+  /**
+   * Returns the graphic character use flags of the given code point as flag byte, see {@link
+   * GraphicCharacterUseFlag#toByte(java.util.EnumSet)}, or the default character use flags of the
+   * code page if the code point is not defined.
+   */
+  public int getUseFlags(int codePoint) {
+    int index = indexOf(codePoint);
+    return index >= 0 ? useFlags[index] & 0xFF : defaultUseFlags;
+  }
+
+  /**
+   * Returns the number of code points defined by the code page.
+   */
+  public int getNrOfCodePoints() {
+    return codePoints.length;
+  }
+
+  /**
+   * Returns the code point at the given index. Indexes are ordered by code point.
+   */
+  public int getCodePointAt(int index) {
+    return codePoints[index];
+  }
+
+  /**
+   * Returns the GCGID at the given index.
+   */
+  public String getGCGIDAt(int index) {
+    return gcgids[index];
+  }
+
+  /**
+   * Returns the number of bytes of a code point, 1 or 2.
+   */
+  public int getNrOfBytesPerCodePoint() {
+    return nrOfBytesPerCodePoint;
+  }
+
+  public String getDefaultGCGID() {
+    return defaultGCGID;
+  }
+
+  public int getDefaultUseFlags() {
+    return defaultUseFlags;
+  }
+
+  public int getSpaceCodePoint() {
+    return spaceCodePoint;
+  }
+
+  @Override
+  public long getMemorySize() {
+    // Arrays plus the GCGID strings, which are usually shared with the font character sets.
+    return 64 + 512 + codePoints.length * (4L + 4 + 1 + 48);
+  }
+}
@@ -0,0 +1,258 @@
+/*
+Copyright 2015 Rudolf Fiala
+
+This file is part of Alpheus AFP Parser.
+
+Alpheus AFP Parser is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Alpheus AFP Parser is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Alpheus AFP Parser.  If not, see <http://www.gnu.org/licenses/>
+*/
+package com.mgz.afp.foca;
+
+import com.mgz.afp.enums.AFPOrientation;
+import com.mgz.afp.enums.AFPUnitBase;
+import com.mgz.afp.exceptions.AFPParserException;
+import com.mgz.afp.foca.CPI_CodePageIndex.GraphicCharacterUseFlag;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Character increments of a coded font, i.e. of a pair of code page and font character set in one
+ * character rotation, resolved once into a table indexed by code point. Measuring a text is a
+ * lookup per code point, without GCGID searches and without allocation.<br> <br> A code point
+ * that is not defined by the code page, or whose GCGID is not defined by the font character set,
+ * has the increment of the default GCGID of the code page, or 0 if that is not defined either. A
+ * code point with the {@link GraphicCharacterUseFlag#NoIncrement} flag has the increment 0.
+ * Increments are in the units of the font character set, see {@link FNC_FontControl}, or scaled
+ * to the units of a presentation text object, see {@link #build(FOCA_CodePageTable,
+ * FOCA_FontMetricsTable, AFPOrientation, AFPUnitBase, int, int)}.<br> <br> A table is immutable
+ * and safe for concurrent readers.
+ */
+public final class FOCA_CodedFontMetrics {
+  private static final int FLAG_NO_INCREMENT = 0x20;
+
+  private final FOCA_CodePageTable codePage;
+  private final FOCA_FontMetricsTable fontCharacterSet;
+  private final int orientationIndex;
+  private final double scale;
+  private final int nrOfBytesPerCodePoint;
+  private final int spaceCodePoint;
+  private final short defaultIncrement;
+  /**
+   * Increment by code point, 256 entries for single byte, 65536 entries for double byte code pages.
+   */
+  private final short[] increments;
+
+  private FOCA_CodedFontMetrics(FOCA_CodePageTable codePage, FOCA_FontMetricsTable fontCharacterSet, int orientationIndex, double scale) {
+    this.codePage = codePage;
+    this.fontCharacterSet = fontCharacterSet;
+    this.orientationIndex = orientationIndex;
+    this.scale = scale;
+    this.nrOfBytesPerCodePoint = codePage.getNrOfBytesPerCodePoint() == 2 ? 2 : 1;
+    this.spaceCodePoint = codePage.getSpaceCodePoint();
+
+    short increment = fontCharacterSet.getCharacterIncrement(orientationIndex, codePage.getDefaultGCGID());
+    if (increment < 0 || (codePage.getDefaultUseFlags() & FLAG_NO_INCREMENT) != 0) {
+      increment = 0;
+    }
+    defaultIncrement = scale(increment, scale);
+
+    increments = new short[nrOfBytesPerCodePoint == 2 ? 0x10000 : 0x100];
+    Arrays.fill(increments, defaultIncrement);
+    for (int i = 0; i < codePage.getNrOfCodePoints(); i++) {
+      int codePoint = codePage.getCodePointAt(i);
+      if (codePoint < 0 || codePoint >= increments.length) {
+        continue;
+      }
+      if ((codePage.getUseFlags(codePoint) & FLAG_NO_INCREMENT) != 0) {
+        increments[codePoint] = 0;
+        continue;
+      }
+      increment = fontCharacterSet.getCharacterIncrement(orientationIndex, codePage.getGCGIDAt(i));
+      increments[codePoint] = increment >= 0 ? scale(increment, scale) : defaultIncrement;
+    }
+  }
+
+  private static short scale(short increment, double scale) {
+    if (scale == 1) {
+      return increment;
+    }
+    return (short) Math.min(Math.round(increment * scale), Short.MAX_VALUE);
+  }
+
+  /**
+   * Builds the increment table of the given code page and font character set in the given
+   * character rotation. If the font character set has no metrics for the rotation, the metrics of
+   * its first orientation are used.
+   *
+   * @param characterRotation the character rotation of the coded font, e.g. of the MCF; null for
+   *                          {@link AFPOrientation#ori0}.
+   */
+  public static FOCA_CodedFontMetrics build(FOCA_CodePageTable codePage, FOCA_FontMetricsTable fontCharacterSet, AFPOrientation characterRotation) {
+    return new FOCA_CodedFontMetrics(codePage, fontCharacterSet, orientationIndexOf(fontCharacterSet, characterRotation), 1);
+  }
+
+  /**
+   * Like {@link #build(FOCA_CodePageTable, FOCA_FontMetricsTable, AFPOrientation)}, with the
+   * increments scaled from the units of the font character set to the given units of a presentation
+   * text object, e.g. the X units of the PTD. Relative metrics are scaled by the given font size,
+   * e.g. of the {@link com.mgz.afp.triplets.Triplet.FontDescriptorSpecification} of the MCF. The
+   * scaled increments are rounded per character.
+   *
+   * @param textUnitBase         the unit base of the text units, {@link AFPUnitBase#Inches10} or
+   *                             {@link AFPUnitBase#Centimeter10}.
+   * @param textUnitsPerUnitBase the text units per unit base.
+   * @param fontSize             the horizontal size of the em square, in 1440ths of an inch, used
+   *                             only if the font character set has relative metrics.
+   * @throws AFPParserException if the font character set has no unit base or units per unit base,
+   *                            if the text units are not absolute, or if the font character set has
+   *                            relative metrics and the font size is not positive.
+   */
+  public static FOCA_CodedFontMetrics build(FOCA_CodePageTable codePage, FOCA_FontMetricsTable fontCharacterSet, AFPOrientation characterRotation, AFPUnitBase textUnitBase, int textUnitsPerUnitBase, int fontSize) throws AFPParserException {
+    return build(codePage, fontCharacterSet, characterRotation, scaleOf(fontCharacterSet, textUnitBase, textUnitsPerUnitBase, fontSize));
+  }
+
+  /**
+   * Like {@link #build(FOCA_CodePageTable, FOCA_FontMetricsTable, AFPOrientation)}, with the
+   * increments multiplied by the given factor and rounded per character.
+   *
+   * @param scale the factor, e.g. of {@link #scaleOf(FOCA_FontMetricsTable, AFPUnitBase, int,
+   *              int)}.
+   */
+  public static FOCA_CodedFontMetrics build(FOCA_CodePageTable codePage, FOCA_FontMetricsTable fontCharacterSet, AFPOrientation characterRotation, double scale) {
+    return new FOCA_CodedFontMetrics(codePage, fontCharacterSet, orientationIndexOf(fontCharacterSet, characterRotation), scale);
+  }
+
+  /**
+   * Returns the factor that scales the increments of the given font character set to the given
+   * text units, see {@link #build(FOCA_CodePageTable, FOCA_FontMetricsTable, AFPOrientation,
+   * AFPUnitBase, int, int)}.
+   *
+   * @throws AFPParserException if the increments can't be scaled.
+   */
+  public static double scaleOf(FOCA_FontMetricsTable fontCharacterSet, AFPUnitBase textUnitBase, int textUnitsPerUnitBase, int fontSize) throws AFPParserException {
+    double textUnitsPerInch;
+    if (textUnitBase == AFPUnitBase.Inches10) {
+      textUnitsPerInch = textUnitsPerUnitBase / 10.0;
+    } else if (textUnitBase == AFPUnitBase.Centimeter10) {
+      textUnitsPerInch = textUnitsPerUnitBase * 2.54 / 10.0;
+    } else {
+      throw new AFPParserException("Can't scale character increments to text units of unit base " + textUnitBase + ".");
+    }
+    if (textUnitsPerUnitBase <= 0) {
+      throw new AFPParserException("Can't scale character increments to " + textUnitsPerUnitBase + " text units per unit base.");
+    }
+    if (fontCharacterSet.getUnitBase() == null || fontCharacterSet.getUnitsPerUnitBase() <= 0) {
+      throw new AFPParserException("The font character set " + fontCharacterSet.getName() + " has no units of measure.");
+    }
+
+    double fontUnitsPerInch;
+    if (fontCharacterSet.isRelativeMetrics()) {
+      if (fontSize <= 0) {
+        throw new AFPParserException("The font character set " + fontCharacterSet.getName() + " has relative metrics, but no font size is given.");
+      }
+      fontUnitsPerInch = fontCharacterSet.getUnitsPerUnitBase() * 1440.0 / fontSize;
+    } else {
+      fontUnitsPerInch = fontCharacterSet.getUnitsPerUnitBase() / 10.0;
+    }
+    return textUnitsPerInch / fontUnitsPerInch;
+  }
+
+  private static int orientationIndexOf(FOCA_FontMetricsTable fontCharacterSet, AFPOrientation characterRotation) {
+    int orientationIndex = fontCharacterSet.indexOfOrientation(characterRotation != null ? characterRotation : AFPOrientation.ori0);
+    return Math.max(orientationIndex, 0);
+  }
+
+  /**
+   * Returns the character increment of the given code point.
+   */
+  public int getIncrement(int codePoint) {
+    return increments[codePoint & (increments.length - 1)];
+  }
+
+  /**
+   * Returns the sum of the character increments of the code points in the given range, which holds
+   * code points of {@link #getNrOfBytesPerCodePoint()} bytes each, big endian. A trailing odd byte
+   * of a double byte range is ignored.
+   */
+  public int measure(byte[] data, int offset, int length) {
+    int width = 0;
+    if (nrOfBytesPerCodePoint == 1) {
+      for (int i = offset, end = offset + length; i < end; i++) {
+        width += increments[data[i] & 0xFF];
+      }
+    } else {
+      for (int i = offset, end = offset + length - 1; i < end; i += 2) {
+        width += increments[((data[i] & 0xFF) << 8) | (data[i + 1] & 0xFF)];
+      }
+    }
+    return width;
+  }
+
+  /**
+   * Like {@link #measure(byte[], int, int)}, for the given absolute range of a buffer. Position and
+   * limit of the buffer are not changed.
+   */
+  public int measure(ByteBuffer buffer, int offset, int length) {
+    int width = 0;
+    if (nrOfBytesPerCodePoint == 1) {
+      for (int i = offset, end = offset + length; i < end; i++) {
+        width += increments[buffer.get(i) & 0xFF];
+      }
+    } else {
+      for (int i = offset, end = offset + length - 1; i < end; i += 2) {
+        width += increments[((buffer.get(i) & 0xFF) << 8) | (buffer.get(i + 1) & 0xFF)];
+      }
+    }
+    return width;
+  }
+
+  public FOCA_CodePageTable getCodePage() {
+    return codePage;
+  }
+
+  public FOCA_FontMetricsTable getFontCharacterSet() {
+    return fontCharacterSet;
+  }
+
+  /**
+   * Returns the index of the orientation of {@link #getFontCharacterSet()} the increments are
+   * taken from.
+   */
+  public int getOrientationIndex() {
+    return orientationIndex;
+  }
+
+  /**
+   * Returns the factor the increments of the font character set are scaled with, 1 if they are in
+   * the units of the font character set.
+   */
+  public double getScale() {
+    return scale;
+  }
+
+  /**
+   * Returns the number of bytes of a code point, 1 or 2.
+   */
+  public int getNrOfBytesPerCodePoint() {
+    return nrOfBytesPerCodePoint;
+  }
+
+  public int getSpaceCodePoint() {
+    return spaceCodePoint;
+  }
+
+  public int getDefaultIncrement() {
+    return defaultIncrement;
+  }
+}
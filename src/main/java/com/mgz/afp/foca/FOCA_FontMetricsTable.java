@@ -0,0 +1,240 @@
+/*
+Copyright 2015 Rudolf Fiala
+
+This file is part of Alpheus AFP Parser.
+
+Alpheus AFP Parser is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Alpheus AFP Parser is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Alpheus AFP Parser.  If not, see <http://www.gnu.org/licenses/>
+*/
+package com.mgz.afp.foca;
+
+import com.mgz.afp.base.StructuredField;
+import com.mgz.afp.enums.AFPOrientation;
+import com.mgz.afp.exceptions.AFPParserException;
+import com.mgz.afp.foca.FNC_FontControl.FontUnitBase;
+import com.mgz.afp.foca.FNI_FontIndex.FNI_RepeatingGroup;
+import com.mgz.afp.foca.FNO_FontOrientation.FNO_RepeatingGroup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Immutable character metrics of a font character set, decoded from the FNC, FNO, and FNI
+ * structured fields of a font character set (BFN..EFN) into primitive tables: per orientation
+ * GCGID to character increment, ascender height, and descender depth, in the units of the FNC. The GCGIDs are held in a sorted
+ * array that is searched binary; a GCGID that is not defined by an orientation has the value -1,
+ * like an {@link FNI_RepeatingGroup} without the optional fields.<br> <br> The i-th {@link
+ * FNI_FontIndex} belongs to the i-th {@link FNO_RepeatingGroup} of the {@link FNO_FontOrientation}.
+ * A font character set without FNO has one orientation, {@link AFPOrientation#ori0}.<br> <br> A
+ * table is safe for concurrent readers. Use {@link FontResourceCache} to build a font character set
+ * once and share it.
+ */
+public final class FOCA_FontMetricsTable extends FOCA_ResourceTable {
+  /**
+   * GCGIDs of all orientations, in ascending order.
+   */
+  private final String[] gcgids;
+  private final AFPOrientation[] orientations;
+  private final FNO_RepeatingGroup[] fontOrientations;
+  private final short[][] characterIncrements;
+  private final short[][] ascenderHeights;
+  private final short[][] descenderDepths;
+  private final FontUnitBase unitBase;
+  private final int unitsPerUnitBase;
+
+  private FOCA_FontMetricsTable(String name, long contentHash, FNC_FontControl fontControl, List<FNO_RepeatingGroup> fnoRepeatingGroups, List<FNI_FontIndex> fontIndexes) {
+    super(name, contentHash);
+    unitBase = fontControl != null ? fontControl.getxUnitBase() : null;
+    unitsPerUnitBase = fontControl != null ? fontControl.getxUnitsPerUnitBase() & 0xFFFF : 0;
+
+    TreeSet<String> allGCGIDs = new TreeSet<String>();
+    for (FNI_FontIndex fni : fontIndexes) {
+      List<FNI_RepeatingGroup> rgs = fni.getRepeatingGroups();
+      if (rgs != null) {
+        for (FNI_RepeatingGroup rg : rgs) {
+          allGCGIDs.add(rg.getGraphicCharacterGlobalID_GCGID());
+        }
+      }
+    }
+    gcgids = allGCGIDs.toArray(new String[allGCGIDs.size()]);
+
+    int nrOfOrientations = fontIndexes.size();
+    orientations = new AFPOrientation[nrOfOrientations];
+    fontOrientations = new FNO_RepeatingGroup[nrOfOrientations];
+    characterIncrements = new short[nrOfOrientations][];
+    ascenderHeights = new short[nrOfOrientations][];
+    descenderDepths = new short[nrOfOrientations][];
+    for (int o = 0; o < nrOfOrientations; o++) {
+      FNO_RepeatingGroup fno = fnoRepeatingGroups != null && o < fnoRepeatingGroups.size() ? fnoRepeatingGroups.get(o) : null;
+      fontOrientations[o] = fno;
+      orientations[o] = fno != null ? fno.getCharacterRotation() : AFPOrientation.ori0;
+
+      short[] increments = characterIncrements[o] = new short[gcgids.length];
+      short[] ascenders = ascenderHeights[o] = new short[gcgids.length];
+      short[] descenders = descenderDepths[o] = new short[gcgids.length];
+      Arrays.fill(increments, (short) -1);
+      Arrays.fill(ascenders, (short) -1);
+      Arrays.fill(descenders, (short) -1);
+      List<FNI_RepeatingGroup> rgs = fontIndexes.get(o).getRepeatingGroups();
+      if (rgs != null) {
+        for (FNI_RepeatingGroup rg : rgs) {
+          int index = Arrays.binarySearch(gcgids, rg.getGraphicCharacterGlobalID_GCGID());
+          increments[index] = rg.getCharacterIncrement();
+          ascenders[index] = rg.getAscenderHeight();
+          descenders[index] = rg.getDescenderDepth();
+        }
+      }
+    }
+  }
+
+  /**
+   * Builds a font metrics table of the given structured fields of a font character set. Only the
+   * {@link FNC_FontControl}, the {@link FNO_FontOrientation}, and the {@link FNI_FontIndex}es are
+   * used, all other structured fields are ignored.
+   *
+   * @throws AFPParserException if the structured fields contain no {@link FNI_FontIndex}.
+   */
+  public static FOCA_FontMetricsTable build(String name, long contentHash, List<? extends StructuredField> fontCharacterSet) throws AFPParserException {
+    FNC_FontControl fontControl = null;
+    List<FNO_RepeatingGroup> fnoRepeatingGroups = null;
+    List<FNI_FontIndex> fontIndexes = new ArrayList<FNI_FontIndex>(4);
+    for (StructuredField sf : fontCharacterSet) {
+      if (sf instanceof FNC_FontControl) {
+        fontControl = (FNC_FontControl) sf;
+      } else if (sf instanceof FNO_FontOrientation) {
+        fnoRepeatingGroups = ((FNO_FontOrientation) sf).getRepeatingGroups();
+      } else if (sf instanceof FNI_FontIndex) {
+        fontIndexes.add((FNI_FontIndex) sf);
+      }
+    }
+    if (fontIndexes.isEmpty()) {
+      throw new AFPParserException("The font character set " + name + " has no " + FNI_FontIndex.class.getSimpleName() + ".");
+    }
+    return new FOCA_FontMetricsTable(name, contentHash, fontControl, fnoRepeatingGroups, fontIndexes);
+  }
+
+  /**
+   * Returns the X unit base of the {@link FNC_FontControl}, or null if the font character set has
+   * no FNC or its unit base is unknown. With {@link FontUnitBase#BaseIsRelativ} the metrics are
+   * relative to the em square of the font, see {@link #isRelativeMetrics()}.
+   */
+  public FontUnitBase getUnitBase() {
+    return unitBase;
+  }
+
+  /**
+   * Returns the X units per unit base of the {@link FNC_FontControl}, i.e. units per 10 inches or
+   * units per em, or 0 if not specified.
+   */
+  public int getUnitsPerUnitBase() {
+    return unitsPerUnitBase;
+  }
+
+  /**
+   * Returns true if the metrics are relative to the font size, as of outline fonts.
+   */
+  public boolean isRelativeMetrics() {
+    return unitBase == FontUnitBase.BaseIsRelativ;
+  }
+
+  /**
+   * Returns the index of the given GCGID in the table, or -1 if no orientation defines the GCGID.
+   */
+  public int indexOf(String gcgid) {
+    if (gcgid == null) {
+      return -1;
+    }
+    int index = Arrays.binarySearch(gcgids, gcgid);
+    return index >= 0 ? index : -1;
+  }
+
+  /**
+   * Returns the number of GCGIDs defined by the font character set.
+   */
+  public int getNrOfGCGIDs() {
+    return gcgids.length;
+  }
+
+  /**
+   * Returns the GCGID at the given index. Indexes are ordered by GCGID.
+   */
+  public String getGCGIDAt(int index) {
+    return gcgids[index];
+  }
+
+  public int getNrOfOrientations() {
+    return orientations.length;
+  }
+
+  /**
+   * Returns the index of the given character rotation, or -1 if the font character set has no
+   * metrics for it.
+   */
+  public int indexOfOrientation(AFPOrientation orientation) {
+    for (int o = 0; o < orientations.length; o++) {
+      if (orientations[o] == orientation) {
+        return o;
+      }
+    }
+    return -1;
+  }
+
+  public AFPOrientation getOrientation(int orientationIndex) {
+    return orientations[orientationIndex];
+  }
+
+  /**
+   * Returns the {@link FNO_RepeatingGroup} of the given orientation, or null if the font character
+   * set has no FNO.
+   */
+  public FNO_RepeatingGroup getFontOrientation(int orientationIndex) {
+    return fontOrientations[orientationIndex];
+  }
+
+  /**
+   * Returns the character increment of the GCGID at the given index, or -1.
+   */
+  public short getCharacterIncrement(int orientationIndex, int index) {
+    return characterIncrements[orientationIndex][index];
+  }
+
+  /**
+   * Returns the character increment of the given GCGID, or -1 if the GCGID is not defined.
+   */
+  public short getCharacterIncrement(int orientationIndex, String gcgid) {
+    int index = indexOf(gcgid);
+    return index >= 0 ? characterIncrements[orientationIndex][index] : -1;
+  }
+
+  /**
+   * Returns the ascender height of the GCGID at the given index, or -1.
+   */
+  public short getAscenderHeight(int orientationIndex, int index) {
+    return ascenderHeights[orientationIndex][index];
+  }
+
+  /**
+   * Returns the descender depth of the GCGID at the given index, or -1.
+   */
+  public short getDescenderDepth(int orientationIndex, int index) {
+    return descenderDepths[orientationIndex][index];
+  }
+
+  @Override
+  public long getMemorySize() {
+    // The GCGID strings are usually shared with the code pages, see NameInternPool.
+    return 64 + gcgids.length * (4L + 48) + orientations.length * (48 + gcgids.length * 6L);
+  }
+}
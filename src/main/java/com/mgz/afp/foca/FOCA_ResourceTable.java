@@ -0,0 +1,59 @@
+/*
+Copyright 2015 Rudolf Fiala
+
+This file is part of Alpheus AFP Parser.
+
+Alpheus AFP Parser is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Alpheus AFP Parser is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Alpheus AFP Parser.  If not, see <http://www.gnu.org/licenses/>
+*/
+package com.mgz.afp.foca;
+
+/**
+ * Base class of the immutable, decoded font resources held by {@link FontResourceCache}. A resource
+ * table is identified by the name of the resource and a hash of its content, see {@link
+ * FontResourceCache#contentHash(java.util.List)}.
+ */
+public abstract class FOCA_ResourceTable {
+  private final String name;
+  private final long contentHash;
+
+  FOCA_ResourceTable(String name, long contentHash) {
+    this.name = name;
+    this.contentHash = contentHash;
+  }
+
+  /**
+   * Returns the name of the code page or font character set.
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Returns the hash of the structured fields the table has been built of.
+   */
+  public long getContentHash() {
+    return contentHash;
+  }
+
+  /**
+   * Returns the estimated number of bytes occupied by this table. Used to bound the size of {@link
+   * FontResourceCache}.
+   */
+  public abstract long getMemorySize();
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + " " + name + " 0x" + Long.toHexString(contentHash);
+  }
+}
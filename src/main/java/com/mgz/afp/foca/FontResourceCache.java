@@ -0,0 +1,417 @@
+/*
+Copyright 2015 Rudolf Fiala
+
+This file is part of Alpheus AFP Parser.
+
+Alpheus AFP Parser is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Alpheus AFP Parser is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Alpheus AFP Parser.  If not, see <http://www.gnu.org/licenses/>
+*/
+package com.mgz.afp.foca;
+
+import com.mgz.afp.base.IHasName;
+import com.mgz.afp.base.StructuredField;
+import com.mgz.afp.base.StructuredFieldIntroducer;
+import com.mgz.afp.base.StructuredFieldIntroducerView;
+import com.mgz.afp.enums.SFTypeID;
+import com.mgz.afp.exceptions.AFPParserException;
+import com.mgz.afp.parser.AFPParser;
+import com.mgz.afp.parser.AFPParserConfiguration;
+import com.mgz.util.UtilCharacterEncoding;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of decoded code pages ({@link FOCA_CodePageTable}) and font character sets ({@link
+ * FOCA_FontMetricsTable}), keyed by resource name and content hash. A resource that occurs in many
+ * documents, or many times in one document, is decoded into primitive tables only once.<br> <br>
+ * The cache is bounded by a maximum number of entries and a maximum estimated memory size (see
+ * {@link FOCA_ResourceTable#getMemorySize()}); when a bound is exceeded, the least recently used
+ * entries are evicted.<br> <br> A cache is thread safe. Lookups do not lock; inserting and
+ * evicting entries is serialized. Concurrent misses of the same resource may build it more than
+ * once, but only one table is kept and returned to all callers.
+ */
+public class FontResourceCache {
+  /**
+   * Default maximum number of code pages and font character sets held by a cache.
+   */
+  public static final int DEFAULT_MAX_ENTRIES = 256;
+  /**
+   * Default maximum estimated memory size of a cache: 64MB.
+   */
+  public static final long DEFAULT_MAX_MEMORY_SIZE = 64L * 1024 * 1024;
+
+  private static final long FNV64_OFFSET_BASIS = 0xcbf29ce484222325L;
+  private static final long FNV64_PRIME = 0x100000001b3L;
+  private static final EnumSet<SFTypeID> TABLE_SF_TYPES = EnumSet.of(
+      SFTypeID.CPD_CodePageDescriptor, SFTypeID.CPC_CodePageControl, SFTypeID.CPI_CodePageIndex,
+      SFTypeID.FND_FontDescriptor, SFTypeID.FNC_FontControl, SFTypeID.FNO_FontOrientation, SFTypeID.FNP_FontPosition, SFTypeID.FNI_FontIndex);
+
+  private final int maxEntries;
+  private final long maxMemorySize;
+  private final ConcurrentHashMap<Key, Entry> entries = new ConcurrentHashMap<Key, Entry>();
+  private final AtomicLong clock = new AtomicLong();
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong evictions = new AtomicLong();
+  private long memorySize;
+
+  public FontResourceCache() {
+    this(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_MEMORY_SIZE);
+  }
+
+  /**
+   * @param maxEntries    maximum number of code pages and font character sets held by the cache.
+   * @param maxMemorySize maximum estimated memory size of all tables held by the cache.
+   */
+  public FontResourceCache(int maxEntries, long maxMemorySize) {
+    if (maxEntries < 1 || maxMemorySize < 1) {
+      throw new IllegalArgumentException("The bounds of the cache must be positive.");
+    }
+    this.maxEntries = maxEntries;
+    this.maxMemorySize = maxMemorySize;
+  }
+
+  /**
+   * Computes the content hash of the given structured fields of a code page or font character set.
+   * Only the structured fields that are decoded into tables contribute to the hash: CPD, CPC, and
+   * CPI of a code page, FND, FNC, FNO, FNP, and FNI of a font character set. The hash is computed
+   * over their type and net payload, as by {@link #readResource(AFPParser,
+   * AFPParserConfiguration)} from the raw structured fields. The structured fields are serialized
+   * to compute it, which is more expensive than building the table; prefer {@link
+   * #readResource(AFPParser, AFPParserConfiguration)} where the resources are read from AFP data.
+   */
+  public static long contentHash(List<? extends StructuredField> resource) throws AFPParserException {
+    AFPParserConfiguration config = new AFPParserConfiguration();
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    long hash = FNV64_OFFSET_BASIS;
+    try {
+      for (StructuredField sf : resource) {
+        if (sf instanceof CPC_CodePageControl) {
+          config.setCurrentPageControl((CPC_CodePageControl) sf);
+        } else if (sf instanceof FNC_FontControl) {
+          config.setCurrentFontControl((FNC_FontControl) sf);
+        }
+        SFTypeID sfTypeID = sf.getStructuredFieldIntroducer() != null ? sf.getStructuredFieldIntroducer().getSFTypeID() : null;
+        if (sfTypeID != null && TABLE_SF_TYPES.contains(sfTypeID)) {
+          baos.reset();
+          sf.writeAFP(baos, config);
+          byte[] data = baos.toByteArray();
+          int offset = 1 + sf.getStructuredFieldIntroducer().getLengthOfStructuredFieldIntroducerIncludingExtension();
+          int length = data.length - offset - (sf.getPadding() != null ? sf.getPadding().length : 0);
+          hash = contentHash(hash, sfTypeID.toBytes(), data, offset, length);
+        }
+      }
+    } catch (IOException e) {
+      throw new AFPParserException("Failed to compute the content hash of a font resource.", e);
+    }
+    return hash;
+  }
+
+  /**
+   * Continues the given content hash with a structured field of the given type and net payload.
+   */
+  private static long contentHash(long hash, byte[] sfTypeID, byte[] payload, int offset, int length) {
+    hash = contentHash(hash, sfTypeID, 0, sfTypeID.length);
+    hash = (hash ^ ((length >> 8) & 0xFF)) * FNV64_PRIME;
+    hash = (hash ^ (length & 0xFF)) * FNV64_PRIME;
+    return contentHash(hash, payload, offset, length);
+  }
+
+  /**
+   * Computes the content hash of raw bytes, e.g. of a font resource file, continuing the given
+   * hash. Start with {@link #contentHash(byte[], int, int)}.
+   */
+  public static long contentHash(long hash, byte[] data, int offset, int length) {
+    for (int i = offset; i < offset + length; i++) {
+      hash = (hash ^ (data[i] & 0xFF)) * FNV64_PRIME;
+    }
+    return hash;
+  }
+
+  /**
+   * Computes the content hash of raw bytes.
+   */
+  public static long contentHash(byte[] data, int offset, int length) {
+    return contentHash(FNV64_OFFSET_BASIS, data, offset, length);
+  }
+
+  /**
+   * Returns the cached code page of the given name and content hash, or null.
+   */
+  public FOCA_CodePageTable getCodePage(String name, long contentHash) {
+    return (FOCA_CodePageTable) get(new Key(false, name, contentHash));
+  }
+
+  /**
+   * Returns the cached font character set of the given name and content hash, or null.
+   */
+  public FOCA_FontMetricsTable getFontCharacterSet(String name, long contentHash) {
+    return (FOCA_FontMetricsTable) get(new Key(true, name, contentHash));
+  }
+
+  /**
+   * Returns the code page of the given structured fields (BCP..ECP), building and caching it if it
+   * is not cached yet. The name is taken from the {@link BCP_BeginCodePage}.
+   */
+  public FOCA_CodePageTable getCodePage(List<? extends StructuredField> codePage) throws AFPParserException {
+    String name = nameOf(codePage, BCP_BeginCodePage.class);
+    long contentHash = contentHash(codePage);
+    FOCA_CodePageTable table = getCodePage(name, contentHash);
+    if (table == null) {
+      table = (FOCA_CodePageTable) put(FOCA_CodePageTable.build(name, contentHash, codePage));
+    }
+    return table;
+  }
+
+  /**
+   * Returns the font character set of the given structured fields (BFN..EFN), building and caching
+   * it if it is not cached yet. The name is taken from the {@link BFN_BeginFont}.
+   */
+  public FOCA_FontMetricsTable getFontCharacterSet(List<? extends StructuredField> fontCharacterSet) throws AFPParserException {
+    String name = nameOf(fontCharacterSet, BFN_BeginFont.class);
+    long contentHash = contentHash(fontCharacterSet);
+    FOCA_FontMetricsTable table = getFontCharacterSet(name, contentHash);
+    if (table == null) {
+      table = (FOCA_FontMetricsTable) put(FOCA_FontMetricsTable.build(name, contentHash, fontCharacterSet));
+    }
+    return table;
+  }
+
+  /**
+   * Reads the next code page (BCP..ECP) or font character set (BFN..EFN) from the given parser by
+   * {@link AFPParser#scanNextSFWithPayload()}, and returns its table, building and caching it if
+   * it is not cached yet. Structured fields before the BCP or BFN are skipped. The content hash is
+   * computed from the raw payloads while scanning, see {@link #contentHash(List)}; the payloads of
+   * the structured fields that make up the table are copied, and decoded only if the table is not
+   * cached.
+   *
+   * @param config provides the charset of the resource name and of decoding.
+   * @return a {@link FOCA_CodePageTable} or a {@link FOCA_FontMetricsTable}, or null if the end of
+   * the AFP data is reached before a BCP or BFN.
+   * @throws AFPParserException if the end of the AFP data is reached before the ECP or EFN.
+   */
+  public FOCA_ResourceTable readResource(AFPParser parser, AFPParserConfiguration config) throws AFPParserException {
+    StructuredFieldIntroducerView sfi;
+    do {
+      sfi = parser.scanNextSFWithPayload();
+      if (sfi == null) {
+        return null;
+      }
+    } while (sfi.getSFTypeID() != SFTypeID.BCP_BeginCodePage && sfi.getSFTypeID() != SFTypeID.BFN_BeginFont);
+    boolean isFontCharacterSet = sfi.getSFTypeID() == SFTypeID.BFN_BeginFont;
+    SFTypeID endSFTypeID = isFontCharacterSet ? SFTypeID.EFN_EndFont : SFTypeID.ECP_EndCodePage;
+    long beginOffset = sfi.getFileOffset();
+
+    ByteBuffer payload = parser.getScannedPayload();
+    String name = null;
+    if (payload.remaining() >= 8) {
+      byte[] nameBytes = new byte[8];
+      payload.duplicate().get(nameBytes);
+      name = UtilCharacterEncoding.decodeName(nameBytes, 0, 8, config.getAfpCharSet());
+    }
+
+    long hash = FNV64_OFFSET_BASIS;
+    List<StructuredFieldIntroducer> sfis = new ArrayList<StructuredFieldIntroducer>();
+    List<byte[]> payloads = new ArrayList<byte[]>();
+    while ((sfi = parser.scanNextSFWithPayload()) != null && sfi.getSFTypeID() != endSFTypeID) {
+      if (TABLE_SF_TYPES.contains(sfi.getSFTypeID())) {
+        payload = parser.getScannedPayload();
+        byte[] data = new byte[payload.remaining()];
+        payload.duplicate().get(data);
+        hash = contentHash(hash, sfi.getSFTypeID().toBytes(), data, 0, data.length);
+        sfis.add(sfi.toStructuredFieldIntroducer());
+        payloads.add(data);
+      }
+    }
+    if (sfi == null) {
+      throw new AFPParserException("Reached end of file before end of the font resource at file index position 0x" + Long.toHexString(beginOffset) + ".");
+    }
+
+    FOCA_ResourceTable table = get(new Key(isFontCharacterSet, name, hash));
+    if (table == null) {
+      List<StructuredField> resource = decode(sfis, payloads, config);
+      table = put(isFontCharacterSet ? FOCA_FontMetricsTable.build(name, hash, resource) : FOCA_CodePageTable.build(name, hash, resource));
+    }
+    return table;
+  }
+
+  private static List<StructuredField> decode(List<StructuredFieldIntroducer> sfis, List<byte[]> payloads, AFPParserConfiguration config) throws AFPParserException {
+    AFPParserConfiguration decodeConfig = new AFPParserConfiguration();
+    decodeConfig.setAfpCharSet(config.getAfpCharSet());
+    List<StructuredField> resource = new ArrayList<StructuredField>(sfis.size());
+    for (int i = 0; i < sfis.size(); i++) {
+      StructuredField sf = AFPParser.createSFInstance(sfis.get(i));
+      byte[] data = payloads.get(i);
+      if (data.length > 0) {
+        sf.decodeAFP(data, 0, -1, decodeConfig);
+      }
+      if (sf instanceof CPC_CodePageControl) {
+        decodeConfig.setCurrentPageControl((CPC_CodePageControl) sf);
+      } else if (sf instanceof FNC_FontControl) {
+        decodeConfig.setCurrentFontControl((FNC_FontControl) sf);
+      }
+      resource.add(sf);
+    }
+    return resource;
+  }
+
+  /**
+   * Adds the given table to the cache, evicting least recently used entries if a bound is
+   * exceeded. If the cache already holds a table of the same name and content hash, that table is
+   * kept and returned.
+   *
+   * @return the table held by the cache.
+   */
+  public FOCA_ResourceTable put(FOCA_ResourceTable table) {
+    Key key = new Key(table instanceof FOCA_FontMetricsTable, table.getName(), table.getContentHash());
+    synchronized (this) {
+      Entry entry = entries.get(key);
+      if (entry != null) {
+        entry.lastAccess = clock.incrementAndGet();
+        return entry.table;
+      }
+      entries.put(key, new Entry(table, clock.incrementAndGet()));
+      memorySize += table.getMemorySize();
+      while (entries.size() > 1 && (entries.size() > maxEntries || memorySize > maxMemorySize)) {
+        evictLeastRecentlyUsed(key);
+      }
+    }
+    return table;
+  }
+
+  /**
+   * Removes all entries.
+   */
+  public synchronized void clear() {
+    entries.clear();
+    memorySize = 0;
+  }
+
+  /**
+   * Returns the number of tables held by the cache.
+   */
+  public int size() {
+    return entries.size();
+  }
+
+  /**
+   * Returns the estimated memory size of all tables held by the cache.
+   */
+  public synchronized long getMemorySize() {
+    return memorySize;
+  }
+
+  public int getMaxEntries() {
+    return maxEntries;
+  }
+
+  public long getMaxMemorySize() {
+    return maxMemorySize;
+  }
+
+  public long getHits() {
+    return hits.get();
+  }
+
+  public long getMisses() {
+    return misses.get();
+  }
+
+  public long getEvictions() {
+    return evictions.get();
+  }
+
+  private FOCA_ResourceTable get(Key key) {
+    Entry entry = entries.get(key);
+    if (entry == null) {
+      misses.incrementAndGet();
+      return null;
+    }
+    hits.incrementAndGet();
+    entry.lastAccess = clock.incrementAndGet();
+    return entry.table;
+  }
+
+  /**
+   * Evicts the least recently used entry other than the given one. Called holding the lock.
+   */
+  private void evictLeastRecentlyUsed(Key keep) {
+    Map.Entry<Key, Entry> lru = null;
+    for (Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator(); it.hasNext(); ) {
+      Map.Entry<Key, Entry> e = it.next();
+      if (!e.getKey().equals(keep) && (lru == null || e.getValue().lastAccess < lru.getValue().lastAccess)) {
+        lru = e;
+      }
+    }
+    if (lru != null) {
+      entries.remove(lru.getKey());
+      memorySize -= lru.getValue().table.getMemorySize();
+      evictions.incrementAndGet();
+    }
+  }
+
+  private static String nameOf(List<? extends StructuredField> resource, Class<? extends IHasName> beginType) throws AFPParserException {
+    for (StructuredField sf : resource) {
+      if (beginType.isInstance(sf)) {
+        return ((IHasName) sf).getName();
+      }
+    }
+    throw new AFPParserException("The font resource has no " + beginType.getSimpleName() + ".");
+  }
+
+  private static final class Key {
+    final boolean isFontCharacterSet;
+    final String name;
+    final long contentHash;
+
+    Key(boolean isFontCharacterSet, String name, long contentHash) {
+      this.isFontCharacterSet = isFontCharacterSet;
+      this.name = name;
+      this.contentHash = contentHash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) obj;
+      return isFontCharacterSet == other.isFontCharacterSet && contentHash == other.contentHash
+          && (name == null ? other.name == null : name.equals(other.name));
+    }
+
+    @Override
+    public int hashCode() {
+      return (int) (contentHash ^ (contentHash >>> 32)) * 31 + (name != null ? name.hashCode() : 0) + (isFontCharacterSet ? 1 : 0);
+    }
+  }
+
+  private static final class Entry {
+    final FOCA_ResourceTable table;
+    volatile long lastAccess;
+
+    Entry(FOCA_ResourceTable table, long lastAccess) {
+      this.table = table;
+      this.lastAccess = lastAccess;
+    }
+  }
+}
@@ -29,14 +29,13 @@ import com.mgz.util.UtilBinaryDecoding;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.util.ArrayList;
 import java.util.List;
 
 public abstract class GAD_DrawingOrder implements IAFPDecodeableWriteable {
   @AFPField
   short drawingOrderType;
 
-  protected static abstract class DrawingOrder_HasPoints extends GAD_DrawingOrder {
+  public static abstract class DrawingOrder_HasPoints extends GAD_DrawingOrder {
     @AFPField(isHidden = true)
     protected boolean isAtCurrentPosition;
     @AFPField
@@ -50,15 +49,7 @@ public abstract class GAD_DrawingOrder implements IAFPDecodeableWriteable {
       lengthOfFollowingData = UtilBinaryDecoding.parseShort(sfData, offset + 1, 1);
 
       if (lengthOfFollowingData > 0) {
-        points = new ArrayList<GOCA_Point>();
-        int pos = 0;
-        while (pos < lengthOfFollowingData) {
-          GOCA_Point lp = new GOCA_Point();
-          lp.xCoordinate = UtilBinaryDecoding.parseShort(sfData, offset + 2 + pos, 2);
-          lp.yCoordinate = UtilBinaryDecoding.parseShort(sfData, offset + 2 + pos + 2, 2);
-          points.add(lp);
-          pos += 4;
-        }
+        points = GOCA_PointList.decode(sfData, offset + 2, (lengthOfFollowingData + 3) / 4);
       } else {
         points = null;
       }
@@ -67,14 +58,17 @@ public abstract class GAD_DrawingOrder implements IAFPDecodeableWriteable {
     @Override
     public void writeAFP(OutputStream os, AFPParserConfiguration config) throws IOException {
       byte[] lineEndpointsData = null;
-      if (points != null && points.size() > 0) {
+      if (points instanceof GOCA_PointList && points.size() > 0) {
+        lineEndpointsData = new byte[points.size() * 4];
+        ((GOCA_PointList) points).encode(lineEndpointsData, 0);
+        lengthOfFollowingData = (short) lineEndpointsData.length;
+      } else if (points != null && points.size() > 0) {
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
         for (GOCA_Point lp : points) {
           if (lp == null) {
             continue;
           }
-          UtilBinaryDecoding.shortToByteArray(lp.xCoordinate, 2);
-          UtilBinaryDecoding.shortToByteArray(lp.yCoordinate, 2);
+          baos.write(lp.toBytes());
         }
         lineEndpointsData = baos.toByteArray();
         lengthOfFollowingData = (short) lineEndpointsData.length;
@@ -98,12 +92,20 @@ public abstract class GAD_DrawingOrder implements IAFPDecodeableWriteable {
     }
 
     /**
-     * Returns the list of points.
+     * Returns the list of points. Decoded points are held by a {@link GOCA_PointList}, which
+     * provides access to the coordinates without creating {@link GOCA_Point} objects.
      */
     public List<GOCA_Point> getPoints() {
       return points;
     }
 
+    /**
+     * Returns the number of points.
+     */
+    public int getNrOfPoints() {
+      return points != null ? points.size() : 0;
+    }
+
     /**
      * Sets the line endpoints and updates the {@link #lengthOfFollowingData} accordingly.
      */
@@ -126,7 +128,7 @@ public abstract class GAD_DrawingOrder implements IAFPDecodeableWriteable {
         return;
       }
       if (points == null) {
-        points = new ArrayList<GOCA_Point>();
+        points = new GOCA_PointList();
       }
       points.add(point);
       lengthOfFollowingData = (short) (4 * points.size());
@@ -18,7 +18,7 @@ along with Alpheus AFP Parser.  If not, see <http://www.gnu.org/licenses/>
 */
 package com.mgz.afp.goca;
 
-import com.mgz.afp.base.StructuredField;
+import com.mgz.afp.base.StructuredFieldBaseData;
 import com.mgz.afp.base.annotations.AFPField;
 import com.mgz.afp.enums.IMutualExclusiveGroupedFlag;
 import com.mgz.afp.enums.MutualExclusiveGroupedFlagHandler;
@@ -48,8 +48,187 @@ import java.util.List;
  * segment. Because this environment does not support the calling of segments, all segments should
  * be chained segments. Any unchained segments in the data are ignored. The GAD structured field is
  * optional in a MO:DCA graphics object and may be repeated multiple times.
+ * <p>
+ * Since segments and drawing orders may span GAD boundaries, the GAD keeps its graphics data
+ * undecoded. Use {@link GOCA_DrawingOrderReader} to decode the drawing orders of all GADs between
+ * BGR and EGR.
  */
-public class GAD_GraphicsData extends StructuredField {
+public class GAD_GraphicsData extends StructuredFieldBaseData {
+
+  /**
+   * Length of the {@link BeginSegment} introducer that precedes the drawing orders of a segment.
+   */
+  public static final int BEGINSEGMENT_HEADER_LENGTH = 14;
+
+  /**
+   * Creates an empty {@link GAD_DrawingOrder} for the given drawing order code.
+   *
+   * @param drawingOrderCode first byte of the drawing order.
+   * @return new drawing order instance, or null if the code is unknown.
+   */
+  static GAD_DrawingOrder createDrawingOrder(int drawingOrderCode) {
+    switch (drawingOrderCode) {
+      case 0x00:
+        return new GNOP1_NopOperation();
+      case 0x01:
+        return new GCOMT_Comment();
+      case 0x04:
+        return new GDGCH_SegmentCharacteristics();
+      case 0x08:
+        return new GSPS_SetPatternSet();
+      case 0x0a:
+        return new GSCOL_SetColor();
+      case 0x0c:
+        return new GSMX_SetMix();
+      case 0x0d:
+        return new GSBMX_SetBackgroundMix();
+      case 0x11:
+        return new GSFLW_SetFractionLineWidth();
+      case 0x18:
+        return new GSLT_SetLineType();
+      case 0x19:
+        return new GSLW_SetLineWidth();
+      case 0x1a:
+        return new GSLE_SetLineEnd();
+      case 0x1b:
+        return new GSLJ_SetLineJoin();
+      case 0x21:
+        return new GSCP_SetCurrentPosition();
+      case 0x22:
+        return new GSAP_SetArcParameters();
+      case 0x26:
+        return new GSECOL_SetExtendedColor();
+      case 0x28:
+        return new GSPT_SetPatternSymbol();
+      case 0x29:
+        return new GSMT_SetMarkerSymbol();
+      case 0x33:
+        return new GSCC_SetCharacterCell();
+      case 0x34:
+        return new GSCA_SetCharacterAngle();
+      case 0x35:
+        return new GSCH_SetCharacterShear();
+      case 0x37:
+        return new GSMC_SetMarkerCell();
+      case 0x38:
+        return new GSCS_SetCharacterSet();
+      case 0x39:
+        return new GSCR_SetCharacterPrecision();
+      case 0x3a:
+        return new GSCD_SetCharacterDirection();
+      case 0x3b:
+        return new GSMP_SetMarkerPrecision();
+      case 0x3c:
+        return new GSMS_SetMarkerSet();
+      case 0x3e:
+        return new GEPROL_EndProlog();
+      case 0x60:
+        return new GEAR_EndArea();
+      case 0x68:
+        return new GBAR_BeginArea();
+      case 0x80:
+        return new GCBOX_BoxAtCurrentPosition();
+      case 0x81:
+        return new GCLINE_LineAtCurrentPosition();
+      case 0x82:
+        return new GCMRK_MarkerAtCurrentPosition();
+      case 0x83:
+        return new GCCHST_CharacterStringAtCurrentPosition();
+      case 0x85:
+        return new GCFLT_FilletAtCurrentPosition();
+      case 0x87:
+        return new GCFARC_FullArcAtCurrentPosition();
+      case 0x91:
+        return new GCBIMG_BeginImageAtCurrentPosition();
+      case 0x92:
+        return new GIMD_ImageData();
+      case 0x93:
+        return new GEIMD_EndImage();
+      case 0xa1:
+        return new GCRLINE_RelativeLineAtCurrentPosition();
+      case 0xa3:
+        return new GCPARC_PartialArcAtCurrentPosition();
+      case 0xa5:
+        return new GCCBEZ_CubicBezierCurveAtCurrentPosition();
+      case 0xb2:
+        return new GSPCOL_SetProcessColor();
+      case 0xc0:
+        return new GBOX_BoxAtGivenPosition();
+      case 0xc1:
+        return new GLINE_LineAtGivenPosition();
+      case 0xc2:
+        return new GMRK_MarkerAtGivenPosition();
+      case 0xc3:
+        return new GCHST_CharacterStringAtGivenPosition();
+      case 0xc5:
+        return new GFLT_FilletAtGivenPosition();
+      case 0xc7:
+        return new GFARC_FullArcAtGivenPosition();
+      case 0xd1:
+        return new GBIMG_BeginImageAtGivenPosition();
+      case 0xe1:
+        return new GRLINE_RelativeLineAtGivenPosition();
+      case 0xe3:
+        return new GPARC_PartialArcAtGivenPosition();
+      case 0xe5:
+        return new GCBEZ_CubicBezierCurveAtGivenPosition();
+      case 0xfe:
+        return new GEXO_ExtendedOrder();
+      default:
+        return null;
+    }
+  }
+
+  /**
+   * Returns the number of bytes at the start of a drawing order that are needed by {@link
+   * #getDrawingOrderLength(byte[], int)} to determine the length of the drawing order.
+   *
+   * @param drawingOrderCode first byte of the drawing order.
+   * @return 1, 2, or 4.
+   */
+  static int getDrawingOrderHeaderLength(int drawingOrderCode) {
+    if (drawingOrderCode == 0x00) {
+      return 1;
+    } else if (drawingOrderCode == 0xfe) {
+      return 4;
+    }
+    return 2;
+  }
+
+  /**
+   * Returns the total length of the drawing order starting at the given offset, including the
+   * order code and length fields. Only the first {@link #getDrawingOrderHeaderLength(int)} bytes
+   * are read.
+   */
+  static int getDrawingOrderLength(byte[] data, int offset) throws AFPParserException {
+    int drawingOrderCode = data[offset] & 0xFF;
+    switch (drawingOrderCode) {
+      case 0x00:
+        return 1;
+      case 0x08:
+      case 0x0a:
+      case 0x0c:
+      case 0x0d:
+      case 0x18:
+      case 0x19:
+      case 0x1a:
+      case 0x1b:
+      case 0x28:
+      case 0x29:
+      case 0x38:
+      case 0x39:
+      case 0x3a:
+      case 0x3b:
+      case 0x3c:
+      case 0x3e:
+      case 0x68:
+        return 2;
+      case 0xfe:
+        return UtilBinaryDecoding.parseInt(data, offset + 2, 2) + 4;
+      default:
+        return (data[offset + 1] & 0xFF) + 2;
+    }
+  }
 
   private static final List<GAD_DrawingOrder> buildDrawingOrders(byte[] sfData, int offset, int length, AFPParserConfiguration config) throws AFPParserException {
 
@@ -60,286 +239,14 @@ public class GAD_GraphicsData extends StructuredField {
     int pos = 0;
     while (pos < actualLength) {
 
-      int dotLength = 0;
-      GAD_DrawingOrder drawingOrder = null;
-
       int drawingOrderCode = UtilBinaryDecoding.parseInt(sfData, offset + pos, 1);
-      switch (drawingOrderCode) {
-        case 0x00: {
-          drawingOrder = new GNOP1_NopOperation();
-          dotLength = 1;
-        }
-        break;
-        case 0x01: {
-          drawingOrder = new GCOMT_Comment();
-          dotLength = UtilBinaryDecoding.parseInt(sfData, offset + pos + 1, 1) + 2;
-        }
-        break;
-        case 0x04: {
-          drawingOrder = new GDGCH_SegmentCharacteristics();
-          dotLength = UtilBinaryDecoding.parseInt(sfData, offset + pos + 1, 1) + 2;
-        }
-        break;
-        case 0x08: {
-          drawingOrder = new GSPS_SetPatternSet();
-          dotLength = 2;
-        }
-        break;
-        case 0x0a: {
-          drawingOrder = new GSCOL_SetColor();
-          dotLength = 2;
-        }
-        break;
-        case 0x0c: {
-          drawingOrder = new GSMX_SetMix();
-          dotLength = 2;
-        }
-        break;
-        case 0x0d: {
-          drawingOrder = new GSBMX_SetBackgroundMix();
-          dotLength = 2;
-        }
-        break;
-        case 0x11: {
-          drawingOrder = new GSFLW_SetFractionLineWidth();
-          dotLength = UtilBinaryDecoding.parseInt(sfData, offset + pos + 1, 1) + 2;
-        }
-        break;
-        case 0x18: {
-          drawingOrder = new GSLT_SetLineType();
-          dotLength = 2;
-        }
-        break;
-        case 0x19: {
-          drawingOrder = new GSLW_SetLineWidth();
-          dotLength = 2;
-        }
-        break;
-        case 0x1a: {
-          drawingOrder = new GSLE_SetLineEnd();
-          dotLength = 2;
-        }
-        break;
-        case 0x1b: {
-          drawingOrder = new GSLJ_SetLineJoin();
-          dotLength = 2;
-        }
-        break;
-        case 0x21: {
-          drawingOrder = new GSCP_SetCurrentPosition();
-          dotLength = UtilBinaryDecoding.parseInt(sfData, offset + pos + 1, 1) + 2;
-        }
-        break;
-        case 0x22: {
-          drawingOrder = new GSAP_SetArcParameters();
-          dotLength = UtilBinaryDecoding.parseInt(sfData, offset + pos + 1, 1) + 2;
-        }
-        break;
-        case 0x26: {
-          drawingOrder = new GSECOL_SetExtendedColor();
-          dotLength = UtilBinaryDecoding.parseInt(sfData, offset + pos + 1, 1) + 2;
-        }
-        break;
-        case 0x28: {
-          drawingOrder = new GSPT_SetPatternSymbol();
-          dotLength = 2;
-        }
-        break;
-        case 0x29: {
-          drawingOrder = new GSMT_SetMarkerSymbol();
-          dotLength = 2;
-        }
-        break;
-        case 0x33: {
-          drawingOrder = new GSCC_SetCharacterCell();
-          dotLength = UtilBinaryDecoding.parseInt(sfData, offset + pos + 1, 1) + 2;
-        }
-        break;
-        case 0x34: {
-          drawingOrder = new GSCA_SetCharacterAngle();
-          dotLength = UtilBinaryDecoding.parseInt(sfData, offset + pos + 1, 1) + 2;
-        }
-        break;
-        case 0x35: {
-          drawingOrder = new GSCH_SetCharacterShear();
-          dotLength = UtilBinaryDecoding.parseInt(sfData, offset + pos + 1, 1) + 2;
-        }
-        break;
-        case 0x37: {
-          drawingOrder = new GSMC_SetMarkerCell();
-          dotLength = UtilBinaryDecoding.parseInt(sfData, offset + pos + 1, 1) + 2;
-        }
-        break;
-        case 0x38: {
-          drawingOrder = new GSCS_SetCharacterSet();
-          dotLength = 2;
-        }
-        break;
-        case 0x39: {
-          drawingOrder = new GSCR_SetCharacterPrecision();
-          dotLength = 2;
-        }
-        break;
-        case 0x3a: {
-          drawingOrder = new GSCD_SetCharacterDirection();
-          dotLength = 2;
-        }
-        break;
-        case 0x3b: {
-          drawingOrder = new GSMP_SetMarkerPrecision();
-          dotLength = 2;
-        }
-        break;
-        case 0x3c: {
-          drawingOrder = new GSMS_SetMarkerSet();
-          dotLength = 2;
-        }
-        break;
-        case 0x3e: {
-          drawingOrder = new GEPROL_EndProlog();
-          dotLength = 2;
-        }
-        break;
-        case 0x60: {
-          drawingOrder = new GEAR_EndArea();
-          dotLength = UtilBinaryDecoding.parseInt(sfData, offset + pos + 1, 1) + 2;
-        }
-        break;
-        case 0x68: {
-          drawingOrder = new GBAR_BeginArea();
-          dotLength = 2;
-        }
-        break;
-        case 0x80: {
-          drawingOrder = new GCBOX_BoxAtCurrentPosition();
-          dotLength = UtilBinaryDecoding.parseInt(sfData, offset + pos + 1, 1) + 2;
-        }
-        break;
-        case 0x81: {
-          drawingOrder = new GCLINE_LineAtCurrentPosition();
-          dotLength = UtilBinaryDecoding.parseInt(sfData, offset + pos + 1, 1) + 2;
-        }
-        break;
-        case 0x82: {
-          drawingOrder = new GCMRK_MarkerAtCurrentPosition();
-          dotLength = UtilBinaryDecoding.parseInt(sfData, offset + pos + 1, 1) + 2;
-        }
-        break;
-        case 0x83: {
-          drawingOrder = new GCCHST_CharacterStringAtCurrentPosition();
-          dotLength = UtilBinaryDecoding.parseInt(sfData, offset + pos + 1, 1) + 2;
-        }
-        break;
-        case 0x85: {
-          drawingOrder = new GCFLT_FilletAtCurrentPosition();
-          dotLength = UtilBinaryDecoding.parseInt(sfData, offset + pos + 1, 1) + 2;
-        }
-        break;
-        case 0x87: {
-          drawingOrder = new GCFARC_FullArcAtCurrentPosition();
-          dotLength = UtilBinaryDecoding.parseInt(sfData, offset + pos + 1, 1) + 2;
-        }
-        break;
-        case 0x91: {
-          drawingOrder = new GCBIMG_BeginImageAtCurrentPosition();
-          dotLength = UtilBinaryDecoding.parseInt(sfData, offset + pos + 1, 1) + 2;
-        }
-        break;
-        case 0x92: {
-          drawingOrder = new GIMD_ImageData();
-          dotLength = UtilBinaryDecoding.parseInt(sfData, offset + pos + 1, 1) + 2;
-        }
-        break;
-        case 0x93: {
-          drawingOrder = new GEIMD_EndImage();
-          dotLength = UtilBinaryDecoding.parseInt(sfData, offset + pos + 1, 1) + 2;
-        }
-        break;
-        case 0xa1: {
-          drawingOrder = new GCRLINE_RelativeLineAtCurrentPosition();
-          dotLength = UtilBinaryDecoding.parseInt(sfData, offset + pos + 1, 1) + 2;
-        }
-        break;
-        case 0xa3: {
-          drawingOrder = new GCPARC_PartialArcAtCurrentPosition();
-          dotLength = UtilBinaryDecoding.parseInt(sfData, offset + pos + 1, 1) + 2;
-        }
-        break;
-        case 0xa5: {
-          drawingOrder = new GCCBEZ_CubicBezierCurveAtCurrentPosition();
-          dotLength = UtilBinaryDecoding.parseInt(sfData, offset + pos + 1, 1) + 2;
-        }
-        break;
-        case 0xb2: {
-          drawingOrder = new GSPCOL_SetProcessColor();
-          dotLength = UtilBinaryDecoding.parseInt(sfData, offset + pos + 1, 1) + 2;
-        }
-        break;
-        case 0xc0: {
-          drawingOrder = new GBOX_BoxAtGivenPosition();
-          dotLength = UtilBinaryDecoding.parseInt(sfData, offset + pos + 1, 1) + 2;
-        }
-        break;
-        case 0xc1: {
-          drawingOrder = new GLINE_LineAtGivenPosition();
-          dotLength = UtilBinaryDecoding.parseInt(sfData, offset + pos + 1, 1) + 2;
-        }
-        break;
-        case 0xc2: {
-          drawingOrder = new GMRK_MarkerAtGivenPosition();
-          dotLength = UtilBinaryDecoding.parseInt(sfData, offset + pos + 1, 1) + 2;
-        }
-        break;
-        case 0xc3: {
-          drawingOrder = new GCHST_CharacterStringAtGivenPosition();
-          dotLength = UtilBinaryDecoding.parseInt(sfData, offset + pos + 1, 1) + 2;
-        }
-        break;
-        case 0xc5: {
-          drawingOrder = new GFLT_FilletAtGivenPosition();
-          dotLength = UtilBinaryDecoding.parseInt(sfData, offset + pos + 1, 1) + 2;
-        }
-        break;
-        case 0xc7: {
-          drawingOrder = new GFARC_FullArcAtGivenPosition();
-          dotLength = UtilBinaryDecoding.parseInt(sfData, offset + pos + 1, 1) + 2;
-        }
-        break;
-        case 0xd1: {
-          drawingOrder = new GBIMG_BeginImageAtGivenPosition();
-          dotLength = UtilBinaryDecoding.parseInt(sfData, offset + pos + 1, 1) + 2;
-        }
-        break;
-        case 0xe1: {
-          drawingOrder = new GRLINE_RelativeLineAtGivenPosition();
-          dotLength = UtilBinaryDecoding.parseInt(sfData, offset + pos + 1, 1) + 2;
-        }
-        break;
-        case 0xe3: {
-          drawingOrder = new GPARC_PartialArcAtGivenPosition();
-          dotLength = UtilBinaryDecoding.parseInt(sfData, offset + pos + 1, 1) + 2;
-        }
-        break;
-        case 0xe5: {
-          drawingOrder = new GCBEZ_CubicBezierCurveAtGivenPosition();
-          dotLength = UtilBinaryDecoding.parseInt(sfData, offset + pos + 1, 1) + 2;
-        }
-        break;
-        case 0xfe: {
-          drawingOrder = new GEXO_ExtendedOrder();
-          dotLength = UtilBinaryDecoding.parseInt(sfData, offset + pos + 2, 2) + 4;
-        }
-        break;
-        default: {
-          drawingOrder = null;
-        }
-        break;
-      }
+      GAD_DrawingOrder drawingOrder = createDrawingOrder(drawingOrderCode);
 
       if (drawingOrder == null) {
         throw new AFPParserException("The drawing order code 0x" + Integer.toHexString(drawingOrderCode) + "is unknown.");
       }
 
+      int dotLength = getDrawingOrderLength(sfData, offset + pos);
       drawingOrder.decodeAFP(sfData, offset + pos, dotLength, config);
       drawingOrders.add(drawingOrder);
 
@@ -350,14 +257,6 @@ public class GAD_GraphicsData extends StructuredField {
     return drawingOrders;
   }
 
-  @Override
-  public void decodeAFP(byte[] sfData, int offset, int length, AFPParserConfiguration config) throws AFPParserException {
-  }
-
-  @Override
-  public void writeAFP(OutputStream os, AFPParserConfiguration config) throws IOException {
-  }
-
   public static class BeginSegment implements IAFPDecodeableWriteable {
     public static short COMMANDCODE_BeginSegment = 0x70;
     @AFPField
@@ -380,6 +279,20 @@ public class GAD_GraphicsData extends StructuredField {
     @Override
     public void decodeAFP(byte[] sfData, int offset, int length, AFPParserConfiguration config) throws AFPParserException {
 
+      decodeHeader(sfData, offset);
+
+      if (segmentDataLength > 0) {
+        drawingOrders = buildDrawingOrders(sfData, offset + BEGINSEGMENT_HEADER_LENGTH, segmentDataLength, config);
+      } else {
+        drawingOrders = null;
+      }
+    }
+
+    /**
+     * Decodes the {@link #BEGINSEGMENT_HEADER_LENGTH} bytes of the segment introducer, leaving the
+     * drawing orders untouched.
+     */
+    void decodeHeader(byte[] sfData, int offset) throws AFPParserException {
       commandCode = UtilBinaryDecoding.parseShort(sfData, offset, 1);
       lengtOfFollowingParameters = UtilBinaryDecoding.parseShort(sfData, offset + 1, 1);
       nameOfSegment = new String(sfData, offset + 2, 4, Constants.cpIBM500);
@@ -387,12 +300,6 @@ public class GAD_GraphicsData extends StructuredField {
       segmentPropertiesFlags = SegmentPropertiesFlag.valueOF(sfData[offset + 7]);
       segmentDataLength = UtilBinaryDecoding.parseInt(sfData, offset + 8, 2);
       nameOfPredecessorSuccessorSegment = new String(sfData, offset + 10, 4, Constants.cpIBM500);
-
-      if (segmentDataLength > 0) {
-        drawingOrders = buildDrawingOrders(sfData, offset + 13, segmentDataLength, config);
-      } else {
-        drawingOrders = null;
-      }
     }
 
 
@@ -0,0 +1,257 @@
+/*
+Copyright 2015 Rudolf Fiala
+
+This file is part of Alpheus AFP Parser.
+
+Alpheus AFP Parser is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Alpheus AFP Parser is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Alpheus AFP Parser.  If not, see <http://www.gnu.org/licenses/>
+*/
+package com.mgz.afp.goca;
+
+import com.mgz.afp.exceptions.AFPParserException;
+import com.mgz.afp.goca.GAD_GraphicsData.BeginSegment;
+import com.mgz.afp.parser.AFPParserConfiguration;
+
+import java.util.ArrayDeque;
+
+/**
+ * Decodes the drawing orders of a GOCA object from the data of consecutive {@link
+ * GAD_GraphicsData} structured fields.<br><br>
+ * <p>
+ * The GAD payloads between BGR and EGR are read as one logical byte stream, but they are not
+ * concatenated: a drawing order that lies within one GAD is decoded in place, only segment
+ * introducers and drawing orders that span a GAD boundary are assembled in a small carry buffer.
+ * Drawing orders are returned one by one as soon as their last byte has been added.<br><br>
+ * <p>
+ * Usage: on BGR call {@link #reset()}, for every GAD call {@link #addGraphicsData(GAD_GraphicsData)}
+ * and then {@link #nextDrawingOrder()} until it returns null, on EGR call {@link #end()}.<br>
+ * The added byte arrays are referenced, not copied, and must not be modified until their drawing
+ * orders have been read. Instances are not thread safe.
+ */
+public class GOCA_DrawingOrderReader {
+  private final AFPParserConfiguration config;
+  private final ArrayDeque<Chunk> chunks = new ArrayDeque<Chunk>();
+  private final byte[] header = new byte[4];
+  private byte[] carry = new byte[256];
+  private int pendingLength;
+  private byte[] readBuffer;
+  private int readOffset;
+  private BeginSegment currentSegment;
+  private int segmentRemainingLength;
+  private int nrOfSegments;
+  private int nrOfDrawingOrders;
+
+  public GOCA_DrawingOrderReader(AFPParserConfiguration config) {
+    this.config = config;
+  }
+
+  /**
+   * Adds the graphics data of the given GAD to the stream.
+   */
+  public void addGraphicsData(GAD_GraphicsData gad) {
+    byte[] data = gad.getData();
+    if (data != null) {
+      addData(data, 0, data.length);
+    }
+  }
+
+  /**
+   * Adds the given GAD payload to the stream.
+   */
+  public void addData(byte[] data, int offset, int length) {
+    if (offset < 0 || length < 0 || offset + length > data.length) {
+      throw new IndexOutOfBoundsException("offset " + offset + ", length " + length + ", array length " + data.length);
+    }
+    if (length > 0) {
+      chunks.addLast(new Chunk(data, offset, offset + length));
+      pendingLength += length;
+    }
+  }
+
+  /**
+   * Returns the next drawing order, or null if the added data does not contain a complete drawing
+   * order. Segment introducers are consumed and made available by {@link #getCurrentSegment()}.
+   *
+   * @throws AFPParserException if a drawing order code is unknown or if a drawing order exceeds
+   *                            its segment.
+   */
+  public GAD_DrawingOrder nextDrawingOrder() throws AFPParserException {
+    while (pendingLength > 0) {
+      int code = peek(0);
+
+      if (segmentRemainingLength <= 0 && code == BeginSegment.COMMANDCODE_BeginSegment) {
+        if (pendingLength < GAD_GraphicsData.BEGINSEGMENT_HEADER_LENGTH) {
+          return null;
+        }
+        read(GAD_GraphicsData.BEGINSEGMENT_HEADER_LENGTH);
+        BeginSegment segment = new BeginSegment();
+        segment.decodeHeader(readBuffer, readOffset);
+        currentSegment = segment;
+        segmentRemainingLength = segment.getSegmentDataLength();
+        nrOfSegments++;
+        continue;
+      } else if (segmentRemainingLength == 0) {
+        // Drawing orders outside of a segment.
+        currentSegment = null;
+      }
+
+      GAD_DrawingOrder drawingOrder = GAD_GraphicsData.createDrawingOrder(code);
+      if (drawingOrder == null) {
+        throw new AFPParserException("The drawing order code 0x" + Integer.toHexString(code) + " is unknown.");
+      }
+      int headerLength = GAD_GraphicsData.getDrawingOrderHeaderLength(code);
+      if (pendingLength < headerLength) {
+        return null;
+      }
+      for (int i = 0; i < headerLength; i++) {
+        header[i] = (byte) peek(i);
+      }
+      int dotLength = GAD_GraphicsData.getDrawingOrderLength(header, 0);
+      if (segmentRemainingLength > 0 && dotLength > segmentRemainingLength) {
+        throw new AFPParserException("The drawing order 0x" + Integer.toHexString(code) + " of length " + dotLength
+            + " exceeds the remaining " + segmentRemainingLength + " bytes of segment " + currentSegment.getNameOfSegment() + ".");
+      }
+      if (pendingLength < dotLength) {
+        return null;
+      }
+
+      read(dotLength);
+      drawingOrder.decodeAFP(readBuffer, readOffset, dotLength, config);
+      if (segmentRemainingLength > 0) {
+        segmentRemainingLength -= dotLength;
+      }
+      nrOfDrawingOrders++;
+      return drawingOrder;
+    }
+    return null;
+  }
+
+  /**
+   * Checks that the graphics data ends at a drawing order and segment boundary, and resets this
+   * reader. Call on EGR after all drawing orders have been read.
+   *
+   * @throws AFPParserException if a drawing order or segment is incomplete.
+   */
+  public void end() throws AFPParserException {
+    int pending = pendingLength;
+    int segmentRemaining = segmentRemainingLength;
+    String segmentName = currentSegment != null ? currentSegment.getNameOfSegment() : null;
+    reset();
+    if (pending > 0) {
+      throw new AFPParserException("The graphics data ends with " + pending + " bytes of an incomplete drawing order.");
+    }
+    if (segmentRemaining > 0) {
+      throw new AFPParserException("The graphics data ends " + segmentRemaining + " bytes before the end of segment " + segmentName + ".");
+    }
+  }
+
+  /**
+   * Discards all added data and the segment state. Call on BGR.
+   */
+  public void reset() {
+    chunks.clear();
+    pendingLength = 0;
+    readBuffer = null;
+    currentSegment = null;
+    segmentRemainingLength = 0;
+    nrOfSegments = 0;
+    nrOfDrawingOrders = 0;
+  }
+
+  /**
+   * Returns the introducer of the segment the last returned drawing order belongs to, or null if
+   * the graphics data is not segmented. {@link BeginSegment#getDrawingOrders()} is always null.
+   */
+  public BeginSegment getCurrentSegment() {
+    return currentSegment;
+  }
+
+  /**
+   * Returns the number of bytes of the current segment that have not been read yet.
+   */
+  public int getSegmentRemainingLength() {
+    return Math.max(segmentRemainingLength, 0);
+  }
+
+  /**
+   * Returns the number of added bytes that have not been read yet.
+   */
+  public int getPendingLength() {
+    return pendingLength;
+  }
+
+  public int getNrOfSegments() {
+    return nrOfSegments;
+  }
+
+  public int getNrOfDrawingOrders() {
+    return nrOfDrawingOrders;
+  }
+
+  private int peek(int index) {
+    for (Chunk chunk : chunks) {
+      int length = chunk.end - chunk.pos;
+      if (index < length) {
+        return chunk.data[chunk.pos + index] & 0xFF;
+      }
+      index -= length;
+    }
+    throw new IndexOutOfBoundsException();
+  }
+
+  /**
+   * Consumes the given number of bytes and points {@link #readBuffer} and {@link #readOffset} to
+   * them, copying into the carry buffer only if they span more than one chunk.
+   */
+  private void read(int length) {
+    Chunk chunk = chunks.peekFirst();
+    if (chunk.end - chunk.pos >= length) {
+      readBuffer = chunk.data;
+      readOffset = chunk.pos;
+      chunk.pos += length;
+      if (chunk.pos == chunk.end) {
+        chunks.removeFirst();
+      }
+    } else {
+      if (carry.length < length) {
+        carry = new byte[Math.max(length, carry.length * 2)];
+      }
+      int copied = 0;
+      while (copied < length) {
+        chunk = chunks.peekFirst();
+        int n = Math.min(length - copied, chunk.end - chunk.pos);
+        System.arraycopy(chunk.data, chunk.pos, carry, copied, n);
+        copied += n;
+        chunk.pos += n;
+        if (chunk.pos == chunk.end) {
+          chunks.removeFirst();
+        }
+      }
+      readBuffer = carry;
+      readOffset = 0;
+    }
+    pendingLength -= length;
+  }
+
+  private static final class Chunk {
+    final byte[] data;
+    final int end;
+    int pos;
+
+    Chunk(byte[] data, int pos, int end) {
+      this.data = data;
+      this.pos = pos;
+      this.end = end;
+    }
+  }
+}
@@ -0,0 +1,215 @@
+/*
+Copyright 2015 Rudolf Fiala
+
+This file is part of Alpheus AFP Parser.
+
+Alpheus AFP Parser is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Alpheus AFP Parser is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Alpheus AFP Parser.  If not, see <http://www.gnu.org/licenses/>
+*/
+package com.mgz.afp.goca;
+
+import com.mgz.afp.goca.GAD_DrawingOrder.GOCA_Point;
+
+import java.nio.ShortBuffer;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * List of {@link GOCA_Point}s that stores the coordinates packed in a short[] (x0, y0, x1, y1,
+ * ...), as they are encoded in the drawing orders. {@link GOCA_Point} objects are created only when
+ * accessed by {@link #get(int)}; such a point stays attached to the list, so changing its
+ * coordinates changes the list. Use {@link #getXCoordinate(int)}, {@link #getYCoordinate(int)},
+ * {@link #add(short, short)}, and {@link #asShortBuffer()} to work with the coordinates without
+ * creating objects.<br> <br> Null elements are not permitted.
+ */
+public class GOCA_PointList extends AbstractList<GOCA_Point> {
+  private short[] coordinates;
+  private GOCA_Point[] points;
+  private int size;
+
+  public GOCA_PointList() {
+    this(8);
+  }
+
+  public GOCA_PointList(int initialCapacity) {
+    coordinates = new short[Math.max(1, initialCapacity) * 2];
+  }
+
+  public GOCA_PointList(Collection<? extends GOCA_Point> points) {
+    this(points.size());
+    addAll(points);
+  }
+
+  /**
+   * Decodes nrOfPoints big endian coordinate pairs from the given data.
+   */
+  public static GOCA_PointList decode(byte[] data, int offset, int nrOfPoints) {
+    GOCA_PointList list = new GOCA_PointList(nrOfPoints);
+    short[] coords = list.coordinates;
+    for (int i = 0, pos = offset; i < nrOfPoints * 2; i++, pos += 2) {
+      coords[i] = (short) ((data[pos] << 8) | (data[pos + 1] & 0xFF));
+    }
+    list.size = nrOfPoints;
+    return list;
+  }
+
+  /**
+   * Encodes the coordinates big endian into the given array.
+   *
+   * @return number of bytes written (4 per point).
+   */
+  public int encode(byte[] data, int offset) {
+    int pos = offset;
+    for (int i = 0; i < size; i++) {
+      short x = getXCoordinate(i);
+      short y = getYCoordinate(i);
+      data[pos++] = (byte) (x >>> 8);
+      data[pos++] = (byte) x;
+      data[pos++] = (byte) (y >>> 8);
+      data[pos++] = (byte) y;
+    }
+    return pos - offset;
+  }
+
+  public short getXCoordinate(int index) {
+    checkIndex(index);
+    GOCA_Point point = points != null ? points[index] : null;
+    return point != null ? point.xCoordinate : coordinates[index * 2];
+  }
+
+  public short getYCoordinate(int index) {
+    checkIndex(index);
+    GOCA_Point point = points != null ? points[index] : null;
+    return point != null ? point.yCoordinate : coordinates[index * 2 + 1];
+  }
+
+  /**
+   * Appends a point with the given coordinates.
+   */
+  public void add(short xCoordinate, short yCoordinate) {
+    ensureCapacity(size + 1);
+    coordinates[size * 2] = xCoordinate;
+    coordinates[size * 2 + 1] = yCoordinate;
+    size++;
+    modCount++;
+  }
+
+  /**
+   * Returns a read only view of the packed coordinates (x0, y0, x1, y1, ...). The view reflects
+   * changes of the list until its next structural modification.
+   */
+  public ShortBuffer asShortBuffer() {
+    if (points != null) {
+      // Write back the coordinates of attached points.
+      for (int i = 0; i < size; i++) {
+        if (points[i] != null) {
+          coordinates[i * 2] = points[i].xCoordinate;
+          coordinates[i * 2 + 1] = points[i].yCoordinate;
+        }
+      }
+    }
+    return ShortBuffer.wrap(coordinates, 0, size * 2).slice().asReadOnlyBuffer();
+  }
+
+  @Override
+  public GOCA_Point get(int index) {
+    checkIndex(index);
+    if (points == null) {
+      points = new GOCA_Point[coordinates.length / 2];
+    }
+    GOCA_Point point = points[index];
+    if (point == null) {
+      point = new GOCA_Point();
+      point.xCoordinate = coordinates[index * 2];
+      point.yCoordinate = coordinates[index * 2 + 1];
+      points[index] = point;
+    }
+    return point;
+  }
+
+  @Override
+  public GOCA_Point set(int index, GOCA_Point point) {
+    checkIndex(index);
+    checkNotNull(point);
+    GOCA_Point previous = get(index);
+    points[index] = point;
+    coordinates[index * 2] = point.xCoordinate;
+    coordinates[index * 2 + 1] = point.yCoordinate;
+    return previous;
+  }
+
+  @Override
+  public void add(int index, GOCA_Point point) {
+    if (index < 0 || index > size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+    checkNotNull(point);
+    ensureCapacity(size + 1);
+    System.arraycopy(coordinates, index * 2, coordinates, index * 2 + 2, (size - index) * 2);
+    coordinates[index * 2] = point.xCoordinate;
+    coordinates[index * 2 + 1] = point.yCoordinate;
+    if (points == null) {
+      points = new GOCA_Point[coordinates.length / 2];
+    }
+    System.arraycopy(points, index, points, index + 1, size - index);
+    points[index] = point;
+    size++;
+    modCount++;
+  }
+
+  @Override
+  public GOCA_Point remove(int index) {
+    GOCA_Point removed = get(index);
+    System.arraycopy(coordinates, index * 2 + 2, coordinates, index * 2, (size - index - 1) * 2);
+    System.arraycopy(points, index + 1, points, index, size - index - 1);
+    size--;
+    points[size] = null;
+    modCount++;
+    return removed;
+  }
+
+  @Override
+  public void clear() {
+    size = 0;
+    points = null;
+    modCount++;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  private void ensureCapacity(int nrOfPoints) {
+    if (nrOfPoints * 2 > coordinates.length) {
+      int newLength = Math.max(nrOfPoints * 2, coordinates.length * 2);
+      coordinates = Arrays.copyOf(coordinates, newLength);
+      if (points != null) {
+        points = Arrays.copyOf(points, newLength / 2);
+      }
+    }
+  }
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+  }
+
+  private static void checkNotNull(GOCA_Point point) {
+    if (point == null) {
+      throw new NullPointerException("GOCA_PointList does not permit null elements.");
+    }
+  }
+}
@@ -0,0 +1,491 @@
+/*
+Copyright 2015 Rudolf Fiala
+
+This file is part of Alpheus AFP Parser.
+
+Alpheus AFP Parser is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Alpheus AFP Parser is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Alpheus AFP Parser.  If not, see <http://www.gnu.org/licenses/>
+*/
+package com.mgz.afp.index;
+
+import com.mgz.afp.enums.SFTypeID;
+import com.mgz.afp.exceptions.AFPParserException;
+import com.mgz.afp.parser.AFPParserConfiguration;
+import com.mgz.afp.parser.MappedAFPFile;
+import com.mgz.util.IntCodeTable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Random access index of an AFP file. The index holds file offset, {@link SFTypeID}, and length of
+ * every structured field, and the document (BDT/EDT), page group (BNG/ENG), and page (BPG/EPG)
+ * hierarchy built from them.<br> <br> Use {@link #build(File, AFPParserConfiguration)} to index an
+ * AFP file, {@link #write(File)} to persist the index in a sidecar file (see {@link
+ * #getDefaultIndexFile(File)}), {@link #read(File, File)} to load a persisted index, and {@link
+ * AFPIndexReader} to read pages or page groups directly from the AFP file.<br> <br> A persisted
+ * index carries size and modification time of the indexed AFP file and is rejected by {@link
+ * #read(File, File)} if the AFP file has changed since.
+ */
+public class AFPIndex {
+  /**
+   * File extension of index sidecar files.
+   */
+  public static final String FILE_EXTENSION = ".afpidx";
+  /**
+   * Version of the index file format.
+   */
+  public static final int VERSION = 1;
+  private static final int MAGIC = 0x41465049; // "AFPI"
+  private static final int SFTYPEID_BEGIN_DOCUMENT = packedID(SFTypeID.BDT_BeginDocument);
+  private static final int SFTYPEID_END_DOCUMENT = packedID(SFTypeID.EDT_EndDocument);
+  private static final int SFTYPEID_BEGIN_PAGEGROUP = packedID(SFTypeID.BNG_BeginNamedPageGroup);
+  private static final int SFTYPEID_END_PAGEGROUP = packedID(SFTypeID.ENG_EndNamedPageGroup);
+  private static final int SFTYPEID_BEGIN_PAGE = packedID(SFTypeID.BPG_BeginPage);
+  private static final int SFTYPEID_END_PAGE = packedID(SFTypeID.EPG_EndPage);
+
+  long afpFileSize;
+  long afpFileLastModified;
+  int nrOfSFs;
+  long[] sfOffsets = new long[1024];
+  int[] sfTypeIDs = new int[1024];
+  int[] sfLengths = new int[1024];
+  List<Element> documents = new ArrayList<Element>();
+  List<Element> pageGroups = new ArrayList<Element>();
+  List<Element> pages = new ArrayList<Element>();
+  private final Map<String, Integer> pageGroupsByName = new HashMap<String, Integer>();
+
+  AFPIndex() {
+  }
+
+  /**
+   * Returns the default index sidecar file of the given AFP file, this is the AFP file's path with
+   * {@link #FILE_EXTENSION} appended.
+   */
+  public static File getDefaultIndexFile(File afpFile) {
+    return new File(afpFile.getPath() + FILE_EXTENSION);
+  }
+
+  private static int packedID(SFTypeID sfTypeID) {
+    byte[] id = sfTypeID.toBytes();
+    return IntCodeTable.pack(id[0], id[1], id[2]);
+  }
+
+  /**
+   * Indexes the given AFP file in a single pass over the memory mapped file. Structured field
+   * payloads are not decoded, only the names of BDT, BNG, and BPG are read using the charset of
+   * the given configuration.
+   *
+   * @param afpFile AFP file to index.
+   * @param config  provides the {@link AFPParserConfiguration#getAfpCharSet()} and {@link
+   *                AFPParserConfiguration#getMemoryMappedWindowSize()}.
+   */
+  public static AFPIndex build(File afpFile, AFPParserConfiguration config) throws AFPParserException {
+    AFPIndex index = new AFPIndex();
+    index.afpFileSize = afpFile.length();
+    index.afpFileLastModified = afpFile.lastModified();
+    Charset charset = config.getAfpCharSet();
+
+    MappedAFPFile mapped = null;
+    try {
+      mapped = new MappedAFPFile(afpFile, config.getMemoryMappedWindowSize());
+
+      // Indexes into documents and pageGroups of the open elements, innermost last.
+      List<Integer> openDocuments = new ArrayList<Integer>();
+      List<Integer> openPageGroups = new ArrayList<Integer>();
+      Element openPage = null;
+
+      long pos = 0;
+      while ((pos = mapped.findNextBeginByte(pos)) != -1) {
+        if (pos + 3 > mapped.size()) {
+          break;
+        }
+        int sfLength = mapped.getUnsignedShort(pos + 1);
+        if (sfLength < 8 || pos + 1 + sfLength > mapped.size()) {
+          throw new AFPParserException("Invalid structured field at file position 0x" + Long.toHexString(pos) + ".");
+        }
+        int sfTypeID = IntCodeTable.pack(mapped.getUnsignedByte(pos + 3), mapped.getUnsignedByte(pos + 4), mapped.getUnsignedByte(pos + 5));
+        int sfIndex = index.addSF(pos, sfTypeID, sfLength);
+
+        if (sfTypeID == SFTYPEID_BEGIN_DOCUMENT) {
+          Element document = new Element(readName(mapped.slice(pos + 1, sfLength), charset), sfIndex, -1);
+          openDocuments.add(index.documents.size());
+          index.documents.add(document);
+        } else if (sfTypeID == SFTYPEID_BEGIN_PAGEGROUP) {
+          Element pageGroup = new Element(readName(mapped.slice(pos + 1, sfLength), charset), sfIndex, last(openDocuments));
+          pageGroup.firstPage = index.pages.size();
+          openPageGroups.add(index.pageGroups.size());
+          index.pageGroups.add(pageGroup);
+        } else if (sfTypeID == SFTYPEID_BEGIN_PAGE) {
+          openPage = new Element(readName(mapped.slice(pos + 1, sfLength), charset), sfIndex, last(openPageGroups));
+          openPage.firstPage = index.pages.size();
+          openPage.nrOfPages = 1;
+          index.pages.add(openPage);
+        } else if (sfTypeID == SFTYPEID_END_PAGE && openPage != null) {
+          openPage.endSFIndex = sfIndex;
+          openPage = null;
+          for (int i = 0; i < openPageGroups.size(); i++) {
+            index.pageGroups.get(openPageGroups.get(i)).nrOfPages++;
+          }
+        } else if (sfTypeID == SFTYPEID_END_PAGEGROUP && !openPageGroups.isEmpty()) {
+          index.pageGroups.get(openPageGroups.remove(openPageGroups.size() - 1)).endSFIndex = sfIndex;
+        } else if (sfTypeID == SFTYPEID_END_DOCUMENT && !openDocuments.isEmpty()) {
+          index.documents.get(openDocuments.remove(openDocuments.size() - 1)).endSFIndex = sfIndex;
+        }
+
+        pos += 1 + sfLength;
+      }
+
+      // Close elements that are not terminated by the end of the file.
+      int lastSF = index.nrOfSFs - 1;
+      if (openPage != null) {
+        openPage.endSFIndex = lastSF;
+      }
+      for (int i = 0; i < openPageGroups.size(); i++) {
+        index.pageGroups.get(openPageGroups.get(i)).endSFIndex = lastSF;
+      }
+      for (int i = 0; i < openDocuments.size(); i++) {
+        index.documents.get(openDocuments.get(i)).endSFIndex = lastSF;
+      }
+    } catch (IOException e) {
+      throw new AFPParserException("Failed to index AFP file '" + afpFile + "'.", e);
+    } finally {
+      if (mapped != null) {
+        try {
+          mapped.close();
+        } catch (IOException e) {
+          // NOP.
+        }
+      }
+    }
+
+    index.indexPageGroupNames();
+    return index;
+  }
+
+  private static int last(List<Integer> openElements) {
+    return openElements.isEmpty() ? -1 : openElements.get(openElements.size() - 1);
+  }
+
+  /**
+   * Maps the trimmed name of every page group to the index of the first page group of that name.
+   */
+  private void indexPageGroupNames() {
+    pageGroupsByName.clear();
+    for (int i = 0; i < pageGroups.size(); i++) {
+      String name = pageGroups.get(i).name;
+      if (name != null && !pageGroupsByName.containsKey(name.trim())) {
+        pageGroupsByName.put(name.trim(), i);
+      }
+    }
+  }
+
+  private static String readName(ByteBuffer sf, Charset charset) {
+    int lenSFI = 8;
+    if ((sf.get(5) & 0x20) != 0) {
+      lenSFI += sf.get(8) & 0xFF;
+    }
+    if (sf.limit() - lenSFI < 8) {
+      return null;
+    }
+    byte[] name = new byte[8];
+    ByteBuffer dup = sf.duplicate();
+    dup.position(lenSFI);
+    dup.get(name);
+    return new String(name, charset);
+  }
+
+  /**
+   * Reads an index previously written by {@link #write(File)} and validates it against the given
+   * AFP file.
+   *
+   * @param indexFile index file to read.
+   * @param afpFile   the indexed AFP file.
+   * @throws AFPParserException if the index file can't be read, has an unsupported version, or
+   *                            the AFP file has been changed after the index was built.
+   */
+  public static AFPIndex read(File indexFile, File afpFile) throws AFPParserException {
+    AFPIndex index = new AFPIndex();
+    DataInputStream dis = null;
+    try {
+      dis = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+      if (dis.readInt() != MAGIC) {
+        throw new AFPParserException("'" + indexFile + "' is not an AFP index file.");
+      }
+      int version = dis.readInt();
+      if (version != VERSION) {
+        throw new AFPParserException("Index file '" + indexFile + "' has version " + version + ", expected version " + VERSION + ".");
+      }
+      index.afpFileSize = dis.readLong();
+      index.afpFileLastModified = dis.readLong();
+      if (afpFile.length() != index.afpFileSize || afpFile.lastModified() != index.afpFileLastModified) {
+        throw new AFPParserException("Index file '" + indexFile + "' is outdated, AFP file '" + afpFile + "' has been modified.");
+      }
+
+      index.nrOfSFs = dis.readInt();
+      index.sfOffsets = new long[index.nrOfSFs];
+      index.sfTypeIDs = new int[index.nrOfSFs];
+      index.sfLengths = new int[index.nrOfSFs];
+      for (int i = 0; i < index.nrOfSFs; i++) {
+        index.sfOffsets[i] = dis.readLong();
+        index.sfTypeIDs[i] = dis.readInt();
+        index.sfLengths[i] = dis.readUnsignedShort();
+      }
+      readElements(dis, index.documents);
+      readElements(dis, index.pageGroups);
+      readElements(dis, index.pages);
+      index.indexPageGroupNames();
+    } catch (IOException e) {
+      throw new AFPParserException("Failed to read index file '" + indexFile + "'.", e);
+    } finally {
+      if (dis != null) {
+        try {
+          dis.close();
+        } catch (IOException e) {
+          // NOP.
+        }
+      }
+    }
+    return index;
+  }
+
+  private static void readElements(DataInputStream dis, List<Element> elements) throws IOException {
+    int count = dis.readInt();
+    for (int i = 0; i < count; i++) {
+      String name = dis.readBoolean() ? dis.readUTF() : null;
+      Element e = new Element(name, dis.readInt(), dis.readInt());
+      e.endSFIndex = dis.readInt();
+      e.firstPage = dis.readInt();
+      e.nrOfPages = dis.readInt();
+      elements.add(e);
+    }
+  }
+
+  private static void writeElements(DataOutputStream dos, List<Element> elements) throws IOException {
+    dos.writeInt(elements.size());
+    for (Element e : elements) {
+      dos.writeBoolean(e.name != null);
+      if (e.name != null) {
+        dos.writeUTF(e.name);
+      }
+      dos.writeInt(e.beginSFIndex);
+      dos.writeInt(e.parentIndex);
+      dos.writeInt(e.endSFIndex);
+      dos.writeInt(e.firstPage);
+      dos.writeInt(e.nrOfPages);
+    }
+  }
+
+  /**
+   * Writes this index to the given file.
+   */
+  public void write(File indexFile) throws IOException {
+    DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile)));
+    try {
+      dos.writeInt(MAGIC);
+      dos.writeInt(VERSION);
+      dos.writeLong(afpFileSize);
+      dos.writeLong(afpFileLastModified);
+      dos.writeInt(nrOfSFs);
+      for (int i = 0; i < nrOfSFs; i++) {
+        dos.writeLong(sfOffsets[i]);
+        dos.writeInt(sfTypeIDs[i]);
+        dos.writeShort(sfLengths[i]);
+      }
+      writeElements(dos, documents);
+      writeElements(dos, pageGroups);
+      writeElements(dos, pages);
+    } finally {
+      dos.close();
+    }
+  }
+
+  private int addSF(long offset, int sfTypeID, int sfLength) {
+    if (nrOfSFs == sfOffsets.length) {
+      int newLength = sfOffsets.length * 2;
+      long[] newOffsets = new long[newLength];
+      int[] newTypeIDs = new int[newLength];
+      int[] newLengths = new int[newLength];
+      System.arraycopy(sfOffsets, 0, newOffsets, 0, nrOfSFs);
+      System.arraycopy(sfTypeIDs, 0, newTypeIDs, 0, nrOfSFs);
+      System.arraycopy(sfLengths, 0, newLengths, 0, nrOfSFs);
+      sfOffsets = newOffsets;
+      sfTypeIDs = newTypeIDs;
+      sfLengths = newLengths;
+    }
+    sfOffsets[nrOfSFs] = offset;
+    sfTypeIDs[nrOfSFs] = sfTypeID;
+    sfLengths[nrOfSFs] = sfLength;
+    return nrOfSFs++;
+  }
+
+  /**
+   * Returns the size of the indexed AFP file at the time the index was built.
+   */
+  public long getAFPFileSize() {
+    return afpFileSize;
+  }
+
+  /**
+   * Returns the modification time of the indexed AFP file at the time the index was built.
+   */
+  public long getAFPFileLastModified() {
+    return afpFileLastModified;
+  }
+
+  public int getNrOfStructuredFields() {
+    return nrOfSFs;
+  }
+
+  /**
+   * Returns the file offset of the 0x5A byte of the structured field with the given index.
+   */
+  public long getSFOffset(int sfIndex) {
+    return sfOffsets[sfIndex];
+  }
+
+  /**
+   * Returns the SF length (SFI length field) of the structured field with the given index. The
+   * structured field occupies 1 + SF length bytes in the file.
+   */
+  public int getSFLength(int sfIndex) {
+    return sfLengths[sfIndex];
+  }
+
+  public SFTypeID getSFTypeID(int sfIndex) {
+    int id = sfTypeIDs[sfIndex];
+    return SFTypeID.valueOf(id >>> 16, (id >>> 8) & 0xFF, id & 0xFF);
+  }
+
+  /**
+   * Returns the documents (BDT...EDT) of the indexed AFP file in file order.
+   */
+  public List<Element> getDocuments() {
+    return Collections.unmodifiableList(documents);
+  }
+
+  /**
+   * Returns the named page groups (BNG...ENG) of the indexed AFP file in file order.
+   */
+  public List<Element> getPageGroups() {
+    return Collections.unmodifiableList(pageGroups);
+  }
+
+  /**
+   * Returns the pages (BPG...EPG) of the indexed AFP file in file order.
+   */
+  public List<Element> getPages() {
+    return Collections.unmodifiableList(pages);
+  }
+
+  public int getNrOfPages() {
+    return pages.size();
+  }
+
+  /**
+   * Returns the page with the given zero based page number.
+   */
+  public Element getPage(int pageNr) {
+    return pages.get(pageNr);
+  }
+
+  /**
+   * Returns the first page group with the given name, or null if there is none.
+   */
+  public Element getPageGroup(String name) {
+    Integer pageGroupIndex = pageGroupsByName.get(name.trim());
+    return pageGroupIndex != null ? pageGroups.get(pageGroupIndex) : null;
+  }
+
+  /**
+   * A document, page group, or page in the {@link AFPIndex}. An element spans the structured
+   * fields from the begin SF to the end SF, both inclusive.
+   */
+  public static class Element {
+    String name;
+    int beginSFIndex;
+    int endSFIndex;
+    int parentIndex;
+    int firstPage;
+    int nrOfPages;
+
+    Element(String name, int beginSFIndex, int parentIndex) {
+      this.name = name;
+      this.beginSFIndex = beginSFIndex;
+      this.parentIndex = parentIndex;
+      this.endSFIndex = -1;
+      this.firstPage = -1;
+    }
+
+    /**
+     * Returns the name given on the begin structured field, or null.
+     */
+    public String getName() {
+      return name;
+    }
+
+    /**
+     * Returns the index of the begin structured field, see {@link AFPIndex#getSFOffset(int)}.
+     */
+    public int getBeginSFIndex() {
+      return beginSFIndex;
+    }
+
+    /**
+     * Returns the index of the end structured field, see {@link AFPIndex#getSFOffset(int)}.
+     */
+    public int getEndSFIndex() {
+      return endSFIndex;
+    }
+
+    /**
+     * Returns the index of the enclosing element, or -1. The enclosing element of a page is a page
+     * group, the enclosing element of a page group is a document.
+     */
+    public int getParentIndex() {
+      return parentIndex;
+    }
+
+    /**
+     * Returns the number of the first page contained in this element, or -1 for documents.
+     */
+    public int getFirstPage() {
+      return firstPage;
+    }
+
+    /**
+     * Returns the number of pages contained in this element. Documents don't count pages.
+     */
+    public int getNrOfPages() {
+      return nrOfPages;
+    }
+
+    @Override
+    public String toString() {
+      return "Element{name=" + name + ", SFs=" + beginSFIndex + ".." + endSFIndex + '}';
+    }
+  }
+}
@@ -0,0 +1,156 @@
+/*
+Copyright 2015 Rudolf Fiala
+
+This file is part of Alpheus AFP Parser.
+
+Alpheus AFP Parser is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Alpheus AFP Parser is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Alpheus AFP Parser.  If not, see <http://www.gnu.org/licenses/>
+*/
+package com.mgz.afp.index;
+
+import com.mgz.afp.base.StructuredField;
+import com.mgz.afp.exceptions.AFPParserException;
+import com.mgz.afp.parser.AFPParser;
+import com.mgz.afp.parser.AFPParserConfiguration;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads pages, page groups, or arbitrary ranges of structured fields from an indexed AFP file
+ * without parsing the structured fields in front of them. The byte range covered by the requested
+ * structured fields is determined by the {@link AFPIndex} and read through a {@link FileChannel}.
+ */
+public class AFPIndexReader implements Closeable {
+  private final AFPIndex index;
+  private final File afpFile;
+  private final AFPParserConfiguration parserConf;
+  private final RandomAccessFile raf;
+  private final FileChannel channel;
+
+  /**
+   * Opens the given AFP file for random access.
+   *
+   * @param index      index of the AFP file.
+   * @param afpFile    the indexed AFP file.
+   * @param parserConf configuration used to parse the structured fields read. The configuration is
+   *                   cloned for every read, input stream and AFP file of the given configuration
+   *                   are ignored.
+   */
+  public AFPIndexReader(AFPIndex index, File afpFile, AFPParserConfiguration parserConf) throws IOException {
+    this.index = index;
+    this.afpFile = afpFile;
+    this.parserConf = parserConf;
+    this.raf = new RandomAccessFile(afpFile, "r");
+    this.channel = raf.getChannel();
+  }
+
+  /**
+   * Opens the given AFP file for random access, using the index stored in the default sidecar
+   * file (see {@link AFPIndex#getDefaultIndexFile(File)}). If the sidecar file does not exist or
+   * is outdated, the AFP file is indexed and the sidecar file is (re-)written.
+   */
+  public static AFPIndexReader open(File afpFile, AFPParserConfiguration parserConf) throws AFPParserException, IOException {
+    File indexFile = AFPIndex.getDefaultIndexFile(afpFile);
+    AFPIndex index = null;
+    if (indexFile.isFile()) {
+      try {
+        index = AFPIndex.read(indexFile, afpFile);
+      } catch (AFPParserException e) {
+        index = null;
+      }
+    }
+    if (index == null) {
+      index = AFPIndex.build(afpFile, parserConf);
+      index.write(indexFile);
+    }
+    return new AFPIndexReader(index, afpFile, parserConf);
+  }
+
+  public AFPIndex getIndex() {
+    return index;
+  }
+
+  /**
+   * Returns the structured fields of the page with the given zero based page number, from BPG to
+   * EPG.
+   */
+  public List<StructuredField> readPage(int pageNr) throws AFPParserException {
+    AFPIndex.Element page = index.getPage(pageNr);
+    return readStructuredFields(page.getBeginSFIndex(), page.getEndSFIndex());
+  }
+
+  /**
+   * Returns the structured fields of the first page group with the given name, from BNG to ENG.
+   *
+   * @throws AFPParserException if there is no page group with the given name.
+   */
+  public List<StructuredField> readPageGroup(String name) throws AFPParserException {
+    AFPIndex.Element pageGroup = index.getPageGroup(name);
+    if (pageGroup == null) {
+      throw new AFPParserException("There is no page group named '" + name + "' in '" + afpFile + "'.");
+    }
+    return readStructuredFields(pageGroup.getBeginSFIndex(), pageGroup.getEndSFIndex());
+  }
+
+  /**
+   * Reads and parses the structured fields with the given indexes, both inclusive. The file offsets
+   * of the returned structured fields are the offsets in the AFP file.
+   */
+  public List<StructuredField> readStructuredFields(int fromSFIndex, int toSFIndex) throws AFPParserException {
+    long begin = index.getSFOffset(fromSFIndex);
+    long end = index.getSFOffset(toSFIndex) + 1 + index.getSFLength(toSFIndex);
+    if (end - begin > Integer.MAX_VALUE) {
+      throw new AFPParserException("Range of structured fields " + fromSFIndex + ".." + toSFIndex + " exceeds 2GB.");
+    }
+
+    ByteBuffer buffer = ByteBuffer.allocate((int) (end - begin));
+    try {
+      while (buffer.hasRemaining()) {
+        if (channel.read(buffer, begin + buffer.position()) == -1) {
+          throw new AFPParserException("Reached end of file '" + afpFile + "' before end of indexed structured fields, the index is outdated.");
+        }
+      }
+    } catch (IOException e) {
+      throw new AFPParserException("Failed to read structured fields from '" + afpFile + "'.", e);
+    }
+
+    AFPParserConfiguration conf = parserConf.clone();
+    conf.setMemoryMapped(false);
+    conf.setAFPFile(afpFile);
+    conf.setInputStream(new ByteArrayInputStream(buffer.array()));
+
+    List<StructuredField> sfs = new ArrayList<StructuredField>(toSFIndex - fromSFIndex + 1);
+    AFPParser parser = new AFPParser(conf);
+    StructuredField sf;
+    while ((sf = parser.parseNextSF()) != null) {
+      sf.getStructuredFieldIntroducer().setFileOffset(begin + sf.getStructuredFieldIntroducer().getFileOffset());
+      sfs.add(sf);
+    }
+    parser.quitParsing();
+    return sfs;
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+    raf.close();
+  }
+}
@@ -0,0 +1,333 @@
+/*
+Copyright 2015 Rudolf Fiala
+
+This file is part of Alpheus AFP Parser.
+
+Alpheus AFP Parser is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Alpheus AFP Parser is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Alpheus AFP Parser.  If not, see <http://www.gnu.org/licenses/>
+*/
+package com.mgz.afp.ioca;
+
+import com.mgz.afp.base.StructuredFieldIntroducerView;
+import com.mgz.afp.enums.SFTypeID;
+import com.mgz.afp.exceptions.AFPParserException;
+import com.mgz.afp.ioca.IPD_Segment.IDESize;
+import com.mgz.afp.ioca.IPD_Segment.IPD_SegmentType;
+import com.mgz.afp.ioca.IPD_Segment.ImageEncoding;
+import com.mgz.afp.ioca.IPD_Segment.ImageSize;
+import com.mgz.afp.parser.AFPParser;
+import com.mgz.afp.parser.AFPParserConfiguration;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Streams the image data of an IOCA image object, i.e. the content of all {@link
+ * IPD_Segment.ImageData} and {@link IPD_Segment.BandImageData} segments of the IPD structured
+ * fields up to the next EIM, as one contiguous {@link InputStream} or {@link ReadableByteChannel}.
+ * <br><br>
+ * <p>
+ * The IPD fields are obtained by {@link AFPParser#scanNextSFWithPayload()}, so they are neither
+ * built nor copied: image data is read directly from the parser's scan buffer, or from the mapped
+ * file if the parser is memory mapped. IPD segments may span IPD boundaries. The {@link ImageSize},
+ * {@link ImageEncoding}, and {@link IDESize} segments are decoded when they are passed and are
+ * available by their getters; all other segments are skipped. Memory use is independent of the
+ * size of the image.<br><br>
+ * <p>
+ * Create the stream after BIM has been parsed. Other structured fields before EIM are skipped.
+ * Closing the stream does not close the parser. Instances are not thread safe.
+ */
+public class IOCA_ImageDataInputStream extends InputStream implements ReadableByteChannel {
+  private static final int TYPE_ImageData = IPD_SegmentType.ImageData.type;
+  private static final int TYPE_BandImageData = IPD_SegmentType.BandImageData.type;
+  private static final int BANDIMAGEDATA_HEADER_LENGTH = 7;
+
+  private final AFPParser parser;
+  private final AFPParserConfiguration config;
+  /**
+   * Holds a segment introducer, or a complete long segment, while it is collected from the IPDs.
+   */
+  private final byte[] segment = new byte[2 + 0xFF];
+  private int segmentLength;
+  private ByteBuffer payload;
+  private int dataRemaining;
+  private int skipRemaining;
+  private boolean isEndOfImage;
+  private boolean isClosed;
+  private ImageSize imageSize;
+  private ImageEncoding imageEncoding;
+  private IDESize ideSize;
+  private int bandNumber = -1;
+  private int nrOfImagePictureData;
+
+  /**
+   * Constructor.
+   *
+   * @param parser parser positioned behind the BIM of the image object.
+   * @param config configuration used to decode the {@link ImageSize}, {@link ImageEncoding}, and
+   *               {@link IDESize} segments.
+   */
+  public IOCA_ImageDataInputStream(AFPParser parser, AFPParserConfiguration config) {
+    this.parser = parser;
+    this.config = config;
+  }
+
+  @Override
+  public int read() throws IOException {
+    ensureOpen();
+    if (!nextImageData(true)) {
+      return -1;
+    }
+    dataRemaining--;
+    return payload.get() & 0xFF;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    ensureOpen();
+    if (off < 0 || len < 0 || len > b.length - off) {
+      throw new IndexOutOfBoundsException();
+    }
+    if (len == 0) {
+      return 0;
+    }
+    int read = 0;
+    while (read < len && nextImageData(read == 0)) {
+      int n = Math.min(len - read, Math.min(dataRemaining, payload.remaining()));
+      payload.get(b, off + read, n);
+      dataRemaining -= n;
+      read += n;
+    }
+    return read == 0 ? -1 : read;
+  }
+
+  @Override
+  public int read(ByteBuffer dst) throws IOException {
+    ensureOpen();
+    int read = 0;
+    while (dst.hasRemaining() && nextImageData(read == 0)) {
+      int n = Math.min(dst.remaining(), Math.min(dataRemaining, payload.remaining()));
+      int limit = payload.limit();
+      payload.limit(payload.position() + n);
+      dst.put(payload);
+      payload.limit(limit);
+      dataRemaining -= n;
+      read += n;
+    }
+    return read == 0 && dst.hasRemaining() ? -1 : read;
+  }
+
+  @Override
+  public long skip(long n) throws IOException {
+    ensureOpen();
+    long skipped = 0;
+    while (skipped < n && nextImageData(true)) {
+      int len = (int) Math.min(n - skipped, Math.min(dataRemaining, payload.remaining()));
+      payload.position(payload.position() + len);
+      dataRemaining -= len;
+      skipped += len;
+    }
+    return skipped;
+  }
+
+  /**
+   * Returns the number of image data bytes that can be read without scanning the next IPD.
+   */
+  @Override
+  public int available() throws IOException {
+    ensureOpen();
+    return payload != null ? Math.min(dataRemaining, payload.remaining()) : 0;
+  }
+
+  @Override
+  public boolean isOpen() {
+    return !isClosed;
+  }
+
+  @Override
+  public void close() {
+    isClosed = true;
+    payload = null;
+  }
+
+  /**
+   * Returns true if the EIM, or the end of the AFP data, has been reached.
+   */
+  public boolean isEndOfImage() {
+    return isEndOfImage;
+  }
+
+  /**
+   * Returns the last {@link ImageSize} segment passed, or null.
+   */
+  public ImageSize getImageSize() {
+    return imageSize;
+  }
+
+  /**
+   * Returns the last {@link ImageEncoding} segment passed, or null.
+   */
+  public ImageEncoding getImageEncoding() {
+    return imageEncoding;
+  }
+
+  /**
+   * Returns the last {@link IDESize} segment passed, or null.
+   */
+  public IDESize getIDESize() {
+    return ideSize;
+  }
+
+  /**
+   * Returns the band number of the {@link IPD_Segment.BandImageData} segment currently read, or -1
+   * if the image is not banded.
+   */
+  public int getBandNumber() {
+    return bandNumber;
+  }
+
+  /**
+   * Returns the number of IPD structured fields scanned so far.
+   */
+  public int getNrOfImagePictureData() {
+    return nrOfImagePictureData;
+  }
+
+  private void ensureOpen() throws IOException {
+    if (isClosed) {
+      throw new ClosedChannelException();
+    }
+  }
+
+  /**
+   * Moves to the next image data byte, passing segment introducers and skipped segments. Returns
+   * false if the end of the image is reached, or if the current IPD is exhausted and the next IPD
+   * may not be scanned. Reads return what they have got at an IPD boundary, so an incomplete
+   * image is reported by the following read.
+   */
+  private boolean nextImageData(boolean mayScan) throws IOException {
+    while (true) {
+      if (payload == null || !payload.hasRemaining()) {
+        if (!mayScan) {
+          return false;
+        } else if (!nextImagePictureData()) {
+          if (dataRemaining > 0 || skipRemaining > 0 || segmentLength > 0) {
+            throw new EOFException("The image data ends within an IPD segment.");
+          }
+          return false;
+        }
+      } else if (dataRemaining > 0) {
+        return true;
+      } else if (skipRemaining > 0) {
+        int n = Math.min(skipRemaining, payload.remaining());
+        payload.position(payload.position() + n);
+        skipRemaining -= n;
+      } else {
+        readSegment();
+      }
+    }
+  }
+
+  private boolean nextImagePictureData() throws IOException {
+    payload = null;
+    while (!isEndOfImage) {
+      StructuredFieldIntroducerView sfi;
+      try {
+        sfi = parser.scanNextSFWithPayload();
+      } catch (AFPParserException e) {
+        throw new IOException(e.getMessage(), e);
+      }
+      if (sfi == null || sfi.getSFTypeID() == SFTypeID.EIM_EndImageObject) {
+        isEndOfImage = true;
+      } else if (sfi.getSFTypeID() == SFTypeID.IPD_ImagePictureData) {
+        payload = parser.getScannedPayload();
+        nrOfImagePictureData++;
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Collects the next segment introducer from the payload, possibly over several calls, and sets
+   * up the image data or skip counters for the segment.
+   */
+  private void readSegment() throws IOException {
+    if (!collect(1)) {
+      return;
+    }
+    boolean isExtended = (segment[0] & 0xFF) == 0xFE;
+    if (!collect(isExtended ? 4 : 2)) {
+      return;
+    }
+
+    if (isExtended) {
+      int type = ((segment[0] & 0xFF) << 8) | (segment[1] & 0xFF);
+      int lengthOfFollowingData = ((segment[2] & 0xFF) << 8) | (segment[3] & 0xFF);
+      if (type == TYPE_ImageData) {
+        dataRemaining = lengthOfFollowingData;
+      } else if (type == TYPE_BandImageData) {
+        if (!collect(Math.min(BANDIMAGEDATA_HEADER_LENGTH, 4 + lengthOfFollowingData))) {
+          return;
+        }
+        bandNumber = lengthOfFollowingData > 0 ? segment[4] & 0xFF : 0;
+        dataRemaining = Math.max(0, lengthOfFollowingData - 3);
+      } else {
+        skipRemaining = lengthOfFollowingData;
+      }
+    } else {
+      int length = 2 + (segment[1] & 0xFF);
+      if (!collect(length)) {
+        return;
+      }
+      decodeLongSegment(segment[0] & 0xFF, length);
+    }
+    segmentLength = 0;
+  }
+
+  private void decodeLongSegment(int type, int length) throws IOException {
+    try {
+      if (type == IPD_SegmentType.ImageSize.type) {
+        imageSize = new ImageSize();
+        imageSize.decodeAFP(segment, 0, length, config);
+      } else if (type == IPD_SegmentType.ImageEncoding.type) {
+        imageEncoding = new ImageEncoding();
+        imageEncoding.decodeAFP(segment, 0, length, config);
+      } else if (type == IPD_SegmentType.IDESize.type) {
+        ideSize = new IDESize();
+        ideSize.decodeAFP(segment, 0, length, config);
+      }
+    } catch (AFPParserException e) {
+      throw new IOException(e.getMessage(), e);
+    } catch (IndexOutOfBoundsException e) {
+      throw new IOException("The IPD segment 0x" + Integer.toHexString(type) + " is too short.", e);
+    }
+  }
+
+  /**
+   * Copies bytes from the payload into {@link #segment} until it holds the given number of bytes.
+   * Returns false if the payload is exhausted before.
+   */
+  private boolean collect(int length) {
+    int n = Math.min(length - segmentLength, payload.remaining());
+    if (n > 0) {
+      payload.get(segment, segmentLength, n);
+      segmentLength += n;
+    }
+    return segmentLength >= length;
+  }
+}
@@ -371,6 +371,46 @@ abstract class IPD_Segment implements IAFPDecodeableWriteable {
       os.write(UtilBinaryDecoding.shortToByteArray(xImageSize, 2));
       os.write(UtilBinaryDecoding.shortToByteArray(yImageSize, 2));
     }
+
+    public AFPUnitBase getUnitBase() {
+      return unitBase;
+    }
+
+    public void setUnitBase(AFPUnitBase unitBase) {
+      this.unitBase = unitBase;
+    }
+
+    public short getXUnitsPerUnitBase() {
+      return xUnitsPerUnitBase;
+    }
+
+    public void setXUnitsPerUnitBase(short xUnitsPerUnitBase) {
+      this.xUnitsPerUnitBase = xUnitsPerUnitBase;
+    }
+
+    public short getYUnitsPerUnitBase() {
+      return yUnitsPerUnitBase;
+    }
+
+    public void setYUnitsPerUnitBase(short yUnitsPerUnitBase) {
+      this.yUnitsPerUnitBase = yUnitsPerUnitBase;
+    }
+
+    public short getXImageSize() {
+      return xImageSize;
+    }
+
+    public void setXImageSize(short xImageSize) {
+      this.xImageSize = xImageSize;
+    }
+
+    public short getYImageSize() {
+      return yImageSize;
+    }
+
+    public void setYImageSize(short yImageSize) {
+      this.yImageSize = yImageSize;
+    }
   }
 
   public static class ImageEncoding extends IPD_Segment.IPD_SegmentLong {
@@ -405,6 +445,30 @@ abstract class IPD_Segment implements IAFPDecodeableWriteable {
         os.write(bitOrder.toByte());
       }
     }
+
+    public IPD_Segment.IPD_CompressionAlgorithm getCompressionAlgorithm() {
+      return compressionAlgorithm;
+    }
+
+    public void setCompressionAlgorithm(IPD_Segment.IPD_CompressionAlgorithm compressionAlgorithm) {
+      this.compressionAlgorithm = compressionAlgorithm;
+    }
+
+    public IPD_Segment.IPD_RecordingAlgorithm getRecordingAlgorithm() {
+      return recordingAlgorithm;
+    }
+
+    public void setRecordingAlgorithm(IPD_Segment.IPD_RecordingAlgorithm recordingAlgorithm) {
+      this.recordingAlgorithm = recordingAlgorithm;
+    }
+
+    public IPD_Segment.IPD_BitOrder getBitOrder() {
+      return bitOrder;
+    }
+
+    public void setBitOrder(IPD_Segment.IPD_BitOrder bitOrder) {
+      this.bitOrder = bitOrder;
+    }
   }
 
   public static class IDESize extends IPD_Segment.IPD_SegmentLong {
@@ -424,6 +488,14 @@ abstract class IPD_Segment implements IAFPDecodeableWriteable {
       os.write(UtilBinaryDecoding.intToByteArray(lengthOfFollowingData, 1));
       os.write(UtilBinaryDecoding.shortToByteArray(numberOfBitsInEachIDE, 1));
     }
+
+    public short getNumberOfBitsInEachIDE() {
+      return numberOfBitsInEachIDE;
+    }
+
+    public void setNumberOfBitsInEachIDE(short numberOfBitsInEachIDE) {
+      this.numberOfBitsInEachIDE = numberOfBitsInEachIDE;
+    }
   }
 
   public static class BandImage extends IPD_Segment.IPD_SegmentLong {
@@ -22,7 +22,7 @@ import com.mgz.afp.base.IHasName;
 import com.mgz.afp.base.StructuredFieldBaseTriplets;
 import com.mgz.afp.exceptions.AFPParserException;
 import com.mgz.afp.parser.AFPParserConfiguration;
-import com.mgz.afp.triplets.Triplet;
+import com.mgz.afp.parser.TripletParser;
 import com.mgz.util.Constants;
 import com.mgz.util.UtilCharacterEncoding;
 
@@ -63,11 +63,7 @@ public class BDM_BeginDataMap extends StructuredFieldBaseTriplets implements IHa
     baos.write(UtilCharacterEncoding.stringToByteArray(name, config.getAfpCharSet(), 8, Constants.EBCDIC_ID_FILLER));
     if (dataFormat != null) {
       baos.write(dataFormat.toByte());
-      if (triplets != null) {
-        for (Triplet t : triplets) {
-          t.writeAFP(baos, config);
-        }
-      }
+      TripletParser.writeTriplets(triplets, baos, config);
     }
 
     writeFullStructuredField(os, baos.toByteArray());
@@ -25,7 +25,7 @@ import com.mgz.afp.enums.IMutualExclusiveGroupedFlag;
 import com.mgz.afp.enums.MutualExclusiveGroupedFlagHandler;
 import com.mgz.afp.exceptions.AFPParserException;
 import com.mgz.afp.parser.AFPParserConfiguration;
-import com.mgz.afp.triplets.Triplet;
+import com.mgz.afp.parser.TripletParser;
 import com.mgz.util.Constants;
 import com.mgz.util.UtilBinaryDecoding;
 import com.mgz.util.UtilCharacterEncoding;
@@ -115,11 +115,7 @@ public class LND_LineDescriptor extends StructuredFieldBaseTriplets {
     baos.write(subpageID);
     baos.write(UtilBinaryDecoding.intToByteArray(ccpIdentifier, 2));
 
-    if (triplets != null) {
-      for (Triplet t : triplets) {
-        t.writeAFP(baos, config);
-      }
-    }
+    TripletParser.writeTriplets(triplets, baos, config);
 
     writeFullStructuredField(os, baos.toByteArray());
   }
@@ -0,0 +1,1182 @@
+/*
+Copyright 2015 Rudolf Fiala
+
+This file is part of Alpheus AFP Parser.
+
+Alpheus AFP Parser is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Alpheus AFP Parser is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Alpheus AFP Parser.  If not, see <http://www.gnu.org/licenses/>
+*/
+package com.mgz.afp.lineData;
+
+import com.mgz.afp.base.StructuredField;
+import com.mgz.afp.base.StructuredFieldIntroducerView;
+import com.mgz.afp.enums.AFPColorValue;
+import com.mgz.afp.enums.AFPOrientation;
+import com.mgz.afp.enums.SFTypeID;
+import com.mgz.afp.exceptions.AFPParserException;
+import com.mgz.afp.lineData.CCP_ConditionalProcessingControl.CCP_RepeatingGroup;
+import com.mgz.afp.lineData.CCP_ConditionalProcessingControl.CCP_RepeatingGroup.CCP_Comparison;
+import com.mgz.afp.lineData.CCP_ConditionalProcessingControl.CCP_RepeatingGroup.CCP_DataMapAction;
+import com.mgz.afp.lineData.CCP_ConditionalProcessingControl.CCP_RepeatingGroup.CCP_MediumMapAction;
+import com.mgz.afp.lineData.CCP_ConditionalProcessingControl.CCP_RepeatingGroup.CCP_TimingOfAction;
+import com.mgz.afp.lineData.LND_LineDescriptor.LND_Flag;
+import com.mgz.afp.lineData.RCD_RecordDescriptor.RCD_Flag;
+import com.mgz.afp.modca.MCF_MapCodedFont_Format1;
+import com.mgz.afp.modca.MCF_MapCodedFont_Format2;
+import com.mgz.afp.modca.PGD_PageDescriptor;
+import com.mgz.afp.parser.AFPParserConfiguration;
+import com.mgz.afp.parser.LineDataRecordReader;
+import com.mgz.afp.ptoca.PTD_PresentationTextDataDescriptor_Format1;
+import com.mgz.afp.ptoca.PTD_PresentationTextDataDescriptor_Format2;
+import com.mgz.afp.ptoca.controlSequence.PTOCAControlSequence.ControlSequenceFunctionType;
+import com.mgz.util.Constants;
+import com.mgz.util.UtilCharacterEncoding;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Formats traditional line data into AFP pages, driven by the data maps of a page definition. The
+ * records, framed by a {@link LineDataRecordReader}, are placed on the lines described by the
+ * {@link LND_LineDescriptor}s of the active data map, and every page is written as BPG, an active
+ * environment group with the PGD, PTD and MCF of the data map, a presentation text object (BPT,
+ * PTX, EPT), and EPG.<br> <br> The carriage control of a record moves the current LND: spacing
+ * follows the "next LND if spacing" chain, a skip to a channel follows the "next LND if skipping"
+ * chain to the LND of that channel. Leaving an LND whose spacing or skipping flag ends the page, or
+ * a chain pointer of 0, begins a new page at the first LND. A record is presented by the LND
+ * reached, and again by the "next LND if reusing data" chain while the reuse flag is set; an LND
+ * may present fixed data (FDS, FDX) instead of record data. The first record of a page is
+ * presented by the first LND, or by the first LND of the channel it skips to.<br> <br> LNDs with
+ * the conditional processing flag test their field of the record against the {@link
+ * CCP_ConditionalProcessingControl} of their CCP ID, following the "next LND if conditional
+ * processing" and the next CCP ID chains. The first matching repeating group of a CCP applies its
+ * actions before or after the record: a page eject, the invocation of a data map, which begins a
+ * new page, or of a medium map, which writes an IMM before the next page. Medium maps are not
+ * resolved, the first and next medium map are a page eject.<br> <br> In mixed mode an IDM record
+ * invokes a data map, an IMM record ejects the page and is written before the next page, other
+ * structured fields are written on the current page, or between pages.<br> <br> A data map of
+ * {@link RCD_RecordDescriptor}s formats record format line data: every record begins with a record
+ * ID of 10 bytes and is formatted by the record RCD of that ID; field positions count from the
+ * beginning of the record, including the ID. A page header or page trailer record is kept and
+ * presented at the top or bottom of every following page of the data map, a group header with the
+ * save flag after the page header of every following page. A body or group header record begins a
+ * new page if the RCD has the new page flag set, or if its baseline would leave less than the end
+ * space of the RCD to the depth of the PGD. The record is presented by the record RCD, or by the
+ * chain of field RCDs it points to, each presenting fixed data, a delimited field of the given
+ * number, or the data from its start position. The conditional processing of RCDs is performed as
+ * for LNDs.<br> <br> Formatting is
+ * sequential: where a page ends and which data map and LND a record is placed by depends on all
+ * preceding records, so the pages of one input are laid out and written in one pass on the calling
+ * thread. A page is written as soon as it ends. The page definition is read once by the
+ * constructor and not changed by formatting, so one formatter may be used by several threads to
+ * format separate inputs concurrently. XML line data is not supported: the page definition is
+ * rejected if a data map has {@link XMD_XMLDescriptor}s.
+ */
+public class LineDataFormatter {
+  /**
+   * Maximum length of the payload of a PTX written by the formatter.
+   */
+  public static final int MAX_PTX_PAYLOAD = 0x7FFF - 8;
+
+  private static final int AMI = ControlSequenceFunctionType.AMI_AbsoluteMoveInline.toByte(false);
+  private static final int AMB = ControlSequenceFunctionType.AMB_AbsoluteMoveBaseline.toByte(false);
+  private static final int STO = ControlSequenceFunctionType.STO_SetTextOrientation.toByte(false);
+  private static final int SCFL = ControlSequenceFunctionType.SCFL_SetCodedFontLocal.toByte(false);
+  private static final int STC = ControlSequenceFunctionType.STC_SetTextColor.toByte(false);
+  private static final int TRN = ControlSequenceFunctionType.TRN_TransparentData.toByte(false);
+  private static final int MAX_TRN_LENGTH = 253;
+  private static final int RECORD_ID_LENGTH = 10;
+
+  private static final int ACTION_NONE = 0;
+  private static final int ACTION_SPACE = 1;
+  private static final int ACTION_SKIP = 2;
+
+  /**
+   * The kind of the carriage control byte of the records.
+   */
+  public enum CarriageControlType {
+    /**
+     * ANSI carriage control in EBCDIC: ' ', '0', '-', '+' space 1, 2, 3, and 0 lines, '1' to '9'
+     * and 'A' to 'C' skip to channel 1 to 12, before the record is printed.
+     */
+    ANSI_EBCDIC,
+    /**
+     * ANSI carriage control in ASCII.
+     */
+    ANSI_ASCII,
+    /**
+     * Machine carriage control: the space or skip is performed after the record is printed; the
+     * immediate codes (bit 0x02 set) perform it without printing the record.
+     */
+    Machine
+  }
+
+  private final AFPParserConfiguration config;
+  private final List<DataMap> dataMaps = new ArrayList<DataMap>();
+  private final Map<Integer, CCP_ConditionalProcessingControl> ccps = new HashMap<Integer, CCP_ConditionalProcessingControl>();
+  private final Map<Integer, byte[]> ccpComparisonStrings = new HashMap<Integer, byte[]>();
+  private volatile CarriageControlType carriageControlType = CarriageControlType.ANSI_EBCDIC;
+  private final AtomicLong nrOfPages = new AtomicLong();
+  private final AtomicLong nrOfRecords = new AtomicLong();
+
+  /**
+   * @param pageDefinition the structured fields of a page definition, BPM to EPM.
+   * @throws AFPParserException if the page definition has no data map, or a data map has XMDs, no
+   *                            LND or RCD, or both.
+   */
+  public LineDataFormatter(List<? extends StructuredField> pageDefinition, AFPParserConfiguration config) throws AFPParserException {
+    this.config = config;
+    try {
+      readPageDefinition(pageDefinition);
+    } catch (IOException e) {
+      throw new AFPParserException("Failed to serialize the environment of a data map.", e);
+    }
+    if (dataMaps.isEmpty()) {
+      throw new AFPParserException("The page definition has no " + BDM_BeginDataMap.class.getSimpleName() + ".");
+    }
+  }
+
+  private void readPageDefinition(List<? extends StructuredField> pageDefinition) throws IOException, AFPParserException {
+    DataMap dm = null;
+    ByteArrayOutputStream environment = null;
+    ByteArrayOutputStream fixedData = null;
+    List<LND_LineDescriptor> lnds = null;
+    List<RCD_RecordDescriptor> rcds = null;
+    boolean hasXMLDescriptors = false;
+    for (StructuredField sf : pageDefinition) {
+      if (sf instanceof CCP_ConditionalProcessingControl) {
+        CCP_ConditionalProcessingControl ccp = (CCP_ConditionalProcessingControl) sf;
+        ccps.put(ccp.getCcpIdentifier(), ccp);
+      } else if (sf instanceof BDM_BeginDataMap) {
+        dm = new DataMap(trimName(((BDM_BeginDataMap) sf).getName()));
+        environment = new ByteArrayOutputStream();
+        fixedData = new ByteArrayOutputStream();
+        lnds = new ArrayList<LND_LineDescriptor>();
+        rcds = new ArrayList<RCD_RecordDescriptor>();
+        hasXMLDescriptors = false;
+      } else if (dm == null) {
+        continue;
+      } else if (sf instanceof PGD_PageDescriptor) {
+        dm.pageDepth = ((PGD_PageDescriptor) sf).getySize();
+        sf.writeAFP(environment, config);
+      } else if (sf instanceof PTD_PresentationTextDataDescriptor_Format1 || sf instanceof PTD_PresentationTextDataDescriptor_Format2
+          || sf instanceof MCF_MapCodedFont_Format1 || sf instanceof MCF_MapCodedFont_Format2) {
+        sf.writeAFP(environment, config);
+      } else if (sf instanceof LND_LineDescriptor) {
+        lnds.add((LND_LineDescriptor) sf);
+      } else if (sf instanceof RCD_RecordDescriptor) {
+        rcds.add((RCD_RecordDescriptor) sf);
+      } else if (sf instanceof XMD_XMLDescriptor) {
+        hasXMLDescriptors = true;
+      } else if (sf instanceof FDX_FixedDataText) {
+        String text = ((FDX_FixedDataText) sf).getText();
+        if (text != null) {
+          fixedData.write(text.getBytes(config.getAfpCharSet()));
+        }
+      } else if (sf instanceof EDM_EndDataMap) {
+        if (hasXMLDescriptors) {
+          throw new AFPParserException("The data map " + dm.name + " uses " + XMD_XMLDescriptor.class.getSimpleName() + "s, XML line data is not supported.");
+        }
+        if (lnds.isEmpty() == rcds.isEmpty()) {
+          throw new AFPParserException("The data map " + dm.name + (lnds.isEmpty() ? " has no " : " mixes ") + LND_LineDescriptor.class.getSimpleName()
+              + (lnds.isEmpty() ? " or " : " and ") + RCD_RecordDescriptor.class.getSimpleName() + ".");
+        }
+        dm.environment = environment.toByteArray();
+        dm.fixedData = fixedData.toByteArray();
+        if (!lnds.isEmpty()) {
+          dm.lnds = lnds.toArray(new LND_LineDescriptor[lnds.size()]);
+          dm.lndFormats = new FieldFormat[lnds.size()];
+          for (int i = 0; i < lnds.size(); i++) {
+            dm.lndFormats[i] = FieldFormat.of(lnds.get(i));
+          }
+        } else {
+          dm.rcds = rcds.toArray(new RCD_RecordDescriptor[rcds.size()]);
+          dm.rcdFormats = new FieldFormat[rcds.size()];
+          dm.recordIDs = new byte[rcds.size()][];
+          for (int i = 0; i < rcds.size(); i++) {
+            dm.rcdFormats[i] = FieldFormat.of(rcds.get(i));
+            dm.recordIDs[i] = UtilCharacterEncoding.stringToByteArray(rcds.get(i).getRecordDescriptorID(), config.getAfpCharSet(), RECORD_ID_LENGTH, Constants.EBCDIC_ID_FILLER);
+          }
+        }
+        dataMaps.add(dm);
+        dm = null;
+      }
+    }
+    for (CCP_ConditionalProcessingControl ccp : ccps.values()) {
+      List<CCP_RepeatingGroup> rgs = ccp.getRepeatingGroups();
+      if (rgs == null) {
+        continue;
+      }
+      for (int i = 0; i < rgs.size(); i++) {
+        String comparisonString = rgs.get(i).getComparisonString();
+        if (comparisonString != null) {
+          ccpComparisonStrings.put(ccpKey(ccp.getCcpIdentifier(), i), comparisonString.getBytes(config.getAfpCharSet()));
+        }
+      }
+    }
+  }
+
+  private static int ccpKey(int ccpIdentifier, int repeatingGroupIndex) {
+    return (ccpIdentifier << 16) | repeatingGroupIndex;
+  }
+
+  private static String trimName(String name) {
+    if (name == null) {
+      return null;
+    }
+    int end = name.length();
+    while (end > 0 && (name.charAt(end - 1) == ' ' || name.charAt(end - 1) == 0)) {
+      end--;
+    }
+    return name.substring(0, end);
+  }
+
+  public CarriageControlType getCarriageControlType() {
+    return carriageControlType;
+  }
+
+  /**
+   * Sets the kind of carriage control of records that have a carriage control byte, see {@link
+   * LineDataRecordReader#setCarriageControl(boolean)}. Default is {@link
+   * CarriageControlType#ANSI_EBCDIC}. Records without carriage control space one line.
+   */
+  public void setCarriageControlType(CarriageControlType carriageControlType) {
+    this.carriageControlType = carriageControlType;
+  }
+
+  /**
+   * Formats all records of the given reader, beginning with the first data map of the page
+   * definition, and writes the pages to the given stream. The pages are not enclosed in a document
+   * (BDT, EDT). The pages of every call are named by their number, beginning with 1.
+   */
+  public void format(LineDataRecordReader reader, OutputStream os) throws AFPParserException, IOException {
+    new Layout(os, carriageControlType).format(reader);
+  }
+
+  private DataMap getDataMap(String name) throws AFPParserException {
+    for (DataMap dm : dataMaps) {
+      if (dm.name.equals(name)) {
+        return dm;
+      }
+    }
+    throw new AFPParserException("The page definition has no data map " + name + ".");
+  }
+
+  private static boolean matches(CCP_Comparison comparison, byte[] field, byte[] previous, byte[] comparisonString) {
+    if (comparison == null || comparison == CCP_Comparison.TakeTheActionWithoutComparison) {
+      return true;
+    }
+    if (comparison == CCP_Comparison.AnyChange) {
+      return previous != null && !Arrays.equals(previous, field);
+    }
+    int result = compare(field, comparisonString != null ? comparisonString : new byte[0]);
+    switch (comparison) {
+      case EqualTo:
+        return result == 0;
+      case LessThan:
+        return result < 0;
+      case EqualToOrLessThan:
+        return result <= 0;
+      case GreaterThan:
+        return result > 0;
+      case EqualToOrGreaterThan:
+        return result >= 0;
+      case NotEqual:
+        return result != 0;
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * Compares unsigned, the shorter array padded with blanks (0x40).
+   */
+  private static int compare(byte[] a, byte[] b) {
+    for (int i = 0, n = Math.max(a.length, b.length); i < n; i++) {
+      int ai = i < a.length ? a[i] & 0xFF : 0x40;
+      int bi = i < b.length ? b[i] & 0xFF : 0x40;
+      if (ai != bi) {
+        return ai - bi;
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Returns the number of pages formatted by this formatter.
+   */
+  public long getNrOfPages() {
+    return nrOfPages.get();
+  }
+
+  /**
+   * Returns the number of records read by this formatter, including structured fields.
+   */
+  public long getNrOfRecords() {
+    return nrOfRecords.get();
+  }
+
+  private static void copy(LineDataRecordReader reader, int start, byte[] dest, int destOffset, int length) {
+    if (length <= 0) {
+      return;
+    }
+    if (reader.getData() != null) {
+      System.arraycopy(reader.getData(), reader.getDataOffset() + start, dest, destOffset, length);
+    } else {
+      for (int i = 0; i < length; i++) {
+        dest[destOffset + i] = reader.getBuffer().get(reader.getDataOffset() + start + i);
+      }
+    }
+  }
+
+  static void writeStructuredField(OutputStream os, SFTypeID sfTypeID, byte[] payload, int offset, int length) throws IOException {
+    int sfLength = 8 + length;
+    os.write(Constants.AFPBeginByte_0xA5);
+    os.write(sfLength >> 8);
+    os.write(sfLength);
+    byte[] typeCode = sfTypeID.toBytes();
+    os.write(typeCode, 0, typeCode.length);
+    os.write(0x00);
+    os.write(0x00);
+    os.write(0x00);
+    if (length > 0) {
+      os.write(payload, offset, length);
+    }
+  }
+
+  private static int indexOfDelimiter(byte[] data, int from, int to, int delimiter, int delimiterSize) {
+    for (int i = from; i + delimiterSize <= to; i++) {
+      int value = delimiterSize == 1 ? data[i] & 0xFF : (data[i] & 0xFF) << 8 | data[i + 1] & 0xFF;
+      if (value == (delimiter & (delimiterSize == 1 ? 0xFF : 0xFFFF))) {
+        return i;
+      }
+    }
+    return to;
+  }
+
+  /**
+   * A data map of the page definition, either of traditional line data (LNDs) or of record format
+   * line data (RCDs).
+   */
+  private static final class DataMap {
+    final String name;
+    byte[] environment;
+    byte[] fixedData;
+    int pageDepth;
+    LND_LineDescriptor[] lnds;
+    FieldFormat[] lndFormats;
+    RCD_RecordDescriptor[] rcds;
+    FieldFormat[] rcdFormats;
+    byte[][] recordIDs;
+
+    DataMap(String name) {
+      this.name = name;
+    }
+  }
+
+  /**
+   * How an LND or RCD presents its field: position, font, color, and orientation, read from the
+   * descriptor once.
+   */
+  private static final class FieldFormat {
+    final boolean isNewBaseline;
+    final boolean isRelativeBaseline;
+    final int baselinePosition;
+    final boolean isNewInline;
+    final int inlinePosition;
+    final boolean isFontAsSpecified;
+    final int fontLocalID;
+    final AFPColorValue color;
+    final AFPOrientation inlineOrientation;
+    final AFPOrientation baselineOrientation;
+
+    private FieldFormat(boolean isNewBaseline, boolean isRelativeBaseline, int baselinePosition, boolean isNewInline, int inlinePosition, boolean isFontAsSpecified, int fontLocalID,
+                        AFPColorValue color, AFPOrientation inlineOrientation, AFPOrientation baselineOrientation) {
+      this.isNewBaseline = isNewBaseline;
+      this.isRelativeBaseline = isRelativeBaseline;
+      this.baselinePosition = baselinePosition;
+      this.isNewInline = isNewInline;
+      this.inlinePosition = inlinePosition;
+      this.isFontAsSpecified = isFontAsSpecified;
+      this.fontLocalID = fontLocalID;
+      this.color = color;
+      boolean hasOrientation = inlineOrientation != null && baselineOrientation != null && inlineOrientation != AFPOrientation.AsDefined;
+      this.inlineOrientation = hasOrientation ? inlineOrientation : null;
+      this.baselineOrientation = hasOrientation ? baselineOrientation : null;
+    }
+
+    static FieldFormat of(LND_LineDescriptor lnd) {
+      EnumSet<LND_Flag> flags = lnd.getFlags();
+      return new FieldFormat(flags.contains(LND_Flag.GenerateBaselinePosition_NewPosition), flags.contains(LND_Flag.RelativeBaselinePosition_RelativePosition), lnd.getBaselinePosition(),
+          flags.contains(LND_Flag.GenerateInlinePosition_NewPosition), lnd.getInlinePosition(), flags.contains(LND_Flag.GenerateFontChange_AsSpecified), lnd.getPrimaryFontLocalId(),
+          flags.contains(LND_Flag.SetTextColor_AsSpecified) ? lnd.getTextColor() : null, lnd.getInlineOrientation(), lnd.getBaselineOrientation());
+    }
+
+    static FieldFormat of(RCD_RecordDescriptor rcd) {
+      EnumSet<RCD_Flag> flags = rcd.getFlags();
+      return new FieldFormat(flags.contains(RCD_Flag.GenerateBaselinePosition_NewPosition), flags.contains(RCD_Flag.RelativeBaselinePosition_RelativePosition), rcd.getBaselinePosition(),
+          flags.contains(RCD_Flag.GenerateInlinePosition_NewPosition), rcd.getInlinePosition(), flags.contains(RCD_Flag.GenerateFontChange_AsSpecified), rcd.getPrimaryFontLocalId(),
+          null, rcd.getInlineOrientation(), rcd.getBaselineOrientation());
+    }
+  }
+
+  /**
+   * A page header, page trailer, or group header record, kept to be presented on following pages.
+   */
+  private static final class SavedRecord {
+    final int rcdIndex;
+    final int trc;
+    final byte[] data;
+
+    SavedRecord(int rcdIndex, int trc, byte[] data) {
+      this.rcdIndex = rcdIndex;
+      this.trc = trc;
+      this.data = data;
+    }
+  }
+
+  /**
+   * The state of formatting one input, see {@link #format(LineDataRecordReader, OutputStream)}.
+   */
+  private final class Layout {
+    private final OutputStream os;
+    private final CarriageControlType carriageControlType;
+    private final Page page = new Page();
+    private final Map<Integer, byte[]> previousCCPFields = new HashMap<Integer, byte[]>();
+    private DataMap dataMap = dataMaps.get(0);
+    private int currentLND = -1;
+    private boolean isPageOpen;
+    private long pageNumber;
+    private int pendingAction = ACTION_NONE;
+    private int pendingCount;
+    private int action;
+    private int actionCount;
+    private boolean isEjectBefore;
+    private boolean isEjectAfter;
+    private DataMap invokedDataMap;
+    private byte[] invokedMediumMap;
+    private byte[] record = new byte[256];
+    private int recordLength;
+    private SavedRecord pageHeader;
+    private SavedRecord pageTrailer;
+    private SavedRecord groupHeader;
+
+    Layout(OutputStream os, CarriageControlType carriageControlType) {
+      this.os = os;
+      this.carriageControlType = carriageControlType;
+    }
+
+    void format(LineDataRecordReader reader) throws AFPParserException, IOException {
+      while (reader.next()) {
+        nrOfRecords.incrementAndGet();
+        if (reader.isStructuredField()) {
+          addStructuredField(reader);
+        } else {
+          addRecord(reader);
+        }
+      }
+      ejectPage();
+    }
+
+    private void addStructuredField(LineDataRecordReader reader) throws AFPParserException, IOException {
+      StructuredFieldIntroducerView sfi = reader.getStructuredFieldIntroducer();
+      if (sfi.getSFTypeID() == SFTypeID.IDM_InvokeDataMap) {
+        IDM_InvokeDataMap idm = (IDM_InvokeDataMap) reader.parseStructuredField(config);
+        ejectPage();
+        setDataMap(getDataMap(trimName(idm.getName())));
+        return;
+      }
+
+      byte[] sf = new byte[reader.getDataLength() + 1];
+      sf[0] = (byte) Constants.AFPBeginByte_0xA5;
+      copy(reader, 0, sf, 1, reader.getDataLength());
+      if (sfi.getSFTypeID() == SFTypeID.IMM_InvokeMediumMap) {
+        ejectPage();
+        currentLND = -1;
+        os.write(sf);
+      } else if (isPageOpen) {
+        page.addStructuredField(sf);
+      } else {
+        os.write(sf);
+      }
+    }
+
+    private void addRecord(LineDataRecordReader reader) throws AFPParserException, IOException {
+      if (dataMap.rcds != null) {
+        addRecordFormatRecord(reader);
+        return;
+      }
+      decodeCarriageControl(reader.getCarriageControl());
+      if (carriageControlType == CarriageControlType.Machine && reader.getCarriageControl() >= 0) {
+        move(pendingAction, pendingCount);
+        pendingAction = ACTION_NONE;
+        if ((reader.getCarriageControl() & 0x02) != 0) {
+          // Immediate: space or skip without printing.
+          move(action, actionCount);
+          return;
+        }
+        pendingAction = action;
+        pendingCount = actionCount;
+        if (currentLND < 0) {
+          currentLND = 0;
+        }
+      } else {
+        move(action, actionCount);
+      }
+
+      processConditions(reader);
+      if (isEjectBefore) {
+        ejectPage();
+        switchDataMap();
+        if (dataMap.rcds != null) {
+          placeRecordFormatRecord(reader);
+        } else {
+          move(ACTION_SPACE, 1);
+          placeLines(reader);
+        }
+      } else {
+        placeLines(reader);
+      }
+
+      if (isEjectAfter) {
+        ejectPage();
+        switchDataMap();
+      }
+    }
+
+    /**
+     * Places the record by the current LND, and again by the LNDs it reuses the record.
+     */
+    private void placeLines(LineDataRecordReader reader) {
+      int lnd = currentLND;
+      for (int i = 0; i <= dataMap.lnds.length; i++) {
+        placeField(reader, lnd);
+        LND_LineDescriptor descriptor = dataMap.lnds[lnd];
+        int next = descriptor.getNextLNDIfReusingData();
+        if (!descriptor.getFlags().contains(LND_Flag.ReuseRecord_DoReuse) || next < 1 || next > dataMap.lnds.length) {
+          break;
+        }
+        lnd = next - 1;
+      }
+    }
+
+    /**
+     * Formats a record of record format line data: the record RCD of its record ID performs the
+     * conditional processing, and places the record, or keeps it as page header, page trailer, or
+     * group header. Records of no record RCD are not presented. Carriage control is ignored.
+     */
+    private void addRecordFormatRecord(LineDataRecordReader reader) throws AFPParserException, IOException {
+      readRecord(reader);
+      int rcdIndex = findRecordRCD();
+      if (rcdIndex < 0) {
+        return;
+      }
+      processRecordConditions(reader, rcdIndex);
+      if (isEjectBefore) {
+        ejectPage();
+        switchDataMap();
+        if (dataMap.rcds != null) {
+          placeRecordFormatRecord(reader);
+        } else {
+          move(ACTION_SPACE, 1);
+          placeLines(reader);
+        }
+      } else {
+        placeRecord(rcdIndex, reader.getTableReferenceCharacter());
+      }
+
+      if (isEjectAfter) {
+        ejectPage();
+        switchDataMap();
+      }
+    }
+
+    private void placeRecordFormatRecord(LineDataRecordReader reader) throws IOException {
+      readRecord(reader);
+      int rcdIndex = findRecordRCD();
+      if (rcdIndex >= 0) {
+        placeRecord(rcdIndex, reader.getTableReferenceCharacter());
+      }
+    }
+
+    private void readRecord(LineDataRecordReader reader) {
+      recordLength = reader.getDataLength();
+      if (recordLength > record.length) {
+        record = new byte[Math.max(recordLength, record.length * 2)];
+      }
+      copy(reader, 0, record, 0, recordLength);
+    }
+
+    /**
+     * Returns the index of the record RCD whose record ID the current record begins with, or -1.
+     */
+    private int findRecordRCD() {
+      for (int r = 0; r < dataMap.rcds.length; r++) {
+        if (dataMap.rcds[r].getFlags().contains(RCD_Flag.FieldRCD_FieldRCD)) {
+          continue;
+        }
+        byte[] id = dataMap.recordIDs[r];
+        int i = 0;
+        while (i < RECORD_ID_LENGTH && id[i] == (i < recordLength ? record[i] : Constants.EBCDIC_ID_FILLER)) {
+          i++;
+        }
+        if (i == RECORD_ID_LENGTH) {
+          return r;
+        }
+      }
+      return -1;
+    }
+
+    /**
+     * Places the current record by the given record RCD. A body or group header record that has
+     * the new page flag set, or whose baseline would leave less than the end space of the RCD to
+     * the depth of the page, begins a new page.
+     */
+    private void placeRecord(int rcdIndex, int trc) throws IOException {
+      RCD_RecordDescriptor rcd = dataMap.rcds[rcdIndex];
+      RCD_XMD_RecordTypeElementType recordType = rcd.getRecordType();
+      if (recordType == RCD_XMD_RecordTypeElementType.PageHeader) {
+        pageHeader = new SavedRecord(rcdIndex, trc, Arrays.copyOf(record, recordLength));
+        return;
+      }
+      if (recordType == RCD_XMD_RecordTypeElementType.PageTrailer) {
+        pageTrailer = new SavedRecord(rcdIndex, trc, Arrays.copyOf(record, recordLength));
+        return;
+      }
+      if (recordType == RCD_XMD_RecordTypeElementType.GroupHeader) {
+        groupHeader = null;
+      }
+      if (isPageOpen && (rcd.getFlags().contains(RCD_Flag.NewPage_LogicalPageEject)
+          || dataMap.pageDepth > 0 && page.nextBaseline(dataMap.rcdFormats[rcdIndex]) > dataMap.pageDepth - rcd.getEndSpace())) {
+        ejectPage();
+      }
+      openPage();
+      placeFields(rcdIndex, record, recordLength, trc);
+      if (recordType == RCD_XMD_RecordTypeElementType.GroupHeader && rcd.getFlags().contains(RCD_Flag.GroupIndicator_SaveGroupHeader)) {
+        groupHeader = new SavedRecord(rcdIndex, trc, Arrays.copyOf(record, recordLength));
+      }
+    }
+
+    /**
+     * Places the given record by the given record RCD, or, if the RCD points to field RCDs, by the
+     * chain of field RCDs at the position of the record RCD.
+     */
+    private void placeFields(int rcdIndex, byte[] data, int length, int trc) {
+      RCD_RecordDescriptor[] rcds = dataMap.rcds;
+      int field = rcds[rcdIndex].getFieldRCDPointer();
+      if (field < 1 || field > rcds.length) {
+        placeField(rcdIndex, data, length, trc);
+        return;
+      }
+      page.addField(dataMap.rcdFormats[rcdIndex], trc, data, 0, 0);
+      for (int i = 0; i < rcds.length && field >= 1 && field <= rcds.length; i++) {
+        placeField(field - 1, data, length, trc);
+        field = rcds[field - 1].getFieldRCDPointer();
+      }
+    }
+
+    /**
+     * Places the field of the given RCD: fixed data, the field of the given number delimited by the
+     * field delimiter, or the data from the data start position.
+     */
+    private void placeField(int rcdIndex, byte[] data, int length, int trc) {
+      RCD_RecordDescriptor rcd = dataMap.rcds[rcdIndex];
+      FieldFormat format = dataMap.rcdFormats[rcdIndex];
+      if (rcd.getFlags().contains(RCD_Flag.UseFixedData_DoPresent)) {
+        int start = Math.min(rcd.getDataStartPosition(), dataMap.fixedData.length);
+        page.addField(format, trc, dataMap.fixedData, start, Math.min(rcd.getDataLength(), dataMap.fixedData.length - start));
+        return;
+      }
+      int start = Math.min(rcd.getDataStartPosition(), length);
+      int end = length;
+      if (rcd.getFieldNumber() > 0 && rcd.getFieldDelimiter() != 0) {
+        int delimiterSize = rcd.getFlags().contains(RCD_Flag.FieldDelimeterSize_2Bytes) ? 2 : 1;
+        for (int n = 1; n < rcd.getFieldNumber() && start < length; n++) {
+          start = Math.min(indexOfDelimiter(data, start, length, rcd.getFieldDelimiter(), delimiterSize) + delimiterSize, length);
+        }
+        end = indexOfDelimiter(data, start, length, rcd.getFieldDelimiter(), delimiterSize);
+      }
+      page.addField(format, trc, data, start, rcd.getDataLength() > 0 ? Math.min(rcd.getDataLength(), end - start) : end - start);
+    }
+
+    /**
+     * Decodes the given carriage control byte into {@link #action} and {@link #actionCount}.
+     */
+    private void decodeCarriageControl(int cc) {
+      action = ACTION_SPACE;
+      actionCount = 1;
+      if (cc < 0) {
+        return;
+      }
+      if (carriageControlType == CarriageControlType.Machine) {
+        if ((cc & 0x80) != 0) {
+          action = ACTION_SKIP;
+          actionCount = (cc >> 3) & 0x0F;
+        } else {
+          actionCount = (cc >> 3) & 0x03;
+          if (actionCount == 0) {
+            action = ACTION_NONE;
+          }
+        }
+        return;
+      }
+
+      boolean isEBCDIC = carriageControlType == CarriageControlType.ANSI_EBCDIC;
+      int digitOne = isEBCDIC ? 0xF1 : 0x31;
+      int letterA = isEBCDIC ? 0xC1 : 0x41;
+      if (cc == (isEBCDIC ? 0xF0 : 0x30)) {
+        actionCount = 2;
+      } else if (cc == (isEBCDIC ? 0x60 : 0x2D)) {
+        actionCount = 3;
+      } else if (cc == (isEBCDIC ? 0x4E : 0x2B)) {
+        actionCount = 0;
+      } else if (cc >= digitOne && cc < digitOne + 9) {
+        action = ACTION_SKIP;
+        actionCount = cc - digitOne + 1;
+      } else if (cc >= letterA && cc < letterA + 3) {
+        action = ACTION_SKIP;
+        actionCount = cc - letterA + 10;
+      }
+    }
+
+    /**
+     * Moves the current LND by spacing the given number of lines, or by skipping to the given
+     * channel.
+     */
+    private void move(int action, int count) throws AFPParserException, IOException {
+      LND_LineDescriptor[] lnds = dataMap.lnds;
+      if (action == ACTION_NONE) {
+        return;
+      }
+      if (currentLND < 0) {
+        currentLND = 0;
+        if (action == ACTION_SKIP) {
+          for (int i = 0; i < lnds.length; i++) {
+            if (lnds[i].getChannelCode() == count) {
+              currentLND = i;
+              break;
+            }
+          }
+        }
+        return;
+      }
+
+      if (action == ACTION_SPACE) {
+        for (int i = 0; i < count; i++) {
+          LND_LineDescriptor lnd = lnds[currentLND];
+          int next = lnd.getNextLNDIfSpacing();
+          if (lnd.getFlags().contains(LND_Flag.Spacing_CurrentPagesEnds) || next < 1 || next > lnds.length) {
+            ejectPage();
+            currentLND = 0;
+            return;
+          }
+          currentLND = next - 1;
+        }
+        return;
+      }
+
+      int lndIndex = currentLND;
+      boolean isPageEnd = false;
+      for (int i = 0; i <= lnds.length; i++) {
+        LND_LineDescriptor lnd = lnds[lndIndex];
+        int next = lnd.getNextLNDIfSkipping();
+        if (lnd.getFlags().contains(LND_Flag.Skipping_CurrentPagesEnds) || next < 1 || next > lnds.length) {
+          isPageEnd = true;
+        }
+        lndIndex = next >= 1 && next <= lnds.length ? next - 1 : 0;
+        if (lnds[lndIndex].getChannelCode() == count) {
+          if (isPageEnd) {
+            ejectPage();
+          }
+          currentLND = lndIndex;
+          return;
+        }
+      }
+      // No LND of the channel: space one line.
+      move(ACTION_SPACE, 1);
+    }
+
+    /**
+     * Performs the conditional processing of the current LND, setting {@link #isEjectBefore}, {@link
+     * #isEjectAfter}, {@link #invokedDataMap}, and {@link #invokedMediumMap}.
+     */
+    private void processConditions(LineDataRecordReader reader) throws AFPParserException {
+      resetConditions();
+      LND_LineDescriptor[] lnds = dataMap.lnds;
+      int lndIndex = currentLND;
+      for (int i = 0; i < lnds.length && lndIndex >= 0; i++) {
+        LND_LineDescriptor lnd = lnds[lndIndex];
+        if (!lnd.getFlags().contains(LND_Flag.ConditionalProcessing_DoPerformCP)) {
+          break;
+        }
+        processCCPs(reader, lnd.getCcpIdentifier(), lnd.getDataStartPosition(), lnd.getDataLength());
+        int next = lnd.getNextLNDIfConditionalProcessing();
+        lndIndex = next >= 1 && next <= lnds.length && next - 1 != lndIndex ? next - 1 : -1;
+      }
+    }
+
+    /**
+     * Performs the conditional processing of the given record RCD, and of the RCDs its conditional
+     * processing RCD pointer chains to.
+     */
+    private void processRecordConditions(LineDataRecordReader reader, int rcdIndex) throws AFPParserException {
+      resetConditions();
+      RCD_RecordDescriptor[] rcds = dataMap.rcds;
+      for (int i = 0; i < rcds.length && rcdIndex >= 0; i++) {
+        RCD_RecordDescriptor rcd = rcds[rcdIndex];
+        if (!rcd.getFlags().contains(RCD_Flag.ConditionalProcessing_DoPerformCP)) {
+          break;
+        }
+        processCCPs(reader, rcd.getCcpIdentifier(), rcd.getDataStartPosition(), rcd.getDataLength());
+        int next = rcd.getConditionalProcessingRCDPointer();
+        rcdIndex = next >= 1 && next <= rcds.length && next - 1 != rcdIndex ? next - 1 : -1;
+      }
+    }
+
+    private void resetConditions() {
+      isEjectBefore = false;
+      isEjectAfter = false;
+      invokedDataMap = null;
+      invokedMediumMap = null;
+    }
+
+    /**
+     * Tests the field at the given position of the record against the CCP of the given ID, and the
+     * CCPs it chains to.
+     */
+    private void processCCPs(LineDataRecordReader reader, int ccpIdentifier, int dataStartPosition, int dataLength) throws AFPParserException {
+      for (int c = 0; c < ccps.size() && ccps.containsKey(ccpIdentifier); c++) {
+        CCP_ConditionalProcessingControl ccp = ccps.get(ccpIdentifier);
+        processCCP(reader, dataStartPosition, dataLength, ccp);
+        if (ccp.getNextCcpIdentifier() == 0 || ccp.getNextCcpIdentifier() == ccpIdentifier) {
+          break;
+        }
+        ccpIdentifier = ccp.getNextCcpIdentifier();
+      }
+    }
+
+    private void processCCP(LineDataRecordReader reader, int dataStartPosition, int dataLength, CCP_ConditionalProcessingControl ccp) throws AFPParserException {
+      List<CCP_RepeatingGroup> rgs = ccp.getRepeatingGroups();
+      if (rgs == null || rgs.isEmpty()) {
+        return;
+      }
+      int length = ccp.getLengthOfComparisonString() > 0 ? ccp.getLengthOfComparisonString() : dataLength;
+      byte[] field = new byte[Math.max(length, 0)];
+      Arrays.fill(field, (byte) 0x40);
+      int start = Math.min(dataStartPosition, reader.getDataLength());
+      int available = Math.min(field.length, reader.getDataLength() - start);
+      copy(reader, start, field, 0, available);
+
+      byte[] previous = previousCCPFields.put(ccp.getCcpIdentifier(), field);
+      for (int i = 0; i < rgs.size(); i++) {
+        CCP_RepeatingGroup rg = rgs.get(i);
+        if (matches(rg.getComparison(), field, previous, ccpComparisonStrings.get(ccpKey(ccp.getCcpIdentifier(), i)))) {
+          applyActions(rg);
+          return;
+        }
+      }
+    }
+
+    private void applyActions(CCP_RepeatingGroup rg) throws AFPParserException {
+      boolean isEject = false;
+      CCP_MediumMapAction mediumMapAction = rg.getMediumMapAction();
+      if (mediumMapAction != null && mediumMapAction != CCP_MediumMapAction.Ignore) {
+        isEject = true;
+        if (mediumMapAction == CCP_MediumMapAction.InvokeNamedMediumMap && rg.getMediumMapName() != null) {
+          invokedMediumMap = UtilCharacterEncoding.stringToByteArray(trimName(rg.getMediumMapName()), config.getAfpCharSet(), 8, Constants.EBCDIC_ID_FILLER);
+        }
+      }
+      CCP_DataMapAction dataMapAction = rg.getDataMapAction();
+      if (dataMapAction != null && dataMapAction != CCP_DataMapAction.Ignore) {
+        isEject = true;
+        int index = dataMaps.indexOf(dataMap);
+        if (dataMapAction == CCP_DataMapAction.InvokeNamedDataMap) {
+          invokedDataMap = getDataMap(trimName(rg.getDataMapName()));
+        } else if (dataMapAction == CCP_DataMapAction.InvokeFirstDataMap) {
+          invokedDataMap = dataMaps.get(0);
+        } else if (dataMapAction == CCP_DataMapAction.InvokeNextDataMap) {
+          invokedDataMap = dataMaps.get((index + 1) % dataMaps.size());
+        }
+      }
+      if (!isEject) {
+        return;
+      }
+      CCP_TimingOfAction timing = rg.getTimingOfAction();
+      if (timing == CCP_TimingOfAction.AfterCurrentLine || timing == CCP_TimingOfAction.AfterCurrentSubPage) {
+        isEjectAfter = true;
+      } else {
+        isEjectBefore = true;
+      }
+    }
+
+    private void switchDataMap() throws IOException {
+      if (invokedMediumMap != null) {
+        writeStructuredField(os, SFTypeID.IMM_InvokeMediumMap, invokedMediumMap, 0, invokedMediumMap.length);
+        invokedMediumMap = null;
+      }
+      if (invokedDataMap != null) {
+        setDataMap(invokedDataMap);
+        invokedDataMap = null;
+      }
+      currentLND = -1;
+    }
+
+    /**
+     * Makes the given data map the current one. The kept header and trailer records belong to the
+     * previous data map and are dropped.
+     */
+    private void setDataMap(DataMap dm) {
+      if (dm != dataMap) {
+        dataMap = dm;
+        pageHeader = null;
+        pageTrailer = null;
+        groupHeader = null;
+      }
+      currentLND = -1;
+    }
+
+    private void placeField(LineDataRecordReader reader, int lndIndex) {
+      LND_LineDescriptor lnd = dataMap.lnds[lndIndex];
+      FieldFormat format = dataMap.lndFormats[lndIndex];
+      openPage();
+      int start = lnd.getDataStartPosition();
+      if (lnd.getFlags().contains(LND_Flag.UseFixedData_DoPresent)) {
+        int length = lnd.getDataLength();
+        start = Math.min(start, dataMap.fixedData.length);
+        length = Math.min(length, dataMap.fixedData.length - start);
+        page.addField(format, reader.getTableReferenceCharacter(), dataMap.fixedData, start, length);
+      } else {
+        start = Math.min(start, reader.getDataLength());
+        int length = lnd.getDataLength() > 0 ? Math.min(lnd.getDataLength(), reader.getDataLength() - start) : reader.getDataLength() - start;
+        page.addField(format, reader.getTableReferenceCharacter(), reader, start, length);
+      }
+    }
+
+    /**
+     * Begins a new page, if none is open, and places the kept page header and group header on it.
+     */
+    private void openPage() {
+      if (isPageOpen) {
+        return;
+      }
+      isPageOpen = true;
+      page.begin(++pageNumber, dataMap);
+      nrOfPages.incrementAndGet();
+      if (pageHeader != null) {
+        placeFields(pageHeader.rcdIndex, pageHeader.data, pageHeader.data.length, pageHeader.trc);
+      }
+      if (groupHeader != null) {
+        placeFields(groupHeader.rcdIndex, groupHeader.data, groupHeader.data.length, groupHeader.trc);
+      }
+    }
+
+    /**
+     * Places the kept page trailer on the current page, if any, and ends and writes it. The current
+     * LND is not changed.
+     */
+    private void ejectPage() throws IOException {
+      if (!isPageOpen) {
+        return;
+      }
+      if (pageTrailer != null) {
+        placeFields(pageTrailer.rcdIndex, pageTrailer.data, pageTrailer.data.length, pageTrailer.trc);
+      }
+      isPageOpen = false;
+      page.encode(os);
+    }
+  }
+
+  /**
+   * A laid out page: the fields to present by LND or RCD, with their baseline resolved and their
+   * data copied from the records, and the structured fields to write on the page. Reused for all
+   * pages of a {@link Layout}.
+   */
+  private final class Page {
+    long pageNumber;
+    DataMap dataMap;
+    final ByteArrayOutputStream structuredFields = new ByteArrayOutputStream();
+    final ByteArrayOutputStream ptx = new ByteArrayOutputStream(8192);
+    byte[] data = new byte[4096];
+    int dataLength;
+    int nrOfFields;
+    int currentBaseline;
+    FieldFormat[] formats = new FieldFormat[64];
+    int[] baselines = new int[64];
+    int[] trcs = new int[64];
+    int[] offsets = new int[64];
+    int[] lengths = new int[64];
+
+    void begin(long pageNumber, DataMap dataMap) {
+      this.pageNumber = pageNumber;
+      this.dataMap = dataMap;
+      structuredFields.reset();
+      dataLength = 0;
+      nrOfFields = 0;
+      currentBaseline = 0;
+    }
+
+    /**
+     * Returns the baseline a field of the given format would be placed on.
+     */
+    int nextBaseline(FieldFormat format) {
+      if (!format.isNewBaseline) {
+        return currentBaseline;
+      }
+      return format.isRelativeBaseline ? currentBaseline + format.baselinePosition : format.baselinePosition;
+    }
+
+    void addStructuredField(byte[] sf) {
+      structuredFields.write(sf, 0, sf.length);
+    }
+
+    private int addField(FieldFormat format, int trc, int length) {
+      if (nrOfFields == formats.length) {
+        int capacity = nrOfFields * 2;
+        formats = Arrays.copyOf(formats, capacity);
+        baselines = Arrays.copyOf(baselines, capacity);
+        trcs = Arrays.copyOf(trcs, capacity);
+        offsets = Arrays.copyOf(offsets, capacity);
+        lengths = Arrays.copyOf(lengths, capacity);
+      }
+      length = Math.max(length, 0);
+      if (dataLength + length > data.length) {
+        data = Arrays.copyOf(data, Math.max(dataLength + length, data.length * 2));
+      }
+      currentBaseline = nextBaseline(format);
+      formats[nrOfFields] = format;
+      baselines[nrOfFields] = currentBaseline;
+      trcs[nrOfFields] = trc;
+      offsets[nrOfFields] = dataLength;
+      lengths[nrOfFields] = length;
+      nrOfFields++;
+      int offset = dataLength;
+      dataLength += length;
+      return offset;
+    }
+
+    void addField(FieldFormat format, int trc, byte[] source, int start, int length) {
+      int offset = addField(format, trc, length);
+      if (length > 0) {
+        System.arraycopy(source, start, data, offset, length);
+      }
+    }
+
+    void addField(FieldFormat format, int trc, LineDataRecordReader reader, int start, int length) {
+      int offset = addField(format, trc, length);
+      copy(reader, start, data, offset, length);
+    }
+
+    /**
+     * Encodes the page into structured fields and writes them to the given {@link OutputStream}.
+     */
+    void encode(OutputStream os) throws IOException {
+      byte[] name = pageName();
+      writeStructuredField(os, SFTypeID.BPG_BeginPage, name, 0, name.length);
+      writeStructuredField(os, SFTypeID.BAG_BeginActiveEnvironmentGroup, name, 0, name.length);
+      os.write(dataMap.environment, 0, dataMap.environment.length);
+      writeStructuredField(os, SFTypeID.EAG_EndActiveEnvironmentGroup, name, 0, name.length);
+      writeStructuredField(os, SFTypeID.BPT_BeginPresentationTextObject, name, 0, name.length);
+
+      ptx.reset();
+      int baseline = 0;
+      int fontLocalID = -1;
+      AFPColorValue color = null;
+      AFPOrientation inlineOrientation = AFPOrientation.ori0;
+      AFPOrientation baselineOrientation = AFPOrientation.ori90;
+      for (int f = 0; f < nrOfFields; f++) {
+        FieldFormat format = formats[f];
+        if (format.isNewBaseline && (baselines[f] != baseline || f == 0)) {
+          baseline = baselines[f];
+          controlSequence(os, AMB, baseline >> 8, baseline);
+        }
+        if (format.isNewInline) {
+          controlSequence(os, AMI, format.inlinePosition >> 8, format.inlinePosition);
+        }
+        if (format.inlineOrientation != null && (format.inlineOrientation != inlineOrientation || format.baselineOrientation != baselineOrientation)) {
+          inlineOrientation = format.inlineOrientation;
+          baselineOrientation = format.baselineOrientation;
+          byte[] i = inlineOrientation.toBytes();
+          byte[] b = baselineOrientation.toBytes();
+          controlSequence(os, STO, i[0], i[1], b[0], b[1]);
+        }
+        int font = format.isFontAsSpecified || trcs[f] < 0 ? format.fontLocalID : trcs[f] + 1;
+        if (font != fontLocalID && font > 0) {
+          fontLocalID = font;
+          controlSequence(os, SCFL, font);
+        }
+        AFPColorValue textColor = format.color;
+        if (textColor != color) {
+          byte[] value = (textColor != null ? textColor : AFPColorValue.White_DeviceDefault_0xFF07).toByte2();
+          controlSequence(os, STC, value[0], value[1]);
+          color = textColor;
+        }
+        for (int o = offsets[f], end = offsets[f] + lengths[f]; o < end; o += MAX_TRN_LENGTH) {
+          int len = Math.min(MAX_TRN_LENGTH, end - o);
+          flushIfFull(os, len + 4);
+          ptx.write(0x2B);
+          ptx.write(0xD3);
+          ptx.write(len + 2);
+          ptx.write(TRN);
+          ptx.write(data, o, len);
+        }
+      }
+      if (ptx.size() > 0) {
+        writePTX(os);
+      }
+      writeStructuredField(os, SFTypeID.EPT_EndPresentationTextObject, name, 0, name.length);
+      structuredFields.writeTo(os);
+      writeStructuredField(os, SFTypeID.EPG_EndPage, name, 0, name.length);
+    }
+
+    private void controlSequence(OutputStream os, int type, int... parameters) throws IOException {
+      flushIfFull(os, parameters.length + 4);
+      ptx.write(0x2B);
+      ptx.write(0xD3);
+      ptx.write(parameters.length + 2);
+      ptx.write(type);
+      for (int p : parameters) {
+        ptx.write(p);
+      }
+    }
+
+    private void flushIfFull(OutputStream os, int length) throws IOException {
+      if (ptx.size() + length > MAX_PTX_PAYLOAD) {
+        writePTX(os);
+      }
+    }
+
+    private void writePTX(OutputStream os) throws IOException {
+      byte[] payload = ptx.toByteArray();
+      writeStructuredField(os, SFTypeID.PTX_PresentationTextData, payload, 0, payload.length);
+      ptx.reset();
+    }
+
+    private byte[] pageName() {
+      String nr = Long.toString(pageNumber);
+      StringBuilder sb = new StringBuilder("P");
+      for (int i = 1 + nr.length(); i < 8; i++) {
+        sb.append('0');
+      }
+      sb.append(nr.length() > 7 ? nr.substring(nr.length() - 7) : nr);
+      return sb.toString().getBytes(config.getAfpCharSet());
+    }
+  }
+}
@@ -23,7 +23,7 @@ import com.mgz.afp.enums.AFPOrientation;
 import com.mgz.afp.enums.MutualExclusiveGroupedFlagHandler;
 import com.mgz.afp.exceptions.AFPParserException;
 import com.mgz.afp.parser.AFPParserConfiguration;
-import com.mgz.afp.triplets.Triplet;
+import com.mgz.afp.parser.TripletParser;
 import com.mgz.util.Constants;
 import com.mgz.util.UtilBinaryDecoding;
 import com.mgz.util.UtilCharacterEncoding;
@@ -132,11 +132,7 @@ public class RCD_RecordDescriptor extends StructuredFieldBaseTriplets {
     baos.write(UtilBinaryDecoding.intToByteArray(fieldNumber, 2));
     baos.write(UtilBinaryDecoding.intToByteArray(additionalBaselineIncrement, 2));
     baos.write(reserved57_69);
-    if (triplets != null) {
-      for (Triplet t : triplets) {
-        t.writeAFP(baos, config);
-      }
-    }
+    TripletParser.writeTriplets(triplets, baos, config);
 
     writeFullStructuredField(os, baos.toByteArray());
   }
@@ -21,6 +21,7 @@ package com.mgz.afp.modca;
 import com.mgz.afp.base.StructuredFieldBaseName;
 import com.mgz.afp.exceptions.AFPParserException;
 import com.mgz.afp.parser.AFPParserConfiguration;
+import com.mgz.afp.parser.LazyTripletList;
 import com.mgz.afp.parser.TripletParser;
 import com.mgz.afp.triplets.Triplet;
 import com.mgz.util.Constants;
@@ -48,7 +49,7 @@ public class BRS_BeginResource extends StructuredFieldBaseName {
       reserved8_9 = null;
     }
     if (actualLength > 10) {
-      triplets = TripletParser.parseTriplets(sfData, offset + 10, actualLength - 10, config);
+      triplets = new LazyTripletList(sfData, offset + 10, actualLength - 10, config);
     } else {
       triplets = null;
     }
@@ -61,11 +62,7 @@ public class BRS_BeginResource extends StructuredFieldBaseName {
     if (reserved8_9 != null) {
       baos.write(reserved8_9);
     }
-    if (triplets != null) {
-      for (Triplet triplet : triplets) {
-        triplet.writeAFP(baos, config);
-      }
-    }
+    TripletParser.writeTriplets(triplets, baos, config);
     writeFullStructuredField(os, baos.toByteArray());
   }
 
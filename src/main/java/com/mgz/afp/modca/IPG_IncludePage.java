@@ -21,7 +21,7 @@ package com.mgz.afp.modca;
 import com.mgz.afp.base.StructuredFieldBaseTriplets;
 import com.mgz.afp.exceptions.AFPParserException;
 import com.mgz.afp.parser.AFPParserConfiguration;
-import com.mgz.afp.triplets.Triplet;
+import com.mgz.afp.parser.TripletParser;
 import com.mgz.util.Constants;
 import com.mgz.util.UtilCharacterEncoding;
 
@@ -36,7 +36,7 @@ public class IPG_IncludePage extends StructuredFieldBaseTriplets {
 
   @Override
   public void decodeAFP(byte[] sfData, int offset, int length, AFPParserConfiguration config) throws AFPParserException {
-    pageName = new String(sfData, 0, 8, config.getAfpCharSet());
+    pageName = UtilCharacterEncoding.decodeName(sfData, offset, 8, config.getAfpCharSet());
     reserved8_15 = new byte[8];
     System.arraycopy(sfData, offset + 8, reserved8_15, 0, reserved8_15.length);
     flags = IPG_Flag.valueOf(sfData[offset + 16]);
@@ -52,9 +52,7 @@ public class IPG_IncludePage extends StructuredFieldBaseTriplets {
     baos.write(UtilCharacterEncoding.stringToByteArray(pageName, config.getAfpCharSet(), 8, Constants.EBCDIC_ID_FILLER));
     baos.write(reserved8_15);
     baos.write(flags.toByte());
-    for (Triplet t : triplets) {
-      t.writeAFP(baos, config);
-    }
+    TripletParser.writeTriplets(triplets, baos, config);
     writeFullStructuredField(os, baos.toByteArray());
   }
 
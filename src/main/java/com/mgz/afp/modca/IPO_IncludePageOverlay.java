@@ -22,7 +22,7 @@ import com.mgz.afp.base.StructuredFieldBaseTriplets;
 import com.mgz.afp.enums.AFPOrientation;
 import com.mgz.afp.exceptions.AFPParserException;
 import com.mgz.afp.parser.AFPParserConfiguration;
-import com.mgz.afp.triplets.Triplet;
+import com.mgz.afp.parser.TripletParser;
 import com.mgz.util.Constants;
 import com.mgz.util.UtilBinaryDecoding;
 import com.mgz.util.UtilCharacterEncoding;
@@ -52,7 +52,7 @@ public class IPO_IncludePageOverlay extends StructuredFieldBaseTriplets {
 
   @Override
   public void decodeAFP(byte[] sfData, int offset, int length, AFPParserConfiguration config) throws AFPParserException {
-    overlayName = new String(sfData, offset, 8, config.getAfpCharSet());
+    overlayName = UtilCharacterEncoding.decodeName(sfData, offset, 8, config.getAfpCharSet());
     xOrigin = UtilBinaryDecoding.parseInt(sfData, offset + 8, 3);
     yOrigin = UtilBinaryDecoding.parseInt(sfData, offset + 11, 3);
 
@@ -78,11 +78,7 @@ public class IPO_IncludePageOverlay extends StructuredFieldBaseTriplets {
     baos.write(UtilBinaryDecoding.intToByteArray(yOrigin, 3));
     if (xRotation != null) {
       baos.write(xRotation.toBytes());
-      if (triplets != null) {
-        for (Triplet t : triplets) {
-          t.writeAFP(baos, config);
-        }
-      }
+      TripletParser.writeTriplets(triplets, baos, config);
     }
     writeFullStructuredField(os, baos.toByteArray());
   }
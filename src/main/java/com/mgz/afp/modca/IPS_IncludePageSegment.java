@@ -21,7 +21,7 @@ package com.mgz.afp.modca;
 import com.mgz.afp.base.StructuredFieldBaseTriplets;
 import com.mgz.afp.exceptions.AFPParserException;
 import com.mgz.afp.parser.AFPParserConfiguration;
-import com.mgz.afp.triplets.Triplet;
+import com.mgz.afp.parser.TripletParser;
 import com.mgz.util.Constants;
 import com.mgz.util.UtilBinaryDecoding;
 import com.mgz.util.UtilCharacterEncoding;
@@ -50,7 +50,7 @@ public class IPS_IncludePageSegment extends StructuredFieldBaseTriplets {
 
   @Override
   public void decodeAFP(byte[] sfData, int offset, int length, AFPParserConfiguration config) throws AFPParserException {
-    pageSegmentName = new String(sfData, offset, 8, config.getAfpCharSet());
+    pageSegmentName = UtilCharacterEncoding.decodeName(sfData, offset, 8, config.getAfpCharSet());
     xOrigin = UtilBinaryDecoding.parseInt(sfData, offset + 8, 3);
     yOrigin = UtilBinaryDecoding.parseInt(sfData, offset + 11, 3);
 
@@ -69,11 +69,7 @@ public class IPS_IncludePageSegment extends StructuredFieldBaseTriplets {
     baos.write(UtilCharacterEncoding.stringToByteArray(pageSegmentName, config.getAfpCharSet(), 8, Constants.EBCDIC_ID_FILLER));
     baos.write(UtilBinaryDecoding.intToByteArray(xOrigin, 3));
     baos.write(UtilBinaryDecoding.intToByteArray(yOrigin, 3));
-    if (triplets != null) {
-      for (Triplet t : triplets) {
-        t.writeAFP(baos, config);
-      }
-    }
+    TripletParser.writeTriplets(triplets, baos, config);
     writeFullStructuredField(os, baos.toByteArray());
   }
 
@@ -140,7 +140,7 @@ public class MCF_MapCodedFont_Format1 extends StructuredField {
       int hint = UtilBinaryDecoding.parseInt(sfData, offset + 4, 2);
       if (hint != 0xFFFF) {
         codedFontNullName = null;
-        codedFontName = new String(sfData, offset + 4, 8, config.getAfpCharSet());
+        codedFontName = UtilCharacterEncoding.decodeName(sfData, offset + 4, 8, config.getAfpCharSet());
       } else {
         codedFontName = null;
         codedFontNullName = new byte[8];
@@ -149,7 +149,7 @@ public class MCF_MapCodedFont_Format1 extends StructuredField {
       hint = UtilBinaryDecoding.parseInt(sfData, offset + 12, 2);
       if (hint != 0xFFFF) {
         codePageNullName = null;
-        codePageName = new String(sfData, offset + 12, 8, config.getAfpCharSet());
+        codePageName = UtilCharacterEncoding.decodeName(sfData, offset + 12, 8, config.getAfpCharSet());
       } else {
         codePageName = null;
         codePageNullName = new byte[8];
@@ -158,7 +158,7 @@ public class MCF_MapCodedFont_Format1 extends StructuredField {
       hint = UtilBinaryDecoding.parseInt(sfData, offset + 20, 2);
       if (hint != 0xFFFF) {
         fontCharacterSetNullName = null;
-        fontCharacterSetName = new String(sfData, offset + 20, 8, config.getAfpCharSet());
+        fontCharacterSetName = UtilCharacterEncoding.decodeName(sfData, offset + 20, 8, config.getAfpCharSet());
       } else {
         fontCharacterSetName = null;
         fontCharacterSetNullName = new byte[8];
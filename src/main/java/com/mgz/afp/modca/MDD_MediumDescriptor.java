@@ -22,7 +22,7 @@ import com.mgz.afp.base.StructuredFieldBaseTriplets;
 import com.mgz.afp.enums.AFPUnitBase;
 import com.mgz.afp.exceptions.AFPParserException;
 import com.mgz.afp.parser.AFPParserConfiguration;
-import com.mgz.afp.triplets.Triplet;
+import com.mgz.afp.parser.TripletParser;
 import com.mgz.util.UtilBinaryDecoding;
 
 import java.io.ByteArrayOutputStream;
@@ -71,11 +71,7 @@ public class MDD_MediumDescriptor extends StructuredFieldBaseTriplets {
     baos.write(UtilBinaryDecoding.intToByteArray(xMediumExtent, 3));
     baos.write(UtilBinaryDecoding.intToByteArray(yMediumExtent, 3));
     baos.write(flag.toByte());
-    if (triplets != null) {
-      for (Triplet t : triplets) {
-        t.writeAFP(baos, config);
-      }
-    }
+    TripletParser.writeTriplets(triplets, baos, config);
 
     writeFullStructuredField(os, baos.toByteArray());
   }
@@ -21,7 +21,7 @@ package com.mgz.afp.modca;
 import com.mgz.afp.base.StructuredFieldBaseTriplets;
 import com.mgz.afp.exceptions.AFPParserException;
 import com.mgz.afp.parser.AFPParserConfiguration;
-import com.mgz.afp.triplets.Triplet;
+import com.mgz.afp.parser.TripletParser;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
@@ -58,9 +58,7 @@ public class MFC_MediumFinishingControl extends StructuredFieldBaseTriplets {
     baos.write(reserved1);
     baos.write(boundaryConditionForSheetCollection.toByte());
     baos.write(scope.toByte());
-    for (Triplet t : triplets) {
-      t.writeAFP(baos, config);
-    }
+    TripletParser.writeTriplets(triplets, baos, config);
 
     writeFullStructuredField(os, baos.toByteArray());
   }
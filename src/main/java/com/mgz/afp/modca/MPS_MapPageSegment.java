@@ -98,7 +98,7 @@ public class MPS_MapPageSegment extends StructuredFieldBaseRepeatingGroups {
       checkDataLength(sfData, offset, length, 12);
       reserved0_3 = new byte[4];
       System.arraycopy(sfData, offset, reserved0_3, 0, reserved0_3.length);
-      nameOfPageSegment = new String(sfData, offset + 4, 8, config.getAfpCharSet());
+      nameOfPageSegment = UtilCharacterEncoding.decodeName(sfData, offset + 4, 8, config.getAfpCharSet());
     }
 
 
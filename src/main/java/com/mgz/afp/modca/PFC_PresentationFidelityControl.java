@@ -21,7 +21,7 @@ package com.mgz.afp.modca;
 import com.mgz.afp.base.StructuredFieldBaseTriplets;
 import com.mgz.afp.exceptions.AFPParserException;
 import com.mgz.afp.parser.AFPParserConfiguration;
-import com.mgz.afp.triplets.Triplet;
+import com.mgz.afp.parser.TripletParser;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
@@ -67,11 +67,7 @@ public class PFC_PresentationFidelityControl extends StructuredFieldBaseTriplets
     baos.write(reserved0);
     baos.write(flag.toByte());
     baos.write(reserved2_3);
-    if (triplets != null) {
-      for (Triplet t : triplets) {
-        t.writeAFP(baos, config);
-      }
-    }
+    TripletParser.writeTriplets(triplets, baos, config);
 
     writeFullStructuredField(os, baos.toByteArray());
   }
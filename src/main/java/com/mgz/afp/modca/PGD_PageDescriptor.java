@@ -22,7 +22,7 @@ import com.mgz.afp.base.StructuredFieldBaseTriplets;
 import com.mgz.afp.enums.AFPUnitBase;
 import com.mgz.afp.exceptions.AFPParserException;
 import com.mgz.afp.parser.AFPParserConfiguration;
-import com.mgz.afp.triplets.Triplet;
+import com.mgz.afp.parser.TripletParser;
 import com.mgz.util.UtilBinaryDecoding;
 
 import java.io.ByteArrayOutputStream;
@@ -77,11 +77,7 @@ public class PGD_PageDescriptor extends StructuredFieldBaseTriplets {
     baos.write(UtilBinaryDecoding.intToByteArray(xSize, 3));
     baos.write(UtilBinaryDecoding.intToByteArray(ySize, 3));
     baos.write(reserved12_14);
-    if (triplets != null) {
-      for (Triplet t : triplets) {
-        t.writeAFP(baos, config);
-      }
-    }
+    TripletParser.writeTriplets(triplets, baos, config);
 
     writeFullStructuredField(os, baos.toByteArray());
   }
@@ -21,7 +21,7 @@ package com.mgz.afp.modca;
 import com.mgz.afp.base.StructuredFieldBaseTriplets;
 import com.mgz.afp.exceptions.AFPParserException;
 import com.mgz.afp.parser.AFPParserConfiguration;
-import com.mgz.afp.triplets.Triplet;
+import com.mgz.afp.parser.TripletParser;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
@@ -55,11 +55,7 @@ public class PMC_PageModificationControl extends StructuredFieldBaseTriplets {
     ByteArrayOutputStream baos = new ByteArrayOutputStream();
     baos.write(pageModificationControlID);
     baos.write(reserved1);
-    if (triplets != null) {
-      for (Triplet t : triplets) {
-        t.writeAFP(baos, config);
-      }
-    }
+    TripletParser.writeTriplets(triplets, baos, config);
 
     writeFullStructuredField(os, baos.toByteArray());
   }
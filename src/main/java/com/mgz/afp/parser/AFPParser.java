@@ -22,8 +22,10 @@ import com.mgz.afp.base.StructuredField;
 import com.mgz.afp.base.StructuredFieldBaseData;
 import com.mgz.afp.base.StructuredFieldErrornouslyBuilt;
 import com.mgz.afp.base.StructuredFieldIntroducer;
+import com.mgz.afp.base.StructuredFieldIntroducerView;
 import com.mgz.afp.bcoca.BDD_BarCodeDataDescriptor;
 import com.mgz.afp.enums.SFFlag;
+import com.mgz.afp.enums.SFTypeID;
 import com.mgz.afp.exceptions.AFPParserException;
 import com.mgz.afp.foca.CPC_CodePageControl;
 import com.mgz.afp.foca.CPD_CodePageDescriptor;
@@ -31,26 +33,40 @@ import com.mgz.afp.foca.FNC_FontControl;
 import com.mgz.util.Constants;
 import com.mgz.util.UtilBinaryDecoding;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 public class AFPParser {
+  /**
+   * Maximum number of bytes between two structured fields that are loaded by a single read in
+   * {@link #reload(List)}.
+   */
+  public static final int RELOAD_MAX_GAP = 8 * 1024;
+  /**
+   * Maximum number of bytes loaded by a single read in {@link #reload(List)}.
+   */
+  public static final int RELOAD_MAX_RANGE = 16 * 1024 * 1024;
 
-  private static String afpPackagePrefix = "com.mgz.afp.";
-  private static String[] afpPackages = {
-      afpPackagePrefix + "modca.",
-      afpPackagePrefix + "ptoca.",
-      afpPackagePrefix + "foca.",
-      afpPackagePrefix + "ioca.",
-      afpPackagePrefix + "goca.",
-      afpPackagePrefix + "bcoca.",
-      afpPackagePrefix + "lineData.",
-      afpPackagePrefix + "modca_L."
-  };
   AFPParserConfiguration parserConf;
   long nrOfBytesRead;
   long nrOfSFBuilt;
   long nrOfErrSFBuilt;
+  long nrOfSFSkipped;
+  MappedAFPFile mappedFile;
+  AFPStreamHandler streamHandler;
+  private final byte[] sfiBuffer = new byte[StructuredFieldIntroducerView.MAX_LENGTH];
+  private final StructuredFieldIntroducerView sfiView = new StructuredFieldIntroducerView();
+  private boolean isSFIHeaderRead;
+  private ByteBuffer scanBuffer;
+  private ByteBuffer scannedPayload;
 
 
   /**
@@ -65,105 +81,143 @@ public class AFPParser {
     parserConf = parserConfiguration;
   }
 
+  /**
+   * Returns a new instance of the {@link StructuredField} implementation registered for the
+   * {@link com.mgz.afp.enums.SFTypeID} of the given SFI, see {@link StructuredFieldRegistry}.
+   */
   public static StructuredField createSFInstance(StructuredFieldIntroducer sfi) {
-    StructuredField sf = null;
-    for (String afpPackage : afpPackages) {
-      Class<?> clazz;
-      try {
-        String className = afpPackage + sfi.getSFTypeID().name();
-        clazz = Class.forName(className);
-        sf = (StructuredField) clazz.newInstance();
-      } catch (Exception cnfex) {
-        continue;
-      }
-    }
-
-    if (sf == null) {
-      sf = new com.mgz.afp.base.Undefined();
-    }
+    StructuredField sf = StructuredFieldRegistry.newInstance(sfi.getSFTypeID());
     sf.setStructuredFieldIntroducer(sfi);
     return sf;
   }
 
+  /**
+   * Loads the payload of the given shallow structured field, see {@link
+   * AFPParserConfiguration#setBuildShallow(boolean)}. The payload is read with a single positional
+   * read from the AFP file.
+   */
   public static void reload(StructuredField sf) throws AFPParserException {
     if (sf == null || sf.getStructuredFieldIntroducer() == null) {
       return;
     }
+    reload(Collections.singletonList(sf));
+  }
 
-    StructuredFieldIntroducer sfi = sf.getStructuredFieldIntroducer();
-    AFPParserConfiguration conf = sfi.getActualConfig();
-    if (conf.getAFPFile() == null) {
-      throw new AFPParserException("The file from whitch the structured field has been loaded is unknown.");
+  /**
+   * Loads the payload of the given shallow structured fields, see {@link
+   * AFPParserConfiguration#setBuildShallow(boolean)}. Structured fields that are adjacent in the AFP
+   * file (or separated by less than {@link #RELOAD_MAX_GAP} bytes) are read with a single positional
+   * read. Reads go through a {@link java.nio.channels.FileChannel} shared by all shallow structured
+   * fields of the same AFP file, so concurrent reloads are not serialized.
+   */
+  public static void reload(List<? extends StructuredField> sfs) throws AFPParserException {
+    // Group by AFP file.
+    Map<SharedFileChannel, List<StructuredField>> sfsByChannel = new LinkedHashMap<SharedFileChannel, List<StructuredField>>();
+    for (StructuredField sf : sfs) {
+      if (sf == null || sf.getStructuredFieldIntroducer() == null) {
+        continue;
+      }
+      AFPParserConfiguration conf = sf.getStructuredFieldIntroducer().getActualConfig();
+      if (conf == null || conf.getAFPFile() == null) {
+        throw new AFPParserException("The file from whitch the structured field has been loaded is unknown.");
+      }
+      SharedFileChannel channel = conf.getReloadChannel();
+      List<StructuredField> list = sfsByChannel.get(channel);
+      if (list == null) {
+        list = new ArrayList<StructuredField>();
+        sfsByChannel.put(channel, list);
+      }
+      list.add(sf);
     }
 
-    synchronized (conf) {
-      InputStream is = null;
-      try {
-        conf.setInputStream(null);
-        is = conf.getInputStream();
-        long lenSFI = sfi.getFileOffset() + 1 + sfi.getLengthOfStructuredFieldIntroducerIncludingExtension();
-        if (is.skip(lenSFI) < lenSFI) {
-          throw new AFPParserException("Failed to skip over SF Introducer.");
+    for (Map.Entry<SharedFileChannel, List<StructuredField>> entry : sfsByChannel.entrySet()) {
+      List<StructuredField> list = entry.getValue();
+      Collections.sort(list, new Comparator<StructuredField>() {
+        @Override
+        public int compare(StructuredField sf1, StructuredField sf2) {
+          long o1 = sf1.getStructuredFieldIntroducer().getFileOffset();
+          long o2 = sf2.getStructuredFieldIntroducer().getFileOffset();
+          return o1 < o2 ? -1 : (o1 == o2 ? 0 : 1);
         }
-
-        int lenOfGrossPayload = sfi.getSFLength() - sfi.getLengthOfStructuredFieldIntroducerIncludingExtension();
-        byte[] grossPayload = new byte[lenOfGrossPayload];
-        byte[] sfData, padding;
-
-
-        // Determine payload.
-        if (lenOfGrossPayload > 0) {
-
-          int read = 0;
-          while (read < lenOfGrossPayload) {
-            int len = is.read(grossPayload, read, lenOfGrossPayload - read);
-            if (len == -1) {
-              throw new AFPParserException("Reached end of file before end of structured field.");
-            } else {
-              read += len;
-            }
+      });
+
+      int from = 0;
+      while (from < list.size()) {
+        long begin = list.get(from).getStructuredFieldIntroducer().getFileOffset();
+        long end = endOf(list.get(from));
+        int to = from + 1;
+        while (to < list.size()) {
+          StructuredFieldIntroducer next = list.get(to).getStructuredFieldIntroducer();
+          long nextEnd = Math.max(end, endOf(list.get(to)));
+          if (next.getFileOffset() - end > RELOAD_MAX_GAP || nextEnd - begin > RELOAD_MAX_RANGE) {
+            break;
           }
+          end = nextEnd;
+          to++;
+        }
 
-          // Determine net payload.
-          if (sfi.isFlagSet(SFFlag.isPadded)) {
-            int lenOfPadding = grossPayload[grossPayload.length - 1];
-            if (lenOfPadding == 0) {
-              lenOfPadding = UtilBinaryDecoding.parseInt(grossPayload, grossPayload.length - 3, 2);
-            }
-
-            int lenOfSFData = lenOfGrossPayload - lenOfPadding;
+        reloadRange(entry.getKey(), list.subList(from, to), begin, end);
+        from = to;
+      }
+    }
+  }
 
-            sfData = new byte[lenOfSFData];
-            padding = new byte[lenOfPadding];
+  private static long endOf(StructuredField sf) {
+    StructuredFieldIntroducer sfi = sf.getStructuredFieldIntroducer();
+    return sfi.getFileOffset() + 1 + sfi.getSFLength();
+  }
 
-            System.arraycopy(grossPayload, 0, sfData, 0, lenOfSFData);
-            System.arraycopy(grossPayload, lenOfSFData, padding, 0, lenOfPadding);
+  private static void reloadRange(SharedFileChannel channel, List<StructuredField> sfs, long begin, long end) throws AFPParserException {
+    ByteBuffer range = ByteBuffer.allocate((int) (end - begin));
+    try {
+      channel.readFully(range, begin);
+    } catch (EOFException e) {
+      throw new AFPParserException("Reached end of file before end of structured field.", e);
+    } catch (IOException e) {
+      throw new AFPParserException("Reload failed.", e);
+    }
 
-          } else {
-            sfData = grossPayload;
-            padding = null;
-          }
+    for (StructuredField sf : sfs) {
+      StructuredFieldIntroducer sfi = sf.getStructuredFieldIntroducer();
+      int sfBegin = (int) (sfi.getFileOffset() - begin);
+      range.limit(sfBegin + 1 + sfi.getSFLength());
+      range.position(sfBegin + 1 + sfi.getLengthOfStructuredFieldIntroducerIncludingExtension());
+      try {
+        decodeGrossPayload(sf, sfi, range, sfi.getActualConfig());
+      } catch (AFPParserException e) {
+        throw e;
+      } catch (Throwable th) {
+        throw new AFPParserException("Reload failed.", th);
+      }
+    }
+  }
 
-          sf.setPadding(padding);
-          sf.decodeAFP(sfData, 0, -1, conf);
+  /**
+   * Splits the gross payload between the given buffer's position and limit into net payload and
+   * padding, and decodes the net payload.
+   */
+  static void decodeGrossPayload(StructuredField sf, StructuredFieldIntroducer sfi, ByteBuffer grossPayload, AFPParserConfiguration conf) throws AFPParserException {
+    int lenOfGrossPayload = grossPayload.remaining();
+    if (lenOfGrossPayload > 0) {
+      // Determine net payload.
+      int lenOfPadding = 0;
+      if (sfi.isFlagSet(SFFlag.isPadded)) {
+        lenOfPadding = grossPayload.get(grossPayload.limit() - 1) & 0xFF;
+        if (lenOfPadding == 0) {
+          lenOfPadding = grossPayload.getShort(grossPayload.limit() - 3) & 0xFFFF;
         }
+      }
 
-      } catch (Throwable th) {
-        if (th instanceof AFPParserException) {
-          throw (AFPParserException) th;
-        } else {
-          throw new AFPParserException("Reload failed.", th);
-        }
-      } finally {
-        if (is != null) {
-          try {
-            is.close();
-            conf.setInputStream(null);
-          } catch (IOException e) {
-            throw new AFPParserException("Failed to close input stream.", e);
-          }
-        }
+      byte[] sfData = new byte[lenOfGrossPayload - lenOfPadding];
+      grossPayload.get(sfData);
+      byte[] padding = null;
+      if (sfi.isFlagSet(SFFlag.isPadded)) {
+        padding = new byte[lenOfPadding];
+        grossPayload.get(padding);
       }
+
+      sf.setPadding(padding);
+      sf.decodeAFP(sfData, 0, -1, conf);
     }
   }
 
@@ -172,6 +226,10 @@ public class AFPParser {
    * input stream or the occurrence of an {@link AFPParserException}.
    */
   public final StructuredField parseNextSF() throws AFPParserException {
+    if (parserConf.isMemoryMapped()) {
+      return parseNextMappedSF();
+    }
+
     StructuredFieldIntroducer sfi = null;
     StructuredFieldErrornouslyBuilt errSf = null;
     try {
@@ -184,29 +242,29 @@ public class AFPParser {
         tmp = is.read();
         if (tmp != -1) {
           nrOfBytesRead++;
+          if (tmp == Constants.AFPBeginByte_0xA5 && parserConf.sfTypeIDFilter != null && skipFilteredSF(is)) {
+            tmp = 0; // Move on to the next SF.
+          }
         }
       }
       while (tmp != Constants.AFPBeginByte_0xA5 && tmp != -1); // Move to the begin of next SF, or EOF.
 
       if (tmp != -1) {
-        sfi = StructuredFieldIntroducer.parse(is);
-        sfi.setFileOffset(nrOfBytesRead - 1);
-
-        StructuredField sf;
-        if (parserConf.isParseToStructuredFieldsBaseData) {
-          sf = new StructuredFieldBaseData();
-          sf.setStructuredFieldIntroducer(sfi);
-        } else {
-          sf = createSFInstance(sfi);
+        if (!isSFIHeaderRead) {
+          readFully(is, sfiBuffer, 0, 8);
         }
+        isSFIHeaderRead = false;
+        readSFI(is);
+        sfiView.setFileOffset(nrOfBytesRead - 1);
+        sfi = sfiView.toStructuredFieldIntroducer();
+
+        StructuredField sf = newStructuredField(sfi);
 
         int lenOfGrossPayload = sfi.getSFLength() - sfi.getLengthOfStructuredFieldIntroducerIncludingExtension();
 
         if (parserConf.isBuildShallow()) {
-          AFPParserConfiguration actualConf = parserConf.clone();
-          actualConf.setInputStream(null);
-          sfi.setActualConfig(actualConf);
-          if (is.skip(lenOfGrossPayload) < lenOfGrossPayload) {
+          sfi.setActualConfig(newShallowConfig());
+          if (skip(is, lenOfGrossPayload) < lenOfGrossPayload) {
             throw new AFPParserException("Failed to skip payload while building shallow objects.");
           }
 
@@ -230,7 +288,7 @@ public class AFPParser {
 
               // Determine net payload.
               if (sfi.isFlagSet(SFFlag.isPadded)) {
-                int lenOfPadding = grossPayload[grossPayload.length - 1];
+                int lenOfPadding = grossPayload[grossPayload.length - 1] & 0xFF;
                 if (lenOfPadding == 0) {
                   lenOfPadding = UtilBinaryDecoding.parseInt(grossPayload, grossPayload.length - 3, 2);
                 }
@@ -263,17 +321,7 @@ public class AFPParser {
 
         }
         if (sf != null) {
-
-          // Preserve certain SFs which maybe referenced by later SFs.
-          if (sf instanceof FNC_FontControl) {
-            parserConf.setCurrentFontControl((FNC_FontControl) sf);
-          } else if (sf instanceof CPD_CodePageDescriptor) {
-            parserConf.setCurrentCodePageDescriptor((CPD_CodePageDescriptor) sf);
-          } else if (sf instanceof CPC_CodePageControl) {
-            parserConf.setCurrentPageControl((CPC_CodePageControl) sf);
-          } else if (sf instanceof BDD_BarCodeDataDescriptor) {
-            parserConf.setCurrentBarCodeDataDescriptor((BDD_BarCodeDataDescriptor) sf);
-          }
+          preserveReferencedSF(sf);
 
           nrOfBytesRead += sf.getStructuredFieldIntroducer().getSFLength();
           nrOfSFBuilt++;
@@ -292,24 +340,380 @@ public class AFPParser {
         errSf.setStructuredFieldIntroducer(sfi);
       }
 
-      nrOfBytesRead += errSf.getStructuredFieldIntroducer().getSFLength();
+      if (errSf.getStructuredFieldIntroducer() != null) {
+        nrOfBytesRead += errSf.getStructuredFieldIntroducer().getSFLength();
+      }
       nrOfSFBuilt++;
       nrOfErrSFBuilt++;
 
-      // Call error() which may or may not re-throw the given exception
-      if (e instanceof AFPParserException) {
-        ((AFPParserException) e).setErrornouslyBuiltStructuredField(errSf);
-        error((AFPParserException) e);
+      escalateError(e, errSf);
+
+      return errSf;
+    }
+  }
+
+  /**
+   * Parses the next structured field from the memory mapped AFP file, see {@link
+   * AFPParserConfiguration#setMemoryMapped(boolean)}. The SFI is decoded in place from the mapped
+   * region and the payload is copied once, directly into the net payload and padding arrays.
+   */
+  private StructuredField parseNextMappedSF() throws AFPParserException {
+    StructuredFieldIntroducer sfi = null;
+    StructuredFieldErrornouslyBuilt errSf = null;
+    ByteBuffer sfBuffer = null;
+    long sfOffset = -1;
+    try {
+      MappedAFPFile mapped = getMappedFile();
+
+      int sfLength;
+      while (true) {
+        sfOffset = mapped.findNextBeginByte(nrOfBytesRead);
+        if (sfOffset == -1) {
+          nrOfBytesRead = mapped.size();
+          return null;
+        }
+        nrOfBytesRead = sfOffset + 1;
+
+        sfLength = mapped.getUnsignedShort(sfOffset + 1);
+        if (sfOffset + 1 + sfLength > mapped.size()) {
+          throw new AFPParserException("Reached end of file before end of structured field.");
+        }
+
+        if (parserConf.sfTypeIDFilter == null) {
+          break;
+        }
+        SFTypeID sfTypeID = SFTypeID.valueOf(mapped.getUnsignedByte(sfOffset + 3), mapped.getUnsignedByte(sfOffset + 4), mapped.getUnsignedByte(sfOffset + 5));
+        if (parserConf.sfTypeIDFilter.contains(sfTypeID)) {
+          break;
+        }
+        nrOfBytesRead = sfOffset + 1 + sfLength;
+        skipped(sfTypeID, sfOffset, sfLength);
+      }
+      sfBuffer = mapped.slice(sfOffset + 1, sfLength);
+
+      sfiView.refill(sfBuffer);
+      sfiView.setFileOffset(sfOffset);
+      sfi = sfiView.toStructuredFieldIntroducer();
+
+      StructuredField sf = newStructuredField(sfi);
+
+      if (parserConf.isBuildShallow()) {
+        sfi.setActualConfig(newShallowConfig());
       } else {
-        AFPParserException afpex = new AFPParserException("An exception occured when parsing structured field at file index position 0x" + Long.toHexString(nrOfBytesRead) + ".", e);
-        afpex.setErrornouslyBuiltStructuredField(errSf);
-        error(afpex);
+        try {
+          decodeGrossPayload(sf, sfi, sfBuffer, parserConf);
+        } catch (Throwable th) {
+          sf = errSf = new StructuredFieldErrornouslyBuilt();
+          errSf.setCausingException(th);
+          errSf.setStructuredFieldIntroducer(sfi);
+          errSf.setData(getGrossPayload(sfBuffer, sfi));
+          if (parserConf.isEscalateParsingErrors()) {
+            throw th;
+          }
+        }
       }
 
+      preserveReferencedSF(sf);
+      nrOfBytesRead = sfOffset + 1 + sfLength;
+      nrOfSFBuilt++;
+
+      return sf;
+
+    } catch (Throwable e) {
+
+      if (errSf == null) {
+        errSf = new StructuredFieldErrornouslyBuilt();
+        errSf.setStructuredFieldIntroducer(sfi);
+        if (sfi != null) {
+          errSf.setData(getGrossPayload(sfBuffer, sfi));
+        }
+      }
+
+      if (sfi != null) {
+        nrOfBytesRead = sfOffset + 1 + sfi.getSFLength();
+      }
+      nrOfSFBuilt++;
+      nrOfErrSFBuilt++;
+
+      escalateError(e, errSf);
+
       return errSf;
     }
   }
 
+  /**
+   * Moves to the next structured field without building or decoding it. Returns the parser's
+   * {@link StructuredFieldIntroducerView}, refilled with the SFI of the structured field, or null if
+   * the end of the AFP data is reached. The returned view is reused by the next call, so scanning
+   * allocates nothing per structured field. Use {@link StructuredFieldIntroducerView#toStructuredFieldIntroducer()}
+   * to keep an SFI. <br> <br> Scanning does not apply {@link AFPParserConfiguration#getSFTypeIDFilter()},
+   * and does not count structured fields as built. Errors are thrown and not passed to {@link
+   * #error(AFPParserException)}.
+   */
+  public final StructuredFieldIntroducerView scanNextSF() throws AFPParserException {
+    return scan(false);
+  }
+
+  /**
+   * Moves to the next structured field like {@link #scanNextSF()}, and makes its net payload,
+   * without padding, available by {@link #getScannedPayload()}. In memory mapped mode the payload is
+   * a read only slice of the mapped file; otherwise it is read into a buffer of the parser that is
+   * reused by the next call. Either way the payload is not copied per structured field, and memory
+   * use stays flat no matter how many structured fields are scanned.
+   */
+  public final StructuredFieldIntroducerView scanNextSFWithPayload() throws AFPParserException {
+    return scan(true);
+  }
+
+  /**
+   * Returns the net payload of the structured field returned by the last call of {@link
+   * #scanNextSFWithPayload()}, between position and limit of the returned buffer. The buffer and its
+   * content are only valid until the next call of a scan or parse method.
+   */
+  public final ByteBuffer getScannedPayload() {
+    return scannedPayload;
+  }
+
+  private StructuredFieldIntroducerView scan(boolean withPayload) throws AFPParserException {
+    scannedPayload = null;
+    try {
+      long sfOffset;
+      if (parserConf.isMemoryMapped()) {
+        MappedAFPFile mapped = getMappedFile();
+        sfOffset = mapped.findNextBeginByte(nrOfBytesRead);
+        if (sfOffset == -1) {
+          nrOfBytesRead = mapped.size();
+          return null;
+        }
+        if (sfOffset + 9 > mapped.size()) {
+          throw new AFPParserException("Reached end of file before end of structured field introducer at file index position 0x" + Long.toHexString(sfOffset) + ".");
+        }
+        mapped.get(sfOffset + 1, sfiBuffer, 0, 8);
+        if (StructuredFieldIntroducerView.hasExtension(sfiBuffer, 0)) {
+          mapped.get(sfOffset + 9, sfiBuffer, 8, 1);
+          mapped.get(sfOffset + 10, sfiBuffer, 9, Math.max(0, (sfiBuffer[8] & 0xFF) - 1));
+        }
+        sfiView.refill(sfiBuffer, 0);
+        if (sfOffset + 1 + sfiView.getSFLength() > mapped.size() || sfiView.getLengthOfGrossPayload() < 0) {
+          throw new AFPParserException("Reached end of file before end of structured field at file index position 0x" + Long.toHexString(sfOffset) + ".");
+        }
+        if (withPayload) {
+          scannedPayload = mapped.slice(sfOffset + 1 + sfiView.getLengthOfStructuredFieldIntroducerIncludingExtension(), sfiView.getLengthOfGrossPayload());
+        }
+      } else {
+        InputStream is = parserConf.getInputStream();
+        int tmp;
+        do {
+          tmp = is.read();
+          if (tmp != -1) {
+            nrOfBytesRead++;
+          }
+        } while (tmp != Constants.AFPBeginByte_0xA5 && tmp != -1);
+        if (tmp == -1) {
+          return null;
+        }
+        sfOffset = nrOfBytesRead - 1;
+        readFully(is, sfiBuffer, 0, 8);
+        readSFI(is);
+        int lenOfGrossPayload = sfiView.getLengthOfGrossPayload();
+        if (lenOfGrossPayload < 0) {
+          throw new AFPParserException("Reached end of file before end of structured field at file index position 0x" + Long.toHexString(sfOffset) + ".");
+        }
+        if (withPayload) {
+          if (scanBuffer == null) {
+            // The SF length is an unsigned 16 bit value.
+            scanBuffer = ByteBuffer.allocate(0xFFFF);
+          }
+          scanBuffer.clear();
+          readFully(is, scanBuffer.array(), 0, lenOfGrossPayload, "structured field");
+          scanBuffer.limit(lenOfGrossPayload);
+          scannedPayload = scanBuffer;
+        } else if (skip(is, lenOfGrossPayload) < lenOfGrossPayload) {
+          throw new AFPParserException("Reached end of file before end of structured field at file index position 0x" + Long.toHexString(sfOffset) + ".");
+        }
+      }
+      if (scannedPayload != null && sfiView.isFlagSet(SFFlag.isPadded) && scannedPayload.limit() > 0) {
+        int lenOfPadding = scannedPayload.get(scannedPayload.limit() - 1) & 0xFF;
+        if (lenOfPadding == 0) {
+          if (scannedPayload.limit() < 3) {
+            throw new AFPParserException("Invalid padding of structured field at file index position 0x" + Long.toHexString(sfOffset) + ".");
+          }
+          lenOfPadding = scannedPayload.getShort(scannedPayload.limit() - 3) & 0xFFFF;
+        }
+        scannedPayload.limit(Math.max(0, scannedPayload.limit() - lenOfPadding));
+      }
+      sfiView.setFileOffset(sfOffset);
+      nrOfBytesRead = sfOffset + 1 + sfiView.getSFLength();
+      return sfiView;
+    } catch (IOException e) {
+      throw new AFPParserException("Failed to scan structured field at file index position 0x" + Long.toHexString(nrOfBytesRead) + ".", e);
+    }
+  }
+
+  private MappedAFPFile getMappedFile() throws AFPParserException {
+    if (mappedFile == null) {
+      if (parserConf.getAFPFile() == null) {
+        throw new AFPParserException("Memory mapped parsing requires an AFP file, see " + AFPParserConfiguration.class.getSimpleName() + ".setAFPFile().");
+      }
+      try {
+        mappedFile = new MappedAFPFile(parserConf.getAFPFile(), parserConf.getMemoryMappedWindowSize());
+      } catch (IOException e) {
+        throw new AFPParserException("Failed to map AFP file '" + parserConf.getAFPFile() + "' into memory.", e);
+      }
+    }
+    return mappedFile;
+  }
+
+  /**
+   * Reads the SFI header of the SF whose 0x5A has just been read. If the SF is not accepted by
+   * {@link AFPParserConfiguration#getSFTypeIDFilter()}, skips the rest of the SF and returns true.
+   * Otherwise the SFI header is kept for {@link #readSFI(InputStream)} and false is returned.
+   */
+  private boolean skipFilteredSF(InputStream is) throws IOException, AFPParserException {
+    long sfOffset = nrOfBytesRead - 1;
+    readFully(is, sfiBuffer, 0, 8);
+    SFTypeID sfTypeID = SFTypeID.valueOf(sfiBuffer[2] & 0xFF, sfiBuffer[3] & 0xFF, sfiBuffer[4] & 0xFF);
+    if (parserConf.sfTypeIDFilter.contains(sfTypeID)) {
+      isSFIHeaderRead = true;
+      return false;
+    }
+
+    int sfLength = ((sfiBuffer[0] & 0xFF) << 8) | (sfiBuffer[1] & 0xFF);
+    if (sfLength < 8 || skip(is, sfLength - 8) < sfLength - 8) {
+      throw new AFPParserException("Reached end of file before end of structured field at file index position 0x" + Long.toHexString(sfOffset) + ".");
+    }
+    nrOfBytesRead = sfOffset + 1 + sfLength;
+    skipped(sfTypeID, sfOffset, sfLength);
+    return true;
+  }
+
+  /**
+   * Refills the parser's {@link StructuredFieldIntroducerView} from the SFI header that has been read
+   * into the SFI buffer, reading the SFI extension from the given stream.
+   */
+  private void readSFI(InputStream is) throws IOException, AFPParserException {
+    if (StructuredFieldIntroducerView.hasExtension(sfiBuffer, 0)) {
+      readFully(is, sfiBuffer, 8, 1);
+      readFully(is, sfiBuffer, 9, (sfiBuffer[8] & 0xFF) - 1);
+    }
+    sfiView.refill(sfiBuffer, 0);
+  }
+
+  private static void readFully(InputStream is, byte[] buffer, int offset, int length) throws IOException, AFPParserException {
+    readFully(is, buffer, offset, length, "structured field introducer");
+  }
+
+  /**
+   * Reads length bytes into the given buffer.
+   *
+   * @param what names the data read, for the message of the exception thrown at the end of the
+   *             stream.
+   */
+  private static void readFully(InputStream is, byte[] buffer, int offset, int length, String what) throws IOException, AFPParserException {
+    int read = 0;
+    while (read < length) {
+      int len = is.read(buffer, offset + read, length - read);
+      if (len == -1) {
+        throw new AFPParserException("Reached end of file before end of " + what + ".");
+      }
+      read += len;
+    }
+  }
+
+  /**
+   * Called for every SF that is skipped because it is not accepted by {@link
+   * AFPParserConfiguration#getSFTypeIDFilter()}.
+   */
+  private void skipped(SFTypeID sfTypeID, long sfOffset, int sfLength) {
+    nrOfSFSkipped++;
+    if (streamHandler != null) {
+      streamHandler.onSkippedField(sfTypeID, sfOffset, sfLength);
+    }
+  }
+
+  /**
+   * Skips the given number of bytes, {@link InputStream#skip(long)} may skip less bytes than
+   * requested before the end of stream is reached. Returns the number of bytes skipped.
+   */
+  private static long skip(InputStream is, long n) throws IOException {
+    long skipped = 0;
+    while (skipped < n) {
+      long len = is.skip(n - skipped);
+      if (len <= 0) {
+        if (is.read() == -1) {
+          break;
+        }
+        len = 1;
+      }
+      skipped += len;
+    }
+    return skipped;
+  }
+
+  /**
+   * Returns the configuration kept by a shallow SF for {@link #reload(List)}. All shallow SFs share
+   * the reload channel of the parser's configuration.
+   */
+  private AFPParserConfiguration newShallowConfig() {
+    if (parserConf.getAFPFile() != null) {
+      parserConf.getReloadChannel();
+    }
+    AFPParserConfiguration actualConf = parserConf.clone();
+    actualConf.setInputStream(null);
+    return actualConf;
+  }
+
+  private static byte[] getGrossPayload(ByteBuffer sfBuffer, StructuredFieldIntroducer sfi) {
+    if (sfBuffer == null) {
+      return null;
+    }
+    ByteBuffer dup = sfBuffer.duplicate();
+    dup.position(Math.min(dup.limit(), sfi.getLengthOfStructuredFieldIntroducerIncludingExtension()));
+    byte[] grossPayload = new byte[dup.remaining()];
+    dup.get(grossPayload);
+    return grossPayload;
+  }
+
+  private StructuredField newStructuredField(StructuredFieldIntroducer sfi) {
+    StructuredField sf;
+    if (parserConf.isParseToStructuredFieldsBaseData) {
+      sf = new StructuredFieldBaseData();
+      sf.setStructuredFieldIntroducer(sfi);
+    } else {
+      sf = createSFInstance(sfi);
+    }
+    return sf;
+  }
+
+  /**
+   * Preserves certain SFs which maybe referenced by later SFs.
+   */
+  private void preserveReferencedSF(StructuredField sf) {
+    if (sf instanceof FNC_FontControl) {
+      parserConf.setCurrentFontControl((FNC_FontControl) sf);
+    } else if (sf instanceof CPD_CodePageDescriptor) {
+      parserConf.setCurrentCodePageDescriptor((CPD_CodePageDescriptor) sf);
+    } else if (sf instanceof CPC_CodePageControl) {
+      parserConf.setCurrentPageControl((CPC_CodePageControl) sf);
+    } else if (sf instanceof BDD_BarCodeDataDescriptor) {
+      parserConf.setCurrentBarCodeDataDescriptor((BDD_BarCodeDataDescriptor) sf);
+    }
+  }
+
+  /**
+   * Calls {@link #error(AFPParserException)} which may or may not re-throw the given exception.
+   */
+  private void escalateError(Throwable e, StructuredFieldErrornouslyBuilt errSf) throws AFPParserException {
+    if (e instanceof AFPParserException) {
+      ((AFPParserException) e).setErrornouslyBuiltStructuredField(errSf);
+      error((AFPParserException) e);
+    } else {
+      AFPParserException afpex = new AFPParserException("An exception occured when parsing structured field at file index position 0x" + Long.toHexString(nrOfBytesRead) + ".", e);
+      afpex.setErrornouslyBuiltStructuredField(errSf);
+      error(afpex);
+    }
+  }
+
   /**
    * This method is called by the parser if an error condition is reached by the parser, e.g. the
    * AFP stream has errors. This method just throws the {@link AFPParserException}. Override this
@@ -326,6 +730,22 @@ public class AFPParser {
   public void quitParsing() throws AFPParserException {
     parserConf.resetCurrentAFPObjects();
 
+    if (mappedFile != null) {
+      try {
+        mappedFile.close();
+      } catch (IOException e) {
+        throw new AFPParserException("Failed to close memory mapped AFP file.", e);
+      } finally {
+        mappedFile = null;
+      }
+    }
+
+    try {
+      parserConf.closeReloadChannel();
+    } catch (IOException e) {
+      throw new AFPParserException("Failed to close AFP file of shallow structured fields.", e);
+    }
+
     if (parserConf.isParserOwnsInputStream && parserConf.inputStream != null) {
       try {
         parserConf.inputStream.close();
@@ -335,6 +755,41 @@ public class AFPParser {
     }
   }
 
+  /**
+   * Parses the AFP stream to the end and passes the structured fields to the given handler. Begin
+   * and end structured fields are passed to {@link AFPStreamHandler#onBegin(StructuredField)} and
+   * {@link AFPStreamHandler#onEnd(StructuredField)}, all others to {@link
+   * AFPStreamHandler#onField(StructuredField)}. Structured fields that are not accepted by {@link
+   * AFPParserConfiguration#getSFTypeIDFilter()} are not built, they are reported to {@link
+   * AFPStreamHandler#onSkippedField(SFTypeID, long, int)}.
+   */
+  public void parse(AFPStreamHandler handler) throws AFPParserException {
+    streamHandler = handler;
+    try {
+      StructuredField sf;
+      while ((sf = parseNextSF()) != null) {
+        if (sf.isBeginSF()) {
+          handler.onBegin(sf);
+        } else if (sf.isEndSF()) {
+          handler.onEnd(sf);
+        } else {
+          handler.onField(sf);
+        }
+      }
+      handler.onEndOfStream();
+    } finally {
+      streamHandler = null;
+    }
+  }
+
+  /**
+   * Returns the number of structured fields that have been skipped so far because they are not
+   * accepted by {@link AFPParserConfiguration#getSFTypeIDFilter()}.
+   */
+  public long getNrOfSFSkipped() {
+    return nrOfSFSkipped;
+  }
+
   /**
    * Returns the total number of structured fields that has been built so far.
    */
@@ -22,13 +22,16 @@ import com.mgz.afp.base.StructuredField;
 import com.mgz.afp.base.StructuredFieldBaseData;
 import com.mgz.afp.base.StructuredFieldIntroducer;
 import com.mgz.afp.bcoca.BDD_BarCodeDataDescriptor;
+import com.mgz.afp.enums.SFTypeID;
 import com.mgz.afp.foca.CPC_CodePageControl;
 import com.mgz.afp.foca.CPD_CodePageDescriptor;
 import com.mgz.afp.foca.FNC_FontControl;
+import com.mgz.util.SingleByteCodec;
 
 import java.io.*;
 import java.nio.charset.Charset;
 import java.security.DigestInputStream;
+import java.util.EnumSet;
 
 /**
  * The AFPParserConfiguration is used to configure the {@link AFPParser}, see {@link
@@ -44,7 +47,12 @@ public class AFPParserConfiguration implements Serializable, Cloneable {
   boolean isParseToStructuredFieldsBaseData;
   boolean isBuildShallow;
   boolean escalateParsingErrors = true;
+  boolean isMemoryMapped;
+  long memoryMappedWindowSize = MappedAFPFile.DEFAULT_WINDOW_SIZE;
   File afpFile;
+  EnumSet<SFTypeID> sfTypeIDFilter;
+  transient volatile SharedFileChannel reloadChannel;
+  private transient volatile SingleByteCodec afpCodec;
   private CPD_CodePageDescriptor currentCodePageDescriptor;
   private CPC_CodePageControl currentPageControl;
   private FNC_FontControl currentFontControl;
@@ -68,6 +76,20 @@ public class AFPParserConfiguration implements Serializable, Cloneable {
    */
   public void setAfpCharSet(Charset afpCharSet) {
     this.afpCharSet = afpCharSet;
+    this.afpCodec = null;
+  }
+
+  /**
+   * Returns the cached {@link SingleByteCodec} of the {@link #getAfpCharSet()}, or null if the AFP
+   * charset is not a single byte charset.
+   */
+  public SingleByteCodec getAfpCodec() {
+    SingleByteCodec codec = afpCodec;
+    if (codec == null || codec.getCharset() != afpCharSet) {
+      codec = SingleByteCodec.forCharset(afpCharSet);
+      afpCodec = codec;
+    }
+    return codec;
   }
 
   /**
@@ -194,6 +216,89 @@ public class AFPParserConfiguration implements Serializable, Cloneable {
     this.escalateParsingErrors = escalateParsingErrors;
   }
 
+  /**
+   * Returns true if the parser reads the AFP file (see {@link #setAFPFile(File)}) through a memory
+   * mapped {@link java.nio.channels.FileChannel} instead of the {@link InputStream}.
+   */
+  public boolean isMemoryMapped() {
+    return isMemoryMapped;
+  }
+
+  /**
+   * If set to true the parser maps the AFP file (see {@link #setAFPFile(File)}) into memory and
+   * decodes the structured fields directly from the mapped region, see {@link MappedAFPFile}. The
+   * {@link InputStream} set by {@link #setInputStream(InputStream)} is ignored in this mode.
+   * Default is false.
+   */
+  public void setMemoryMapped(boolean isMemoryMapped) {
+    this.isMemoryMapped = isMemoryMapped;
+  }
+
+  /**
+   * Returns the size of the file windows mapped into memory if {@link #isMemoryMapped()} is true.
+   */
+  public long getMemoryMappedWindowSize() {
+    return memoryMappedWindowSize;
+  }
+
+  /**
+   * Sets the size of the file windows mapped into memory if {@link #isMemoryMapped()} is true.
+   * Default is 64MB. Minimum is 64KB, maximum is 2GB.
+   */
+  public void setMemoryMappedWindowSize(long memoryMappedWindowSize) {
+    this.memoryMappedWindowSize = memoryMappedWindowSize;
+  }
+
+  /**
+   * Returns the set of {@link SFTypeID}s of the structured fields the parser builds, or null if
+   * the parser builds all structured fields.
+   */
+  public EnumSet<SFTypeID> getSFTypeIDFilter() {
+    return sfTypeIDFilter;
+  }
+
+  /**
+   * If set, the parser builds only structured fields of the given {@link SFTypeID}s. All other
+   * structured fields are skipped by their length without being built or decoded, see {@link
+   * AFPParser#getNrOfSFSkipped()} and {@link AFPStreamHandler#onSkippedField(SFTypeID, long, int)}.
+   * Note that skipped FNC, CPD, CPC, or BDD are not available when decoding later structured fields
+   * that reference them. Default is null, all structured fields are built.
+   */
+  public void setSFTypeIDFilter(EnumSet<SFTypeID> sfTypeIDFilter) {
+    this.sfTypeIDFilter = sfTypeIDFilter;
+  }
+
+  /**
+   * Returns the channel of the AFP file (see {@link #setAFPFile(File)}) used by {@link
+   * AFPParser#reload(java.util.List)}. The channel is shared by all shallow structured fields
+   * built with this configuration.
+   */
+  SharedFileChannel getReloadChannel() {
+    SharedFileChannel channel = reloadChannel;
+    if (channel == null || !channel.getFile().equals(afpFile)) {
+      synchronized (this) {
+        channel = reloadChannel;
+        if (channel == null || !channel.getFile().equals(afpFile)) {
+          channel = reloadChannel = new SharedFileChannel(afpFile);
+        }
+      }
+    }
+    return channel;
+  }
+
+  /**
+   * Closes the file channel used by {@link AFPParser#reload(StructuredField)} to load shallow
+   * structured fields built with this configuration. The shallow structured fields remain
+   * reloadable, the channel is reopened by the next reload. Called by {@link
+   * AFPParser#quitParsing()}.
+   */
+  public void closeReloadChannel() throws IOException {
+    SharedFileChannel channel = reloadChannel;
+    if (channel != null) {
+      channel.close();
+    }
+  }
+
   @Override
   public AFPParserConfiguration clone() {
     try {
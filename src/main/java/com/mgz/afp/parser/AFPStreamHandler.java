@@ -0,0 +1,73 @@
+/*
+Copyright 2015 Rudolf Fiala
+
+This file is part of Alpheus AFP Parser.
+
+Alpheus AFP Parser is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Alpheus AFP Parser is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Alpheus AFP Parser.  If not, see <http://www.gnu.org/licenses/>
+*/
+package com.mgz.afp.parser;
+
+import com.mgz.afp.base.StructuredField;
+import com.mgz.afp.enums.SFTypeID;
+import com.mgz.afp.exceptions.AFPParserException;
+
+/**
+ * Receives the structured fields of an AFP stream parsed by {@link
+ * AFPParser#parse(AFPStreamHandler)}, in stream order. All methods do nothing by default, override
+ * the methods of interest.<br> <br> Combine with {@link AFPParserConfiguration#setSFTypeIDFilter(java.util.EnumSet)}
+ * to build only the structured fields of interest, e.g. to count pages:
+ * <pre>
+ * pc.setSFTypeIDFilter(EnumSet.of(SFTypeID.BPG_BeginPage));
+ * parser.parse(new AFPStreamHandler() {
+ *   public void onBegin(StructuredField sf) { pageCount++; }
+ * });
+ * </pre>
+ */
+public abstract class AFPStreamHandler {
+
+  /**
+   * Called for every begin structured field, e.g. BDT, BNG, BPG.
+   */
+  public void onBegin(StructuredField sf) throws AFPParserException {
+  }
+
+  /**
+   * Called for every end structured field, e.g. EDT, ENG, EPG.
+   */
+  public void onEnd(StructuredField sf) throws AFPParserException {
+  }
+
+  /**
+   * Called for every structured field that is neither a begin nor an end structured field.
+   */
+  public void onField(StructuredField sf) throws AFPParserException {
+  }
+
+  /**
+   * Called for every structured field that is not built, because it is not accepted by {@link
+   * AFPParserConfiguration#getSFTypeIDFilter()}.
+   *
+   * @param sfTypeID   type of the skipped structured field.
+   * @param fileOffset file offset of the skipped structured field's 0x5A byte.
+   * @param sfLength   SF length (SFI length field) of the skipped structured field.
+   */
+  public void onSkippedField(SFTypeID sfTypeID, long fileOffset, int sfLength) {
+  }
+
+  /**
+   * Called when the end of the AFP stream is reached.
+   */
+  public void onEndOfStream() throws AFPParserException {
+  }
+}
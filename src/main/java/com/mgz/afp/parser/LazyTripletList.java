@@ -0,0 +1,206 @@
+/*
+Copyright 2015 Rudolf Fiala
+
+This file is part of Alpheus AFP Parser.
+
+Alpheus AFP Parser is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Alpheus AFP Parser is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Alpheus AFP Parser.  If not, see <http://www.gnu.org/licenses/>
+*/
+package com.mgz.afp.parser;
+
+import com.mgz.afp.base.StructuredField;
+import com.mgz.afp.exceptions.AFPParserException;
+import com.mgz.afp.triplets.Triplet;
+import com.mgz.afp.triplets.Triplet.TripletID;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * List of {@link Triplet}s that records the triplet data at decode time and parses the triplets
+ * on first access (see {@link TripletParser#parseTriplets(byte[], int, int,
+ * AFPParserConfiguration)}). Until then, single triplets can be fetched by {@link
+ * #getTriplet(TripletID)} without decoding the others, and {@link #writeAFP(OutputStream,
+ * AFPParserConfiguration)} writes the recorded data, with the triplets fetched so far encoded in
+ * place so that changes to them are written. When the list is materialized, the fetched triplets
+ * take the place of their decoded counterparts.<br> <br> Only the charset of the decoding
+ * configuration is kept, not the configuration itself.<br> <br> Once materialized the list
+ * behaves like an {@link ArrayList}. Materialization is thread safe, modification is not.
+ */
+public class LazyTripletList extends AbstractList<Triplet> {
+  private byte[] tripletData;
+  private Charset charset;
+  private AFPParserConfiguration decodeConfig;
+  /**
+   * Triplets handed out by {@link #getTriplet(TripletID)} before materialization, by their offset
+   * in {@link #tripletData}.
+   */
+  private TreeMap<Integer, Triplet> fetchedTriplets;
+  private volatile List<Triplet> triplets;
+
+  /**
+   * Records the triplet data contained in given data, starting at position offset for length
+   * bytes. If parameter length = -1, the triplet data reaches up to the end of sfData.
+   */
+  public LazyTripletList(byte[] sfData, int offset, int length, AFPParserConfiguration config) {
+    int actualLength = StructuredField.getActualLength(sfData, offset, length);
+    tripletData = new byte[actualLength];
+    System.arraycopy(sfData, offset, tripletData, 0, actualLength);
+    this.charset = config.getAfpCharSet();
+  }
+
+  /**
+   * Returns true if the triplets have been parsed.
+   */
+  public boolean isMaterialized() {
+    return triplets != null;
+  }
+
+  /**
+   * Returns the configuration to decode the recorded triplet data with. Must be called while
+   * holding the lock of this list.
+   */
+  private AFPParserConfiguration getDecodeConfig() {
+    if (decodeConfig == null) {
+      decodeConfig = new AFPParserConfiguration();
+      decodeConfig.setAfpCharSet(charset);
+    }
+    return decodeConfig;
+  }
+
+  private List<Triplet> materialize() {
+    List<Triplet> result = triplets;
+    if (result == null) {
+      synchronized (this) {
+        result = triplets;
+        if (result == null) {
+          result = TripletParser.parseTriplets(tripletData, 0, tripletData.length, getDecodeConfig());
+          if (fetchedTriplets != null) {
+            int pos = 0;
+            for (int i = 0; i < result.size(); i++) {
+              Triplet fetched = fetchedTriplets.get(pos);
+              pos += result.get(i).getLength();
+              if (fetched != null) {
+                result.set(i, fetched);
+              }
+            }
+          }
+          triplets = result;
+          tripletData = null;
+          charset = null;
+          decodeConfig = null;
+          fetchedTriplets = null;
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the first triplet of the given {@link TripletID}, or null if there is none. If the
+   * list is not materialized yet, only the found triplet is decoded. The same instance is returned
+   * on subsequent calls and becomes part of the list when it is materialized.
+   */
+  public Triplet getTriplet(TripletID tripletID) throws AFPParserException {
+    if (triplets == null) {
+      synchronized (this) {
+        if (triplets == null) {
+          int offset = TripletParser.findTripletOffset(tripletData, 0, tripletData.length, tripletID);
+          if (offset < 0) {
+            return null;
+          }
+          if (fetchedTriplets == null) {
+            fetchedTriplets = new TreeMap<Integer, Triplet>();
+          }
+          Triplet triplet = fetchedTriplets.get(offset);
+          if (triplet == null) {
+            triplet = TripletParser.parseTriplet(tripletData, offset, tripletData[offset] & 0xFF, getDecodeConfig());
+            fetchedTriplets.put(offset, triplet);
+          }
+          return triplet;
+        }
+      }
+    }
+    for (Triplet triplet : triplets) {
+      if (triplet.getTripletID() == tripletID) {
+        return triplet;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Writes the triplets. If the list is not materialized, the recorded triplet data is written,
+   * except for the triplets fetched by {@link #getTriplet(TripletID)}, which are encoded.
+   */
+  public void writeAFP(OutputStream os, AFPParserConfiguration config) throws IOException {
+    byte[] data;
+    Map<Integer, Triplet> fetched = null;
+    synchronized (this) {
+      data = tripletData;
+      if (data != null && fetchedTriplets != null) {
+        fetched = new TreeMap<Integer, Triplet>(fetchedTriplets);
+      }
+    }
+    if (data == null) {
+      for (Triplet triplet : triplets) {
+        triplet.writeAFP(os, config);
+      }
+    } else if (fetched == null) {
+      os.write(data);
+    } else {
+      int pos = 0;
+      for (Map.Entry<Integer, Triplet> entry : fetched.entrySet()) {
+        int offset = entry.getKey();
+        os.write(data, pos, offset - pos);
+        entry.getValue().writeAFP(os, config);
+        pos = offset + (data[offset] & 0xFF);
+      }
+      os.write(data, pos, data.length - pos);
+    }
+  }
+
+  @Override
+  public Triplet get(int index) {
+    return materialize().get(index);
+  }
+
+  @Override
+  public int size() {
+    return materialize().size();
+  }
+
+  @Override
+  public Triplet set(int index, Triplet triplet) {
+    return materialize().set(index, triplet);
+  }
+
+  @Override
+  public void add(int index, Triplet triplet) {
+    materialize().add(index, triplet);
+    modCount++;
+  }
+
+  @Override
+  public Triplet remove(int index) {
+    Triplet removed = materialize().remove(index);
+    modCount++;
+    return removed;
+  }
+}
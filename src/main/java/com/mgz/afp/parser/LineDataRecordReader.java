@@ -0,0 +1,508 @@
+/*
+Copyright 2015 Rudolf Fiala
+
+This file is part of Alpheus AFP Parser.
+
+Alpheus AFP Parser is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Alpheus AFP Parser is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Alpheus AFP Parser.  If not, see <http://www.gnu.org/licenses/>
+*/
+package com.mgz.afp.parser;
+
+import com.mgz.afp.base.StructuredField;
+import com.mgz.afp.base.StructuredFieldIntroducer;
+import com.mgz.afp.base.StructuredFieldIntroducerView;
+import com.mgz.afp.exceptions.AFPParserException;
+import com.mgz.util.Constants;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Frames the records of a line data or mixed mode file, in which line data records and structured
+ * fields are interleaved. Unlike {@link AFPParser}, which skips everything that is not a
+ * structured field, every record is returned. Records are framed by a {@link RecordFormat}: a
+ * record descriptor word, a fixed record length, or a delimiter.<br> <br> A line data record may
+ * begin with a carriage control byte (CC) and a table reference character (TRC), see {@link
+ * #setCarriageControl(boolean)} and {@link #setTableReferenceCharacter(boolean)}. In mixed mode a
+ * record whose first byte is 0x5A is a structured field; its SFI is available by {@link
+ * #getStructuredFieldIntroducer()}, and it may be built by {@link
+ * #parseStructuredField(AFPParserConfiguration)}. In {@link RecordFormat#Delimited} format a
+ * structured field is framed by its SFI length, as it may contain the delimiter; a delimiter
+ * directly following it is skipped.<br> <br> Records are not copied: like {@link PTOCACursor} the
+ * current record is exposed by offsets into {@link #getData()}, or into {@link #getBuffer()} if
+ * the reader steps through a direct {@link ByteBuffer}, e.g. a memory mapped file. A stream is read
+ * in large blocks into a buffer of the reader. Offsets and content are valid until the next call
+ * of {@link #next()}.<br> <br> A reader is not thread safe.
+ */
+public final class LineDataRecordReader {
+  /**
+   * Default size of the buffer that an {@link InputStream} is read into.
+   */
+  public static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+
+  /**
+   * The framing of the records.
+   */
+  public enum RecordFormat {
+    /**
+     * Every record is preceded by a four byte record descriptor word (RDW), the first two bytes of
+     * which hold the length of the record including the RDW, big endian. This is the format of
+     * variable length (RECFM=VB) data sets.
+     */
+    RDW,
+    /**
+     * All records have the same length, see {@link #setFixedRecordLength(int)}.
+     */
+    Fixed,
+    /**
+     * Every record is followed by a delimiter byte, see {@link #setDelimiter(int)}. A carriage
+     * return (0x0D) preceding a 0x0A delimiter is not part of the record.
+     */
+    Delimited
+  }
+
+  private final RecordFormat recordFormat;
+  private final InputStream inputStream;
+  private byte[] data;
+  private final ByteBuffer buffer;
+  private int pos;
+  private int end;
+  private boolean isEndOfStream;
+  private long fileOffsetOfData;
+
+  private int fixedRecordLength;
+  private int delimiter = 0x0A;
+  private boolean isMixedMode = true;
+  private boolean hasCarriageControl;
+  private boolean hasTableReferenceCharacter;
+
+  private final StructuredFieldIntroducerView sfiView = new StructuredFieldIntroducerView();
+  private ByteBuffer dataView;
+  private long recordFileOffset;
+  private int recordOffset;
+  private int recordLength;
+  private int dataOffset;
+  private int dataLength;
+  private int carriageControl;
+  private int tableReferenceCharacter;
+  private boolean isStructuredField;
+  private long nrOfRecords;
+  private long nrOfStructuredFields;
+
+  /**
+   * Reads the records of the given stream, through a buffer of {@link #DEFAULT_BUFFER_SIZE}.
+   */
+  public LineDataRecordReader(InputStream inputStream, RecordFormat recordFormat) {
+    this(inputStream, recordFormat, DEFAULT_BUFFER_SIZE);
+  }
+
+  /**
+   * Reads the records of the given stream, through a buffer of the given initial size. The buffer
+   * grows if a record does not fit.
+   */
+  public LineDataRecordReader(InputStream inputStream, RecordFormat recordFormat, int bufferSize) {
+    this.recordFormat = recordFormat;
+    this.inputStream = inputStream;
+    this.data = new byte[Math.max(bufferSize, 256)];
+    this.buffer = null;
+  }
+
+  /**
+   * Steps through the records between position and limit of the given buffer. Position and limit
+   * of the buffer are not changed, offsets returned by the reader are absolute indexes of the
+   * buffer, or of its backing array.
+   */
+  public LineDataRecordReader(ByteBuffer buffer, RecordFormat recordFormat) {
+    this.recordFormat = recordFormat;
+    this.inputStream = null;
+    if (buffer.hasArray()) {
+      this.data = buffer.array();
+      this.buffer = null;
+      this.pos = buffer.arrayOffset() + buffer.position();
+      this.end = buffer.arrayOffset() + buffer.limit();
+    } else {
+      this.data = null;
+      this.buffer = buffer;
+      this.pos = buffer.position();
+      this.end = buffer.limit();
+    }
+    this.fileOffsetOfData = -pos;
+    this.isEndOfStream = true;
+  }
+
+  /**
+   * Sets the length of the records of {@link RecordFormat#Fixed} format.
+   */
+  public LineDataRecordReader setFixedRecordLength(int fixedRecordLength) {
+    this.fixedRecordLength = fixedRecordLength;
+    return this;
+  }
+
+  /**
+   * Sets the delimiter of {@link RecordFormat#Delimited} format, 0x0A (LF) by default; 0x25 is the
+   * EBCDIC line feed.
+   */
+  public LineDataRecordReader setDelimiter(int delimiter) {
+    this.delimiter = delimiter & 0xFF;
+    return this;
+  }
+
+  /**
+   * Sets whether records that begin with 0x5A are structured fields. True by default.
+   */
+  public LineDataRecordReader setMixedMode(boolean isMixedMode) {
+    this.isMixedMode = isMixedMode;
+    return this;
+  }
+
+  /**
+   * Sets whether line data records begin with a carriage control byte.
+   */
+  public LineDataRecordReader setCarriageControl(boolean hasCarriageControl) {
+    this.hasCarriageControl = hasCarriageControl;
+    return this;
+  }
+
+  /**
+   * Sets whether line data records contain a table reference character, following the carriage
+   * control byte if any.
+   */
+  public LineDataRecordReader setTableReferenceCharacter(boolean hasTableReferenceCharacter) {
+    this.hasTableReferenceCharacter = hasTableReferenceCharacter;
+    return this;
+  }
+
+  /**
+   * Moves to the next record. Returns false if the end of the data is reached.
+   *
+   * @throws AFPParserException if a record is truncated or its RDW is invalid, or if reading the
+   *                            stream fails.
+   */
+  public boolean next() throws AFPParserException {
+    try {
+      switch (recordFormat) {
+        case RDW:
+          if (!frameRDW()) {
+            return false;
+          }
+          break;
+        case Fixed:
+          if (!frameFixed()) {
+            return false;
+          }
+          break;
+        default:
+          if (!frameDelimited()) {
+            return false;
+          }
+          break;
+      }
+    } catch (IOException e) {
+      throw new AFPParserException("Failed to read line data record at file index position 0x" + Long.toHexString(fileOffsetOfData + pos) + ".", e);
+    }
+    decodeRecord();
+    nrOfRecords++;
+    return true;
+  }
+
+  private boolean frameRDW() throws IOException, AFPParserException {
+    if (!ensure(4)) {
+      return false;
+    }
+    int length = (byteAt(pos) << 8) | byteAt(pos + 1);
+    if (length < 4) {
+      throw new AFPParserException("Invalid record descriptor word at file index position 0x" + Long.toHexString(fileOffsetOfData + pos) + ".");
+    }
+    if (!ensure(length)) {
+      throw truncated(length);
+    }
+    recordFileOffset = fileOffsetOfData + pos;
+    recordOffset = pos + 4;
+    recordLength = length - 4;
+    pos += length;
+    return true;
+  }
+
+  private boolean frameFixed() throws IOException, AFPParserException {
+    if (fixedRecordLength <= 0) {
+      throw new AFPParserException("The record length of " + RecordFormat.Fixed + " records is not set.");
+    }
+    if (!ensure(1)) {
+      return false;
+    }
+    if (!ensure(fixedRecordLength)) {
+      throw truncated(fixedRecordLength);
+    }
+    recordFileOffset = fileOffsetOfData + pos;
+    recordOffset = pos;
+    recordLength = fixedRecordLength;
+    pos += fixedRecordLength;
+    return true;
+  }
+
+  private boolean frameDelimited() throws IOException, AFPParserException {
+    if (!ensure(1)) {
+      return false;
+    }
+    if (isMixedMode && byteAt(pos) == Constants.AFPBeginByte_0xA5) {
+      if (!ensure(3)) {
+        throw truncated(3);
+      }
+      int length = 1 + ((byteAt(pos + 1) << 8) | byteAt(pos + 2));
+      // Read ahead the delimiter, too, so that the record is not moved when it is skipped.
+      ensure(length + 2);
+      if (end - pos < length) {
+        throw truncated(length);
+      }
+      recordFileOffset = fileOffsetOfData + pos;
+      recordOffset = pos;
+      recordLength = length;
+      pos += length;
+      if (pos < end && byteAt(pos) == delimiter) {
+        pos++;
+      } else if (delimiter == 0x0A && pos + 1 < end && byteAt(pos) == 0x0D && byteAt(pos + 1) == 0x0A) {
+        pos += 2;
+      }
+      return true;
+    }
+
+    int scanned = 0;
+    int index;
+    while ((index = indexOfDelimiter(pos + scanned)) < 0) {
+      scanned = end - pos;
+      if (!ensure(scanned + 1)) {
+        index = end;
+        break;
+      }
+    }
+    recordFileOffset = fileOffsetOfData + pos;
+    recordOffset = pos;
+    recordLength = index - pos;
+    if (delimiter == 0x0A && recordLength > 0 && byteAt(index - 1) == 0x0D) {
+      recordLength--;
+    }
+    pos = Math.min(index + 1, end);
+    return true;
+  }
+
+  private int indexOfDelimiter(int from) {
+    if (data != null) {
+      byte d = (byte) delimiter;
+      for (int i = from; i < end; i++) {
+        if (data[i] == d) {
+          return i;
+        }
+      }
+    } else {
+      byte d = (byte) delimiter;
+      for (int i = from; i < end; i++) {
+        if (buffer.get(i) == d) {
+          return i;
+        }
+      }
+    }
+    return -1;
+  }
+
+  private AFPParserException truncated(int length) {
+    return new AFPParserException("Reached end of file before end of record of length " + length + " at file index position 0x" + Long.toHexString(fileOffsetOfData + pos) + ".");
+  }
+
+  /**
+   * Makes sure that the given number of bytes is available from the current position, reading the
+   * stream if needed. Returns false if the end of the data is reached before.
+   */
+  private boolean ensure(int length) throws IOException {
+    if (end - pos >= length) {
+      return true;
+    }
+    if (isEndOfStream) {
+      return false;
+    }
+    if (pos > 0) {
+      System.arraycopy(data, pos, data, 0, end - pos);
+      fileOffsetOfData += pos;
+      end -= pos;
+      pos = 0;
+    }
+    if (length > data.length) {
+      byte[] newData = new byte[Math.max(length, data.length * 2)];
+      System.arraycopy(data, 0, newData, 0, end);
+      data = newData;
+      dataView = null;
+    }
+    while (end < length) {
+      int len = inputStream.read(data, end, data.length - end);
+      if (len == -1) {
+        isEndOfStream = true;
+        return false;
+      }
+      end += len;
+    }
+    return true;
+  }
+
+  private int byteAt(int index) {
+    return (data != null ? data[index] : buffer.get(index)) & 0xFF;
+  }
+
+  private void decodeRecord() throws AFPParserException {
+    carriageControl = -1;
+    tableReferenceCharacter = -1;
+    dataOffset = recordOffset;
+    dataLength = recordLength;
+    isStructuredField = isMixedMode && recordLength >= 9 && byteAt(recordOffset) == Constants.AFPBeginByte_0xA5;
+    if (isStructuredField) {
+      carriageControl = Constants.AFPBeginByte_0xA5;
+      if (data != null) {
+        sfiView.refill(data, recordOffset + 1);
+      } else {
+        ByteBuffer dup = buffer.duplicate();
+        dup.position(recordOffset + 1);
+        sfiView.refill(dup);
+      }
+      sfiView.setFileOffset(fileOffsetOfData + recordOffset);
+      if (sfiView.getSFLength() > recordLength - 1 || sfiView.getLengthOfGrossPayload() < 0) {
+        throw new AFPParserException("The structured field at file index position 0x" + Long.toHexString(sfiView.getFileOffset()) + " exceeds its record.");
+      }
+      dataOffset = recordOffset + 1;
+      dataLength = sfiView.getSFLength();
+      nrOfStructuredFields++;
+      return;
+    }
+    if (hasCarriageControl && dataLength > 0) {
+      carriageControl = byteAt(dataOffset);
+      dataOffset++;
+      dataLength--;
+    }
+    if (hasTableReferenceCharacter && dataLength > 0) {
+      tableReferenceCharacter = byteAt(dataOffset);
+      dataOffset++;
+      dataLength--;
+    }
+  }
+
+  /**
+   * Builds the structured field of the current record, see {@link #isStructuredField()}. Unlike
+   * {@link AFPParser#parseNextSF()}, the structured fields referenced by later ones (e.g. FNC, CPC)
+   * are not preserved in the given configuration.
+   */
+  public StructuredField parseStructuredField(AFPParserConfiguration config) throws AFPParserException {
+    if (!isStructuredField) {
+      throw new AFPParserException("The record at file index position 0x" + Long.toHexString(recordFileOffset) + " is not a structured field.");
+    }
+    StructuredFieldIntroducer sfi = sfiView.toStructuredFieldIntroducer();
+    StructuredField sf = AFPParser.createSFInstance(sfi);
+    ByteBuffer grossPayload = getDataAsBuffer();
+    grossPayload.position(grossPayload.position() + sfiView.getLengthOfStructuredFieldIntroducerIncludingExtension());
+    AFPParser.decodeGrossPayload(sf, sfi, grossPayload, config);
+    return sf;
+  }
+
+  /**
+   * Returns true if the current record is a structured field. Its data begins with the SFI,
+   * following the 0x5A.
+   */
+  public boolean isStructuredField() {
+    return isStructuredField;
+  }
+
+  /**
+   * Returns the SFI of the current record if it is a structured field. The view is reused by the
+   * next call of {@link #next()}.
+   */
+  public StructuredFieldIntroducerView getStructuredFieldIntroducer() {
+    return isStructuredField ? sfiView : null;
+  }
+
+  /**
+   * Returns the carriage control byte of the current record, 0x5A for a structured field, or -1.
+   */
+  public int getCarriageControl() {
+    return carriageControl;
+  }
+
+  /**
+   * Returns the table reference character of the current record, or -1.
+   */
+  public int getTableReferenceCharacter() {
+    return tableReferenceCharacter;
+  }
+
+  /**
+   * Returns the array the reader steps through, or null if it steps through a direct {@link
+   * ByteBuffer}.
+   */
+  public byte[] getData() {
+    return data;
+  }
+
+  /**
+   * Returns the direct {@link ByteBuffer} the reader steps through, or null if it steps through an
+   * array.
+   */
+  public ByteBuffer getBuffer() {
+    return buffer;
+  }
+
+  /**
+   * Returns the offset of the current record, including carriage control and TRC, excluding RDW
+   * and delimiter.
+   */
+  public int getRecordOffset() {
+    return recordOffset;
+  }
+
+  public int getRecordLength() {
+    return recordLength;
+  }
+
+  /**
+   * Returns the offset of the data of the current record, following carriage control and TRC.
+   */
+  public int getDataOffset() {
+    return dataOffset;
+  }
+
+  public int getDataLength() {
+    return dataLength;
+  }
+
+  /**
+   * Returns the data of the current record between position and limit of a read only view of the
+   * reader's data. The view is reused by the next call.
+   */
+  public ByteBuffer getDataAsBuffer() {
+    if (dataView == null) {
+      dataView = data != null ? ByteBuffer.wrap(data).asReadOnlyBuffer() : buffer.asReadOnlyBuffer();
+    }
+    dataView.limit(dataOffset + dataLength).position(dataOffset);
+    return dataView;
+  }
+
+  /**
+   * Returns the position in the file where the current record begins, including its RDW.
+   */
+  public long getRecordFileOffset() {
+    return recordFileOffset;
+  }
+
+  public long getNrOfRecords() {
+    return nrOfRecords;
+  }
+
+  public long getNrOfStructuredFields() {
+    return nrOfStructuredFields;
+  }
+}
@@ -0,0 +1,165 @@
+/*
+Copyright 2015 Rudolf Fiala
+
+This file is part of Alpheus AFP Parser.
+
+Alpheus AFP Parser is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Alpheus AFP Parser is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Alpheus AFP Parser.  If not, see <http://www.gnu.org/licenses/>
+*/
+package com.mgz.afp.parser;
+
+import com.mgz.util.Constants;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Read-only, memory mapped view of an AFP file. The file is mapped in windows of configurable size
+ * (see {@link AFPParserConfiguration#setMemoryMappedWindowSize(long)}), so files larger than 2 GB
+ * can be processed. A window is re-mapped at the beginning of a structured field whenever the
+ * structured field does not fit into the current window.<br> <br> Data is handed out as {@link
+ * ByteBuffer} slices of the mapped region without copying, or copied into an array by {@link
+ * #get(long, byte[], int, int)}. The parser reads the file through the slices, so the net payload
+ * of a structured field is copied once, by {@link AFPParser}, into the array it is decoded from.
+ */
+public class MappedAFPFile implements Closeable {
+  /**
+   * Default size of a mapped window: 64MB.
+   */
+  public static final long DEFAULT_WINDOW_SIZE = 64L * 1024 * 1024;
+  /**
+   * Minimal size of a mapped window. A window has to hold at least one complete structured field
+   * including the leading 0x5A.
+   */
+  public static final long MIN_WINDOW_SIZE = 1 + 0xFFFF;
+
+  private final File file;
+  private final RandomAccessFile randomAccessFile;
+  private final FileChannel channel;
+  private final long fileSize;
+  private final long windowSize;
+  private MappedByteBuffer window;
+  private long windowStart;
+
+  public MappedAFPFile(File file, long windowSize) throws IOException {
+    this.file = file;
+    this.windowSize = Math.min(Integer.MAX_VALUE, Math.max(MIN_WINDOW_SIZE, windowSize));
+    randomAccessFile = new RandomAccessFile(file, "r");
+    channel = randomAccessFile.getChannel();
+    fileSize = channel.size();
+  }
+
+  public File getFile() {
+    return file;
+  }
+
+  /**
+   * Returns the size of the mapped file.
+   */
+  public long size() {
+    return fileSize;
+  }
+
+  /**
+   * Returns the file position of the next 0x5A structured field begin byte at or after the given
+   * file position, or -1 if there is none.
+   */
+  public long findNextBeginByte(long fromPosition) throws IOException {
+    long pos = fromPosition;
+    while (pos < fileSize) {
+      ensureMapped(pos, 1);
+      int idx = (int) (pos - windowStart);
+      int limit = window.limit();
+      while (idx < limit) {
+        if (window.get(idx) == (byte) Constants.AFPBeginByte_0xA5) {
+          return windowStart + idx;
+        }
+        idx++;
+      }
+      pos = windowStart + limit;
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the unsigned byte at the given file position.
+   */
+  public int getUnsignedByte(long position) throws IOException {
+    ensureMapped(position, 1);
+    return window.get((int) (position - windowStart)) & 0xFF;
+  }
+
+  /**
+   * Returns the big endian unsigned two byte value at the given file position.
+   */
+  public int getUnsignedShort(long position) throws IOException {
+    ensureMapped(position, 2);
+    return window.getShort((int) (position - windowStart)) & 0xFFFF;
+  }
+
+  /**
+   * Copies length bytes at the given file position into the given array.
+   */
+  public void get(long position, byte[] dst, int offset, int length) throws IOException {
+    ensureMapped(position, length);
+    int idx = (int) (position - windowStart);
+    for (int i = 0; i < length; i++) {
+      dst[offset + i] = window.get(idx + i);
+    }
+  }
+
+  /**
+   * Returns a read only {@link ByteBuffer} with position 0 and limit length, that is backed by the
+   * mapped region [position, position + length) of the file.
+   *
+   * @throws IOException if the given range exceeds the size of the file, or mapping fails.
+   */
+  public ByteBuffer slice(long position, int length) throws IOException {
+    if (position < 0 || length < 0 || position + length > fileSize) {
+      throw new IOException("Range [0x" + Long.toHexString(position) + ", +" + length + "] exceeds the size of file '" + file + "'.");
+    }
+    ensureMapped(position, length);
+    ByteBuffer dup = window.duplicate();
+    int idx = (int) (position - windowStart);
+    dup.limit(idx + length);
+    dup.position(idx);
+    return dup.slice();
+  }
+
+  private void ensureMapped(long position, int length) throws IOException {
+    if (window != null && position >= windowStart && position + length <= windowStart + window.limit()) {
+      return;
+    }
+    if (position + length > fileSize) {
+      throw new IOException("Reached end of file '" + file + "' at position 0x" + Long.toHexString(position) + ".");
+    }
+    long mapSize = Math.min(Math.max(windowSize, length), fileSize - position);
+    window = channel.map(FileChannel.MapMode.READ_ONLY, position, mapSize);
+    windowStart = position;
+  }
+
+  /**
+   * Closes the underlying file channel. Already mapped regions stay valid until they are garbage
+   * collected.
+   */
+  @Override
+  public void close() throws IOException {
+    window = null;
+    randomAccessFile.close();
+  }
+}
@@ -21,12 +21,32 @@ package com.mgz.afp.parser;
 import com.mgz.afp.base.StructuredField;
 import com.mgz.afp.exceptions.AFPParserException;
 import com.mgz.afp.ptoca.controlSequence.PTOCAControlSequence;
+import com.mgz.afp.ptoca.controlSequence.PTOCAControlSequence.ControlSequenceFunctionType;
 import com.mgz.afp.ptoca.controlSequence.PTOCAControlSequence.ControlSequenceIntroducer;
 
+import java.lang.reflect.Constructor;
 import java.util.ArrayList;
 import java.util.List;
 
 public class PTOCAControlSequenceParser {
+  /**
+   * Constructors of the {@link PTOCAControlSequence} implementations, indexed by the ordinal of
+   * their {@link ControlSequenceFunctionType}.
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static final Constructor<? extends PTOCAControlSequence>[] constructors = new Constructor[ControlSequenceFunctionType.values().length];
+
+  static {
+    for (ControlSequenceFunctionType csft : ControlSequenceFunctionType.values()) {
+      try {
+        Class<?> clazz = Class.forName(PTOCAControlSequence.class.getName() + "$" + csft.name());
+        constructors[csft.ordinal()] = clazz.asSubclass(PTOCAControlSequence.class).getConstructor();
+      } catch (Exception ex) {
+        // No implementation, createControlSequenceInstance() fails for this type.
+      }
+    }
+  }
+
   public static List<PTOCAControlSequence> parseControlSequences(byte[] sfData, int offset, int length, AFPParserConfiguration config) throws AFPParserException {
 
     List<PTOCAControlSequence> controlSequences = new ArrayList<PTOCAControlSequence>();
@@ -55,23 +75,26 @@ public class PTOCAControlSequenceParser {
     return controlSequences;
   }
 
+  /**
+   * Returns a new instance of the {@link PTOCAControlSequence} implementation of the given {@link
+   * ControlSequenceIntroducer}'s function type. The constructors are resolved once, when this
+   * class is initialized.
+   */
   public static final PTOCAControlSequence createControlSequenceInstance(ControlSequenceIntroducer csi) throws AFPParserException {
+    ControlSequenceFunctionType csft = csi.getControlSequenceFunctionType();
+    Constructor<? extends PTOCAControlSequence> constructor = csft != null ? constructors[csft.ordinal()] : null;
     PTOCAControlSequence cs = null;
-    String className = null;
     try {
-      className = com.mgz.afp.ptoca.controlSequence.PTOCAControlSequence.class.getName() + "$" + csi.getControlSequenceFunctionType().name();
-      Class<?> clazz = Class.forName(className);
-      cs = (PTOCAControlSequence) clazz.newInstance();
+      cs = constructor.newInstance();
     } catch (Throwable cnfex) {
+      String className = PTOCAControlSequence.class.getName() + "$" + (csft != null ? csft.name() : null);
       throw new AFPParserException(PTOCAControlSequence.class.getSimpleName() + ": failed to instantiate control sequence class '" + className + "'.");
     }
 
-    if (cs == null) {
-      cs = new com.mgz.afp.ptoca.controlSequence.Undefined();
-    }
     cs.setCsi(csi);
 
     return cs;
   }
 
+
 }
@@ -0,0 +1,210 @@
+/*
+Copyright 2015 Rudolf Fiala
+
+This file is part of Alpheus AFP Parser.
+
+Alpheus AFP Parser is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Alpheus AFP Parser is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Alpheus AFP Parser.  If not, see <http://www.gnu.org/licenses/>
+*/
+package com.mgz.afp.parser;
+
+import com.mgz.afp.exceptions.AFPParserException;
+import com.mgz.afp.ptoca.controlSequence.PTOCAControlSequence.ControlSequenceFunctionType;
+import com.mgz.afp.ptoca.controlSequence.PTOCAControlSequence.ControlSequenceIntroducer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Steps through the PTOCA control sequences of a byte[] or {@link ByteBuffer} range, e.g. the payload
+ * of a PTX, without creating {@link com.mgz.afp.ptoca.controlSequence.PTOCAControlSequence}
+ * objects. The current control sequence is exposed by its function type code, and by offset and
+ * length of its parameters. Chained and unchained control sequence introducers are handled like
+ * {@link ControlSequenceIntroducer#parseCSI(boolean, byte[], int, int, AFPParserConfiguration)}
+ * does: a control sequence whose function type code is odd is followed by a chained control
+ * sequence without 0x2BD3 prefix.<br> <br> A cursor is reusable (see {@link #reset(byte[], int,
+ * int)}) and not thread safe. Stepping allocates nothing.
+ */
+public final class PTOCACursor {
+  private byte[] data;
+  private ByteBuffer buffer;
+  private int pos;
+  private int end;
+  private boolean isNextChained;
+
+  private int csOffset;
+  private int functionTypeCode;
+  private boolean isChained;
+  private int parameterOffset;
+  private int parameterLength;
+
+  /**
+   * Positions the cursor before the first control sequence in the given range. If length is -1,
+   * the range ends at the end of the array.
+   */
+  public PTOCACursor reset(byte[] data, int offset, int length) {
+    this.data = data;
+    this.buffer = null;
+    reset(offset, length != -1 ? offset + length : data.length);
+    return this;
+  }
+
+  /**
+   * Positions the cursor before the first control sequence between the buffer's position and
+   * limit. Position and limit of the buffer are not changed, offsets returned by the cursor are
+   * absolute indexes of the buffer.
+   */
+  public PTOCACursor reset(ByteBuffer buffer) {
+    this.data = null;
+    this.buffer = buffer;
+    reset(buffer.position(), buffer.limit());
+    return this;
+  }
+
+  private void reset(int from, int to) {
+    pos = from;
+    end = to;
+    isNextChained = false;
+    csOffset = -1;
+    functionTypeCode = -1;
+    isChained = false;
+    parameterOffset = -1;
+    parameterLength = 0;
+  }
+
+  /**
+   * Moves to the next control sequence. Returns false if the end of the range is reached.
+   *
+   * @throws AFPParserException if an unchained control sequence does not start with 0x2BD3, or a
+   *                            control sequence exceeds the range.
+   */
+  public boolean next() throws AFPParserException {
+    if (pos >= end) {
+      return false;
+    }
+    int csBegin = pos;
+    int p = pos;
+    if (!isNextChained) {
+      if (p + 2 > end || getUnsignedByte(p) != 0x2B || getUnsignedByte(p + 1) != 0xD3) {
+        throw new AFPParserException("Missing control sequence prefix 0x2BD3 at offset " + p + ".");
+      }
+      p += 2;
+    }
+    if (p + 2 > end) {
+      throw new AFPParserException("Control sequence introducer at offset " + csBegin + " exceeds the data.");
+    }
+    int length = getUnsignedByte(p);
+    int type = getUnsignedByte(p + 1);
+    if (length < 2 || p + length > end) {
+      throw new AFPParserException("Invalid length " + length + " of control sequence at offset " + csBegin + ".");
+    }
+
+    csOffset = csBegin;
+    functionTypeCode = type & 0xFE;
+    isChained = (type & 0x01) != 0;
+    parameterOffset = p + 2;
+    parameterLength = length - 2;
+
+    isNextChained = isChained;
+    pos = p + length;
+    return true;
+  }
+
+  /**
+   * Returns the unchained function type code of the current control sequence, e.g. 0xDA for TRN.
+   * See {@link ControlSequenceFunctionType#toByte(boolean)}.
+   */
+  public int getFunctionTypeCode() {
+    return functionTypeCode;
+  }
+
+  /**
+   * Returns true if the current control sequence is of the given type.
+   */
+  public boolean is(ControlSequenceFunctionType type) {
+    return functionTypeCode == type.toByte(false);
+  }
+
+  public ControlSequenceFunctionType getFunctionType() throws AFPParserException {
+    return ControlSequenceFunctionType.valueOf((short) functionTypeCode);
+  }
+
+  /**
+   * Returns true, if the control sequence following the current one is chained.
+   */
+  public boolean isChained() {
+    return isChained;
+  }
+
+  /**
+   * Returns the offset of the current control sequence, including the 0x2BD3 prefix if it is
+   * unchained.
+   */
+  public int getControlSequenceOffset() {
+    return csOffset;
+  }
+
+  /**
+   * Returns the offset of the parameters of the current control sequence (the bytes following
+   * length and function type).
+   */
+  public int getParameterOffset() {
+    return parameterOffset;
+  }
+
+  public int getParameterLength() {
+    return parameterLength;
+  }
+
+  /**
+   * Returns the unsigned parameter byte at the given index.
+   */
+  public int getParameterByte(int index) {
+    checkParameterIndex(index, 1);
+    return getUnsignedByte(parameterOffset + index);
+  }
+
+  /**
+   * Returns the signed big endian two byte parameter at the given index, e.g. the displacement of
+   * AMI, AMB, RMI, and RMB.
+   */
+  public short getParameterShort(int index) {
+    checkParameterIndex(index, 2);
+    return (short) ((getUnsignedByte(parameterOffset + index) << 8) | getUnsignedByte(parameterOffset + index + 1));
+  }
+
+  private void checkParameterIndex(int index, int length) {
+    if (index < 0 || index + length > parameterLength) {
+      throw new IndexOutOfBoundsException("Index " + index + " is outside of the control sequence parameters.");
+    }
+  }
+
+  /**
+   * Returns the array the cursor steps through, or null if the cursor steps through a {@link
+   * ByteBuffer}.
+   */
+  public byte[] getData() {
+    return data;
+  }
+
+  /**
+   * Returns the {@link ByteBuffer} the cursor steps through, or null if the cursor steps through an
+   * array.
+   */
+  public ByteBuffer getBuffer() {
+    return buffer;
+  }
+
+  private int getUnsignedByte(int index) {
+    return (data != null ? data[index] : buffer.get(index)) & 0xFF;
+  }
+}
@@ -0,0 +1,581 @@
+/*
+Copyright 2015 Rudolf Fiala
+
+This file is part of Alpheus AFP Parser.
+
+Alpheus AFP Parser is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Alpheus AFP Parser is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Alpheus AFP Parser.  If not, see <http://www.gnu.org/licenses/>
+*/
+package com.mgz.afp.parser;
+
+import com.mgz.afp.base.IRepeatingGroup;
+import com.mgz.afp.base.StructuredField;
+import com.mgz.afp.enums.AFPOrientation;
+import com.mgz.afp.enums.AFPUnitBase;
+import com.mgz.afp.exceptions.AFPParserException;
+import com.mgz.afp.foca.FOCA_CodePageTable;
+import com.mgz.afp.foca.FOCA_CodedFontMetrics;
+import com.mgz.afp.foca.FOCA_FontMetricsTable;
+import com.mgz.afp.modca.MCF_MapCodedFont_Format1;
+import com.mgz.afp.modca.MCF_MapCodedFont_Format2;
+import com.mgz.afp.ptoca.controlSequence.PTOCAControlSequence.ControlSequenceFunctionType;
+import com.mgz.afp.triplets.Triplet;
+import com.mgz.afp.triplets.Triplet.CharacterRotation;
+import com.mgz.afp.triplets.Triplet.FontDescriptorSpecification;
+import com.mgz.afp.triplets.Triplet.FullyQualifiedName;
+import com.mgz.afp.triplets.Triplet.GlobalID_Use;
+import com.mgz.afp.triplets.Triplet.ResourceLocalIdentifier;
+import com.mgz.afp.triplets.Triplet.ResourceLocalIdentifier.RLI_ResourceType;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Measures the lines of PTOCA data, e.g. the payload of the PTX structured fields of a presentation
+ * text object, in one pass. The characters of TRN and RPS are measured with the {@link
+ * FOCA_CodedFontMetrics} mapped to the coded font local ID selected by SCFL, see {@link
+ * #mapCodedFonts(StructuredField, Map, Map)}; AMI, AMB, RMI, RMB, SIM, SBI, BLN, SIA, SVI, and SCFL
+ * are applied like a presentation device does, the inline position advances by the measured
+ * characters.<br> <br> A line is the text presented on one baseline position: it begins with the
+ * first TRN or RPS after a change of the baseline position (AMB, RMB, BLN), and ends with the next
+ * change. For every line the baseline position, the inline position of its first character, the
+ * largest inline position reached, and the sum of its character advances are recorded. A line is
+ * exceeding if it reaches beyond the inline extent, see {@link #setInlineExtent(int)}.<br> <br>
+ * Positions and widths are in the units of the presentation text object, see {@link
+ * #setTextUnits(AFPUnitBase, int)}; the coded fonts mapped by {@link #mapCodedFonts(StructuredField,
+ * Map, Map)} are scaled to them. Line records are kept in primitive arrays
+ * that grow as needed; measuring allocates nothing per control sequence or character. Like {@link
+ * PTOCATextRunExtractor} the presentation state is kept across {@link #measure(byte[], int, int)},
+ * use {@link #resetState()} at the begin of a presentation text object. A measurer is reusable and
+ * not thread safe.
+ */
+public final class PTOCATextMeasurer {
+  private static final int AMI = ControlSequenceFunctionType.AMI_AbsoluteMoveInline.toByte(false);
+  private static final int AMB = ControlSequenceFunctionType.AMB_AbsoluteMoveBaseline.toByte(false);
+  private static final int RMI = ControlSequenceFunctionType.RMI_RelativeMoveInline.toByte(false);
+  private static final int RMB = ControlSequenceFunctionType.RMB_RelativeMoveBaseline.toByte(false);
+  private static final int SIM = ControlSequenceFunctionType.SIM_SetInlineMargin.toByte(false);
+  private static final int SBI = ControlSequenceFunctionType.SBI_SetBaselineIncrement.toByte(false);
+  private static final int BLN = ControlSequenceFunctionType.BLN_BeginLine.toByte(false);
+  private static final int SIA = ControlSequenceFunctionType.SIA_SetIntercharacterAdjustment.toByte(false);
+  private static final int SVI = ControlSequenceFunctionType.SVI_SetVariableSpaceCharacterIncrement.toByte(false);
+  private static final int SCFL = ControlSequenceFunctionType.SCFL_SetCodedFontLocal.toByte(false);
+  private static final int TRN = ControlSequenceFunctionType.TRN_TransparentData.toByte(false);
+  private static final int RPS = ControlSequenceFunctionType.RPS_RepeatString.toByte(false);
+  /**
+   * Maximum number of coded fonts kept for reuse by {@link #mapCodedFonts(StructuredField, Map,
+   * Map)}.
+   */
+  private static final int MAX_CODED_FONTS = 64;
+
+  private final PTOCACursor cursor = new PTOCACursor();
+  private final FOCA_CodedFontMetrics[] fonts = new FOCA_CodedFontMetrics[256];
+  /**
+   * The coded fonts built by {@link #mapCodedFonts(StructuredField, Map, Map)}, reused by the MCFs
+   * of later pages. Least recently used first, bounded by {@link #MAX_CODED_FONTS}.
+   */
+  private final LinkedHashMap<CodedFontKey, FOCA_CodedFontMetrics> codedFonts = new LinkedHashMap<CodedFontKey, FOCA_CodedFontMetrics>(16, 0.75f, true) {
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<CodedFontKey, FOCA_CodedFontMetrics> eldest) {
+      return size() > MAX_CODED_FONTS;
+    }
+  };
+  private int inlineExtent = Integer.MAX_VALUE;
+  private AFPUnitBase textUnitBase = AFPUnitBase.Inches10;
+  private int textUnitsPerUnitBase = 14400;
+
+  private int inlinePosition;
+  private int baselinePosition;
+  private int inlineMargin;
+  private int baselineIncrement;
+  private int intercharacterAdjustment;
+  private int variableSpaceIncrement;
+  private int fontLocalID;
+  private FOCA_CodedFontMetrics font;
+  private boolean isLineOpen;
+  private int nrOfUnmappedCharacters;
+
+  private int nrOfLines;
+  private int[] lineBaselinePositions = new int[64];
+  private int[] lineStartPositions = new int[64];
+  private int[] lineEndPositions = new int[64];
+  private int[] lineAdvances = new int[64];
+
+  public PTOCATextMeasurer() {
+    resetState();
+  }
+
+  /**
+   * Maps the given coded font metrics to the given coded font local ID, as selected by SCFL. Null
+   * removes the mapping.
+   */
+  public void setFont(int localID, FOCA_CodedFontMetrics font) {
+    fonts[localID & 0xFF] = font;
+    if ((localID & 0xFF) == fontLocalID) {
+      selectFont(fontLocalID);
+    }
+  }
+
+  /**
+   * Returns the coded font metrics mapped to the given coded font local ID, or null.
+   */
+  public FOCA_CodedFontMetrics getFont(int localID) {
+    return fonts[localID & 0xFF];
+  }
+
+  /**
+   * Removes all coded font mappings. The coded fonts built by {@link
+   * #mapCodedFonts(StructuredField, Map, Map)} are kept for reuse.
+   */
+  public void clearFonts() {
+    Arrays.fill(fonts, null);
+    font = null;
+  }
+
+  /**
+   * Maps the coded fonts of the given {@link MCF_MapCodedFont_Format1} or {@link
+   * MCF_MapCodedFont_Format2}, given by code page name and font character set name, to their local
+   * IDs. The tables are taken from the given maps by name, e.g. from tables obtained of a {@link
+   * com.mgz.afp.foca.FontResourceCache}. The character increments are scaled to the text units,
+   * for relative metric fonts by the font size of the {@link FontDescriptorSpecification} of the
+   * MCF. Coded fonts that are given by coded font name only, whose tables are not in the maps, or
+   * whose increments can't be scaled, e.g. relative metric fonts without font size, are not
+   * mapped. The coded fonts are built once per code page table, font character set table,
+   * character rotation, and scale, and reused by the MCFs of later pages.
+   *
+   * @return the number of coded fonts mapped.
+   * @throws AFPParserException if the structured field is not a MCF.
+   */
+  public int mapCodedFonts(StructuredField mcf, Map<String, FOCA_CodePageTable> codePages, Map<String, FOCA_FontMetricsTable> fontCharacterSets) throws AFPParserException {
+    int nrOfMappedFonts = 0;
+    if (mcf instanceof MCF_MapCodedFont_Format1) {
+      List<MCF_MapCodedFont_Format1.MCF_RepeatingGroup> rgs = ((MCF_MapCodedFont_Format1) mcf).getRepeatingGroups();
+      if (rgs != null) {
+        for (MCF_MapCodedFont_Format1.MCF_RepeatingGroup rg : rgs) {
+          if (mapCodedFont(rg.getCodedFontLocalID(), rg.getCodePageName(), rg.getFontCharacterSetName(), rg.getCharacterRotation(), 0, codePages, fontCharacterSets)) {
+            nrOfMappedFonts++;
+          }
+        }
+      }
+    } else if (mcf instanceof MCF_MapCodedFont_Format2) {
+      List<IRepeatingGroup> rgs = ((MCF_MapCodedFont_Format2) mcf).getRepeatingGroups();
+      if (rgs != null) {
+        for (IRepeatingGroup rg : rgs) {
+          int localID = -1;
+          String codePageName = null;
+          String fontCharacterSetName = null;
+          AFPOrientation characterRotation = null;
+          int fontSize = 0;
+          List<Triplet> triplets = ((MCF_MapCodedFont_Format2.MCF_RepeatingGroup) rg).getTriplets();
+          if (triplets == null) {
+            continue;
+          }
+          for (Triplet triplet : triplets) {
+            if (triplet instanceof FullyQualifiedName) {
+              FullyQualifiedName fqn = (FullyQualifiedName) triplet;
+              if (fqn.getType() == GlobalID_Use.CodePageNameReference) {
+                codePageName = fqn.getNameAsString();
+              } else if (fqn.getType() == GlobalID_Use.FontCharacterSetNameReference) {
+                fontCharacterSetName = fqn.getNameAsString();
+              }
+            } else if (triplet instanceof ResourceLocalIdentifier) {
+              ResourceLocalIdentifier rli = (ResourceLocalIdentifier) triplet;
+              if (rli.getResourceType() == RLI_ResourceType.CodedFont) {
+                localID = rli.getResourceLocalID();
+              }
+            } else if (triplet instanceof CharacterRotation) {
+              characterRotation = ((CharacterRotation) triplet).getCharacterRotation();
+            } else if (triplet instanceof FontDescriptorSpecification) {
+              FontDescriptorSpecification fds = (FontDescriptorSpecification) triplet;
+              fontSize = fds.getFontWidth() > 0 ? fds.getFontWidth() : fds.getFontHeight();
+            }
+          }
+          if (localID >= 0 && mapCodedFont(localID, codePageName, fontCharacterSetName, characterRotation, fontSize, codePages, fontCharacterSets)) {
+            nrOfMappedFonts++;
+          }
+        }
+      }
+    } else {
+      throw new AFPParserException("Can't map coded fonts of " + (mcf != null ? mcf.getClass().getSimpleName() : null) + ".");
+    }
+    return nrOfMappedFonts;
+  }
+
+  private boolean mapCodedFont(int localID, String codePageName, String fontCharacterSetName, AFPOrientation characterRotation, int fontSize, Map<String, FOCA_CodePageTable> codePages, Map<String, FOCA_FontMetricsTable> fontCharacterSets) {
+    if (codePageName == null || fontCharacterSetName == null) {
+      return false;
+    }
+    FOCA_CodePageTable codePage = codePages.get(codePageName);
+    FOCA_FontMetricsTable fontCharacterSet = fontCharacterSets.get(fontCharacterSetName);
+    if (codePage == null || fontCharacterSet == null) {
+      return false;
+    }
+    double scale;
+    try {
+      scale = FOCA_CodedFontMetrics.scaleOf(fontCharacterSet, textUnitBase, textUnitsPerUnitBase, fontSize);
+    } catch (AFPParserException e) {
+      return false;
+    }
+    CodedFontKey key = new CodedFontKey(codePage, fontCharacterSet, characterRotation, scale);
+    FOCA_CodedFontMetrics codedFont = codedFonts.get(key);
+    if (codedFont == null) {
+      codedFont = FOCA_CodedFontMetrics.build(codePage, fontCharacterSet, characterRotation, scale);
+      codedFonts.put(key, codedFont);
+    }
+    setFont(localID, codedFont);
+    return true;
+  }
+
+  /**
+   * Sets the units of the presentation text object, e.g. the X unit base and X units per unit base
+   * of the PTD, the coded fonts are scaled to by {@link #mapCodedFonts(StructuredField, Map, Map)}.
+   * Coded fonts that are already mapped are not changed. Default is 14400 units per 10 inches.
+   */
+  public void setTextUnits(AFPUnitBase textUnitBase, int textUnitsPerUnitBase) {
+    this.textUnitBase = textUnitBase;
+    this.textUnitsPerUnitBase = textUnitsPerUnitBase;
+  }
+
+  public AFPUnitBase getTextUnitBase() {
+    return textUnitBase;
+  }
+
+  public int getTextUnitsPerUnitBase() {
+    return textUnitsPerUnitBase;
+  }
+
+  /**
+   * Sets the inline extent, e.g. the I-extent of the PTD, a line is exceeding if it reaches beyond.
+   * Default is {@link Integer#MAX_VALUE}, no line is exceeding.
+   */
+  public void setInlineExtent(int inlineExtent) {
+    this.inlineExtent = inlineExtent;
+  }
+
+  public int getInlineExtent() {
+    return inlineExtent;
+  }
+
+  /**
+   * Resets the presentation state to its initial values and removes the recorded lines. The coded
+   * font mappings are kept.
+   */
+  public void resetState() {
+    inlinePosition = 0;
+    baselinePosition = 0;
+    inlineMargin = 0;
+    baselineIncrement = 0;
+    intercharacterAdjustment = 0;
+    variableSpaceIncrement = -1;
+    fontLocalID = -1;
+    font = null;
+    isLineOpen = false;
+    nrOfUnmappedCharacters = 0;
+    nrOfLines = 0;
+  }
+
+  /**
+   * Measures the given PTOCA data, e.g. the payload of a PTX, and appends its lines to the recorded
+   * lines. A line that is open at the end of the data is continued by the next call.
+   *
+   * @throws AFPParserException if the data is not a valid sequence of control sequences.
+   */
+  public PTOCATextMeasurer measure(byte[] data, int offset, int length) throws AFPParserException {
+    cursor.reset(data, offset, length);
+    measure();
+    return this;
+  }
+
+  /**
+   * Measures the PTOCA data between position and limit of the given buffer. Position and limit of
+   * the buffer are not changed.
+   */
+  public PTOCATextMeasurer measure(ByteBuffer buffer) throws AFPParserException {
+    cursor.reset(buffer);
+    measure();
+    return this;
+  }
+
+  private void measure() throws AFPParserException {
+    while (cursor.next()) {
+      int type = cursor.getFunctionTypeCode();
+      int parameterLength = cursor.getParameterLength();
+      if (type == TRN) {
+        addCharacters(cursor.getParameterOffset(), parameterLength, parameterLength);
+      } else if (type == RPS && parameterLength >= 2) {
+        addCharacters(cursor.getParameterOffset() + 2, parameterLength - 2, cursor.getParameterShort(0) & 0xFFFF);
+      } else if (type == AMI && parameterLength >= 2) {
+        inlinePosition = cursor.getParameterShort(0);
+      } else if (type == RMI && parameterLength >= 2) {
+        inlinePosition += cursor.getParameterShort(0);
+      } else if (type == AMB && parameterLength >= 2) {
+        moveBaseline(cursor.getParameterShort(0));
+      } else if (type == RMB && parameterLength >= 2) {
+        moveBaseline(baselinePosition + cursor.getParameterShort(0));
+      } else if (type == BLN) {
+        inlinePosition = inlineMargin;
+        moveBaseline(baselinePosition + baselineIncrement);
+      } else if (type == SIM && parameterLength >= 2) {
+        inlineMargin = cursor.getParameterShort(0) & 0xFFFF;
+      } else if (type == SBI && parameterLength >= 2) {
+        baselineIncrement = cursor.getParameterShort(0) & 0xFFFF;
+      } else if (type == SIA && parameterLength >= 2) {
+        intercharacterAdjustment = cursor.getParameterShort(0) & 0xFFFF;
+        if (parameterLength >= 3 && cursor.getParameterByte(2) == 0x01) {
+          intercharacterAdjustment = -intercharacterAdjustment;
+        }
+      } else if (type == SVI && parameterLength >= 2) {
+        variableSpaceIncrement = cursor.getParameterShort(0) & 0xFFFF;
+      } else if (type == SCFL && parameterLength >= 1) {
+        selectFont(cursor.getParameterByte(0));
+        variableSpaceIncrement = -1;
+      }
+    }
+  }
+
+  private void selectFont(int localID) {
+    fontLocalID = localID;
+    font = localID >= 0 ? fonts[localID] : null;
+  }
+
+  private void moveBaseline(int position) {
+    if (position != baselinePosition) {
+      isLineOpen = false;
+    }
+    baselinePosition = position;
+  }
+
+  /**
+   * Advances the inline position by the characters of the given parameter range of the current
+   * control sequence, repeated to the given number of bytes.
+   */
+  private void addCharacters(int offset, int length, int repeatLength) {
+    if (!isLineOpen) {
+      openLine();
+    }
+    int line = nrOfLines - 1;
+    if (length <= 0 || repeatLength <= 0) {
+      return;
+    }
+
+    int advance = 0;
+    if (font == null) {
+      nrOfUnmappedCharacters += repeatLength;
+    } else {
+      int nrOfRepeats = repeatLength / length;
+      int rest = repeatLength % length;
+      int width = measure(offset, length);
+      advance = nrOfRepeats * width + (rest > 0 ? measure(offset, rest) : 0);
+      int nrOfCharacters = repeatLength / font.getNrOfBytesPerCodePoint();
+      advance += nrOfCharacters * intercharacterAdjustment;
+      if (variableSpaceIncrement >= 0) {
+        int nrOfSpaces = nrOfRepeats * countSpaces(offset, length) + (rest > 0 ? countSpaces(offset, rest) : 0);
+        advance += nrOfSpaces * (variableSpaceIncrement - font.getIncrement(font.getSpaceCodePoint()));
+      }
+    }
+
+    inlinePosition += advance;
+    lineAdvances[line] += advance;
+    if (inlinePosition > lineEndPositions[line]) {
+      lineEndPositions[line] = inlinePosition;
+    }
+  }
+
+  private int measure(int offset, int length) {
+    return cursor.getData() != null ? font.measure(cursor.getData(), offset, length) : font.measure(cursor.getBuffer(), offset, length);
+  }
+
+  private int countSpaces(int offset, int length) {
+    int space = font.getSpaceCodePoint();
+    byte[] data = cursor.getData();
+    ByteBuffer buffer = cursor.getBuffer();
+    int nrOfSpaces = 0;
+    if (font.getNrOfBytesPerCodePoint() == 1) {
+      for (int i = offset, end = offset + length; i < end; i++) {
+        int codePoint = (data != null ? data[i] : buffer.get(i)) & 0xFF;
+        if (codePoint == space) {
+          nrOfSpaces++;
+        }
+      }
+    } else {
+      for (int i = offset, end = offset + length - 1; i < end; i += 2) {
+        int codePoint = (((data != null ? data[i] : buffer.get(i)) & 0xFF) << 8) | ((data != null ? data[i + 1] : buffer.get(i + 1)) & 0xFF);
+        if (codePoint == space) {
+          nrOfSpaces++;
+        }
+      }
+    }
+    return nrOfSpaces;
+  }
+
+  private void openLine() {
+    if (nrOfLines == lineAdvances.length) {
+      int capacity = nrOfLines * 2;
+      lineBaselinePositions = Arrays.copyOf(lineBaselinePositions, capacity);
+      lineStartPositions = Arrays.copyOf(lineStartPositions, capacity);
+      lineEndPositions = Arrays.copyOf(lineEndPositions, capacity);
+      lineAdvances = Arrays.copyOf(lineAdvances, capacity);
+    }
+    lineBaselinePositions[nrOfLines] = baselinePosition;
+    lineStartPositions[nrOfLines] = inlinePosition;
+    lineEndPositions[nrOfLines] = inlinePosition;
+    lineAdvances[nrOfLines] = 0;
+    nrOfLines++;
+    isLineOpen = true;
+  }
+
+  /**
+   * Returns the number of lines recorded since the last {@link #resetState()}.
+   */
+  public int getNrOfLines() {
+    return nrOfLines;
+  }
+
+  /**
+   * Returns the baseline position of the given line.
+   */
+  public int getLineBaselinePosition(int line) {
+    checkLine(line);
+    return lineBaselinePositions[line];
+  }
+
+  /**
+   * Returns the inline position of the first character of the given line.
+   */
+  public int getLineStartPosition(int line) {
+    checkLine(line);
+    return lineStartPositions[line];
+  }
+
+  /**
+   * Returns the largest inline position reached by the characters of the given line.
+   */
+  public int getLineEndPosition(int line) {
+    checkLine(line);
+    return lineEndPositions[line];
+  }
+
+  /**
+   * Returns the sum of the character advances of the given line, including intercharacter
+   * adjustment and variable space increment. Inline moves between the text runs of the line are not
+   * included.
+   */
+  public int getLineAdvance(int line) {
+    checkLine(line);
+    return lineAdvances[line];
+  }
+
+  /**
+   * Returns true if the given line reaches beyond the inline extent.
+   */
+  public boolean isLineExceeding(int line) {
+    return getLineEndPosition(line) > inlineExtent;
+  }
+
+  /**
+   * Returns the number of recorded lines that reach beyond the inline extent.
+   */
+  public int getNrOfExceedingLines() {
+    int nrOfExceedingLines = 0;
+    for (int line = 0; line < nrOfLines; line++) {
+      if (lineEndPositions[line] > inlineExtent) {
+        nrOfExceedingLines++;
+      }
+    }
+    return nrOfExceedingLines;
+  }
+
+  /**
+   * Returns the index of the next line at or after the given line that reaches beyond the inline
+   * extent, or -1.
+   */
+  public int nextExceedingLine(int line) {
+    for (int l = Math.max(line, 0); l < nrOfLines; l++) {
+      if (lineEndPositions[l] > inlineExtent) {
+        return l;
+      }
+    }
+    return -1;
+  }
+
+  private void checkLine(int line) {
+    if (line < 0 || line >= nrOfLines) {
+      throw new IndexOutOfBoundsException("Line " + line + " of " + nrOfLines + ".");
+    }
+  }
+
+  /**
+   * Returns the number of bytes of TRN and RPS that were presented without a mapped coded font and
+   * did not advance the inline position.
+   */
+  public int getNrOfUnmappedCharacters() {
+    return nrOfUnmappedCharacters;
+  }
+
+  /**
+   * Returns the current inline position, including the advance of the measured characters.
+   */
+  public int getInlinePosition() {
+    return inlinePosition;
+  }
+
+  public int getBaselinePosition() {
+    return baselinePosition;
+  }
+
+  /**
+   * Returns the local ID of the coded font set by SCFL, or -1 if no SCFL has been seen.
+   */
+  public int getFontLocalID() {
+    return fontLocalID;
+  }
+
+  /**
+   * Identifies a coded font built by {@link #mapCodedFont(int, String, String, AFPOrientation, int,
+   * Map, Map)}. The tables are compared by identity, as returned by the maps.
+   */
+  private static final class CodedFontKey {
+    final FOCA_CodePageTable codePage;
+    final FOCA_FontMetricsTable fontCharacterSet;
+    final AFPOrientation characterRotation;
+    final double scale;
+
+    CodedFontKey(FOCA_CodePageTable codePage, FOCA_FontMetricsTable fontCharacterSet, AFPOrientation characterRotation, double scale) {
+      this.codePage = codePage;
+      this.fontCharacterSet = fontCharacterSet;
+      this.characterRotation = characterRotation != null ? characterRotation : AFPOrientation.ori0;
+      this.scale = scale;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof CodedFontKey)) {
+        return false;
+      }
+      CodedFontKey other = (CodedFontKey) obj;
+      return codePage == other.codePage && fontCharacterSet == other.fontCharacterSet
+          && characterRotation == other.characterRotation && Double.compare(scale, other.scale) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+      long bits = Double.doubleToLongBits(scale);
+      return 31 * (31 * (31 * System.identityHashCode(codePage) + System.identityHashCode(fontCharacterSet)) + characterRotation.hashCode()) + (int) (bits ^ (bits >>> 32));
+    }
+  }
+}
@@ -0,0 +1,227 @@
+/*
+Copyright 2015 Rudolf Fiala
+
+This file is part of Alpheus AFP Parser.
+
+Alpheus AFP Parser is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Alpheus AFP Parser is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Alpheus AFP Parser.  If not, see <http://www.gnu.org/licenses/>
+*/
+package com.mgz.afp.parser;
+
+import com.mgz.afp.exceptions.AFPParserException;
+import com.mgz.afp.ptoca.controlSequence.PTOCAControlSequence.ControlSequenceFunctionType;
+import com.mgz.util.SingleByteCodec;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Extracts the text runs (TRN) of PTOCA data together with the presentation position set by the
+ * preceding AMI, AMB, RMI, RMB, SCFL, and STO control sequences. The text of a TRN is decoded into
+ * a reusable {@link CharBuffer}, see {@link #getText()}, using the tables of {@link SingleByteCodec}
+ * for single byte charsets. Other control sequences are skipped.<br>
+ * <br> Inline and baseline position reflect the move control sequences only; the advance of the
+ * inline position by the characters of a TRN requires font metrics and is not applied. The
+ * presentation state (position, font, orientation) is kept across {@link #reset(byte[], int, int)},
+ * as it is kept across the PTX structured fields of a presentation text object. Use {@link
+ * #resetState()} at the begin of a presentation text object.<br> <br> An extractor is reusable and
+ * not thread safe.
+ */
+public final class PTOCATextRunExtractor {
+  private static final int AMI = ControlSequenceFunctionType.AMI_AbsoluteMoveInline.toByte(false);
+  private static final int AMB = ControlSequenceFunctionType.AMB_AbsoluteMoveBaseline.toByte(false);
+  private static final int RMI = ControlSequenceFunctionType.RMI_RelativeMoveInline.toByte(false);
+  private static final int RMB = ControlSequenceFunctionType.RMB_RelativeMoveBaseline.toByte(false);
+  private static final int SCFL = ControlSequenceFunctionType.SCFL_SetCodedFontLocal.toByte(false);
+  private static final int STO = ControlSequenceFunctionType.STO_SetTextOrientation.toByte(false);
+  private static final int TRN = ControlSequenceFunctionType.TRN_TransparentData.toByte(false);
+
+  private final PTOCACursor cursor = new PTOCACursor();
+  private final SingleByteCodec codec;
+  private final CharsetDecoder decoder;
+  private CharBuffer text = CharBuffer.allocate(256);
+  private ByteBuffer wrappedData;
+
+  private int inlinePosition;
+  private int baselinePosition;
+  private int fontLocalID;
+  private int inlineOrientation;
+  private int baselineOrientation;
+
+  /**
+   * @param charset the charset of the TRN data, see {@link AFPParserConfiguration#getAfpCharSet()}.
+   */
+  public PTOCATextRunExtractor(Charset charset) {
+    codec = SingleByteCodec.forCharset(charset);
+    decoder = charset.newDecoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    resetState();
+  }
+
+  /**
+   * Resets position, font, and orientation to their initial values.
+   */
+  public void resetState() {
+    inlinePosition = 0;
+    baselinePosition = 0;
+    fontLocalID = -1;
+    inlineOrientation = 0;
+    baselineOrientation = 0x2D00;
+  }
+
+  /**
+   * Sets the PTOCA data to extract the text runs from, e.g. the payload of a PTX.
+   */
+  public PTOCATextRunExtractor reset(byte[] data, int offset, int length) {
+    cursor.reset(data, offset, length);
+    return this;
+  }
+
+  /**
+   * Sets the PTOCA data between position and limit of the given buffer.
+   */
+  public PTOCATextRunExtractor reset(ByteBuffer buffer) {
+    cursor.reset(buffer);
+    return this;
+  }
+
+  /**
+   * Moves to the next TRN, applying the position, font, and orientation control sequences on the
+   * way. Returns false if the end of the data is reached.
+   */
+  public boolean nextTextRun() throws AFPParserException {
+    while (cursor.next()) {
+      int type = cursor.getFunctionTypeCode();
+      if (type == TRN) {
+        decodeText();
+        return true;
+      } else if (type == AMI && cursor.getParameterLength() >= 2) {
+        inlinePosition = cursor.getParameterShort(0);
+      } else if (type == AMB && cursor.getParameterLength() >= 2) {
+        baselinePosition = cursor.getParameterShort(0);
+      } else if (type == RMI && cursor.getParameterLength() >= 2) {
+        inlinePosition += cursor.getParameterShort(0);
+      } else if (type == RMB && cursor.getParameterLength() >= 2) {
+        baselinePosition += cursor.getParameterShort(0);
+      } else if (type == SCFL && cursor.getParameterLength() >= 1) {
+        fontLocalID = cursor.getParameterByte(0);
+      } else if (type == STO && cursor.getParameterLength() >= 4) {
+        inlineOrientation = cursor.getParameterShort(0) & 0xFFFF;
+        baselineOrientation = cursor.getParameterShort(2) & 0xFFFF;
+      }
+    }
+    return false;
+  }
+
+  private void decodeText() {
+    int len = cursor.getParameterLength();
+    int maxChars = (int) Math.ceil(len * (double) decoder.maxCharsPerByte());
+    if (text.capacity() < maxChars) {
+      text = CharBuffer.allocate(Math.max(maxChars, text.capacity() * 2));
+    }
+    text.clear();
+
+    if (codec != null) {
+      char[] chars = text.array();
+      if (cursor.getData() != null) {
+        codec.decode(cursor.getData(), cursor.getParameterOffset(), len, chars, 0);
+      } else {
+        ByteBuffer buffer = cursor.getBuffer();
+        for (int i = 0; i < len; i++) {
+          chars[i] = codec.decode(buffer.get(cursor.getParameterOffset() + i));
+        }
+      }
+      text.limit(len);
+      return;
+    }
+
+    ByteBuffer in;
+    int oldPosition = 0;
+    int oldLimit = 0;
+    if (cursor.getData() != null) {
+      if (wrappedData == null || !wrappedData.hasArray() || wrappedData.array() != cursor.getData()) {
+        wrappedData = ByteBuffer.wrap(cursor.getData());
+      }
+      in = wrappedData;
+      in.limit(cursor.getParameterOffset() + len).position(cursor.getParameterOffset());
+    } else {
+      in = cursor.getBuffer();
+      oldPosition = in.position();
+      oldLimit = in.limit();
+      in.limit(cursor.getParameterOffset() + len).position(cursor.getParameterOffset());
+    }
+    decoder.reset();
+    decoder.decode(in, text, true);
+    decoder.flush(text);
+    if (cursor.getData() == null) {
+      in.limit(oldLimit).position(oldPosition);
+    }
+    text.flip();
+  }
+
+  /**
+   * Returns the text of the current TRN. The buffer is reused by the next call of {@link
+   * #nextTextRun()}.
+   */
+  public CharBuffer getText() {
+    return text;
+  }
+
+  /**
+   * Returns the inline position (I) set by AMI and RMI before the current TRN, in measurement units
+   * of the presentation text object.
+   */
+  public int getInlinePosition() {
+    return inlinePosition;
+  }
+
+  /**
+   * Returns the baseline position (B) set by AMB and RMB before the current TRN, in measurement
+   * units of the presentation text object.
+   */
+  public int getBaselinePosition() {
+    return baselinePosition;
+  }
+
+  /**
+   * Returns the local ID of the coded font set by SCFL, or -1 if no SCFL has been seen.
+   */
+  public int getFontLocalID() {
+    return fontLocalID;
+  }
+
+  /**
+   * Returns the I-axis orientation set by STO, e.g. 0x0000 for 0 degrees, 0x2D00 for 90 degrees.
+   */
+  public int getInlineOrientation() {
+    return inlineOrientation;
+  }
+
+  /**
+   * Returns the B-axis orientation set by STO.
+   */
+  public int getBaselineOrientation() {
+    return baselineOrientation;
+  }
+
+  /**
+   * Returns the underlying cursor, positioned at the current TRN.
+   */
+  public PTOCACursor getCursor() {
+    return cursor;
+  }
+}
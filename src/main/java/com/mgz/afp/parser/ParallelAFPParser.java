@@ -0,0 +1,373 @@
+/*
+Copyright 2015 Rudolf Fiala
+
+This file is part of Alpheus AFP Parser.
+
+Alpheus AFP Parser is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Alpheus AFP Parser is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Alpheus AFP Parser.  If not, see <http://www.gnu.org/licenses/>
+*/
+package com.mgz.afp.parser;
+
+import com.mgz.afp.base.StructuredField;
+import com.mgz.afp.base.StructuredFieldBaseData;
+import com.mgz.afp.base.StructuredFieldErrornouslyBuilt;
+import com.mgz.afp.base.StructuredFieldIntroducer;
+import com.mgz.afp.bcoca.BDD_BarCodeDataDescriptor;
+import com.mgz.afp.enums.SFTypeID;
+import com.mgz.afp.exceptions.AFPParserException;
+import com.mgz.afp.foca.CPC_CodePageControl;
+import com.mgz.afp.foca.CPD_CodePageDescriptor;
+import com.mgz.afp.foca.FNC_FontControl;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Parser that decodes structured fields on multiple threads. The AFP stream is framed sequentially
+ * on the calling thread, the framed structured fields are decoded in batches by an {@link
+ * ExecutorService}, and {@link #parseNextSF()} returns the decoded structured fields in stream
+ * order.<br> <br> Structured fields that are referenced when decoding later structured fields
+ * (FNC, CPD, CPC, BDD) are decoded on the calling thread, and a batch never spans a change of
+ * these, so every batch decodes with the context {@link AFPParser#parseNextSF()} would have used.
+ * <br> <br> In build shallow mode, or if parsing to {@link StructuredFieldBaseData}, there is
+ * nothing to decode and this parser behaves like {@link AFPParser}.
+ */
+public class ParallelAFPParser {
+  /**
+   * Default number of structured fields decoded by one task.
+   */
+  public static final int DEFAULT_BATCH_SIZE = 256;
+
+  private final AFPParserConfiguration parserConf;
+  private final AFPParser framingParser;
+  private final boolean isDecoding;
+  private final ExecutorService executor;
+  private final boolean isOwningExecutor;
+  private final int maxBatchesInProgress;
+  private final Deque<Future<Batch>> batchesInProgress = new ArrayDeque<Future<Batch>>();
+  private int batchSize = DEFAULT_BATCH_SIZE;
+  private Batch currentBatch;
+  private int currentIndex;
+  private StructuredField pendingSF;
+  private boolean isEndOfStream;
+  private long nrOfSFBuilt;
+  private long nrOfErrSFBuilt;
+
+  /**
+   * Creates a parser that decodes on a {@link ForkJoinPool} with one thread per available
+   * processor. The pool is shut down by {@link #quitParsing()}.
+   */
+  public ParallelAFPParser(AFPParserConfiguration parserConfiguration) {
+    this(parserConfiguration, new ForkJoinPool(), true, Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Creates a parser that decodes on the given executor. The executor is not shut down by {@link
+   * #quitParsing()}.
+   *
+   * @param parserConfiguration see {@link AFPParserConfiguration}.
+   * @param executor            executor that decodes the batches of structured fields.
+   * @param parallelism         number of threads of the executor available to this parser, the
+   *                            parser keeps twice as many batches in progress.
+   */
+  public ParallelAFPParser(AFPParserConfiguration parserConfiguration, ExecutorService executor, int parallelism) {
+    this(parserConfiguration, executor, false, parallelism);
+  }
+
+  private ParallelAFPParser(AFPParserConfiguration parserConfiguration, ExecutorService executor, boolean isOwningExecutor, int parallelism) {
+    this.parserConf = parserConfiguration;
+    this.executor = executor;
+    this.isOwningExecutor = isOwningExecutor;
+    this.maxBatchesInProgress = Math.max(1, parallelism) * 2;
+    this.isDecoding = !parserConfiguration.isBuildShallow() && !parserConfiguration.isParseToStructuredFieldsBaseData();
+
+    if (isDecoding) {
+      // The framing parser delivers the raw payloads, decoding is done here.
+      AFPParserConfiguration framingConf = parserConfiguration.clone();
+      framingConf.setParseToStructuredFieldsBaseData(true);
+      framingParser = new AFPParser(framingConf);
+    } else {
+      framingParser = new AFPParser(parserConfiguration) {
+        @Override
+        public void error(AFPParserException afpExc) throws AFPParserException {
+          ParallelAFPParser.this.error(afpExc);
+        }
+      };
+    }
+  }
+
+  private static boolean isReferencedSF(SFTypeID sfTypeID) {
+    return sfTypeID == SFTypeID.FNC_FontControl
+        || sfTypeID == SFTypeID.CPD_CodePageDescriptor
+        || sfTypeID == SFTypeID.CPC_CodePageControl
+        || sfTypeID == SFTypeID.BDD_BarCodeDataDescriptor;
+  }
+
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  /**
+   * Sets the number of structured fields decoded by one task. Default is {@link
+   * #DEFAULT_BATCH_SIZE}.
+   */
+  public void setBatchSize(int batchSize) {
+    this.batchSize = Math.max(1, batchSize);
+  }
+
+  /**
+   * Returns the next structured field in stream order, or null if the end of the AFP stream is
+   * reached.
+   */
+  public StructuredField parseNextSF() throws AFPParserException {
+    if (!isDecoding) {
+      StructuredField sf = framingParser.parseNextSF();
+      if (sf != null) {
+        nrOfSFBuilt++;
+        if (sf instanceof StructuredFieldErrornouslyBuilt) {
+          nrOfErrSFBuilt++;
+        }
+      }
+      return sf;
+    }
+
+    while (currentBatch == null || currentIndex >= currentBatch.sfs.size()) {
+      currentBatch = null;
+      fillPipeline();
+      if (batchesInProgress.isEmpty()) {
+        return null;
+      }
+      currentBatch = await(batchesInProgress.removeFirst());
+      currentIndex = 0;
+      fillPipeline();
+    }
+
+    int index = currentIndex++;
+    StructuredField sf = currentBatch.sfs.get(index);
+    nrOfSFBuilt++;
+    if (sf instanceof StructuredFieldErrornouslyBuilt) {
+      nrOfErrSFBuilt++;
+    }
+    if (currentBatch.errors != null && currentBatch.errors[index] != null) {
+      error(currentBatch.errors[index]);
+    }
+    return sf;
+  }
+
+  private Batch await(Future<Batch> future) throws AFPParserException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new AFPParserException("Interrupted while waiting for decoded structured fields.", e);
+    } catch (ExecutionException e) {
+      throw new AFPParserException("Failed to decode structured fields.", e.getCause());
+    }
+  }
+
+  /**
+   * Frames batches and submits them for decoding until enough batches are in progress or the end
+   * of the stream is reached.
+   */
+  private void fillPipeline() throws AFPParserException {
+    while (!isEndOfStream && batchesInProgress.size() < maxBatchesInProgress) {
+      Batch batch = frameBatch();
+      if (batch.sfs.isEmpty()) {
+        break;
+      }
+      batchesInProgress.addLast(executor.submit(batch));
+    }
+  }
+
+  private Batch frameBatch() throws AFPParserException {
+    // Snapshot of the current FNC, CPD, CPC, and BDD.
+    Batch batch = new Batch(parserConf.clone(), batchSize);
+
+    while (batch.sfs.size() < batchSize) {
+      StructuredField sf = pendingSF;
+      pendingSF = null;
+      if (sf == null) {
+        try {
+          sf = framingParser.parseNextSF();
+        } catch (AFPParserException e) {
+          // Reported by parseNextSF() in stream order.
+          StructuredField errSf = e.getErrornouslyBuiltStructuredField();
+          if (errSf == null) {
+            errSf = new StructuredFieldErrornouslyBuilt();
+          }
+          batch.setError(batch.add(errSf), e);
+          continue;
+        }
+      }
+      if (sf == null) {
+        isEndOfStream = true;
+        break;
+      }
+
+      SFTypeID sfTypeID = sf.getStructuredFieldIntroducer() != null ? sf.getStructuredFieldIntroducer().getSFTypeID() : null;
+      if (!(sf instanceof StructuredFieldErrornouslyBuilt) && isReferencedSF(sfTypeID)) {
+        if (!batch.sfs.isEmpty()) {
+          // The context changes, the referenced SF starts the next batch.
+          pendingSF = sf;
+          break;
+        }
+        int index = batch.add(sf);
+        batch.decode(index);
+        preserveReferencedSF(batch.sfs.get(index));
+        batch.conf = parserConf.clone();
+      } else {
+        batch.add(sf);
+      }
+    }
+
+    return batch;
+  }
+
+  private void preserveReferencedSF(StructuredField sf) {
+    if (sf instanceof FNC_FontControl) {
+      parserConf.setCurrentFontControl((FNC_FontControl) sf);
+    } else if (sf instanceof CPD_CodePageDescriptor) {
+      parserConf.setCurrentCodePageDescriptor((CPD_CodePageDescriptor) sf);
+    } else if (sf instanceof CPC_CodePageControl) {
+      parserConf.setCurrentPageControl((CPC_CodePageControl) sf);
+    } else if (sf instanceof BDD_BarCodeDataDescriptor) {
+      parserConf.setCurrentBarCodeDataDescriptor((BDD_BarCodeDataDescriptor) sf);
+    }
+  }
+
+  /**
+   * This method is called if a structured field could not be decoded, see {@link
+   * AFPParser#error(AFPParserException)}. This method just throws the {@link
+   * AFPParserException}.
+   */
+  public void error(AFPParserException afpExc) throws AFPParserException {
+    throw afpExc;
+  }
+
+  /**
+   * Stops parsing, closes the input and cancels the decoding of batches in progress.
+   */
+  public void quitParsing() throws AFPParserException {
+    for (Future<Batch> future : batchesInProgress) {
+      future.cancel(false);
+    }
+    batchesInProgress.clear();
+    currentBatch = null;
+    pendingSF = null;
+    if (isOwningExecutor) {
+      executor.shutdown();
+    }
+    framingParser.quitParsing();
+    parserConf.resetCurrentAFPObjects();
+  }
+
+  /**
+   * Returns the total number of structured fields that has been returned so far.
+   */
+  public long getNrOfSFBuilt() {
+    return nrOfSFBuilt;
+  }
+
+  /**
+   * Returns the number of structured fields that has been returned so far that are {@link
+   * StructuredFieldErrornouslyBuilt}.
+   */
+  public long getNrOfSFBuiltWithErrors() {
+    return nrOfErrSFBuilt;
+  }
+
+  public long getCountReadByte() {
+    return framingParser.getCountReadByte();
+  }
+
+  /**
+   * Framed structured fields that are decoded by one task, using the context captured in the
+   * batch's configuration.
+   */
+  private static final class Batch implements Callable<Batch> {
+    final List<StructuredField> sfs;
+    final int capacity;
+    AFPParserConfiguration conf;
+    AFPParserException[] errors;
+
+    Batch(AFPParserConfiguration conf, int batchSize) {
+      this.conf = conf;
+      this.capacity = batchSize;
+      this.sfs = new ArrayList<StructuredField>(batchSize);
+    }
+
+    void setError(int index, AFPParserException afpExc) {
+      if (errors == null) {
+        errors = new AFPParserException[capacity];
+      }
+      errors[index] = afpExc;
+    }
+
+    int add(StructuredField sf) {
+      sfs.add(sf);
+      return sfs.size() - 1;
+    }
+
+    @Override
+    public Batch call() {
+      for (int i = 0; i < sfs.size(); i++) {
+        decode(i);
+      }
+      return this;
+    }
+
+    /**
+     * Replaces the framed structured field at the given index by the decoded one.
+     */
+    void decode(int index) {
+      StructuredField framed = sfs.get(index);
+      if (framed.getClass() != StructuredFieldBaseData.class) {
+        // Already decoded, or erroneous.
+        return;
+      }
+
+      StructuredFieldIntroducer sfi = framed.getStructuredFieldIntroducer();
+      byte[] sfData = ((StructuredFieldBaseData) framed).getData();
+      StructuredField sf = AFPParser.createSFInstance(sfi);
+
+      try {
+        if (sfi.getSFLength() > sfi.getLengthOfStructuredFieldIntroducerIncludingExtension()) {
+          sf.setPadding(framed.getPadding());
+          sf.decodeAFP(sfData != null ? sfData : new byte[0], 0, -1, conf);
+        }
+        sfs.set(index, sf);
+      } catch (Throwable th) {
+        StructuredFieldErrornouslyBuilt errSf = new StructuredFieldErrornouslyBuilt();
+        errSf.setCausingException(th);
+        errSf.setStructuredFieldIntroducer(sfi);
+        errSf.setData(sfData);
+        errSf.setPadding(framed.getPadding());
+        sfs.set(index, errSf);
+
+        if (conf.isEscalateParsingErrors()) {
+          AFPParserException afpex = th instanceof AFPParserException ? (AFPParserException) th
+              : new AFPParserException("An exception occured when parsing structured field at file index position 0x" + Long.toHexString(sfi.getFileOffset()) + ".", th);
+          afpex.setErrornouslyBuiltStructuredField(errSf);
+          setError(index, afpex);
+        }
+      }
+    }
+  }
+}
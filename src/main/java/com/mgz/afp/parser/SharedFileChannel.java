@@ -0,0 +1,120 @@
+/*
+Copyright 2015 Rudolf Fiala
+
+This file is part of Alpheus AFP Parser.
+
+Alpheus AFP Parser is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Alpheus AFP Parser is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Alpheus AFP Parser.  If not, see <http://www.gnu.org/licenses/>
+*/
+package com.mgz.afp.parser;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+
+/**
+ * Read only {@link FileChannel} of an AFP file that is shared by all shallow structured fields
+ * built from that file, see {@link AFPParser#reload(java.util.List)}. The channel is opened on the
+ * first read and reopened if it has been closed. Reads are positional and don't modify the
+ * channel's position, so concurrent reads don't need to be synchronized.
+ */
+final class SharedFileChannel implements Closeable {
+  private final File file;
+  private volatile FileChannel channel;
+
+  SharedFileChannel(File file) {
+    this.file = file;
+  }
+
+  File getFile() {
+    return file;
+  }
+
+  /**
+   * Reads bytes starting at the given file position into the given buffer until the buffer is
+   * full.
+   *
+   * @throws EOFException if the end of file is reached before the buffer is full.
+   */
+  void readFully(ByteBuffer dst, long position) throws IOException {
+    boolean isReopened = false;
+    while (dst.hasRemaining()) {
+      FileChannel ch = getChannel();
+      int len;
+      try {
+        len = ch.read(dst, position);
+      } catch (ClosedByInterruptException e) {
+        throw e;
+      } catch (ClosedChannelException e) {
+        // Closed by close() or by the interrupt of another reading thread. Reopen once.
+        if (isReopened) {
+          throw e;
+        }
+        isReopened = true;
+        discard(ch);
+        continue;
+      }
+      if (len == -1) {
+        throw new EOFException("Reached end of file '" + file + "' at position " + position + ".");
+      }
+      position += len;
+    }
+  }
+
+  private FileChannel getChannel() throws IOException {
+    FileChannel ch = channel;
+    if (ch == null || !ch.isOpen()) {
+      synchronized (this) {
+        ch = channel;
+        if (ch == null || !ch.isOpen()) {
+          channel = ch = new RandomAccessFile(file, "r").getChannel();
+        }
+      }
+    }
+    return ch;
+  }
+
+  private synchronized void discard(FileChannel ch) {
+    if (channel == ch) {
+      channel = null;
+    }
+  }
+
+  /**
+   * Returns true if the channel is open, i.e. it has been read and not been closed since.
+   */
+  boolean isOpen() {
+    FileChannel ch = channel;
+    return ch != null && ch.isOpen();
+  }
+
+  /**
+   * Closes the channel. The channel is reopened by the next read.
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    if (channel != null) {
+      try {
+        channel.close();
+      } finally {
+        channel = null;
+      }
+    }
+  }
+}
@@ -0,0 +1,145 @@
+/*
+Copyright 2015 Rudolf Fiala
+
+This file is part of Alpheus AFP Parser.
+
+Alpheus AFP Parser is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Alpheus AFP Parser is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Alpheus AFP Parser.  If not, see <http://www.gnu.org/licenses/>
+*/
+package com.mgz.afp.parser;
+
+import com.mgz.afp.base.StructuredField;
+import com.mgz.afp.enums.SFTypeID;
+
+import java.lang.reflect.Constructor;
+import java.util.EnumMap;
+
+/**
+ * Registry that maps every {@link SFTypeID} to the constructor of the {@link StructuredField}
+ * implementation that is instantiated by the parser, see {@link AFPParser#createSFInstance(com.mgz.afp.base.StructuredFieldIntroducer)}.<br>
+ * <br> The built-in implementations are resolved once, when this class is initialized. Use {@link
+ * #register(SFTypeID, Class)} to replace the implementation of an {@link SFTypeID} by your own
+ * subclass of {@link StructuredField}.
+ */
+public class StructuredFieldRegistry {
+  private static final String afpPackagePrefix = "com.mgz.afp.";
+  private static final String[] afpPackages = {
+      afpPackagePrefix + "modca.",
+      afpPackagePrefix + "ptoca.",
+      afpPackagePrefix + "foca.",
+      afpPackagePrefix + "ioca.",
+      afpPackagePrefix + "goca.",
+      afpPackagePrefix + "bcoca.",
+      afpPackagePrefix + "lineData.",
+      afpPackagePrefix + "modca_L."
+  };
+
+  private static final EnumMap<SFTypeID, Constructor<? extends StructuredField>> builtInConstructors = new EnumMap<SFTypeID, Constructor<? extends StructuredField>>(SFTypeID.class);
+  private static volatile EnumMap<SFTypeID, Constructor<? extends StructuredField>> constructors;
+
+  static {
+    for (SFTypeID sfTypeID : SFTypeID.values()) {
+      Class<? extends StructuredField> clazz = findBuiltInClass(sfTypeID);
+      if (clazz != null) {
+        Constructor<? extends StructuredField> constructor = getConstructor(clazz);
+        if (constructor != null) {
+          builtInConstructors.put(sfTypeID, constructor);
+        }
+      }
+    }
+    constructors = builtInConstructors.clone();
+  }
+
+  private static Class<? extends StructuredField> findBuiltInClass(SFTypeID sfTypeID) {
+    for (String afpPackage : afpPackages) {
+      try {
+        Class<?> clazz = Class.forName(afpPackage + sfTypeID.name());
+        if (StructuredField.class.isAssignableFrom(clazz)) {
+          return clazz.asSubclass(StructuredField.class);
+        }
+      } catch (ClassNotFoundException cnfex) {
+        continue;
+      }
+    }
+    return null;
+  }
+
+  private static Constructor<? extends StructuredField> getConstructor(Class<? extends StructuredField> clazz) {
+    try {
+      return clazz.getConstructor();
+    } catch (NoSuchMethodException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Returns a new instance of the {@link StructuredField} implementation registered for the given
+   * {@link SFTypeID}. Returns an instance of {@link com.mgz.afp.base.Undefined} if no
+   * implementation is registered or the instantiation fails.
+   */
+  public static StructuredField newInstance(SFTypeID sfTypeID) {
+    Constructor<? extends StructuredField> constructor = sfTypeID != null ? constructors.get(sfTypeID) : null;
+    if (constructor != null) {
+      try {
+        return constructor.newInstance();
+      } catch (Exception ex) {
+        // Fall through to Undefined.
+      }
+    }
+    return new com.mgz.afp.base.Undefined();
+  }
+
+  /**
+   * Returns the {@link StructuredField} implementation that is currently registered for the given
+   * {@link SFTypeID}, or null if there is none.
+   */
+  public static Class<? extends StructuredField> getStructuredFieldClass(SFTypeID sfTypeID) {
+    Constructor<? extends StructuredField> constructor = constructors.get(sfTypeID);
+    return constructor != null ? constructor.getDeclaringClass() : null;
+  }
+
+  /**
+   * Registers the given {@link StructuredField} implementation for the given {@link SFTypeID}. All
+   * {@link AFPParser}s instantiate the given class for structured fields of the given {@link
+   * SFTypeID} from now on.
+   *
+   * @param sfTypeID the {@link SFTypeID} to register the given class for.
+   * @param clazz    the {@link StructuredField} implementation. The class must be public and have a
+   *                 public no argument constructor.
+   * @throws IllegalArgumentException if the given class has no public no argument constructor.
+   */
+  public static synchronized void register(SFTypeID sfTypeID, Class<? extends StructuredField> clazz) {
+    Constructor<? extends StructuredField> constructor = getConstructor(clazz);
+    if (constructor == null) {
+      throw new IllegalArgumentException(clazz.getName() + " has no public no argument constructor.");
+    }
+    EnumMap<SFTypeID, Constructor<? extends StructuredField>> newConstructors = constructors.clone();
+    newConstructors.put(sfTypeID, constructor);
+    constructors = newConstructors;
+  }
+
+  /**
+   * Removes a {@link StructuredField} implementation registered by {@link #register(SFTypeID,
+   * Class)} and restores the built-in implementation of the given {@link SFTypeID}.
+   */
+  public static synchronized void unregister(SFTypeID sfTypeID) {
+    EnumMap<SFTypeID, Constructor<? extends StructuredField>> newConstructors = constructors.clone();
+    Constructor<? extends StructuredField> builtIn = builtInConstructors.get(sfTypeID);
+    if (builtIn != null) {
+      newConstructors.put(sfTypeID, builtIn);
+    } else {
+      newConstructors.remove(sfTypeID);
+    }
+    constructors = newConstructors;
+  }
+}
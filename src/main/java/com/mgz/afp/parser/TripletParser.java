@@ -24,6 +24,8 @@ import com.mgz.afp.triplets.Triplet;
 import com.mgz.afp.triplets.Triplet.TripletID;
 import com.mgz.util.UtilBinaryDecoding;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -48,10 +50,15 @@ public class TripletParser {
         Triplet.Undefined undef = null;
         triplet = undef = new Triplet.Undefined();
         undef.setParsingException(pex);
-        byte[] tripletData = new byte[actualLength];
-        System.arraycopy(sfData, offset, tripletData, 0, actualLength);
+        // Keep only the data of the failed triplet, or the rest if its length is invalid.
+        int tripletLength = sfData[offset + pos] & 0xFF;
+        if (tripletLength < 2 || tripletLength > actualLength - pos) {
+          tripletLength = actualLength - pos;
+        }
+        byte[] tripletData = new byte[tripletLength];
+        System.arraycopy(sfData, offset + pos, tripletData, 0, tripletLength);
         undef.setTripletData(tripletData);
-        undef.setLength((short) (sfData[offset + pos] & 0xFF));
+        undef.setLength((short) tripletLength);
         undef.setTripletID(TripletID.Undefined);
       }
       resultingTriplets.add(triplet);
@@ -67,9 +74,33 @@ public class TripletParser {
     Triplet resultingTriplet = null;
 
     short tripletLength = UtilBinaryDecoding.parseShort(sfData, offset, 1);
-    short actualTripletID = UtilBinaryDecoding.parseShort(sfData, offset + 1, 1);
+    TripletID tripletID = getTripletID(sfData, offset);
+
+    if (tripletID == TripletID.Undefined) {
+      resultingTriplet = TripletRegistry.newInstance(sfData[offset + 1]);
+      if (resultingTriplet == null) {
+        resultingTriplet = new Triplet.Undefined();
+      }
+      resultingTriplet.setLength(tripletLength);
+      resultingTriplet.setTripletID(TripletID.Undefined);
+    } else {
+      resultingTriplet = createTripletInstance(tripletID);
+      resultingTriplet.setLength(tripletLength);
+    }
+
+    resultingTriplet.decodeAFP(sfData, offset, tripletLength, config);
+
+    return resultingTriplet;
+  }
 
-    TripletID tripletID = null;
+  /**
+   * Returns the {@link TripletID} of the triplet at the given offset, by looking at the triplet ID
+   * byte (and for triplet ID 0x21 at bytes 4-5) only. Returns {@link TripletID#Undefined} if the
+   * triplet ID is unknown.
+   */
+  public static TripletID getTripletID(byte[] sfData, int offset) throws AFPParserException {
+    TripletID tripletID;
+    short actualTripletID = UtilBinaryDecoding.parseShort(sfData, offset + 1, 1);
 
     if (actualTripletID != Triplet.UNFORTUNATE_TRIPLETID) {
       try {
@@ -92,31 +123,81 @@ public class TripletParser {
       }
 
     }
+    return tripletID;
+  }
 
-    if (tripletID == TripletID.Undefined) {
-      resultingTriplet = new Triplet.Undefined();
-      resultingTriplet.setLength(tripletLength);
-      resultingTriplet.setTripletID(TripletID.Undefined);
-    } else {
-      resultingTriplet = createTripletInstance(tripletID);
-      resultingTriplet.setLength(tripletLength);
+  /**
+   * Returns the first triplet of the given {@link TripletID} contained in the given data, or null
+   * if there is none. Only the length and ID bytes of the other triplets are looked at, only the
+   * found triplet is decoded. If parameter length = -1, it searches up to the end of sfData.
+   */
+  public static Triplet findTriplet(byte[] sfData, int offset, int length, TripletID tripletID, AFPParserConfiguration config) throws AFPParserException {
+    int tripletOffset = findTripletOffset(sfData, offset, length, tripletID);
+    if (tripletOffset < 0) {
+      return null;
     }
+    return parseTriplet(sfData, tripletOffset, sfData[tripletOffset] & 0xFF, config);
+  }
 
-    resultingTriplet.decodeAFP(sfData, offset, tripletLength, config);
+  /**
+   * Returns the offset in sfData of the first triplet of the given {@link TripletID} contained in
+   * the given data, or -1 if there is none. Only the length and ID bytes of the triplets are looked
+   * at. If parameter length = -1, it searches up to the end of sfData.
+   */
+  public static int findTripletOffset(byte[] sfData, int offset, int length, TripletID tripletID) throws AFPParserException {
+    int actualLength = StructuredField.getActualLength(sfData, offset, length);
+    int pos = 0;
+    while (pos + 2 <= actualLength) {
+      int tripletLength = sfData[offset + pos] & 0xFF;
+      if (tripletLength < 2 || tripletLength > actualLength - pos) {
+        break;
+      }
+      int id = sfData[offset + pos + 1] & 0xFF;
+      if (id == tripletID.toByte() && getTripletID(sfData, offset + pos) == tripletID) {
+        return offset + pos;
+      }
+      pos += tripletLength;
+    }
+    return -1;
+  }
 
-    return resultingTriplet;
+  /**
+   * Returns the first triplet of the given {@link TripletID} in the given list, or null if there
+   * is none. A {@link LazyTripletList} is not materialized.
+   */
+  public static Triplet getTriplet(List<Triplet> triplets, TripletID tripletID) throws AFPParserException {
+    if (triplets instanceof LazyTripletList) {
+      return ((LazyTripletList) triplets).getTriplet(tripletID);
+    } else if (triplets != null) {
+      for (Triplet triplet : triplets) {
+        if (triplet.getTripletID() == tripletID) {
+          return triplet;
+        }
+      }
+    }
+    return null;
   }
 
-  public static final Triplet createTripletInstance(TripletID tid) {
-    Triplet cs = null;
-
-    try {
-      String classname = Triplet.class.getName() + "$" + tid.name();
-      Class<?> clazz = Class.forName(classname);
-      cs = (Triplet) clazz.newInstance();
-    } catch (Exception cnfex) {
-      // NOP.
+  /**
+   * Writes the given triplets. A {@link LazyTripletList} that is not materialized is written
+   * without decoding.
+   */
+  public static void writeTriplets(List<Triplet> triplets, OutputStream os, AFPParserConfiguration config) throws IOException {
+    if (triplets instanceof LazyTripletList) {
+      ((LazyTripletList) triplets).writeAFP(os, config);
+    } else if (triplets != null) {
+      for (Triplet triplet : triplets) {
+        triplet.writeAFP(os, config);
+      }
     }
+  }
+
+  /**
+   * Returns a new instance of the {@link Triplet} implementation registered for the given {@link
+   * TripletID} in the {@link TripletRegistry}, or a {@link Triplet.Undefined} if there is none.
+   */
+  public static final Triplet createTripletInstance(TripletID tid) {
+    Triplet cs = TripletRegistry.newInstance(tid);
 
     if (cs == null) {
       cs = new Triplet.Undefined();
@@ -125,4 +206,5 @@ public class TripletParser {
 
     return cs;
   }
+
 }
@@ -0,0 +1,192 @@
+/*
+Copyright 2015 Rudolf Fiala
+
+This file is part of Alpheus AFP Parser.
+
+Alpheus AFP Parser is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Alpheus AFP Parser is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Alpheus AFP Parser.  If not, see <http://www.gnu.org/licenses/>
+*/
+package com.mgz.afp.parser;
+
+import com.mgz.afp.triplets.Triplet;
+import com.mgz.afp.triplets.Triplet.TripletID;
+
+import java.lang.reflect.Constructor;
+import java.util.EnumMap;
+
+/**
+ * Registry that maps every {@link TripletID} to the constructor of the {@link Triplet}
+ * implementation that is instantiated by the {@link TripletParser}, see {@link
+ * TripletParser#createTripletInstance(TripletID)}.<br> <br> The built-in implementations (the
+ * nested classes of {@link Triplet}) are resolved once, when this class is initialized. Use {@link
+ * #register(TripletID, Class)} to replace the implementation of a {@link TripletID} by your own
+ * subclass of {@link Triplet}, and {@link #register(int, Class)} to decode private or unknown
+ * triplet IDs, which are otherwise decoded as {@link Triplet.Undefined}.
+ */
+public class TripletRegistry {
+  private static final EnumMap<TripletID, Constructor<? extends Triplet>> builtInConstructors = new EnumMap<TripletID, Constructor<? extends Triplet>>(TripletID.class);
+  private static volatile EnumMap<TripletID, Constructor<? extends Triplet>> constructors;
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private static volatile Constructor<? extends Triplet>[] undefinedConstructors = new Constructor[256];
+
+  static {
+    for (TripletID tripletID : TripletID.values()) {
+      Class<? extends Triplet> clazz = findBuiltInClass(tripletID);
+      if (clazz != null) {
+        Constructor<? extends Triplet> constructor = getConstructor(clazz);
+        if (constructor != null) {
+          builtInConstructors.put(tripletID, constructor);
+        }
+      }
+    }
+    constructors = builtInConstructors.clone();
+  }
+
+  private static Class<? extends Triplet> findBuiltInClass(TripletID tripletID) {
+    try {
+      Class<?> clazz = Class.forName(Triplet.class.getName() + "$" + tripletID.name());
+      if (Triplet.class.isAssignableFrom(clazz)) {
+        return clazz.asSubclass(Triplet.class);
+      }
+    } catch (ClassNotFoundException cnfex) {
+      // No built-in implementation.
+    }
+    return null;
+  }
+
+  private static Constructor<? extends Triplet> getConstructor(Class<? extends Triplet> clazz) {
+    try {
+      return clazz.getConstructor();
+    } catch (NoSuchMethodException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Returns a new instance of the {@link Triplet} implementation registered for the given {@link
+   * TripletID}, or null if no implementation is registered or the instantiation fails.
+   */
+  public static Triplet newInstance(TripletID tripletID) {
+    Constructor<? extends Triplet> constructor = tripletID != null ? constructors.get(tripletID) : null;
+    return newInstance(constructor);
+  }
+
+  /**
+   * Returns a new instance of the {@link Triplet} implementation registered by {@link
+   * #register(int, Class)} for the given triplet ID code that is not defined by {@link TripletID},
+   * or null if there is none.
+   */
+  public static Triplet newInstance(int tripletIDCode) {
+    return newInstance(undefinedConstructors[tripletIDCode & 0xFF]);
+  }
+
+  private static Triplet newInstance(Constructor<? extends Triplet> constructor) {
+    if (constructor != null) {
+      try {
+        return constructor.newInstance();
+      } catch (Exception ex) {
+        // Fall through to null.
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns the {@link Triplet} implementation that is currently registered for the given {@link
+   * TripletID}, or null if there is none.
+   */
+  public static Class<? extends Triplet> getTripletClass(TripletID tripletID) {
+    Constructor<? extends Triplet> constructor = constructors.get(tripletID);
+    return constructor != null ? constructor.getDeclaringClass() : null;
+  }
+
+  /**
+   * Registers the given {@link Triplet} implementation for the given {@link TripletID}. The {@link
+   * TripletParser} instantiates the given class for triplets of the given {@link TripletID} from
+   * now on.
+   *
+   * @param tripletID the {@link TripletID} to register the given class for.
+   * @param clazz     the {@link Triplet} implementation. The class must be public and have a public
+   *                  no argument constructor.
+   * @throws IllegalArgumentException if the given class has no public no argument constructor.
+   */
+  public static synchronized void register(TripletID tripletID, Class<? extends Triplet> clazz) {
+    Constructor<? extends Triplet> constructor = checkedConstructor(clazz);
+    EnumMap<TripletID, Constructor<? extends Triplet>> newConstructors = constructors.clone();
+    newConstructors.put(tripletID, constructor);
+    constructors = newConstructors;
+  }
+
+  /**
+   * Registers the given {@link Triplet} implementation for a private or unknown triplet ID code,
+   * that is not defined by {@link TripletID}. The instances get the {@link TripletID#Undefined}.
+   * Since {@link Triplet#decodeAFP(byte[], int, int, AFPParserConfiguration)} fails for unknown
+   * triplet IDs, the given class must not call it.
+   *
+   * @param tripletIDCode the triplet ID code (0x00-0xFF).
+   * @param clazz         the {@link Triplet} implementation. The class must be public and have a
+   *                      public no argument constructor.
+   * @throws IllegalArgumentException if the triplet ID code is defined by {@link TripletID}, or the
+   *                                  given class has no public no argument constructor.
+   */
+  public static synchronized void register(int tripletIDCode, Class<? extends Triplet> clazz) {
+    checkUndefinedCode(tripletIDCode);
+    Constructor<? extends Triplet> constructor = checkedConstructor(clazz);
+    Constructor<? extends Triplet>[] newConstructors = undefinedConstructors.clone();
+    newConstructors[tripletIDCode] = constructor;
+    undefinedConstructors = newConstructors;
+  }
+
+  private static Constructor<? extends Triplet> checkedConstructor(Class<? extends Triplet> clazz) {
+    Constructor<? extends Triplet> constructor = getConstructor(clazz);
+    if (constructor == null) {
+      throw new IllegalArgumentException(clazz.getName() + " has no public no argument constructor.");
+    }
+    return constructor;
+  }
+
+  private static void checkUndefinedCode(int tripletIDCode) {
+    if (tripletIDCode < 0 || tripletIDCode > 0xFF || tripletIDCode == Triplet.UNFORTUNATE_TRIPLETID) {
+      throw new IllegalArgumentException("Invalid triplet ID code 0x" + Integer.toHexString(tripletIDCode) + ".");
+    }
+    for (TripletID tripletID : TripletID.values()) {
+      if (tripletID != TripletID.Undefined && tripletID.toByte() == tripletIDCode) {
+        throw new IllegalArgumentException("Triplet ID code 0x" + Integer.toHexString(tripletIDCode) + " is defined as " + tripletID + ", use register(TripletID, Class).");
+      }
+    }
+  }
+
+  /**
+   * Removes a {@link Triplet} implementation registered by {@link #register(TripletID, Class)} and
+   * restores the built-in implementation of the given {@link TripletID}.
+   */
+  public static synchronized void unregister(TripletID tripletID) {
+    EnumMap<TripletID, Constructor<? extends Triplet>> newConstructors = constructors.clone();
+    Constructor<? extends Triplet> builtIn = builtInConstructors.get(tripletID);
+    if (builtIn != null) {
+      newConstructors.put(tripletID, builtIn);
+    } else {
+      newConstructors.remove(tripletID);
+    }
+    constructors = newConstructors;
+  }
+
+  /**
+   * Removes a {@link Triplet} implementation registered by {@link #register(int, Class)}.
+   */
+  public static synchronized void unregister(int tripletIDCode) {
+    Constructor<? extends Triplet>[] newConstructors = undefinedConstructors.clone();
+    newConstructors[tripletIDCode & 0xFF] = null;
+    undefinedConstructors = newConstructors;
+  }
+}
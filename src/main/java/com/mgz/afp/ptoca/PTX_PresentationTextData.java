@@ -28,34 +28,56 @@ import com.mgz.afp.ptoca.controlSequence.PTOCAControlSequence;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * The PTOCA control sequences are decoded lazily, on the first call of {@link
+ * #getControlSequences()}. {@link #writeAFP(OutputStream, AFPParserConfiguration)} writes the
+ * original payload unchanged, unless the control sequences have been modified, see {@link
+ * #markModified()}.
+ */
 public class PTX_PresentationTextData extends StructuredField {
   @AFPField
   List<PTOCAControlSequence> controlSequences;
   volatile byte[] originalPayload;
   volatile Throwable controlSequenceException;
+  /**
+   * The charset of the configuration given to {@link #decodeAFP(byte[], int, int,
+   * AFPParserConfiguration)}, used to decode the control sequences of the original payload. Null if
+   * the control sequences have been decoded or set. The configuration itself is not kept, it
+   * references the parser's input and current objects.
+   */
+  private volatile Charset decodeCharset;
+  private volatile boolean isModified;
 
   @Override
   public void decodeAFP(byte[] sfData, int offset, int length, AFPParserConfiguration config) throws AFPParserException {
     int actualLength = getActualLength(sfData, offset, length);
+    controlSequences = null;
+    controlSequenceException = null;
+    isModified = false;
     if (actualLength > 0) {
       originalPayload = new byte[actualLength];
       System.arraycopy(sfData, offset, originalPayload, 0, actualLength);
-      controlSequences = PTOCAControlSequenceParser.parseControlSequences(sfData, offset, actualLength, config);
+      decodeCharset = config.getAfpCharSet();
     } else {
       originalPayload = null;
-      controlSequences = null;
+      decodeCharset = null;
     }
-
   }
 
 
+  /**
+   * Writes the original payload if the control sequences have not been modified since the last
+   * {@link #decodeAFP(byte[], int, int, AFPParserConfiguration)}. Otherwise the control sequences
+   * are encoded.
+   */
   @Override
   public void writeAFP(OutputStream os, AFPParserConfiguration config) throws IOException {
     byte[] actualPayload = null;
-    if (controlSequences != null) {
+    if (isModified && controlSequences != null) {
       ByteArrayOutputStream baos = new ByteArrayOutputStream();
       for (PTOCAControlSequence cs : controlSequences) {
         baos.write(cs.getCsi().toBytes());
@@ -68,28 +90,121 @@ public class PTX_PresentationTextData extends StructuredField {
     writeFullStructuredField(os, actualPayload);
   }
 
+  /**
+   * Returns the control sequences, decoding them from the original payload on the first call. If
+   * decoding fails, null is returned and the cause is available by {@link
+   * #getControlSequenceException()}.<br> <br> Changes to the returned list, or to its control
+   * sequences, are written only if {@link #markModified()} is called.
+   */
   public List<PTOCAControlSequence> getControlSequences() {
+    if (decodeCharset != null) {
+      decodeControlSequences();
+    }
     return controlSequences;
   }
 
-  public void setControlSequences(List<PTOCAControlSequence> controlSequences) {
+  private synchronized void decodeControlSequences() {
+    if (decodeCharset == null) {
+      return;
+    }
+    try {
+      AFPParserConfiguration config = new AFPParserConfiguration();
+      config.setAfpCharSet(decodeCharset);
+      controlSequences = PTOCAControlSequenceParser.parseControlSequences(originalPayload, 0, originalPayload.length, config);
+    } catch (Throwable th) {
+      controlSequenceException = th;
+    }
+    decodeCharset = null;
+  }
+
+  /**
+   * Returns the exception thrown while decoding the control sequences by {@link
+   * #getControlSequences()}, or null.
+   */
+  public Throwable getControlSequenceException() {
+    return controlSequenceException;
+  }
+
+  /**
+   * Returns the undecoded payload as given to {@link #decodeAFP(byte[], int, int,
+   * AFPParserConfiguration)}.
+   */
+  public byte[] getOriginalPayload() {
+    return originalPayload;
+  }
+
+  /**
+   * Marks the control sequences as modified, so that {@link #writeAFP(OutputStream,
+   * AFPParserConfiguration)} encodes them instead of writing the original payload. Callers that
+   * change the list returned by {@link #getControlSequences()}, or its control sequences, must call
+   * it; {@link #setControlSequences(List)}, {@link #addControlSequence(PTOCAControlSequence)}, and
+   * {@link #removeControlSequence(PTOCAControlSequence)} mark the control sequences themselves.
+   */
+  public void markModified() {
+    isModified = true;
+  }
+
+  /**
+   * Returns true if the control sequences have been modified since the last {@link
+   * #decodeAFP(byte[], int, int, AFPParserConfiguration)}.
+   */
+  public boolean isModified() {
+    return isModified;
+  }
+
+  /**
+   * Sets the control sequences, which replace the original payload.
+   *
+   * @throws AFPParserException if decoding the control sequences of the original payload has failed,
+   *                            see {@link #getControlSequenceException()}.
+   */
+  public void setControlSequences(List<PTOCAControlSequence> controlSequences) throws AFPParserException {
+    checkControlSequencesDecoded();
+    synchronized (this) {
+      decodeCharset = null;
+    }
     this.controlSequences = controlSequences;
+    isModified = true;
   }
 
-  public void addControlSequence(PTOCAControlSequence cs) {
+  /**
+   * @throws AFPParserException if decoding the control sequences of the original payload has failed,
+   *                            see {@link #getControlSequenceException()}.
+   */
+  public void addControlSequence(PTOCAControlSequence cs) throws AFPParserException {
     if (cs == null) {
       return;
     }
+    getControlSequences();
+    checkControlSequencesDecoded();
     if (controlSequences == null) {
       controlSequences = new ArrayList<PTOCAControlSequence>();
     }
     controlSequences.add(cs);
+    isModified = true;
   }
 
-  public void removeControlSequence(PTOCAControlSequence cs) {
+  /**
+   * @throws AFPParserException if decoding the control sequences of the original payload has failed,
+   *                            see {@link #getControlSequenceException()}.
+   */
+  public void removeControlSequence(PTOCAControlSequence cs) throws AFPParserException {
+    getControlSequences();
+    checkControlSequencesDecoded();
     if (controlSequences == null) {
       return;
     }
-    controlSequences.remove(cs);
+    if (controlSequences.remove(cs)) {
+      isModified = true;
+    }
+  }
+
+  /**
+   * Modifying control sequences that could not be decoded would drop the original payload.
+   */
+  private void checkControlSequencesDecoded() throws AFPParserException {
+    if (controlSequenceException != null) {
+      throw new AFPParserException("The control sequences of the " + PTX_PresentationTextData.class.getSimpleName() + " could not be decoded and can't be modified.", controlSequenceException);
+    }
   }
 }
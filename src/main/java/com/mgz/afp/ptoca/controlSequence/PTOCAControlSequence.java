@@ -27,7 +27,9 @@ import com.mgz.afp.enums.AFPOrientation;
 import com.mgz.afp.exceptions.AFPParserException;
 import com.mgz.afp.exceptions.IAFPDecodeableWriteable;
 import com.mgz.afp.parser.AFPParserConfiguration;
+import com.mgz.util.ByteCodeTable;
 import com.mgz.util.UtilBinaryDecoding;
+import com.mgz.util.UtilCharacterEncoding;
 
 import java.io.IOException;
 import java.io.OutputStream;
@@ -78,19 +80,31 @@ public abstract class PTOCAControlSequence implements IAFPDecodeableWriteable {
     TBM_TemporaryBaselineMove(0x78); // (TBM)” on page 97
 
 
+    private static final ByteCodeTable<ControlSequenceFunctionType> codeTable = new ByteCodeTable<ControlSequenceFunctionType>();
+
+    static {
+      for (ControlSequenceFunctionType v : values()) {
+        codeTable.put(v.typeCode, v);
+        codeTable.put(v.typeCode + 1, v);
+      }
+    }
+
     int typeCode;
 
     ControlSequenceFunctionType(int typeCode) {
       this.typeCode = typeCode;
     }
 
+    /**
+     * Returns the {@link ControlSequenceFunctionType} of the given unchained or chained (odd)
+     * function type code, or {@link #Undefined}.
+     */
     public static ControlSequenceFunctionType valueOf(short typeCode) throws AFPParserException {
-      for (ControlSequenceFunctionType csft : values()) {
-        if (csft.typeCode == typeCode || csft.typeCode == (typeCode - 1)) {
-          return csft;
-        }
+      if (typeCode < 0 || typeCode > 0xFF) {
+        return Undefined;
       }
-      return Undefined;
+      ControlSequenceFunctionType csft = codeTable.get(typeCode);
+      return csft != null ? csft : Undefined;
     }
 
     public int toByte(boolean isChained) {
@@ -1117,7 +1131,7 @@ public abstract class PTOCAControlSequence implements IAFPDecodeableWriteable {
       if (actualLength > 0) {
         transparentDataEBCDIC = new byte[actualLength];
         System.arraycopy(sfData, offset, transparentDataEBCDIC, 0, actualLength);
-        transparentData = new String(transparentDataEBCDIC, config.getAfpCharSet());
+        transparentData = UtilCharacterEncoding.decode(transparentDataEBCDIC, 0, actualLength, config.getAfpCharSet());
       } else {
         transparentData = null;
         transparentDataEBCDIC = null;
@@ -1133,7 +1147,7 @@ public abstract class PTOCAControlSequence implements IAFPDecodeableWriteable {
       if (isUseEBCDICData && transparentDataEBCDIC != null) {
         os.write(transparentDataEBCDIC);
       } else if (transparentData != null) {
-        os.write(transparentData.getBytes(config.getAfpCharSet()));
+        os.write(UtilCharacterEncoding.encode(transparentData, config.getAfpCharSet()));
       }
     }
 
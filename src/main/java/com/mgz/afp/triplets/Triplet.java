@@ -28,7 +28,9 @@ import com.mgz.afp.parser.AFPParserConfiguration;
 import com.mgz.afp.triplets.Triplet.ColorFidelity.ExceptionContinuationRule;
 import com.mgz.afp.triplets.Triplet.ColorFidelity.ExceptionReportingRule;
 import com.mgz.afp.triplets.Triplet.ResourceObjectType.ROT_ObjectType;
+import com.mgz.util.ByteCodeTable;
 import com.mgz.util.Constants;
+import com.mgz.util.IntCodeTable;
 import com.mgz.util.UtilBinaryDecoding;
 import com.mgz.util.UtilCharacterEncoding;
 
@@ -160,11 +162,18 @@ public abstract class Triplet implements IAFPDecodeableWriteable {
       this.code = code;
     }
 
+    private static final ByteCodeTable<TripletID> codeTable = new ByteCodeTable<TripletID>();
+
+    static {
+      for (TripletID v : values()) {
+        codeTable.put(v.code, v);
+      }
+    }
+
     public static TripletID valueOf(short codeByte) throws AFPParserException {
-      for (TripletID id : values()) {
-        if (id.code == codeByte) {
-          return id;
-        }
+      TripletID id = codeTable.get(codeByte);
+      if (id != null) {
+        return id;
       }
       throw new AFPParserException(TripletID.class.getSimpleName() + ": the ID 0x" + Integer.toHexString(codeByte) + " is undefined.");
     }
@@ -210,13 +219,16 @@ public abstract class Triplet implements IAFPDecodeableWriteable {
       this.code = code;
     }
 
-    public static GlobalID_Use valueOf(short codeByte) {
-      for (GlobalID_Use gidu : values()) {
-        if (gidu.code == codeByte) {
-          return gidu;
-        }
+    private static final ByteCodeTable<GlobalID_Use> codeTable = new ByteCodeTable<GlobalID_Use>();
+
+    static {
+      for (GlobalID_Use v : values()) {
+        codeTable.put(v.code, v);
       }
-      return null;
+    }
+
+    public static GlobalID_Use valueOf(short codeByte) {
+      return codeTable.get(codeByte);
     }
 
     public int toByte() {
@@ -237,11 +249,16 @@ public abstract class Triplet implements IAFPDecodeableWriteable {
       this.code = code;
     }
 
-    public static GlobalID_Format valueOf(byte codeByte) {
-      for (GlobalID_Format f : values()) {
-        return f;
+    private static final ByteCodeTable<GlobalID_Format> codeTable = new ByteCodeTable<GlobalID_Format>();
+
+    static {
+      for (GlobalID_Format v : values()) {
+        codeTable.put(v.code, v);
       }
-      return null;
+    }
+
+    public static GlobalID_Format valueOf(byte codeByte) {
+      return codeTable.get(codeByte);
     }
 
     public int toByte() {
@@ -362,7 +379,7 @@ public abstract class Triplet implements IAFPDecodeableWriteable {
       int actualLength = StructuredField.getActualLength(sfData, offset, length);
       nameAsBytes = new byte[actualLength - 4];
       System.arraycopy(sfData, offset + 4, nameAsBytes, 0, nameAsBytes.length);
-      nameAsString = new String(nameAsBytes, config.getAfpCharSet());
+      nameAsString = UtilCharacterEncoding.decodeName(sfData, offset + 4, nameAsBytes.length, config.getAfpCharSet());
     }
 
     @Override
@@ -452,13 +469,16 @@ public abstract class Triplet implements IAFPDecodeableWriteable {
         this.code = code;
       }
 
-      public static DataObjecMapingOption valueOf(byte codeByte) {
-        for (DataObjecMapingOption o : values()) {
-          if (o.code == codeByte) {
-            return o;
-          }
+      private static final ByteCodeTable<DataObjecMapingOption> codeTable = new ByteCodeTable<DataObjecMapingOption>();
+
+      static {
+        for (DataObjecMapingOption v : values()) {
+          codeTable.put(v.code, v);
         }
-        return null;
+      }
+
+      public static DataObjecMapingOption valueOf(byte codeByte) {
+        return codeTable.get(codeByte);
       }
 
       public int toByte() {
@@ -563,11 +583,18 @@ public abstract class Triplet implements IAFPDecodeableWriteable {
         this.code = code;
       }
 
+      private static final ByteCodeTable<ObjectClass> codeTable = new ByteCodeTable<ObjectClass>();
+
+      static {
+        for (ObjectClass v : values()) {
+          codeTable.put(v.code, v);
+        }
+      }
+
       public static ObjectClass valueOf(byte codeByte) throws AFPParserException {
-        for (ObjectClass oc : values()) {
-          if (oc.code == codeByte) {
-            return oc;
-          }
+        ObjectClass oc = codeTable.get(codeByte);
+        if (oc != null) {
+          return oc;
         }
         throw new AFPParserException(ObjectClass.class.getSimpleName() + ": object class 0x" + Integer.toHexString(codeByte) + " is unknwon.");
       }
@@ -736,11 +763,18 @@ public abstract class Triplet implements IAFPDecodeableWriteable {
         this.code = code;
       }
 
+      private static final IntCodeTable<MODCAInterchangeSet_Identifier> codeTable = new IntCodeTable<MODCAInterchangeSet_Identifier>();
+
+      static {
+        for (MODCAInterchangeSet_Identifier v : values()) {
+          codeTable.put(v.code, v);
+        }
+      }
+
       public static MODCAInterchangeSet_Identifier valueOf(short code) throws AFPParserException {
-        for (MODCAInterchangeSet_Identifier id : values()) {
-          if (id.code == code) {
-            return id;
-          }
+        MODCAInterchangeSet_Identifier id = codeTable.get(code);
+        if (id != null) {
+          return id;
         }
         throw new AFPParserException(MODCAInterchangeSet_Identifier.class.getSimpleName() + ": type code 0x" + Integer.toHexString(code) + " is unknown.");
       }
@@ -811,6 +845,28 @@ public abstract class Triplet implements IAFPDecodeableWriteable {
       os.write(baos.toByteArray());
     }
 
+    /**
+     * Returns the vertical font size, in 1440ths of an inch, or 0 if not specified.
+     */
+    public short getFontHeight() {
+      return fontHeight;
+    }
+
+    public void setFontHeight(short fontHeight) {
+      this.fontHeight = fontHeight;
+    }
+
+    /**
+     * Returns the horizontal scale factor, in 1440ths of an inch, or 0 if not specified.
+     */
+    public short getFontWidth() {
+      return fontWidth;
+    }
+
+    public void setFontWidth(short fontWidth) {
+      this.fontWidth = fontWidth;
+    }
+
 
     public enum FDS_FontWeigthClass {
       NotSpecified(0x00),
@@ -829,11 +885,18 @@ public abstract class Triplet implements IAFPDecodeableWriteable {
         this.code = code;
       }
 
+      private static final ByteCodeTable<FDS_FontWeigthClass> codeTable = new ByteCodeTable<FDS_FontWeigthClass>();
+
+      static {
+        for (FDS_FontWeigthClass v : values()) {
+          codeTable.put(v.ordinal(), v);
+        }
+      }
+
       public static FDS_FontWeigthClass valueOf(byte codeByte) throws AFPParserException {
-        for (FDS_FontWeigthClass wc : values()) {
-          if (wc.ordinal() == codeByte) {
-            return wc;
-          }
+        FDS_FontWeigthClass wc = codeTable.get(codeByte);
+        if (wc != null) {
+          return wc;
         }
         throw new AFPParserException(FDS_FontWeigthClass.class.getSimpleName() + ": class code 0x" + Integer.toHexString(codeByte) + " is unknown.");
       }
@@ -860,11 +923,18 @@ public abstract class Triplet implements IAFPDecodeableWriteable {
         this.code = code;
       }
 
+      private static final ByteCodeTable<FDS_FontWidthClass> codeTable = new ByteCodeTable<FDS_FontWidthClass>();
+
+      static {
+        for (FDS_FontWidthClass v : values()) {
+          codeTable.put(v.ordinal(), v);
+        }
+      }
+
       public static FDS_FontWidthClass valueOf(byte codeByte) throws AFPParserException {
-        for (FDS_FontWidthClass wc : values()) {
-          if (wc.ordinal() == codeByte) {
-            return wc;
-          }
+        FDS_FontWidthClass wc = codeTable.get(codeByte);
+        if (wc != null) {
+          return wc;
         }
         throw new AFPParserException(FDS_FontWidthClass.class.getSimpleName() + ": class code 0x" + Integer.toHexString(codeByte) + " is unknown.");
       }
@@ -1123,11 +1193,18 @@ public abstract class Triplet implements IAFPDecodeableWriteable {
         this.code = code;
       }
 
+      private static final ByteCodeTable<ROT_ObjectType> codeTable = new ByteCodeTable<ROT_ObjectType>();
+
+      static {
+        for (ROT_ObjectType v : values()) {
+          codeTable.put(v.code, v);
+        }
+      }
+
       public static ROT_ObjectType valueOf(short codeByte) throws AFPParserException {
-        for (ROT_ObjectType t : values()) {
-          if (t.code == codeByte) {
-            return t;
-          }
+        ROT_ObjectType t = codeTable.get(codeByte);
+        if (t != null) {
+          return t;
         }
         throw new AFPParserException(ROT_ObjectType.class.getSimpleName() + ": type 0x" + Integer.toHexString(codeByte) + " is unknown.");
       }
@@ -1195,11 +1272,18 @@ public abstract class Triplet implements IAFPDecodeableWriteable {
         this.code = code;
       }
 
+      private static final IntCodeTable<OCAFunctionSet> codeTable = new IntCodeTable<OCAFunctionSet>();
+
+      static {
+        for (OCAFunctionSet v : values()) {
+          codeTable.put(v.code, v);
+        }
+      }
+
       public static OCAFunctionSet valueOf(int code) throws AFPParserException {
-        for (OCAFunctionSet fs : values()) {
-          if (fs.code == code) {
-            return fs;
-          }
+        OCAFunctionSet fs = codeTable.get(code);
+        if (fs != null) {
+          return fs;
         }
         throw new AFPParserException(OCAFunctionSet.class.getSimpleName() + ": code 0x" + Integer.toHexString(code) + " is unknown.");
       }
@@ -1302,6 +1386,22 @@ public abstract class Triplet implements IAFPDecodeableWriteable {
       os.write(UtilBinaryDecoding.shortToByteArray(resourceLocalID, 1));
     }
 
+    public RLI_ResourceType getResourceType() {
+      return resourceType;
+    }
+
+    public void setResourceType(RLI_ResourceType resourceType) {
+      this.resourceType = resourceType;
+    }
+
+    public short getResourceLocalID() {
+      return resourceLocalID;
+    }
+
+    public void setResourceLocalID(short resourceLocalID) {
+      this.resourceLocalID = resourceLocalID;
+    }
+
     public enum RLI_ResourceType {
       UsageDependent,
       PageOverlay,
@@ -1385,6 +1485,14 @@ public abstract class Triplet implements IAFPDecodeableWriteable {
       os.write(tripletID.toByte());
       os.write(characterRotation.toBytes());
     }
+
+    public AFPOrientation getCharacterRotation() {
+      return characterRotation;
+    }
+
+    public void setCharacterRotation(AFPOrientation characterRotation) {
+      this.characterRotation = characterRotation;
+    }
   }
 
   /**
@@ -1593,11 +1701,18 @@ public abstract class Triplet implements IAFPDecodeableWriteable {
       Redaction,
       Highlight;
 
+      private static final ByteCodeTable<PageOverlayType> codeTable = new ByteCodeTable<PageOverlayType>();
+
+      static {
+        for (PageOverlayType v : values()) {
+          codeTable.put(v.ordinal(), v);
+        }
+      }
+
       public static PageOverlayType valueOf(byte codeByte) throws AFPParserException {
-        for (PageOverlayType loo : values()) {
-          if (loo.ordinal() == codeByte) {
-            return loo;
-          }
+        PageOverlayType loo = codeTable.get(codeByte);
+        if (loo != null) {
+          return loo;
         }
         throw new AFPParserException(PageOverlayType.class.getSimpleName() + ": page overlay type 0x" + Integer.toHexString(codeByte) + " is unknown.");
       }
@@ -1961,11 +2076,18 @@ public abstract class Triplet implements IAFPDecodeableWriteable {
       LowerRight_180,
       UperRight_90;
 
+      private static final ByteCodeTable<LocationAndOrientation> codeTable = new ByteCodeTable<LocationAndOrientation>();
+
+      static {
+        for (LocationAndOrientation v : values()) {
+          codeTable.put(v.ordinal(), v);
+        }
+      }
+
       public static LocationAndOrientation valueOf(byte codeByte) throws AFPParserException {
-        for (LocationAndOrientation lao : values()) {
-          if (lao.ordinal() == codeByte) {
-            return lao;
-          }
+        LocationAndOrientation lao = codeTable.get(codeByte);
+        if (lao != null) {
+          return lao;
         }
         throw new AFPParserException(LocationAndOrientation.class.getSimpleName() + ": location/orientation code 0x" + Integer.toHexString(codeByte) + " is undefined.");
       }
@@ -2667,11 +2789,18 @@ public abstract class Triplet implements IAFPDecodeableWriteable {
       Portrait90,
       Landscape90;
 
-      public static MediumOrientationValue valueOf(byte codeByte) throws AFPParserException {
+      private static final ByteCodeTable<MediumOrientationValue> codeTable = new ByteCodeTable<MediumOrientationValue>();
+
+      static {
         for (MediumOrientationValue v : values()) {
-          if (v.ordinal() == codeByte) {
-            return v;
-          }
+          codeTable.put(v.ordinal(), v);
+        }
+      }
+
+      public static MediumOrientationValue valueOf(byte codeByte) throws AFPParserException {
+        MediumOrientationValue v = codeTable.get(codeByte);
+        if (v != null) {
+          return v;
         }
         throw new AFPParserException(MediumOrientationValue.class.getSimpleName() + ": medium orientation value 0x" + Integer.toHexString(codeByte) + " is undefined.");
       }
@@ -2830,11 +2959,18 @@ public abstract class Triplet implements IAFPDecodeableWriteable {
       ForegroundOnBackground,
       ForegroundOnForeground;
 
+      private static final ByteCodeTable<MixingKeyword> codeTable = new ByteCodeTable<MixingKeyword>();
+
+      static {
+        for (MixingKeyword v : values()) {
+          codeTable.put(v.ordinal() + 0x70, v);
+        }
+      }
+
       public static MixingKeyword valueOf(short codeByte) throws AFPParserException {
-        for (MixingKeyword mk : values()) {
-          if (mk.ordinal() + 0x70 == codeByte) {
-            return mk;
-          }
+        MixingKeyword mk = codeTable.get(codeByte);
+        if (mk != null) {
+          return mk;
         }
         throw new AFPParserException(MixingKeyword.class.getSimpleName() + ": mixing keyword 0x" + Integer.toHexString(codeByte) + " is undefined.");
       }
@@ -2850,11 +2986,18 @@ public abstract class Triplet implements IAFPDecodeableWriteable {
       Blend,
       MODCADefaultMixing;
 
+      private static final ByteCodeTable<MixingRule> codeTable = new ByteCodeTable<MixingRule>();
+
+      static {
+        for (MixingRule v : values()) {
+          codeTable.put(v.ordinal() + 1, v);
+        }
+      }
+
       public static MixingRule valueOf(short xodeByte) throws AFPParserException {
-        for (MixingRule mr : values()) {
-          if (mr.ordinal() + 1 == xodeByte) {
-            return mr;
-          }
+        MixingRule mr = codeTable.get(xodeByte);
+        if (mr != null) {
+          return mr;
         }
         throw new AFPParserException(MixingRule.class.getSimpleName() + ": mixing rule code 0x" + Integer.toHexString(xodeByte) + " is undefined.");
       }
@@ -2948,11 +3091,18 @@ public abstract class Triplet implements IAFPDecodeableWriteable {
       AheadUTC,
       BehindUTC;
 
+      private static final ByteCodeTable<TimeZone> codeTable = new ByteCodeTable<TimeZone>();
+
+      static {
+        for (TimeZone v : values()) {
+          codeTable.put(v.ordinal(), v);
+        }
+      }
+
       public static TimeZone valueOf(byte codeByte) throws AFPParserException {
-        for (TimeZone tz : values()) {
-          if (tz.ordinal() == codeByte) {
-            return tz;
-          }
+        TimeZone tz = codeTable.get(codeByte);
+        if (tz != null) {
+          return tz;
         }
         throw new AFPParserException(TimeZone.class.getSimpleName() + ": time zone code 0x" + Integer.toHexString(codeByte) + " is undefined.");
       }
@@ -3062,11 +3212,18 @@ public abstract class Triplet implements IAFPDecodeableWriteable {
       Stop,
       DoNotStop;
 
+      private static final ByteCodeTable<ExceptionContinuationRule> codeTable = new ByteCodeTable<ExceptionContinuationRule>();
+
+      static {
+        for (ExceptionContinuationRule v : values()) {
+          codeTable.put(v.ordinal() + 1, v);
+        }
+      }
+
       public static ExceptionContinuationRule valueOf(byte ruleByte) throws AFPParserException {
-        for (ExceptionContinuationRule ecr : values()) {
-          if (ecr.ordinal() + 1 == ruleByte) {
-            return ecr;
-          }
+        ExceptionContinuationRule ecr = codeTable.get(ruleByte);
+        if (ecr != null) {
+          return ecr;
         }
         throw new AFPParserException(ExceptionContinuationRule.class.getSimpleName() + ": continuation rule 0x" + Integer.toHexString(ruleByte) + " is undefined.");
       }
@@ -3080,11 +3237,18 @@ public abstract class Triplet implements IAFPDecodeableWriteable {
       Report,
       DoNotReport;
 
+      private static final ByteCodeTable<ExceptionReportingRule> codeTable = new ByteCodeTable<ExceptionReportingRule>();
+
+      static {
+        for (ExceptionReportingRule v : values()) {
+          codeTable.put(v.ordinal() + 1, v);
+        }
+      }
+
       public static ExceptionReportingRule valueOf(byte ruleByte) throws AFPParserException {
-        for (ExceptionReportingRule ecr : values()) {
-          if (ecr.ordinal() + 1 == ruleByte) {
-            return ecr;
-          }
+        ExceptionReportingRule ecr = codeTable.get(ruleByte);
+        if (ecr != null) {
+          return ecr;
         }
         throw new AFPParserException(ExceptionReportingRule.class.getSimpleName() + ": reporting rule 0x" + Integer.toHexString(ruleByte) + " is undefined.");
       }
@@ -3097,11 +3261,18 @@ public abstract class Triplet implements IAFPDecodeableWriteable {
     public enum ExceptionSubstitutionRule {
       AnySubstitution_Default;
 
+      private static final ByteCodeTable<ExceptionSubstitutionRule> codeTable = new ByteCodeTable<ExceptionSubstitutionRule>();
+
+      static {
+        for (ExceptionSubstitutionRule v : values()) {
+          codeTable.put(v.ordinal() + 1, v);
+        }
+      }
+
       public static ExceptionSubstitutionRule valueOf(byte ruleByte) throws AFPParserException {
-        for (ExceptionSubstitutionRule ecr : values()) {
-          if (ecr.ordinal() + 1 == ruleByte) {
-            return ecr;
-          }
+        ExceptionSubstitutionRule ecr = codeTable.get(ruleByte);
+        if (ecr != null) {
+          return ecr;
         }
         throw new AFPParserException(ExceptionSubstitutionRule.class.getSimpleName() + ": substitution rule 0x" + Integer.toHexString(ruleByte) + " is undefined.");
       }
@@ -3237,11 +3408,18 @@ public abstract class Triplet implements IAFPDecodeableWriteable {
       CharacterString,
       Name;
 
+      private static final ByteCodeTable<ParameterSyntax> codeTable = new ByteCodeTable<ParameterSyntax>();
+
+      static {
+        for (ParameterSyntax v : values()) {
+          codeTable.put(v.ordinal(), v);
+        }
+      }
+
       public static ParameterSyntax valueOf(byte codeByte) throws AFPParserException {
-        for (ParameterSyntax ps : values()) {
-          if (ps.ordinal() == codeByte) {
-            return ps;
-          }
+        ParameterSyntax ps = codeTable.get(codeByte);
+        if (ps != null) {
+          return ps;
         }
         throw new AFPParserException(ParameterSyntax.class.getSimpleName() + ": systax code 0x" + Integer.toHexString(codeByte) + " is undefined.");
       }
@@ -3469,11 +3647,18 @@ public abstract class Triplet implements IAFPDecodeableWriteable {
         this.code = code;
       }
 
+      private static final ByteCodeTable<OperationType> codeTable = new ByteCodeTable<OperationType>();
+
+      static {
+        for (OperationType v : values()) {
+          codeTable.put(v.code, v);
+        }
+      }
+
       public static OperationType valueOf(byte codeValue) throws AFPParserException {
-        for (OperationType ot : values()) {
-          if (ot.code == codeValue) {
-            return ot;
-          }
+        OperationType ot = codeTable.get(codeValue);
+        if (ot != null) {
+          return ot;
         }
         throw new AFPParserException(OperationType.class.getSimpleName() + ": operation type 0x" + Integer.toHexString(codeValue) + " is undefined.");
       }
@@ -3495,11 +3680,18 @@ public abstract class Triplet implements IAFPDecodeableWriteable {
         this.code = code;
       }
 
+      private static final ByteCodeTable<ReferenceCorner> codeTable = new ByteCodeTable<ReferenceCorner>();
+
+      static {
+        for (ReferenceCorner v : values()) {
+          codeTable.put(v.code, v);
+        }
+      }
+
       public static ReferenceCorner valueOf(short codeByte) throws AFPParserException {
-        for (ReferenceCorner rc : values()) {
-          if (rc.code == codeByte) {
-            return rc;
-          }
+        ReferenceCorner rc = codeTable.get(codeByte);
+        if (rc != null) {
+          return rc;
         }
         throw new AFPParserException(ReferenceCorner.class.getSimpleName() + ": corner/edge code 0x" + Integer.toHexString(codeByte) + " is undefined.");
       }
@@ -4021,11 +4213,18 @@ public abstract class Triplet implements IAFPDecodeableWriteable {
       InstructionCMR,
       LinkCMR;
 
+      private static final ByteCodeTable<CMRProcessingMode> codeTable = new ByteCodeTable<CMRProcessingMode>();
+
+      static {
+        for (CMRProcessingMode v : values()) {
+          codeTable.put(v.ordinal() + 1, v);
+        }
+      }
+
       public static CMRProcessingMode valueOf(byte codeByte) throws AFPParserException {
-        for (CMRProcessingMode pm : values()) {
-          if (pm.ordinal() + 1 == codeByte) {
-            return pm;
-          }
+        CMRProcessingMode pm = codeTable.get(codeByte);
+        if (pm != null) {
+          return pm;
         }
         throw new AFPParserException(CMRProcessingMode.class.getSimpleName() + ": processing mode 0x" + Integer.toHexString(codeByte) + " is undefined.");
       }
@@ -4042,11 +4241,18 @@ public abstract class Triplet implements IAFPDecodeableWriteable {
       PrintFile,
       PageGroup_SheetGroup;
 
+      private static final ByteCodeTable<CMRScope> codeTable = new ByteCodeTable<CMRScope>();
+
+      static {
+        for (CMRScope v : values()) {
+          codeTable.put(v.ordinal() + 1, v);
+        }
+      }
+
       public static CMRScope valueOf(byte codeByte) throws AFPParserException {
-        for (CMRScope sc : values()) {
-          if (sc.ordinal() + 1 == codeByte) {
-            return sc;
-          }
+        CMRScope sc = codeTable.get(codeByte);
+        if (sc != null) {
+          return sc;
         }
         throw new AFPParserException(CMRScope.class.getSimpleName() + ": scope code 0x" + Integer.toHexString(codeByte) + " is undefined.");
       }
@@ -4104,14 +4310,21 @@ public abstract class Triplet implements IAFPDecodeableWriteable {
       iccAbsoluteColorimetric,
       NotSpecified;
 
+      private static final ByteCodeTable<Intent> codeTable = new ByteCodeTable<Intent>();
+
+      static {
+        for (Intent v : values()) {
+          codeTable.put(v.ordinal(), v);
+        }
+      }
+
       public static Intent valueOf(short codeByte) throws AFPParserException {
         if (codeByte == 0xFF) {
           return NotSpecified;
         }
-        for (Intent intent : values()) {
-          if (intent.ordinal() == codeByte) {
-            return intent;
-          }
+        Intent intent = codeTable.get(codeByte);
+        if (intent != null) {
+          return intent;
         }
         throw new AFPParserException(Intent.class.getSimpleName() + ": intent code 0x" + Integer.toHexString(codeByte) + " is undefined.");
       }
@@ -4276,11 +4489,18 @@ public abstract class Triplet implements IAFPDecodeableWriteable {
       TrimBox,
       ArtBox;
 
+      private static final ByteCodeTable<PDFPresentationSpace> codeTable = new ByteCodeTable<PDFPresentationSpace>();
+
+      static {
+        for (PDFPresentationSpace v : values()) {
+          codeTable.put(v.ordinal() + 1, v);
+        }
+      }
+
       public static PDFPresentationSpace valueOf(byte codeByte) throws AFPParserException {
-        for (PDFPresentationSpace ps : values()) {
-          if (ps.ordinal() + 1 == codeByte) {
-            return ps;
-          }
+        PDFPresentationSpace ps = codeTable.get(codeByte);
+        if (ps != null) {
+          return ps;
         }
         throw new AFPParserException(PDFPresentationSpace.class.getSimpleName() + ": presentation space code 0x" + Integer.toHexString(codeByte) + " is undfined.");
       }
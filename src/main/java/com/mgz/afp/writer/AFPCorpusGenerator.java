@@ -0,0 +1,565 @@
+/*
+Copyright 2015 Rudolf Fiala
+
+This file is part of Alpheus AFP Parser.
+
+Alpheus AFP Parser is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Alpheus AFP Parser is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Alpheus AFP Parser.  If not, see <http://www.gnu.org/licenses/>
+*/
+package com.mgz.afp.writer;
+
+import com.mgz.afp.base.StructuredField;
+import com.mgz.afp.base.StructuredFieldIntroducer;
+import com.mgz.afp.enums.SFTypeID;
+import com.mgz.afp.exceptions.AFPParserException;
+import com.mgz.afp.foca.CPC_CodePageControl;
+import com.mgz.afp.foca.FNC_FontControl;
+import com.mgz.afp.parser.AFPParserConfiguration;
+import com.mgz.afp.parser.StructuredFieldRegistry;
+import com.mgz.util.Constants;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+
+/**
+ * Generates synthetic AFP files of configurable size for load and regression tests.<br> The
+ * generated file contains a resource group with {@link #getNrOfFonts()} code pages (CPD, CPC, CPI)
+ * and font character sets (FNC, FNI, FNG), followed by {@link #getNrOfDocuments()} documents with
+ * {@link #getNrOfPageGroups()} named page groups each. Every page group carries {@link
+ * #getNrOfTagLogicalElements()} TLEs and {@link #getNrOfPages()} pages. A page consists of an active
+ * environment group (PGD, PTD, MCF), a presentation text object, a graphics object, and an image
+ * object.<br><br>
+ * <p>
+ * The output depends only on the seed and the settings: the same seed always produces the same
+ * bytes. Every structured field is built by decoding the generated payload with the {@link
+ * StructuredField} implementation of its type and writing it with {@link
+ * StructuredField#writeAFP(OutputStream, AFPParserConfiguration)}, so the output parses and round
+ * trips with {@link com.mgz.afp.parser.AFPParser}.
+ */
+public class AFPCorpusGenerator {
+  private static final String[] WORDS = {
+      "the", "quick", "brown", "fox", "jumps", "over", "lazy", "dog", "invoice", "statement",
+      "account", "balance", "amount", "due", "date", "page", "total", "customer", "number", "AFP",
+      "Alpheus", "parser", "0123456789", "EUR", "USD", "payment", "received", "thank", "you", "for"
+  };
+  /**
+   * Max payload of a generated PTX, GAD, or IPD. The structured fields are split at control
+   * sequence, drawing order, or self defining field boundaries.
+   */
+  private static final int MAX_PAYLOAD = 8192;
+  private static final int CODE_POINT_FIRST = 0x41;
+  private static final int CODE_POINT_LAST = 0xFE;
+  private static final int FNI_REPEATING_GROUP_LENGTH = 28;
+
+  private final long seed;
+  private int nrOfDocuments = 1;
+  private int nrOfPageGroups = 10;
+  private int nrOfPages = 4;
+  private int nrOfTagLogicalElements = 8;
+  private int nrOfFonts = 2;
+  private int nrOfTextLines = 60;
+  private int nrOfDrawingOrders = 40;
+  private int imageDataSize = 16384;
+
+  private Random random;
+  private AFPParserConfiguration config;
+  private OutputStream os;
+  private long nrOfSFWritten;
+  private long nrOfBytesWritten;
+
+  public AFPCorpusGenerator(long seed) {
+    this.seed = seed;
+  }
+
+  /**
+   * Generates a synthetic AFP file.<br> Usage: {@code AFPCorpusGenerator <output file> [<documents>
+   * [<page groups per document> [<pages per page group> [<seed>]]]]}
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length < 1) {
+      System.err.println("Usage: " + AFPCorpusGenerator.class.getSimpleName()
+          + " <output file> [<documents> [<page groups per document> [<pages per page group> [<seed>]]]]");
+      System.exit(1);
+    }
+    AFPCorpusGenerator generator = new AFPCorpusGenerator(args.length > 4 ? Long.parseLong(args[4]) : 0);
+    if (args.length > 1) {
+      generator.setNrOfDocuments(Integer.parseInt(args[1]));
+    }
+    if (args.length > 2) {
+      generator.setNrOfPageGroups(Integer.parseInt(args[2]));
+    }
+    if (args.length > 3) {
+      generator.setNrOfPages(Integer.parseInt(args[3]));
+    }
+    long nrOfBytes = generator.generate(new File(args[0]));
+    System.out.println(args[0] + ": " + generator.getNrOfSFWritten() + " structured fields, " + nrOfBytes + " bytes.");
+  }
+
+  /**
+   * Writes the synthetic AFP file to the given file.
+   *
+   * @return the number of bytes written.
+   */
+  public long generate(File file) throws IOException {
+    OutputStream fos = new BufferedOutputStream(new FileOutputStream(file), 64 * 1024);
+    try {
+      return generate(fos);
+    } finally {
+      fos.close();
+    }
+  }
+
+  /**
+   * Writes the synthetic AFP data to the given {@link OutputStream}. The stream is not closed.
+   *
+   * @return the number of bytes written.
+   */
+  public synchronized long generate(OutputStream os) throws IOException {
+    this.os = os;
+    random = new Random(seed);
+    config = new AFPParserConfiguration();
+    nrOfSFWritten = 0;
+    nrOfBytesWritten = 0;
+    try {
+      if (nrOfFonts > 0) {
+        writeResourceGroup();
+      }
+      for (int d = 0; d < nrOfDocuments; d++) {
+        writeDocument(d);
+      }
+    } catch (AFPParserException e) {
+      throw new IOException("Failed to build synthetic structured field.", e);
+    } finally {
+      this.os = null;
+    }
+    return nrOfBytesWritten;
+  }
+
+  private void writeResourceGroup() throws IOException, AFPParserException {
+    write(SFTypeID.BRG_BeginResourceGroup, name("R", 0));
+    for (int f = 0; f < nrOfFonts; f++) {
+      writeCodePage(f);
+      writeFontCharacterSet(f);
+    }
+    write(SFTypeID.ERG_EndResourceGroup, name("R", 0));
+  }
+
+  private void writeCodePage(int f) throws IOException, AFPParserException {
+    byte[] name = name("T1", f);
+    write(SFTypeID.BRS_BeginResource, name);
+    write(SFTypeID.BCP_BeginCodePage, name);
+
+    int nrOfCodePoints = CODE_POINT_LAST - CODE_POINT_FIRST + 1;
+    ByteArrayOutputStream cpd = new ByteArrayOutputStream();
+    cpd.write(text(32));
+    write(cpd, 0x00, 0x08, 0x00, 0x00, nrOfCodePoints >> 8, nrOfCodePoints & 0xFF, 0x01, 0x5B, 0x01, 0xF4);
+    write(SFTypeID.CPD_CodePageDescriptor, cpd.toByteArray());
+
+    ByteArrayOutputStream cpc = new ByteArrayOutputStream();
+    cpc.write(gcgid(0));
+    write(cpc, 0x80, 0x0A, 0x00, 0x40, 0x00);
+    config.setCurrentPageControl((CPC_CodePageControl) write(SFTypeID.CPC_CodePageControl, cpc.toByteArray()));
+
+    ByteArrayOutputStream cpi = new ByteArrayOutputStream();
+    for (int cp = CODE_POINT_FIRST; cp <= CODE_POINT_LAST; cp++) {
+      cpi.write(gcgid(cp));
+      write(cpi, 0x00, cp);
+    }
+    write(SFTypeID.CPI_CodePageIndex, cpi.toByteArray());
+    write(SFTypeID.ECP_EndCodePage, name);
+    write(SFTypeID.ERS_EndResource, name);
+  }
+
+  private void writeFontCharacterSet(int f) throws IOException, AFPParserException {
+    byte[] name = name("C0", f);
+    write(SFTypeID.BRS_BeginResource, name);
+    write(SFTypeID.BFN_BeginFont, name);
+
+    int nrOfCharacters = CODE_POINT_LAST - CODE_POINT_FIRST + 1;
+    int rasterPatternSize = 32;
+    int rasterPatternDataCount = nrOfCharacters * rasterPatternSize;
+    byte[] fnc = new byte[28];
+    fnc[0] = 0x01;
+    fnc[1] = 0x05;
+    // 2400 units per 10 inches, the resolution of the presentation text.
+    fnc[6] = fnc[8] = fnc[24] = fnc[26] = 0x09;
+    fnc[7] = fnc[9] = fnc[25] = fnc[27] = 0x60;
+    fnc[10] = 0x00;
+    fnc[11] = 0x10;
+    fnc[12] = 0x00;
+    fnc[13] = 0x10;
+    fnc[15] = FNI_REPEATING_GROUP_LENGTH;
+    fnc[17] = (byte) (rasterPatternDataCount >> 16);
+    fnc[18] = (byte) (rasterPatternDataCount >> 8);
+    fnc[19] = (byte) rasterPatternDataCount;
+    config.setCurrentFontControl((FNC_FontControl) write(SFTypeID.FNC_FontControl, fnc));
+
+    ByteArrayOutputStream fni = new ByteArrayOutputStream();
+    for (int c = 0; c < nrOfCharacters; c++) {
+      fni.write(gcgid(CODE_POINT_FIRST + c));
+      int increment = 40 + random.nextInt(80);
+      write(fni, 0x00, increment, 0x00, 0x60 + random.nextInt(0x20), 0x00, random.nextInt(0x20), 0x00, 0x00,
+          c >> 8, c & 0xFF, 0x00, 0x04, 0x00, increment - 8, 0x00, 0x04, 0x00, 0x00, 0x00, 0x60);
+    }
+    write(SFTypeID.FNI_FontIndex, fni.toByteArray());
+
+    byte[] patterns = new byte[rasterPatternDataCount];
+    random.nextBytes(patterns);
+    for (int pos = 0; pos < patterns.length; pos += MAX_PAYLOAD) {
+      byte[] fng = new byte[Math.min(MAX_PAYLOAD, patterns.length - pos)];
+      System.arraycopy(patterns, pos, fng, 0, fng.length);
+      write(SFTypeID.FNG_FontPatterns, fng);
+    }
+    write(SFTypeID.EFN_EndFont, name);
+    write(SFTypeID.ERS_EndResource, name);
+  }
+
+  private void writeDocument(int d) throws IOException, AFPParserException {
+    byte[] name = name("D", d);
+    write(SFTypeID.BDT_BeginDocument, name);
+    for (int g = 0; g < nrOfPageGroups; g++) {
+      writePageGroup(d * nrOfPageGroups + g);
+    }
+    write(SFTypeID.EDT_EndDocument, name);
+  }
+
+  private void writePageGroup(int g) throws IOException, AFPParserException {
+    byte[] name = name("G", g);
+    ByteArrayOutputStream bng = new ByteArrayOutputStream();
+    bng.write(name);
+    bng.write(fullyQualifiedName(0x87, name("P", g * nrOfPages)));
+    write(SFTypeID.BNG_BeginNamedPageGroup, bng.toByteArray());
+
+    for (int t = 0; t < nrOfTagLogicalElements; t++) {
+      ByteArrayOutputStream tle = new ByteArrayOutputStream();
+      tle.write(fullyQualifiedName(0x0B, text(4 + random.nextInt(16))));
+      byte[] value = text(4 + random.nextInt(40));
+      write(tle, value.length + 4, 0x36, 0x00, 0x00);
+      tle.write(value);
+      write(SFTypeID.TLE_TagLogicalElement, tle.toByteArray());
+    }
+
+    for (int p = 0; p < nrOfPages; p++) {
+      writePage(g * nrOfPages + p);
+    }
+    write(SFTypeID.ENG_EndNamedPageGroup, name);
+  }
+
+  private void writePage(int p) throws IOException, AFPParserException {
+    byte[] name = name("P", p);
+    write(SFTypeID.BPG_BeginPage, name);
+
+    write(SFTypeID.BAG_BeginActiveEnvironmentGroup, name);
+    write(SFTypeID.PGD_PageDescriptor, 0x00, 0x00, 0x09, 0x60, 0x09, 0x60, 0x00, 0x4F, 0xB0, 0x00, 0x67, 0x20, 0x00, 0x00, 0x00);
+    write(SFTypeID.PTD_PresentationTextDataDescriptor_Format2, 0x00, 0x00, 0x09, 0x60, 0x09, 0x60, 0x00, 0x4F, 0xB0, 0x00, 0x67, 0x20, 0x00, 0x00);
+    if (nrOfFonts > 0) {
+      ByteArrayOutputStream mcf = new ByteArrayOutputStream();
+      for (int f = 0; f < nrOfFonts; f++) {
+        byte[] codePage = fullyQualifiedName(0x85, name("T1", f));
+        byte[] characterSet = fullyQualifiedName(0x86, name("C0", f));
+        write(mcf, 0x00, 2 + codePage.length + characterSet.length + 4);
+        mcf.write(codePage);
+        mcf.write(characterSet);
+        write(mcf, 0x04, 0x24, 0x05, f + 1);
+      }
+      write(SFTypeID.MCF_MapCodedFont_Format2, mcf.toByteArray());
+    }
+    write(SFTypeID.EAG_EndActiveEnvironmentGroup, name);
+
+    writePresentationText(name);
+    writeGraphics(name);
+    writeImage(name);
+
+    write(SFTypeID.EPG_EndPage, name);
+  }
+
+  private void writePresentationText(byte[] name) throws IOException, AFPParserException {
+    write(SFTypeID.BPT_BeginPresentationTextObject, name);
+    ByteArrayOutputStream ptx = new ByteArrayOutputStream();
+    for (int l = 0; l < nrOfTextLines; l++) {
+      ByteArrayOutputStream line = new ByteArrayOutputStream();
+      int baseline = 0x0100 + l * 0x40;
+      write(line, 0x04, 0xD3, (baseline >> 8) & 0xFF, baseline & 0xFF);
+      write(line, 0x04, 0xC7, 0x01, 0x00);
+      if (nrOfFonts > 0) {
+        write(line, 0x03, 0xF1, 1 + random.nextInt(nrOfFonts));
+      }
+      write(line, 0x04, 0x75, 0x00, 0x08);
+      StringBuilder sb = new StringBuilder();
+      int nrOfWords = 3 + random.nextInt(10);
+      for (int w = 0; w < nrOfWords; w++) {
+        if (w > 0) {
+          sb.append(' ');
+        }
+        sb.append(WORDS[random.nextInt(WORDS.length)]);
+      }
+      byte[] text = sb.toString().getBytes(Constants.cpIBM500);
+      write(line, text.length + 2, 0xDB);
+      line.write(text);
+
+      if (ptx.size() > 0 && ptx.size() + line.size() > MAX_PAYLOAD) {
+        write(SFTypeID.PTX_PresentationTextData, ptx.toByteArray());
+        ptx.reset();
+      }
+      if (ptx.size() == 0) {
+        write(ptx, 0x2B, 0xD3);
+      }
+      line.writeTo(ptx);
+    }
+    if (ptx.size() > 0) {
+      write(SFTypeID.PTX_PresentationTextData, ptx.toByteArray());
+    }
+    write(SFTypeID.EPT_EndPresentationTextObject, name);
+  }
+
+  private void writeGraphics(byte[] name) throws IOException, AFPParserException {
+    write(SFTypeID.BGR_BeginGraphicsObject, name);
+    int remaining = nrOfDrawingOrders;
+    int s = 0;
+    while (remaining > 0) {
+      ByteArrayOutputStream orders = new ByteArrayOutputStream();
+      while (remaining > 0 && orders.size() < MAX_PAYLOAD - 128) {
+        write(orders, 0x0A, random.nextInt(0x10));
+        int nrOfPoints = 2 + random.nextInt(10);
+        write(orders, 0xC1, nrOfPoints * 4);
+        for (int p = 0; p < nrOfPoints * 4; p++) {
+          orders.write(random.nextInt(0x80));
+        }
+        write(orders, 0x68, 0x00);
+        write(orders, 0x81, 0x04, 0x01, random.nextInt(0x100), 0x02, random.nextInt(0x100));
+        write(orders, 0x60, 0x00);
+        remaining--;
+      }
+      ByteArrayOutputStream gad = new ByteArrayOutputStream();
+      byte[] segmentName = name("S", s++);
+      write(gad, 0x70, 0x0C);
+      gad.write(segmentName, 4, 4);
+      write(gad, 0x00, 0x00, orders.size() >> 8, orders.size() & 0xFF);
+      gad.write(segmentName, 4, 4);
+      orders.writeTo(gad);
+      write(SFTypeID.GAD_GraphicsData, gad.toByteArray());
+    }
+    write(SFTypeID.EGR_EndGraphicsObject, name);
+  }
+
+  private void writeImage(byte[] name) throws IOException, AFPParserException {
+    int width = 512;
+    int height = Math.max(1, imageDataSize / (width / 8));
+
+    write(SFTypeID.BIM_BeginImageObject, name);
+    write(SFTypeID.IDD_ImageDataDescriptor, 0x00, 0x09, 0x60, 0x09, 0x60, width >> 8, width & 0xFF, height >> 8, height & 0xFF);
+
+    ByteArrayOutputStream ipd = new ByteArrayOutputStream();
+    write(ipd, 0x70, 0x00);
+    write(ipd, 0x91, 0x01, 0xFF);
+    write(ipd, 0x94, 0x09, 0x00, 0x09, 0x60, 0x09, 0x60, width >> 8, width & 0xFF, height >> 8, height & 0xFF);
+    write(ipd, 0x95, 0x02, 0x03, 0x01);
+    write(ipd, 0x96, 0x01, 0x01);
+    int remaining = height * (width / 8);
+    while (remaining > 0) {
+      int len = Math.min(remaining, MAX_PAYLOAD - 4);
+      if (ipd.size() + 4 + len > MAX_PAYLOAD) {
+        write(SFTypeID.IPD_ImagePictureData, ipd.toByteArray());
+        ipd.reset();
+      }
+      byte[] imageData = new byte[len];
+      random.nextBytes(imageData);
+      write(ipd, 0xFE, 0x92, len >> 8, len & 0xFF);
+      ipd.write(imageData);
+      remaining -= len;
+    }
+    write(ipd, 0x93, 0x00);
+    write(ipd, 0x71, 0x00);
+    write(SFTypeID.IPD_ImagePictureData, ipd.toByteArray());
+
+    write(SFTypeID.EIM_EndImageObject, name);
+  }
+
+  private StructuredField write(SFTypeID sfTypeID, int... payload) throws IOException, AFPParserException {
+    byte[] bytes = new byte[payload.length];
+    for (int i = 0; i < payload.length; i++) {
+      bytes[i] = (byte) payload[i];
+    }
+    return write(sfTypeID, bytes);
+  }
+
+  private StructuredField write(SFTypeID sfTypeID, byte[] payload) throws IOException, AFPParserException {
+    StructuredField sf = StructuredFieldRegistry.newInstance(sfTypeID);
+    sf.setStructuredFieldIntroducer(introducer(sfTypeID));
+    sf.decodeAFP(payload, 0, -1, config);
+    write(sf);
+    return sf;
+  }
+
+  private void write(StructuredField sf) throws IOException {
+    sf.writeAFP(os, config);
+    nrOfSFWritten++;
+    nrOfBytesWritten += sf.getStructuredFieldIntroducer().getSFLength() + 1;
+  }
+
+  private static StructuredFieldIntroducer introducer(SFTypeID sfTypeID) {
+    StructuredFieldIntroducer sfi = new StructuredFieldIntroducer();
+    sfi.setSFTypeID(sfTypeID);
+    return sfi;
+  }
+
+  private static void write(ByteArrayOutputStream baos, int... bytes) {
+    for (int b : bytes) {
+      baos.write(b);
+    }
+  }
+
+  private static byte[] fullyQualifiedName(int type, byte[] name) {
+    byte[] fqn = new byte[4 + name.length];
+    fqn[0] = (byte) fqn.length;
+    fqn[1] = 0x02;
+    fqn[2] = (byte) type;
+    System.arraycopy(name, 0, fqn, 4, name.length);
+    return fqn;
+  }
+
+  /**
+   * Returns the EBCDIC encoded 8 byte name made of the given prefix and number.
+   */
+  private static byte[] name(String prefix, int nr) {
+    String nrAsString = Integer.toString(nr);
+    StringBuilder sb = new StringBuilder(prefix);
+    for (int i = prefix.length() + nrAsString.length(); i < 8; i++) {
+      sb.append('0');
+    }
+    sb.append(nrAsString);
+    return sb.toString().getBytes(Constants.cpIBM500);
+  }
+
+  /**
+   * Returns the 8 byte GCGID of the given code point.
+   */
+  private static byte[] gcgid(int codePoint) {
+    return name("LA", codePoint);
+  }
+
+  private byte[] text(int length) {
+    StringBuilder sb = new StringBuilder(length);
+    while (sb.length() < length) {
+      if (sb.length() > 0) {
+        sb.append(' ');
+      }
+      sb.append(WORDS[random.nextInt(WORDS.length)]);
+    }
+    sb.setLength(length);
+    return sb.toString().getBytes(Constants.cpIBM500);
+  }
+
+  public long getSeed() {
+    return seed;
+  }
+
+  public int getNrOfDocuments() {
+    return nrOfDocuments;
+  }
+
+  public void setNrOfDocuments(int nrOfDocuments) {
+    this.nrOfDocuments = nrOfDocuments;
+  }
+
+  /**
+   * Returns the number of named page groups (BNG/ENG) per document.
+   */
+  public int getNrOfPageGroups() {
+    return nrOfPageGroups;
+  }
+
+  public void setNrOfPageGroups(int nrOfPageGroups) {
+    this.nrOfPageGroups = nrOfPageGroups;
+  }
+
+  /**
+   * Returns the number of pages per named page group.
+   */
+  public int getNrOfPages() {
+    return nrOfPages;
+  }
+
+  public void setNrOfPages(int nrOfPages) {
+    this.nrOfPages = nrOfPages;
+  }
+
+  /**
+   * Returns the number of TLEs per named page group.
+   */
+  public int getNrOfTagLogicalElements() {
+    return nrOfTagLogicalElements;
+  }
+
+  public void setNrOfTagLogicalElements(int nrOfTagLogicalElements) {
+    this.nrOfTagLogicalElements = nrOfTagLogicalElements;
+  }
+
+  /**
+   * Returns the number of code pages and font character sets in the resource group. If 0, no
+   * resource group and no MCF is written.
+   */
+  public int getNrOfFonts() {
+    return nrOfFonts;
+  }
+
+  public void setNrOfFonts(int nrOfFonts) {
+    this.nrOfFonts = nrOfFonts;
+  }
+
+  /**
+   * Returns the number of text lines (AMB, AMI, SCFL, STC, TRN) per page.
+   */
+  public int getNrOfTextLines() {
+    return nrOfTextLines;
+  }
+
+  public void setNrOfTextLines(int nrOfTextLines) {
+    this.nrOfTextLines = nrOfTextLines;
+  }
+
+  /**
+   * Returns the number of drawing order groups (color, line, box area) per page.
+   */
+  public int getNrOfDrawingOrders() {
+    return nrOfDrawingOrders;
+  }
+
+  public void setNrOfDrawingOrders(int nrOfDrawingOrders) {
+    this.nrOfDrawingOrders = nrOfDrawingOrders;
+  }
+
+  /**
+   * Returns the approximate number of bytes of IOCA image data per page.
+   */
+  public int getImageDataSize() {
+    return imageDataSize;
+  }
+
+  public void setImageDataSize(int imageDataSize) {
+    this.imageDataSize = imageDataSize;
+  }
+
+  /**
+   * Returns the number of structured fields written by the last call of {@link
+   * #generate(OutputStream)}.
+   */
+  public long getNrOfSFWritten() {
+    return nrOfSFWritten;
+  }
+}
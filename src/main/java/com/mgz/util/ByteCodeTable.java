@@ -0,0 +1,50 @@
+/*
+Copyright 2015 Rudolf Fiala
+
+This file is part of Alpheus AFP Parser.
+
+Alpheus AFP Parser is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Alpheus AFP Parser is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Alpheus AFP Parser.  If not, see <http://www.gnu.org/licenses/>
+*/
+package com.mgz.util;
+
+/**
+ * Constant time lookup table that maps one-byte AFP codes (0x00..0xFF) to values, typically enum
+ * constants. Replaces linear scans over {@code values()} in {@code valueOf(byte)} methods.<br>
+ * <br> Tables are filled once, in the static initializer of the owning enum, and are read-only
+ * afterwards.
+ */
+public final class ByteCodeTable<E> {
+  private final Object[] table = new Object[256];
+
+  /**
+   * Registers the given value for the given code. If a value is already registered for the code,
+   * the first registered value is kept. This corresponds to the result of a linear scan over the
+   * enum's values().
+   */
+  public ByteCodeTable<E> put(int code, E value) {
+    if (code >= 0 && code <= 0xFF && table[code] == null) {
+      table[code] = value;
+    }
+    return this;
+  }
+
+  /**
+   * Returns the value registered for the given code, or null if there is none. Only the lower
+   * eight bits of the given code are significant, so signed bytes can be passed as is.
+   */
+  @SuppressWarnings("unchecked")
+  public E get(int code) {
+    return (E) table[code & 0xFF];
+  }
+}
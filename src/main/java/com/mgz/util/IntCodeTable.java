@@ -0,0 +1,119 @@
+/*
+Copyright 2015 Rudolf Fiala
+
+This file is part of Alpheus AFP Parser.
+
+Alpheus AFP Parser is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Alpheus AFP Parser is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Alpheus AFP Parser.  If not, see <http://www.gnu.org/licenses/>
+*/
+package com.mgz.util;
+
+/**
+ * Constant time lookup table that maps multi-byte AFP codes, e.g. two byte codes or the three
+ * bytes of a structured field type ID packed into an int, to values, typically enum constants.
+ * <br> <br> Implemented as open addressing hash table with linear probing over primitive int keys,
+ * so no boxing occurs on lookup. Tables are filled once, in the static initializer of the owning
+ * enum, and are read-only afterwards.
+ */
+public final class IntCodeTable<E> {
+  private int[] keys;
+  private Object[] values;
+  private int size;
+
+  public IntCodeTable() {
+    this(16);
+  }
+
+  public IntCodeTable(int expectedSize) {
+    int capacity = 4;
+    while (capacity < expectedSize * 2) {
+      capacity <<= 1;
+    }
+    keys = new int[capacity];
+    values = new Object[capacity];
+  }
+
+  /**
+   * Packs the given three bytes into an int, e.g. the class, type, and category byte of a
+   * structured field type ID.
+   */
+  public static int pack(int byte1, int byte2, int byte3) {
+    return ((byte1 & 0xFF) << 16) | ((byte2 & 0xFF) << 8) | (byte3 & 0xFF);
+  }
+
+  private static int hash(int code) {
+    int h = code * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+  /**
+   * Registers the given value for the given code. If a value is already registered for the code,
+   * the first registered value is kept. This corresponds to the result of a linear scan over the
+   * enum's values().
+   */
+  public IntCodeTable<E> put(int code, E value) {
+    if (value == null) {
+      return this;
+    }
+    if ((size + 1) * 2 > keys.length) {
+      rehash(keys.length << 1);
+    }
+    int mask = keys.length - 1;
+    int idx = hash(code) & mask;
+    while (values[idx] != null) {
+      if (keys[idx] == code) {
+        return this;
+      }
+      idx = (idx + 1) & mask;
+    }
+    keys[idx] = code;
+    values[idx] = value;
+    size++;
+    return this;
+  }
+
+  /**
+   * Returns the value registered for the given code, or null if there is none.
+   */
+  @SuppressWarnings("unchecked")
+  public E get(int code) {
+    int mask = keys.length - 1;
+    int idx = hash(code) & mask;
+    Object value;
+    while ((value = values[idx]) != null) {
+      if (keys[idx] == code) {
+        return (E) value;
+      }
+      idx = (idx + 1) & mask;
+    }
+    return null;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  @SuppressWarnings("unchecked")
+  private void rehash(int newCapacity) {
+    int[] oldKeys = keys;
+    Object[] oldValues = values;
+    keys = new int[newCapacity];
+    values = new Object[newCapacity];
+    size = 0;
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldValues[i] != null) {
+        put(oldKeys[i], (E) oldValues[i]);
+      }
+    }
+  }
+}
@@ -0,0 +1,170 @@
+/*
+Copyright 2015 Rudolf Fiala
+
+This file is part of Alpheus AFP Parser.
+
+Alpheus AFP Parser is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Alpheus AFP Parser is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Alpheus AFP Parser.  If not, see <http://www.gnu.org/licenses/>
+*/
+package com.mgz.util;
+
+/**
+ * Bounded pool of canonical {@link String}s for names of up to 8 bytes, like the names of fonts,
+ * overlays, and page segments, or GCGIDs. The raw bytes of a name are packed into a long that is
+ * used as key, so a name found in the pool is returned without decoding and without allocation.
+ * <br> <br> The pool is a two way set associative table of fixed capacity. If both entries of a set
+ * are taken, the least recently inserted entry is replaced. If enabled by {@link
+ * #setCounting(boolean)}, the number of hits and misses are counted, see {@link #getHits()} and
+ * {@link #getMisses()}.<br> <br> A pool is thread safe.
+ * Concurrent lookups of the same new name may decode it more than once, which only costs a
+ * redundant String.
+ */
+public final class NameInternPool {
+  /**
+   * Default number of names held by a pool.
+   */
+  public static final int DEFAULT_CAPACITY = 4096;
+
+  private final SingleByteCodec codec;
+  private final Name[] names;
+  private final int setShift;
+  private volatile boolean isCounting;
+  /**
+   * Advisory counters, not synchronized: the pools are shared process wide, see {@link
+   * SingleByteCodec#forCharset(java.nio.charset.Charset)}, and lookups must not contend on them.
+   */
+  private long hits;
+  private long misses;
+
+  /**
+   * @param codec    the codec used to decode names that are not in the pool.
+   * @param capacity number of names held by the pool, rounded up to a power of two (minimum 2).
+   */
+  public NameInternPool(SingleByteCodec codec, int capacity) {
+    this.codec = codec;
+    int nrOfSets = Math.max(1, Integer.highestOneBit(Math.max(2, capacity) - 1));
+    this.names = new Name[nrOfSets * 2];
+    this.setShift = 64 - Integer.numberOfTrailingZeros(nrOfSets);
+  }
+
+  /**
+   * Packs up to 8 bytes into a long, the first byte being the most significant.
+   */
+  public static long pack(byte[] data, int offset, int length) {
+    long key = 0;
+    for (int i = 0; i < length; i++) {
+      key = (key << 8) | (data[offset + i] & 0xFF);
+    }
+    return key;
+  }
+
+  /**
+   * Returns the canonical {@link String} of the given name. Names longer than 8 bytes are decoded
+   * without pooling.
+   */
+  public String intern(byte[] data, int offset, int length) {
+    if (length > 8) {
+      return codec.decode(data, offset, length);
+    }
+    long key = pack(data, offset, length);
+    int index = setIndex(key);
+
+    Name first = names[index];
+    if (first != null && first.key == key && first.length == length) {
+      if (isCounting) {
+        hits++;
+      }
+      return first.value;
+    }
+    Name second = names[index + 1];
+    if (second != null && second.key == key && second.length == length) {
+      if (isCounting) {
+        hits++;
+      }
+      return second.value;
+    }
+
+    if (isCounting) {
+      misses++;
+    }
+    String value = codec.decode(data, offset, length);
+    names[index + 1] = first;
+    names[index] = new Name(key, length, value);
+    return value;
+  }
+
+  private int setIndex(long key) {
+    if (setShift == 64) {
+      return 0;
+    }
+    return (int) ((key * 0x9E3779B97F4A7C15L) >>> setShift) << 1;
+  }
+
+  /**
+   * Returns the number of names the pool can hold.
+   */
+  public int getCapacity() {
+    return names.length;
+  }
+
+  /**
+   * Enables or disables counting hits and misses. Default is false. The counters are not
+   * synchronized, with concurrent lookups they are approximate.
+   */
+  public void setCounting(boolean isCounting) {
+    this.isCounting = isCounting;
+  }
+
+  public boolean isCounting() {
+    return isCounting;
+  }
+
+  /**
+   * Returns the number of counted lookups that found the name in the pool, see {@link
+   * #setCounting(boolean)}.
+   */
+  public long getHits() {
+    return hits;
+  }
+
+  /**
+   * Returns the number of counted lookups that had to decode the name, see {@link
+   * #setCounting(boolean)}.
+   */
+  public long getMisses() {
+    return misses;
+  }
+
+  /**
+   * Removes all names from the pool and resets the counters.
+   */
+  public void clear() {
+    for (int i = 0; i < names.length; i++) {
+      names[i] = null;
+    }
+    hits = 0;
+    misses = 0;
+  }
+
+  private static final class Name {
+    final long key;
+    final int length;
+    final String value;
+
+    Name(long key, int length, String value) {
+      this.key = key;
+      this.length = length;
+      this.value = value;
+    }
+  }
+}
@@ -0,0 +1,233 @@
+/*
+Copyright 2015 Rudolf Fiala
+
+This file is part of Alpheus AFP Parser.
+
+Alpheus AFP Parser is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Alpheus AFP Parser is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Alpheus AFP Parser.  If not, see <http://www.gnu.org/licenses/>
+*/
+package com.mgz.util;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Table driven de/encoder for single byte charsets like the EBCDIC code pages cp500/IBM500 or
+ * cp273. The tables are computed once per {@link Charset} from the JDK's decoder and encoder and
+ * cached, see {@link #forCharset(Charset)}. Decoding and encoding produce the same result as {@link
+ * String#String(byte[], Charset)} and {@link String#getBytes(Charset)}.<br> <br> Names up to 8
+ * bytes (resource names, GCGIDs) can be decoded by {@link #decodeName(byte[], int, int)}, which
+ * returns the same {@link String} instance for recurring names without decoding, see {@link
+ * NameInternPool}.<br> <br> Instances are thread safe.
+ */
+public final class SingleByteCodec {
+  private static final ConcurrentMap<Charset, SingleByteCodec> codecs = new ConcurrentHashMap<Charset, SingleByteCodec>();
+  /**
+   * Marks charsets that are not single byte charsets in {@link #codecs}.
+   */
+  private static final SingleByteCodec NONE = new SingleByteCodec();
+
+  private final Charset charset;
+  private final char[] decodeTable;
+  private final byte[] encodeTable;
+  private final byte replacement;
+  private final NameInternPool namePool;
+
+  private SingleByteCodec() {
+    charset = null;
+    decodeTable = null;
+    encodeTable = null;
+    replacement = 0;
+    namePool = null;
+  }
+
+  private SingleByteCodec(Charset charset, char[] decodeTable, byte[] encodeTable, byte replacement) {
+    this.charset = charset;
+    this.decodeTable = decodeTable;
+    this.encodeTable = encodeTable;
+    this.replacement = replacement;
+    this.namePool = new NameInternPool(this, NameInternPool.DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Returns the cached {@link SingleByteCodec} for the given {@link Charset}, or null if the given
+   * charset is not a single byte charset.
+   */
+  public static SingleByteCodec forCharset(Charset charset) {
+    if (charset == null) {
+      return null;
+    }
+    SingleByteCodec codec = codecs.get(charset);
+    if (codec == null) {
+      codec = create(charset);
+      SingleByteCodec existing = codecs.putIfAbsent(charset, codec != null ? codec : NONE);
+      if (existing != null) {
+        codec = existing;
+      }
+    }
+    return codec != NONE ? codec : null;
+  }
+
+  private static SingleByteCodec create(Charset charset) {
+    if (!charset.canEncode()) {
+      return null;
+    }
+    CharsetDecoder decoder = charset.newDecoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    CharsetEncoder encoder = charset.newEncoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    if (decoder.maxCharsPerByte() != 1f || encoder.maxBytesPerChar() != 1f || encoder.replacement().length != 1) {
+      return null;
+    }
+
+    try {
+      byte[] allBytes = new byte[256];
+      for (int i = 0; i < allBytes.length; i++) {
+        allBytes[i] = (byte) i;
+      }
+      CharBuffer decoded = decoder.decode(ByteBuffer.wrap(allBytes));
+      if (decoded.remaining() != 256) {
+        return null;
+      }
+      char[] decodeTable = new char[256];
+      decoded.get(decodeTable);
+
+      // Encode all chars except surrogates, which are replaced when encoded as single chars.
+      byte replacement = encoder.replacement()[0];
+      byte[] encodeTable = new byte[0x10000];
+      encodeRange(encoder, encodeTable, 0, Character.MIN_SURROGATE);
+      for (int c = Character.MIN_SURROGATE; c <= Character.MAX_SURROGATE; c++) {
+        encodeTable[c] = replacement;
+      }
+      encodeRange(encoder, encodeTable, Character.MAX_SURROGATE + 1, 0x10000);
+
+      return new SingleByteCodec(charset, decodeTable, encodeTable, replacement);
+    } catch (CharacterCodingException e) {
+      return null;
+    }
+  }
+
+  private static void encodeRange(CharsetEncoder encoder, byte[] encodeTable, int from, int to) throws CharacterCodingException {
+    char[] chars = new char[to - from];
+    for (int i = 0; i < chars.length; i++) {
+      chars[i] = (char) (from + i);
+    }
+    ByteBuffer encoded = encoder.reset().encode(CharBuffer.wrap(chars));
+    if (encoded.remaining() != chars.length) {
+      throw new CharacterCodingException();
+    }
+    encoded.get(encodeTable, from, chars.length);
+  }
+
+  public Charset getCharset() {
+    return charset;
+  }
+
+  /**
+   * Returns the char the given byte is decoded to.
+   */
+  public char decode(byte b) {
+    return decodeTable[b & 0xFF];
+  }
+
+  /**
+   * Decodes length bytes of the given array into the given char array.
+   *
+   * @return the number of decoded chars, which is length.
+   */
+  public int decode(byte[] src, int offset, int length, char[] dst, int dstOffset) {
+    char[] table = decodeTable;
+    for (int i = 0; i < length; i++) {
+      dst[dstOffset + i] = table[src[offset + i] & 0xFF];
+    }
+    return length;
+  }
+
+  /**
+   * Decodes length bytes of the given array into a {@link String}.
+   */
+  public String decode(byte[] src, int offset, int length) {
+    char[] chars = new char[length];
+    decode(src, offset, length, chars, 0);
+    return new String(chars);
+  }
+
+  /**
+   * Decodes a name of up to 8 bytes, like the name of a resource or a GCGID. Recurring names are
+   * served from the {@link #getNamePool()} without decoding, so that the same {@link String}
+   * instance is returned. Longer names are decoded without pooling.
+   */
+  public String decodeName(byte[] src, int offset, int length) {
+    return namePool.intern(src, offset, length);
+  }
+
+  /**
+   * Returns the pool of names decoded by {@link #decodeName(byte[], int, int)}, e.g. to monitor
+   * hits and misses.
+   */
+  public NameInternPool getNamePool() {
+    return namePool;
+  }
+
+  /**
+   * Returns the byte the given char is encoded to. Unmappable chars are encoded as the charset's
+   * replacement byte.
+   */
+  public byte encode(char c) {
+    return encodeTable[c];
+  }
+
+  /**
+   * Encodes the chars from start (inclusive) to end (exclusive) of the given {@link CharSequence}
+   * into the given byte array. A surrogate pair is encoded as a single replacement byte.
+   *
+   * @return the number of bytes written.
+   */
+  public int encode(CharSequence src, int start, int end, byte[] dst, int dstOffset) {
+    byte[] table = encodeTable;
+    int pos = dstOffset;
+    for (int i = start; i < end; i++) {
+      char c = src.charAt(i);
+      if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(src.charAt(i + 1))) {
+        dst[pos++] = replacement;
+        i++;
+      } else {
+        dst[pos++] = table[c];
+      }
+    }
+    return pos - dstOffset;
+  }
+
+  /**
+   * Encodes the given {@link CharSequence} into a new byte array.
+   */
+  public byte[] encode(CharSequence src) {
+    byte[] encoded = new byte[src.length()];
+    int length = encode(src, 0, src.length(), encoded, 0);
+    if (length < encoded.length) {
+      byte[] shortened = new byte[length];
+      System.arraycopy(encoded, 0, shortened, 0, length);
+      encoded = shortened;
+    }
+    return encoded;
+  }
+}
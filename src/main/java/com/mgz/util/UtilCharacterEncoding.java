@@ -159,6 +159,15 @@ public class UtilCharacterEncoding {
     if (charsetForEncoding == null) {
       charsetForEncoding = Charset.defaultCharset();
     }
+    SingleByteCodec codec = SingleByteCodec.forCharset(charsetForEncoding);
+    if (codec != null) {
+      byte[] result = new byte[lenOfByteArray];
+      int len = str != null ? codec.encode(str, 0, Math.min(str.length(), lenOfByteArray), result, 0) : 0;
+      for (int i = len; i < lenOfByteArray; i++) {
+        result[i] = filler;
+      }
+      return result;
+    }
     byte[] encoded = str != null && str.length() > 0 ? str.getBytes(charsetForEncoding) : new byte[] {};
     byte[] result = new byte[lenOfByteArray];
     for (int i = 0; i < lenOfByteArray; i++) {
@@ -173,9 +182,50 @@ public class UtilCharacterEncoding {
 
   public static String decodeEBCDIC(byte[] sfData, int offset, int length, AFPParserConfiguration config) {
     int actualLength = StructuredField.getActualLength(sfData, offset, length);
+    SingleByteCodec codec = config.getAfpCodec();
+    if (codec != null) {
+      return codec.decode(sfData, offset, actualLength);
+    }
     return new String(sfData, offset, actualLength, config.getAfpCharSet());
   }
 
+  /**
+   * Decodes the given bytes using the given {@link Charset}. Single byte charsets are decoded by
+   * the cached tables of {@link SingleByteCodec}.
+   */
+  public static String decode(byte[] data, int offset, int length, Charset charset) {
+    SingleByteCodec codec = SingleByteCodec.forCharset(charset);
+    if (codec != null) {
+      return codec.decode(data, offset, length);
+    }
+    return new String(data, offset, length, charset);
+  }
+
+  /**
+   * Decodes the given name of up to 8 bytes (resource name, GCGID) using the given {@link Charset}.
+   * For single byte charsets recurring names are returned from the {@link NameInternPool} of the
+   * charset's {@link SingleByteCodec}.
+   */
+  public static String decodeName(byte[] data, int offset, int length, Charset charset) {
+    SingleByteCodec codec = SingleByteCodec.forCharset(charset);
+    if (codec != null) {
+      return codec.decodeName(data, offset, length);
+    }
+    return new String(data, offset, length, charset);
+  }
+
+  /**
+   * Encodes the given {@link String} using the given {@link Charset}. Single byte charsets are
+   * encoded by the cached tables of {@link SingleByteCodec}.
+   */
+  public static byte[] encode(String str, Charset charset) {
+    SingleByteCodec codec = SingleByteCodec.forCharset(charset);
+    if (codec != null) {
+      return codec.encode(str);
+    }
+    return str.getBytes(charset);
+  }
+
   public static boolean isEBCDIC(byte[] data) {
     for (int i = 0; i < data.length; i++) {
       if (!Character.isDefined((char) data[i])) {
@@ -1,6 +1,7 @@
 package com.mgz.acceptance;
 
 import com.mgz.afp.base.StructuredField;
+import com.mgz.afp.enums.SFTypeID;
 import com.mgz.afp.exceptions.AFPParserException;
 import com.mgz.afp.modca.BNG_BeginNamedPageGroup;
 import com.mgz.afp.modca.BPG_BeginPage;
@@ -12,6 +13,7 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.EnumSet;
 import java.util.logging.Logger;
 
 public class CountPageGroupsAndPagesInPageGroup {
@@ -23,6 +25,8 @@ public class CountPageGroupsAndPagesInPageGroup {
     InputStream is = new BufferedInputStream(new FileInputStream(new File(args[0])), 1024 * 1024);
     AFPParserConfiguration pc = new AFPParserConfiguration();
     pc.setInputStream(is);
+    // Build only BNG and BPG, all other structured fields are skipped undecoded.
+    pc.setSFTypeIDFilter(EnumSet.of(SFTypeID.BNG_BeginNamedPageGroup, SFTypeID.BPG_BeginPage));
     AFPParser parser = new AFPParser(pc);
 
     BNG_BeginNamedPageGroup currentBNG = null;
@@ -83,6 +83,15 @@ public class StructuredFieldTest {
     }
   }
 
+  @Test
+  public void testSFTypeIDLookup() {
+    for (SFTypeID sfTypeID : SFTypeID.values()) {
+      byte[] id = sfTypeID.toBytes();
+      assertTrue(sfTypeID.name(), sfTypeID == SFTypeID.valueOf(id[0] & 0xFF, id[1] & 0xFF, id[2] & 0xFF));
+    }
+    assertTrue(SFTypeID.Undefined == SFTypeID.valueOf(0xD3, 0xEE, 0x00));
+  }
+
   @Test
   public void testSFInstanciation() {
     int i = 0;
@@ -0,0 +1,120 @@
+/*
+Copyright 2015 Rudolf Fiala
+
+This file is part of Alpheus AFP Parser.
+
+Alpheus AFP Parser is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Alpheus AFP Parser is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Alpheus AFP Parser.  If not, see <http://www.gnu.org/licenses/>
+*/
+package com.mgz.afp.foca;
+
+import com.mgz.afp.base.StructuredFieldIntroducer;
+import com.mgz.afp.enums.SFTypeID;
+import com.mgz.afp.foca.CPC_CodePageControl.CPIRepeatingGroupLength;
+import com.mgz.afp.foca.CPI_CodePageIndex.CPI_RepeatingGroup;
+import com.mgz.afp.parser.AFPParserConfiguration;
+import com.mgz.util.Constants;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+
+public class CPI_CodePageIndexTest {
+
+  private static void writeRepeatingGroup(ByteArrayOutputStream os, String gcgid, int codePoint, long... usvs) {
+    byte[] name = gcgid.getBytes(Constants.cpIBM500);
+    os.write(name, 0, 8);
+    os.write(0x00);
+    os.write(codePoint);
+    os.write(usvs.length);
+    for (long usv : usvs) {
+      os.write((int) (usv >> 24));
+      os.write((int) (usv >> 16));
+      os.write((int) (usv >> 8));
+      os.write((int) usv);
+    }
+  }
+
+  @Test
+  public void testLookups() throws Exception {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    // Ordered by GCGID, as usual, not by code point.
+    writeRepeatingGroup(os, "LA010000", 0x81, 0x61);
+    writeRepeatingGroup(os, "LA020000", 0xC1, 0x41);
+    writeRepeatingGroup(os, "LA020000", 0x41, 0x41);
+    writeRepeatingGroup(os, "SP010000", 0x40, 0x20, 0xA0);
+    writeRepeatingGroup(os, "SP100000", 0x4B);
+    byte[] data = os.toByteArray();
+
+    CPC_CodePageControl cpc = new CPC_CodePageControl();
+    cpc.cpiRepeatingGroupLength = CPIRepeatingGroupLength.SingleByteCodePageUnicodeScalarValues;
+    AFPParserConfiguration config = new AFPParserConfiguration();
+    config.setCurrentPageControl(cpc);
+    CPI_CodePageIndex cpi = new CPI_CodePageIndex();
+    cpi.decodeAFP(data, 0, data.length, config);
+
+    assertEquals(5, cpi.getRepeatingGroups().size());
+    assertEquals("LA020000", cpi.getRepeatingGroupByCodePoint(0xC1).getGraphicCharacterGID());
+    assertEquals("SP100000", cpi.getRepeatingGroupByCodePoint(0x4B).getGraphicCharacterGID());
+    assertNull(cpi.getRepeatingGroupByCodePoint(0x42));
+    // The lowest code point of a GCGID.
+    assertEquals(0x41, cpi.getRepeatingGroupByGCGID("LA020000").getCodePoint());
+    assertEquals(0x81, cpi.getRepeatingGroupByGCGID("LA010000").getCodePoint());
+    assertNull(cpi.getRepeatingGroupByGCGID("LA030000"));
+    assertEquals(0x40, cpi.getRepeatingGroupByUnicodeScalarValue(0xA0).getCodePoint());
+    assertEquals(Arrays.asList(0x20L, 0xA0L), cpi.getRepeatingGroupByUnicodeScalarValue(0x20).getUnicodeScalarValues());
+    assertNull(cpi.getRepeatingGroupByUnicodeScalarValue(0x42));
+
+    CPI_RepeatingGroup rg = new CPI_RepeatingGroup();
+    rg.setGraphicCharacterGID("LB010000");
+    rg.setCodePoint(0x42);
+    cpi.addRepeatingGroup(rg);
+    assertEquals(rg, cpi.getRepeatingGroupByCodePoint(0x42));
+    rg.setCodePoint(0x43);
+    cpi.invalidateIndex();
+    assertEquals(rg, cpi.getRepeatingGroupByCodePoint(0x43));
+    assertNull(cpi.getRepeatingGroupByCodePoint(0x42));
+  }
+
+  @Test
+  public void testDecodeAndWriteUnicodeScalarValues() throws Exception {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    writeRepeatingGroup(os, "LA010000", 0x81, 0x61);
+    writeRepeatingGroup(os, "SP100000", 0x4B);
+    byte[] data = os.toByteArray();
+
+    CPC_CodePageControl cpc = new CPC_CodePageControl();
+    cpc.cpiRepeatingGroupLength = CPIRepeatingGroupLength.SingleByteCodePageUnicodeScalarValues;
+    AFPParserConfiguration config = new AFPParserConfiguration();
+    config.setCurrentPageControl(cpc);
+    CPI_CodePageIndex cpi = new CPI_CodePageIndex();
+    StructuredFieldIntroducer sfi = new StructuredFieldIntroducer();
+    sfi.setSFTypeID(SFTypeID.CPI_CodePageIndex);
+    cpi.setStructuredFieldIntroducer(sfi);
+    cpi.decodeAFP(data, 0, data.length, config);
+
+    assertEquals(Arrays.asList(0x61L), cpi.getRepeatingGroups().get(0).getUnicodeScalarValues());
+    assertEquals(0x4B, cpi.getRepeatingGroups().get(1).getCodePoint());
+
+    ByteArrayOutputStream written = new ByteArrayOutputStream();
+    cpi.writeAFP(written, config);
+    byte[] sf = written.toByteArray();
+    assertArrayEquals(data, Arrays.copyOfRange(sf, 9, sf.length));
+  }
+}
@@ -0,0 +1,82 @@
+/*
+Copyright 2015 Rudolf Fiala
+
+This file is part of Alpheus AFP Parser.
+
+Alpheus AFP Parser is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Alpheus AFP Parser is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Alpheus AFP Parser.  If not, see <http://www.gnu.org/licenses/>
+*/
+package com.mgz.afp.foca;
+
+import com.mgz.afp.foca.FNI_FontIndex.FNI_RepeatingGroup;
+import com.mgz.afp.parser.AFPParserConfiguration;
+import com.mgz.util.Constants;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+
+public class FNI_FontIndexTest {
+
+  private static FNI_RepeatingGroup repeatingGroup(String gcgid, int characterIncrement) {
+    FNI_RepeatingGroup rg = new FNI_RepeatingGroup();
+    rg.setGraphicCharacterGlobalID_GCGID(gcgid);
+    rg.setCharacterIncrement((short) characterIncrement);
+    rg.setRepeatingGroupLength((short) 10);
+    return rg;
+  }
+
+  @Test
+  public void testSortedOnceAndLookup() throws Exception {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    String[] gcgids = {"LA020000", "SP010000", "LA010000"};
+    for (int i = 0; i < gcgids.length; i++) {
+      os.write(gcgids[i].getBytes(Constants.cpIBM500), 0, 8);
+      os.write(0x00);
+      os.write(10 * (i + 1));
+    }
+    byte[] data = os.toByteArray();
+
+    FNC_FontControl fnc = new FNC_FontControl();
+    fnc.fniRepeatingGroupLength = 10;
+    AFPParserConfiguration config = new AFPParserConfiguration();
+    config.setCurrentFontControl(fnc);
+    FNI_FontIndex fni = new FNI_FontIndex();
+    fni.decodeAFP(data, 0, data.length, config);
+
+    List<FNI_RepeatingGroup> rgs = fni.getRepeatingGroups();
+    assertEquals("LA010000", rgs.get(0).getGraphicCharacterGlobalID_GCGID());
+    assertEquals("SP010000", rgs.get(2).getGraphicCharacterGlobalID_GCGID());
+    assertSame(rgs, fni.getRepeatingGroups());
+    assertEquals(1, fni.indexOf("LA020000"));
+    assertEquals(10, fni.getRepeatingGroup("LA020000").getCharacterIncrement());
+    assertEquals(20, fni.getRepeatingGroup("SP010000").getCharacterIncrement());
+    assertNull(fni.getRepeatingGroup("LA030000"));
+    assertEquals(-1, fni.indexOf(null));
+
+    fni.addRepeatingGroup(repeatingGroup("AA000000", 5));
+    assertEquals(0, fni.indexOf("AA000000"));
+    assertEquals(4, fni.getRepeatingGroups().size());
+
+    // A GCGID changed directly is found after the index has been invalidated.
+    fni.getRepeatingGroup("AA000000").setGraphicCharacterGlobalID_GCGID("ZZ000000");
+    fni.invalidateIndex();
+    assertEquals(3, fni.indexOf("ZZ000000"));
+  }
+}
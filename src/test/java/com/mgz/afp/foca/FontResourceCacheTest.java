@@ -0,0 +1,231 @@
+/*
+Copyright 2015 Rudolf Fiala
+
+This file is part of Alpheus AFP Parser.
+
+Alpheus AFP Parser is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Alpheus AFP Parser is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Alpheus AFP Parser.  If not, see <http://www.gnu.org/licenses/>
+*/
+package com.mgz.afp.foca;
+
+import com.mgz.afp.base.StructuredField;
+import com.mgz.afp.enums.AFPOrientation;
+import com.mgz.afp.foca.FNI_FontIndex.FNI_RepeatingGroup;
+import com.mgz.afp.parser.AFPParser;
+import com.mgz.afp.parser.AFPParserConfiguration;
+import com.mgz.afp.writer.AFPCorpusGenerator;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+
+public class FontResourceCacheTest {
+  private static List<List<StructuredField>> codePages = new ArrayList<List<StructuredField>>();
+  private static List<List<StructuredField>> fontCharacterSets = new ArrayList<List<StructuredField>>();
+  private static byte[] afp;
+
+  @BeforeClass
+  public static void parseResources() throws Exception {
+    AFPCorpusGenerator generator = new AFPCorpusGenerator(3);
+    generator.setNrOfDocuments(1);
+    generator.setNrOfPageGroups(1);
+    generator.setNrOfFonts(2);
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    generator.generate(baos);
+    afp = baos.toByteArray();
+
+    AFPParserConfiguration pc = new AFPParserConfiguration();
+    pc.setInputStream(new ByteArrayInputStream(baos.toByteArray()));
+    AFPParser parser = new AFPParser(pc);
+    List<StructuredField> resource = null;
+    StructuredField sf;
+    while ((sf = parser.parseNextSF()) != null) {
+      if (sf instanceof BCP_BeginCodePage) {
+        codePages.add(resource = new ArrayList<StructuredField>());
+      } else if (sf instanceof BFN_BeginFont) {
+        fontCharacterSets.add(resource = new ArrayList<StructuredField>());
+      }
+      if (resource != null) {
+        resource.add(sf);
+      }
+      if (sf instanceof ECP_EndCodePage || sf instanceof EFN_EndFont) {
+        resource = null;
+      }
+    }
+    assertEquals(2, codePages.size());
+    assertEquals(2, fontCharacterSets.size());
+  }
+
+  @Test
+  public void testTables() throws Exception {
+    FontResourceCache cache = new FontResourceCache();
+    FOCA_CodePageTable codePage = cache.getCodePage(codePages.get(0));
+    FOCA_FontMetricsTable font = cache.getFontCharacterSet(fontCharacterSets.get(0));
+
+    CPI_CodePageIndex cpi = null;
+    for (StructuredField sf : codePages.get(0)) {
+      if (sf instanceof CPI_CodePageIndex) {
+        cpi = (CPI_CodePageIndex) sf;
+      }
+    }
+    assertEquals(cpi.getRepeatingGroups().size(), codePage.getNrOfCodePoints());
+    for (CPI_CodePageIndex.CPI_RepeatingGroup rg : cpi.getRepeatingGroups()) {
+      assertEquals(rg.getGraphicCharacterGID(), codePage.getGCGID(rg.getCodePoint()));
+    }
+    assertEquals(-1, codePage.indexOf(0x01));
+    assertEquals(codePage.getDefaultGCGID(), codePage.getGCGID(0x01));
+    assertEquals(0x40, codePage.getSpaceCodePoint());
+
+    assertEquals(1, font.getNrOfOrientations());
+    assertEquals(0, font.indexOfOrientation(AFPOrientation.ori0));
+    for (StructuredField sf : fontCharacterSets.get(0)) {
+      if (sf instanceof FNI_FontIndex) {
+        for (FNI_RepeatingGroup rg : ((FNI_FontIndex) sf).getRepeatingGroups()) {
+          int index = font.indexOf(rg.getGraphicCharacterGlobalID_GCGID());
+          assertEquals(rg.getCharacterIncrement(), font.getCharacterIncrement(0, index));
+          assertEquals(rg.getAscenderHeight(), font.getAscenderHeight(0, index));
+          assertEquals(rg.getDescenderDepth(), font.getDescenderDepth(0, index));
+        }
+      }
+    }
+    assertEquals(-1, font.getCharacterIncrement(0, "XXXXXXXX"));
+    assertIncrementDefined(codePage, font, 0x41);
+  }
+
+  private static void assertIncrementDefined(FOCA_CodePageTable codePage, FOCA_FontMetricsTable font, int codePoint) {
+    String gcgid = codePage.getGCGID(codePoint);
+    assertNotEquals(-1, font.getCharacterIncrement(0, gcgid));
+  }
+
+  @Test
+  public void testKeyedByNameAndContent() throws Exception {
+    FontResourceCache cache = new FontResourceCache();
+    FOCA_CodePageTable codePage = cache.getCodePage(codePages.get(0));
+    assertEquals(1, cache.getMisses());
+    assertSame(codePage, cache.getCodePage(codePages.get(0)));
+    assertEquals(1, cache.getHits());
+    assertSame(codePage, cache.getCodePage(codePage.getName(), FontResourceCache.contentHash(codePages.get(0))));
+
+    // Same name, different content.
+    assertNull(cache.getCodePage(codePage.getName(), codePage.getContentHash() + 1));
+    // Code pages and font character sets do not collide.
+    assertNull(cache.getFontCharacterSet(codePage.getName(), codePage.getContentHash()));
+
+    assertNotEquals(codePage.getContentHash(), FontResourceCache.contentHash(codePages.get(1)));
+    assertEquals(FontResourceCache.contentHash(fontCharacterSets.get(1)), FontResourceCache.contentHash(fontCharacterSets.get(1)));
+  }
+
+  @Test
+  public void testReadResource() throws Exception {
+    FontResourceCache cache = new FontResourceCache();
+    FOCA_CodePageTable codePage = cache.getCodePage(codePages.get(0));
+    FOCA_FontMetricsTable font = cache.getFontCharacterSet(fontCharacterSets.get(0));
+    long misses = cache.getMisses();
+
+    AFPParserConfiguration pc = new AFPParserConfiguration();
+    pc.setInputStream(new ByteArrayInputStream(afp));
+    AFPParser parser = new AFPParser(pc);
+    List<FOCA_CodePageTable> codePageTables = new ArrayList<FOCA_CodePageTable>();
+    List<FOCA_FontMetricsTable> fontTables = new ArrayList<FOCA_FontMetricsTable>();
+    FOCA_ResourceTable table;
+    while ((table = cache.readResource(parser, pc)) != null) {
+      if (table instanceof FOCA_CodePageTable) {
+        codePageTables.add((FOCA_CodePageTable) table);
+      } else {
+        fontTables.add((FOCA_FontMetricsTable) table);
+      }
+    }
+
+    // The tables read from the raw structured fields are the ones built from the parsed ones.
+    assertEquals(2, codePageTables.size());
+    assertEquals(2, fontTables.size());
+    assertSame(codePage, codePageTables.get(0));
+    assertSame(font, fontTables.get(0));
+    assertEquals(misses + 2, cache.getMisses());
+    assertEquals(FontResourceCache.contentHash(codePages.get(1)), codePageTables.get(1).getContentHash());
+    assertEquals(FontResourceCache.contentHash(fontCharacterSets.get(1)), fontTables.get(1).getContentHash());
+    assertEquals(((BCP_BeginCodePage) codePages.get(1).get(0)).getName(), codePageTables.get(1).getName());
+    assertEquals(FOCA_CodePageTable.build("", 0, codePages.get(1)).getNrOfCodePoints(), codePageTables.get(1).getNrOfCodePoints());
+  }
+
+  @Test
+  public void testLeastRecentlyUsedEviction() throws Exception {
+    FontResourceCache cache = new FontResourceCache(3, Long.MAX_VALUE);
+    FOCA_CodePageTable codePage0 = cache.getCodePage(codePages.get(0));
+    FOCA_CodePageTable codePage1 = cache.getCodePage(codePages.get(1));
+    FOCA_FontMetricsTable font0 = cache.getFontCharacterSet(fontCharacterSets.get(0));
+    // Touch codePage0, so codePage1 is the least recently used.
+    assertSame(codePage0, cache.getCodePage(codePage0.getName(), codePage0.getContentHash()));
+    cache.getFontCharacterSet(fontCharacterSets.get(1));
+
+    assertEquals(3, cache.size());
+    assertEquals(1, cache.getEvictions());
+    assertNull(cache.getCodePage(codePage1.getName(), codePage1.getContentHash()));
+    assertSame(font0, cache.getFontCharacterSet(font0.getName(), font0.getContentHash()));
+
+    FontResourceCache small = new FontResourceCache(10, codePage0.getMemorySize() + 1);
+    small.put(codePage0);
+    small.put(codePage1);
+    assertEquals(1, small.size());
+    assertEquals(codePage1.getMemorySize(), small.getMemorySize());
+  }
+
+  @Test
+  public void testConcurrentReaders() throws Exception {
+    final FontResourceCache cache = new FontResourceCache();
+    final String name = "C0000000";
+    final long contentHash = FontResourceCache.contentHash(fontCharacterSets.get(0));
+    final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    final FOCA_FontMetricsTable[] tables = new FOCA_FontMetricsTable[8];
+    Thread[] threads = new Thread[tables.length];
+    for (int t = 0; t < threads.length; t++) {
+      final int index = t;
+      threads[t] = new Thread() {
+        @Override
+        public void run() {
+          try {
+            for (int i = 0; i < 50; i++) {
+              FOCA_FontMetricsTable table = cache.getFontCharacterSet(name, contentHash);
+              if (table == null) {
+                table = (FOCA_FontMetricsTable) cache.put(FOCA_FontMetricsTable.build(name, contentHash, fontCharacterSets.get(0)));
+              }
+              tables[index] = table;
+            }
+          } catch (Throwable th) {
+            failure.set(th);
+          }
+        }
+      };
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertNull(failure.get());
+    assertEquals(1, cache.size());
+    for (FOCA_FontMetricsTable table : tables) {
+      assertSame(tables[0], table);
+    }
+  }
+}
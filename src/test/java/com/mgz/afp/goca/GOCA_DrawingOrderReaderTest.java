@@ -0,0 +1,159 @@
+/*
+Copyright 2015 Rudolf Fiala
+
+This file is part of Alpheus AFP Parser.
+
+Alpheus AFP Parser is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Alpheus AFP Parser is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Alpheus AFP Parser.  If not, see <http://www.gnu.org/licenses/>
+*/
+package com.mgz.afp.goca;
+
+import com.mgz.afp.exceptions.AFPParserException;
+import com.mgz.afp.goca.GAD_DrawingOrder.GCOMT_Comment;
+import com.mgz.afp.goca.GAD_DrawingOrder.GLINE_LineAtGivenPosition;
+import com.mgz.afp.goca.GAD_DrawingOrder.GNOP1_NopOperation;
+import com.mgz.afp.goca.GAD_DrawingOrder.GSCOL_SetColor;
+import com.mgz.afp.parser.AFPParserConfiguration;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+public class GOCA_DrawingOrderReaderTest {
+  private static final byte[] ORDERS = {
+      0x00,
+      0x0A, 0x07,
+      0x01, 0x03, 0x11, 0x22, 0x33,
+      (byte) 0xC1, 0x08, 0x00, 0x01, 0x00, 0x02, (byte) 0xFF, (byte) 0xFF, 0x01, 0x00,
+      0x68, 0x00,
+      0x60, 0x00
+  };
+  private static final Class<?>[] ORDER_CLASSES = {
+      GNOP1_NopOperation.class, GSCOL_SetColor.class, GCOMT_Comment.class, GLINE_LineAtGivenPosition.class,
+      GAD_DrawingOrder.GBAR_BeginArea.class, GAD_DrawingOrder.GEAR_EndArea.class
+  };
+
+  private static byte[] segment(int nr, byte[] orders) {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    byte[] name = {(byte) 0xE2, (byte) 0xC5, (byte) 0xC7, (byte) (0xF0 + nr)};
+    baos.write(0x70);
+    baos.write(0x0C);
+    baos.write(name, 0, 4);
+    baos.write(0x00);
+    baos.write(0x00);
+    baos.write(orders.length >> 8);
+    baos.write(orders.length & 0xFF);
+    baos.write(name, 0, 4);
+    baos.write(orders, 0, orders.length);
+    return baos.toByteArray();
+  }
+
+  @Test
+  public void testOrdersSpanningGADs() throws Exception {
+    AFPParserConfiguration config = new AFPParserConfiguration();
+    ByteArrayOutputStream graphicsData = new ByteArrayOutputStream();
+    graphicsData.write(segment(1, ORDERS));
+    graphicsData.write(segment(2, ORDERS));
+    byte[] data = graphicsData.toByteArray();
+
+    GOCA_DrawingOrderReader reader = new GOCA_DrawingOrderReader(config);
+    for (int gadLength = 1; gadLength <= data.length; gadLength++) {
+      reader.reset();
+      List<GAD_DrawingOrder> orders = new ArrayList<GAD_DrawingOrder>();
+      List<String> segmentNames = new ArrayList<String>();
+      for (int pos = 0; pos < data.length; pos += gadLength) {
+        GAD_GraphicsData gad = new GAD_GraphicsData();
+        gad.setData(Arrays.copyOfRange(data, pos, Math.min(data.length, pos + gadLength)));
+        reader.addGraphicsData(gad);
+        GAD_DrawingOrder order;
+        while ((order = reader.nextDrawingOrder()) != null) {
+          orders.add(order);
+          segmentNames.add(reader.getCurrentSegment().getNameOfSegment());
+        }
+      }
+      assertEquals(0, reader.getPendingLength());
+      assertEquals(2, reader.getNrOfSegments());
+      assertEquals(2 * ORDER_CLASSES.length, reader.getNrOfDrawingOrders());
+      reader.end();
+
+      ByteArrayOutputStream written = new ByteArrayOutputStream();
+      for (int i = 0; i < orders.size(); i++) {
+        assertEquals(ORDER_CLASSES[i % ORDER_CLASSES.length], orders.get(i).getClass());
+        assertEquals(i < ORDER_CLASSES.length ? "SEG1" : "SEG2", segmentNames.get(i));
+        orders.get(i).writeAFP(written, config);
+      }
+      byte[] expected = new byte[2 * ORDERS.length];
+      System.arraycopy(ORDERS, 0, expected, 0, ORDERS.length);
+      System.arraycopy(ORDERS, 0, expected, ORDERS.length, ORDERS.length);
+      assertArrayEquals("GAD length " + gadLength, expected, written.toByteArray());
+    }
+  }
+
+  @Test
+  public void testUnsegmentedOrders() throws Exception {
+    GOCA_DrawingOrderReader reader = new GOCA_DrawingOrderReader(new AFPParserConfiguration());
+    reader.addData(ORDERS, 0, 7);
+    reader.addData(ORDERS, 7, ORDERS.length - 7);
+    int count = 0;
+    while (reader.nextDrawingOrder() != null) {
+      assertNull(reader.getCurrentSegment());
+      count++;
+    }
+    assertEquals(ORDER_CLASSES.length, count);
+    reader.end();
+  }
+
+  @Test
+  public void testIncompleteGraphicsData() throws Exception {
+    byte[] data = segment(1, ORDERS);
+    GOCA_DrawingOrderReader reader = new GOCA_DrawingOrderReader(new AFPParserConfiguration());
+    reader.addData(data, 0, data.length - 1);
+    while (reader.nextDrawingOrder() != null) {
+    }
+    assertEquals(1, reader.getPendingLength());
+    assertEquals(2, reader.getSegmentRemainingLength());
+    try {
+      reader.end();
+      fail();
+    } catch (AFPParserException e) {
+      assertTrue(e.getMessage().contains("incomplete"));
+    }
+    assertEquals(0, reader.getPendingLength());
+  }
+
+  @Test
+  public void testOrderExceedingSegment() throws Exception {
+    byte[] data = segment(1, Arrays.copyOf(ORDERS, 4));
+    GOCA_DrawingOrderReader reader = new GOCA_DrawingOrderReader(new AFPParserConfiguration());
+    reader.addData(data, 0, data.length);
+    reader.addData(ORDERS, 4, ORDERS.length - 4);
+    reader.nextDrawingOrder();
+    reader.nextDrawingOrder();
+    try {
+      reader.nextDrawingOrder();
+      fail();
+    } catch (AFPParserException e) {
+      assertTrue(e.getMessage().contains("exceeds"));
+    }
+  }
+}
@@ -0,0 +1,96 @@
+/*
+Copyright 2015 Rudolf Fiala
+
+This file is part of Alpheus AFP Parser.
+
+Alpheus AFP Parser is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Alpheus AFP Parser is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Alpheus AFP Parser.  If not, see <http://www.gnu.org/licenses/>
+*/
+package com.mgz.afp.goca;
+
+import com.mgz.afp.goca.GAD_DrawingOrder.GLINE_LineAtGivenPosition;
+import com.mgz.afp.goca.GAD_DrawingOrder.GOCA_Point;
+import com.mgz.afp.parser.AFPParserConfiguration;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ShortBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+
+public class GOCA_PointListTest {
+  // GLINE with points (1,2), (-1,256), (0x1234,0x7FFF).
+  private static final byte[] GLINE = {
+      (byte) 0xC1, 0x0C, 0x00, 0x01, 0x00, 0x02, (byte) 0xFF, (byte) 0xFF, 0x01, 0x00, 0x12, 0x34, 0x7F, (byte) 0xFF
+  };
+
+  private static byte[] write(GAD_DrawingOrder order) throws Exception {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    order.writeAFP(baos, new AFPParserConfiguration());
+    return baos.toByteArray();
+  }
+
+  @Test
+  public void testDecodeAndWritePoints() throws Exception {
+    GLINE_LineAtGivenPosition gline = new GLINE_LineAtGivenPosition();
+    gline.decodeAFP(GLINE, 0, GLINE.length, new AFPParserConfiguration());
+    assertEquals(3, gline.getNrOfPoints());
+    assertTrue(gline.getPoints() instanceof GOCA_PointList);
+
+    GOCA_PointList points = (GOCA_PointList) gline.getPoints();
+    assertEquals(-1, points.getXCoordinate(1));
+    assertEquals(256, points.getYCoordinate(1));
+    assertArrayEquals(GLINE, write(gline));
+
+    // Points handed out by get() stay attached to the list.
+    GOCA_Point point = points.get(0);
+    assertSame(point, points.get(0));
+    point.setxCoordinate((short) 7);
+    assertEquals(7, points.getXCoordinate(0));
+    ShortBuffer coordinates = points.asShortBuffer();
+    assertEquals(6, coordinates.remaining());
+    assertEquals(7, coordinates.get(0));
+    assertEquals(0x7FFF, coordinates.get(5));
+
+    points.remove(1);
+    points.add((short) 3, (short) 4);
+    byte[] expected = {(byte) 0xC1, 0x0C, 0x00, 0x07, 0x00, 0x02, 0x12, 0x34, 0x7F, (byte) 0xFF, 0x00, 0x03, 0x00, 0x04};
+    assertArrayEquals(expected, write(gline));
+  }
+
+  @Test
+  public void testListOfPoints() throws Exception {
+    GLINE_LineAtGivenPosition gline = new GLINE_LineAtGivenPosition();
+    gline.decodeAFP(GLINE, 0, GLINE.length, new AFPParserConfiguration());
+
+    List<GOCA_Point> points = new ArrayList<GOCA_Point>(gline.getPoints());
+    gline.setPoints(points);
+    assertArrayEquals(GLINE, write(gline));
+
+    GOCA_PointList packed = new GOCA_PointList(points);
+    assertEquals(points, packed);
+    packed.add(1, packed.get(2));
+    packed.set(0, packed.get(3));
+    assertEquals(4, packed.size());
+    assertEquals(0x1234, packed.getXCoordinate(0));
+    assertEquals(0x1234, packed.getXCoordinate(1));
+    assertEquals(-1, packed.getXCoordinate(2));
+  }
+}
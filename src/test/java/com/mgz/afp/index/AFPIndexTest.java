@@ -0,0 +1,173 @@
+/*
+Copyright 2015 Rudolf Fiala
+
+This file is part of Alpheus AFP Parser.
+
+Alpheus AFP Parser is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Alpheus AFP Parser is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Alpheus AFP Parser.  If not, see <http://www.gnu.org/licenses/>
+*/
+package com.mgz.afp.index;
+
+import com.mgz.afp.base.StructuredField;
+import com.mgz.afp.base.StructuredFieldBaseName;
+import com.mgz.afp.base.StructuredFieldIntroducer;
+import com.mgz.afp.enums.SFTypeID;
+import com.mgz.afp.exceptions.AFPParserException;
+import com.mgz.afp.modca.BDT_BeginDocument;
+import com.mgz.afp.modca.BNG_BeginNamedPageGroup;
+import com.mgz.afp.modca.BPG_BeginPage;
+import com.mgz.afp.modca.EDT_EndDocument;
+import com.mgz.afp.modca.ENG_EndNamedPageGroup;
+import com.mgz.afp.modca.EPG_EndPage;
+import com.mgz.afp.modca.NOP_NoOperation;
+import com.mgz.afp.parser.AFPParserConfiguration;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+public class AFPIndexTest {
+  private static final int NR_OF_GROUPS = 5;
+  private static final int NR_OF_PAGES_PER_GROUP = 3;
+  private File afpFile;
+  private File indexFile;
+
+  @Before
+  public void createAFPFile() throws Exception {
+    afpFile = File.createTempFile(AFPIndexTest.class.getSimpleName(), ".afp");
+    indexFile = AFPIndex.getDefaultIndexFile(afpFile);
+    AFPParserConfiguration pc = new AFPParserConfiguration();
+    OutputStream os = new FileOutputStream(afpFile);
+    try {
+      writeNamedSF(os, new BDT_BeginDocument(), SFTypeID.BDT_BeginDocument, "DOC00001", pc);
+      for (int g = 0; g < NR_OF_GROUPS; g++) {
+        writeNamedSF(os, new BNG_BeginNamedPageGroup(), SFTypeID.BNG_BeginNamedPageGroup, "GROUP" + (100 + g), pc);
+        for (int p = 0; p < NR_OF_PAGES_PER_GROUP; p++) {
+          writeNamedSF(os, new BPG_BeginPage(), SFTypeID.BPG_BeginPage, "PAGE" + (1000 + g * NR_OF_PAGES_PER_GROUP + p), pc);
+          NOP_NoOperation nop = new NOP_NoOperation();
+          nop.setStructuredFieldIntroducer(createSFI(SFTypeID.NOP_NoOperation));
+          nop.setData(new byte[100 + p]);
+          nop.writeAFP(os, pc);
+          writeNamedSF(os, new EPG_EndPage(), SFTypeID.EPG_EndPage, null, pc);
+        }
+        writeNamedSF(os, new ENG_EndNamedPageGroup(), SFTypeID.ENG_EndNamedPageGroup, null, pc);
+      }
+      writeNamedSF(os, new EDT_EndDocument(), SFTypeID.EDT_EndDocument, null, pc);
+    } finally {
+      os.close();
+    }
+  }
+
+  @After
+  public void deleteFiles() {
+    afpFile.delete();
+    indexFile.delete();
+  }
+
+  private static StructuredFieldIntroducer createSFI(SFTypeID sfTypeID) {
+    StructuredFieldIntroducer sfi = new StructuredFieldIntroducer();
+    sfi.setSFTypeID(sfTypeID);
+    return sfi;
+  }
+
+  private static void writeNamedSF(OutputStream os, StructuredFieldBaseName sf, SFTypeID sfTypeID, String name, AFPParserConfiguration pc) throws Exception {
+    sf.setStructuredFieldIntroducer(createSFI(sfTypeID));
+    if (name != null) {
+      sf.setName(name);
+    }
+    sf.writeAFP(os, pc);
+  }
+
+  @Test
+  public void testBuildWriteRead() throws Exception {
+    AFPIndex built = AFPIndex.build(afpFile, new AFPParserConfiguration());
+    assertEquals(2 + NR_OF_GROUPS * (2 + 3 * NR_OF_PAGES_PER_GROUP), built.getNrOfStructuredFields());
+    assertEquals(1, built.getDocuments().size());
+    assertEquals(NR_OF_GROUPS, built.getPageGroups().size());
+    assertEquals(NR_OF_GROUPS * NR_OF_PAGES_PER_GROUP, built.getNrOfPages());
+
+    built.write(indexFile);
+    AFPIndex index = AFPIndex.read(indexFile, afpFile);
+    assertEquals(built.getNrOfStructuredFields(), index.getNrOfStructuredFields());
+    for (int i = 0; i < index.getNrOfStructuredFields(); i++) {
+      assertEquals(built.getSFOffset(i), index.getSFOffset(i));
+      assertEquals(built.getSFLength(i), index.getSFLength(i));
+      assertEquals(built.getSFTypeID(i), index.getSFTypeID(i));
+    }
+    assertEquals(SFTypeID.BDT_BeginDocument, index.getSFTypeID(0));
+    assertEquals(SFTypeID.EDT_EndDocument, index.getSFTypeID(index.getNrOfStructuredFields() - 1));
+
+    AFPIndex.Element group = index.getPageGroup("GROUP102");
+    assertEquals(0, group.getParentIndex());
+    assertEquals(2 * NR_OF_PAGES_PER_GROUP, group.getFirstPage());
+    assertEquals(NR_OF_PAGES_PER_GROUP, group.getNrOfPages());
+    assertEquals(SFTypeID.ENG_EndNamedPageGroup, index.getSFTypeID(group.getEndSFIndex()));
+
+    AFPIndex.Element page = index.getPage(7);
+    assertEquals("PAGE1007", page.getName());
+    assertEquals(2, page.getParentIndex());
+    assertNull(index.getPageGroup("UNKNOWN"));
+  }
+
+  @Test
+  public void testReadPageAndPageGroup() throws Exception {
+    AFPIndexReader reader = AFPIndexReader.open(afpFile, new AFPParserConfiguration());
+    try {
+      assertTrue(indexFile.isFile());
+
+      List<StructuredField> page = reader.readPage(7);
+      assertEquals(3, page.size());
+      assertEquals("PAGE1007", ((BPG_BeginPage) page.get(0)).getName());
+      assertTrue(page.get(1) instanceof NOP_NoOperation);
+      assertTrue(page.get(2) instanceof EPG_EndPage);
+      AFPIndex.Element indexedPage = reader.getIndex().getPage(7);
+      assertEquals(reader.getIndex().getSFOffset(indexedPage.getBeginSFIndex()), page.get(0).getStructuredFieldIntroducer().getFileOffset());
+
+      List<StructuredField> group = reader.readPageGroup("GROUP104");
+      assertEquals(2 + 3 * NR_OF_PAGES_PER_GROUP, group.size());
+      assertEquals("GROUP104", ((BNG_BeginNamedPageGroup) group.get(0)).getName());
+      assertEquals("PAGE1012", ((BPG_BeginPage) group.get(1)).getName());
+      assertTrue(group.get(group.size() - 1) instanceof ENG_EndNamedPageGroup);
+    } finally {
+      reader.close();
+    }
+  }
+
+  @Test
+  public void testOutdatedIndexIsRejected() throws Exception {
+    AFPIndex.build(afpFile, new AFPParserConfiguration()).write(indexFile);
+    assertTrue(afpFile.setLastModified(afpFile.lastModified() - 10000));
+    try {
+      AFPIndex.read(indexFile, afpFile);
+      fail("Outdated index must be rejected.");
+    } catch (AFPParserException e) {
+      // Expected.
+    }
+
+    // Reopening rebuilds the outdated index.
+    AFPIndexReader reader = AFPIndexReader.open(afpFile, new AFPParserConfiguration());
+    reader.close();
+    assertEquals(NR_OF_GROUPS * NR_OF_PAGES_PER_GROUP, AFPIndex.read(indexFile, afpFile).getNrOfPages());
+  }
+}
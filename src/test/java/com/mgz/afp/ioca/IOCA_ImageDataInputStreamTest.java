@@ -0,0 +1,181 @@
+/*
+Copyright 2015 Rudolf Fiala
+
+This file is part of Alpheus AFP Parser.
+
+Alpheus AFP Parser is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Alpheus AFP Parser is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Alpheus AFP Parser.  If not, see <http://www.gnu.org/licenses/>
+*/
+package com.mgz.afp.ioca;
+
+import com.mgz.afp.base.StructuredFieldIntroducerView;
+import com.mgz.afp.enums.SFTypeID;
+import com.mgz.afp.ioca.IPD_Segment.IPD_CompressionAlgorithm;
+import com.mgz.afp.parser.AFPParser;
+import com.mgz.afp.parser.AFPParserConfiguration;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+public class IOCA_ImageDataInputStreamTest {
+
+  private static void writeSF(ByteArrayOutputStream os, SFTypeID type, byte[] data, int offset, int length) {
+    int sfLength = 8 + length;
+    os.write(0x5A);
+    os.write(sfLength >> 8);
+    os.write(sfLength & 0xFF);
+    os.write(type.toBytes(), 0, 3);
+    os.write(0x00);
+    os.write(0x00);
+    os.write(0x00);
+    os.write(data, offset, length);
+  }
+
+  private static byte[] imageSegments(byte[] imageData, int maxDataSegmentLength) {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    os.write(new byte[] {0x70, 0x00}, 0, 2);
+    os.write(new byte[] {(byte) 0x91, 0x01, (byte) 0xFF}, 0, 3);
+    os.write(new byte[] {(byte) 0x94, 0x09, 0x00, 0x09, 0x60, 0x09, 0x60, 0x00, 0x40, 0x00, 0x20}, 0, 11);
+    os.write(new byte[] {(byte) 0x95, 0x02, 0x03, 0x01}, 0, 4);
+    os.write(new byte[] {(byte) 0x96, 0x01, 0x01}, 0, 3);
+    for (int pos = 0; pos < imageData.length; pos += maxDataSegmentLength) {
+      int len = Math.min(maxDataSegmentLength, imageData.length - pos);
+      os.write(new byte[] {(byte) 0xFE, (byte) 0x92, (byte) (len >> 8), (byte) len}, 0, 4);
+      os.write(imageData, pos, len);
+    }
+    os.write(new byte[] {(byte) 0x93, 0x00}, 0, 2);
+    os.write(new byte[] {0x71, 0x00}, 0, 2);
+    return os.toByteArray();
+  }
+
+  /**
+   * BIM, the IPD segments split into IPDs of the given length with a NOP after every IPD, EIM, and a
+   * trailing IPD that is not part of the image.
+   */
+  private static byte[] imageObject(byte[] segments, int ipdLength) {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    writeSF(os, SFTypeID.BIM_BeginImageObject, new byte[8], 0, 8);
+    for (int pos = 0; pos < segments.length; pos += ipdLength) {
+      writeSF(os, SFTypeID.IPD_ImagePictureData, segments, pos, Math.min(ipdLength, segments.length - pos));
+      writeSF(os, SFTypeID.NOP_NoOperation, new byte[3], 0, 3);
+    }
+    writeSF(os, SFTypeID.EIM_EndImageObject, new byte[8], 0, 8);
+    writeSF(os, SFTypeID.IPD_ImagePictureData, segments, 0, 16);
+    return os.toByteArray();
+  }
+
+  private static IOCA_ImageDataInputStream open(AFPParserConfiguration pc) throws Exception {
+    AFPParser parser = new AFPParser(pc);
+    StructuredFieldIntroducerView sfi = parser.scanNextSF();
+    assertEquals(SFTypeID.BIM_BeginImageObject, sfi.getSFTypeID());
+    return new IOCA_ImageDataInputStream(parser, pc);
+  }
+
+  @Test
+  public void testImageDataSpanningIPDs() throws Exception {
+    byte[] imageData = new byte[3000];
+    new Random(5).nextBytes(imageData);
+    byte[] segments = imageSegments(imageData, 700);
+
+    for (int ipdLength = 1; ipdLength <= 64; ipdLength++) {
+      AFPParserConfiguration pc = new AFPParserConfiguration();
+      pc.setInputStream(new ByteArrayInputStream(imageObject(segments, ipdLength * 13)));
+      IOCA_ImageDataInputStream is = open(pc);
+
+      ByteArrayOutputStream read = new ByteArrayOutputStream();
+      byte[] buffer = new byte[ipdLength];
+      int len;
+      while ((len = is.read(buffer)) != -1) {
+        read.write(buffer, 0, len);
+      }
+      assertArrayEquals("IPD length " + ipdLength * 13, imageData, read.toByteArray());
+      assertTrue(is.isEndOfImage());
+      assertEquals(64, is.getImageSize().getXImageSize());
+      assertEquals(32, is.getImageSize().getYImageSize());
+      assertEquals(IPD_CompressionAlgorithm.NoCompression, is.getImageEncoding().getCompressionAlgorithm());
+      assertEquals(1, is.getIDESize().getNumberOfBitsInEachIDE());
+      assertEquals(-1, is.read());
+    }
+  }
+
+  @Test
+  public void testChannelOnMappedFile() throws Exception {
+    byte[] imageData = new byte[100000];
+    new Random(7).nextBytes(imageData);
+    byte[] segments = imageSegments(imageData, 0x7FFF);
+
+    File afpFile = File.createTempFile(IOCA_ImageDataInputStreamTest.class.getSimpleName(), ".afp");
+    try {
+      FileOutputStream fos = new FileOutputStream(afpFile);
+      fos.write(imageObject(segments, 8000));
+      fos.close();
+
+      AFPParserConfiguration pc = new AFPParserConfiguration();
+      pc.setAFPFile(afpFile);
+      pc.setMemoryMapped(true);
+      IOCA_ImageDataInputStream channel = open(pc);
+
+      assertEquals(10, channel.skip(10));
+      ByteBuffer read = ByteBuffer.allocate(imageData.length);
+      read.put(imageData, 0, 10);
+      ByteBuffer buffer = ByteBuffer.allocate(4096);
+      while (channel.read(buffer) != -1) {
+        buffer.flip();
+        read.put(buffer);
+        buffer.clear();
+      }
+      assertEquals(0, read.remaining());
+      assertArrayEquals(imageData, read.array());
+      assertEquals((segments.length + 7999) / 8000, channel.getNrOfImagePictureData());
+      channel.close();
+      assertTrue(!channel.isOpen());
+    } finally {
+      afpFile.delete();
+    }
+  }
+
+  @Test
+  public void testTruncatedImageData() throws Exception {
+    byte[] segments = imageSegments(new byte[500], 500);
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    writeSF(os, SFTypeID.BIM_BeginImageObject, new byte[8], 0, 8);
+    writeSF(os, SFTypeID.IPD_ImagePictureData, segments, 0, 200);
+    writeSF(os, SFTypeID.EIM_EndImageObject, new byte[8], 0, 8);
+
+    AFPParserConfiguration pc = new AFPParserConfiguration();
+    pc.setInputStream(new ByteArrayInputStream(os.toByteArray()));
+    IOCA_ImageDataInputStream is = open(pc);
+    byte[] buffer = new byte[1000];
+    // The data of the first IPD is returned, the next read fails.
+    assertEquals(200 - 27, is.read(buffer));
+    try {
+      is.read(buffer);
+      fail();
+    } catch (EOFException e) {
+      assertTrue(is.isEndOfImage());
+    }
+  }
+}
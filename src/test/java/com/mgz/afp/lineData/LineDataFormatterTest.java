@@ -0,0 +1,448 @@
+/*
+Copyright 2015 Rudolf Fiala
+
+This file is part of Alpheus AFP Parser.
+
+Alpheus AFP Parser is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Alpheus AFP Parser is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Alpheus AFP Parser.  If not, see <http://www.gnu.org/licenses/>
+*/
+package com.mgz.afp.lineData;
+
+import com.mgz.afp.base.StructuredField;
+import com.mgz.afp.base.StructuredFieldIntroducer;
+import com.mgz.afp.enums.AFPColorValue;
+import com.mgz.afp.enums.AFPOrientation;
+import com.mgz.afp.enums.AFPUnitBase;
+import com.mgz.afp.enums.SFTypeID;
+import com.mgz.afp.exceptions.AFPParserException;
+import com.mgz.afp.lineData.CCP_ConditionalProcessingControl.CCP_RepeatingGroup;
+import com.mgz.afp.lineData.CCP_ConditionalProcessingControl.CCP_RepeatingGroup.CCP_Comparison;
+import com.mgz.afp.lineData.CCP_ConditionalProcessingControl.CCP_RepeatingGroup.CCP_DataMapAction;
+import com.mgz.afp.lineData.CCP_ConditionalProcessingControl.CCP_RepeatingGroup.CCP_MediumMapAction;
+import com.mgz.afp.lineData.CCP_ConditionalProcessingControl.CCP_RepeatingGroup.CCP_TimingOfAction;
+import com.mgz.afp.lineData.LND_LineDescriptor.LND_Flag;
+import com.mgz.afp.lineData.RCD_RecordDescriptor.RCD_Flag;
+import com.mgz.afp.modca.BPG_BeginPage;
+import com.mgz.afp.modca.IMM_InvokeMediumMap;
+import com.mgz.afp.modca.PGD_PageDescriptor;
+import com.mgz.afp.parser.AFPParser;
+import com.mgz.afp.parser.AFPParserConfiguration;
+import com.mgz.afp.parser.LineDataRecordReader;
+import com.mgz.afp.parser.LineDataRecordReader.RecordFormat;
+import com.mgz.afp.ptoca.PTX_PresentationTextData;
+import com.mgz.afp.ptoca.controlSequence.PTOCAControlSequence;
+import com.mgz.afp.ptoca.controlSequence.PTOCAControlSequence.TRN_TransparentData;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LineDataFormatterTest {
+  private static final AFPParserConfiguration config = new AFPParserConfiguration();
+
+  private static final int SPACE = 0x40;
+  private static final int SKIP_TO_CHANNEL_1 = 0xF1;
+
+  /**
+   * Returns an LND for a line of a page with the given number of lines, spacing to the next LND,
+   * and ending the page after the last.
+   */
+  private static LND_LineDescriptor lnd(int lndNumber, int nrOfLines) {
+    LND_LineDescriptor lnd = new LND_LineDescriptor();
+    lnd.setFlags(EnumSet.of(LND_Flag.GenerateBaselinePosition_NewPosition, LND_Flag.GenerateInlinePosition_NewPosition,
+        LND_Flag.GenerateFontChange_AsSpecified, LND_Flag.RelativeBaselinePosition_AbsolutePosition));
+    lnd.setBaselinePosition(100 + lndNumber * 50);
+    lnd.setInlinePosition(100);
+    lnd.setPrimaryFontLocalId((short) 1);
+    lnd.setChannelCode((byte) (lndNumber == 1 ? 1 : 0));
+    lnd.setNextLNDIfSpacing(lndNumber < nrOfLines ? lndNumber + 1 : 0);
+    lnd.setNextLNDIfSkipping(lndNumber < nrOfLines ? lndNumber + 1 : 0);
+    lnd.setDataStartPosition(0);
+    lnd.setDataLength(0);
+    return lnd;
+  }
+
+  private static List<StructuredField> pageDefinition(String dataMapName, LND_LineDescriptor... lnds) {
+    List<StructuredField> pageDefinition = new ArrayList<StructuredField>();
+    BDM_BeginDataMap bdm = new BDM_BeginDataMap();
+    bdm.setName(dataMapName);
+    pageDefinition.add(bdm);
+    pageDefinition.addAll(Arrays.asList(lnds));
+    pageDefinition.add(new EDM_EndDataMap());
+    return pageDefinition;
+  }
+
+  /**
+   * Returns a record RCD of the given record ID presenting the record after the ID, at the given
+   * baseline position.
+   */
+  private static RCD_RecordDescriptor rcd(String recordID, RCD_XMD_RecordTypeElementType recordType, int baselinePosition, boolean isRelative) {
+    RCD_RecordDescriptor rcd = new RCD_RecordDescriptor();
+    rcd.setRecordDescriptorID(recordID);
+    rcd.setRecordType(recordType);
+    rcd.setFlags(EnumSet.of(RCD_Flag.GenerateBaselinePosition_NewPosition, RCD_Flag.GenerateInlinePosition_NewPosition,
+        RCD_Flag.GenerateFontChange_AsSpecified, RCD_Flag.FieldRCD_RecordRCD,
+        isRelative ? RCD_Flag.RelativeBaselinePosition_RelativePosition : RCD_Flag.RelativeBaselinePosition_AbsolutePosition));
+    rcd.setBaselinePosition(baselinePosition);
+    rcd.setInlinePosition(100);
+    rcd.setInlineOrientation(AFPOrientation.ori0);
+    rcd.setBaselineOrientation(AFPOrientation.ori90);
+    rcd.setPrimaryFontLocalId((short) 1);
+    rcd.setDataStartPosition(10);
+    rcd.setDataLength(0);
+    return rcd;
+  }
+
+  private static List<StructuredField> pageDefinition(String dataMapName, int pageDepth, RCD_RecordDescriptor... rcds) {
+    List<StructuredField> pageDefinition = new ArrayList<StructuredField>();
+    BDM_BeginDataMap bdm = new BDM_BeginDataMap();
+    bdm.setName(dataMapName);
+    pageDefinition.add(bdm);
+    PGD_PageDescriptor pgd = new PGD_PageDescriptor();
+    StructuredFieldIntroducer sfi = new StructuredFieldIntroducer();
+    sfi.setSFTypeID(SFTypeID.PGD_PageDescriptor);
+    pgd.setStructuredFieldIntroducer(sfi);
+    pgd.setxUnitBase(AFPUnitBase.Inches10);
+    pgd.setyUnitBase(AFPUnitBase.Inches10);
+    pgd.setxUnitsPerUnitBase((short) 1440);
+    pgd.setyUnitsPerUnitBase((short) 1440);
+    pgd.setxSize(1000);
+    pgd.setySize(pageDepth);
+    pgd.setReserved12_14(new byte[3]);
+    pageDefinition.add(pgd);
+    pageDefinition.addAll(Arrays.asList(rcds));
+    pageDefinition.add(new EDM_EndDataMap());
+    return pageDefinition;
+  }
+
+  private static byte[] records(Object... ccAndText) {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    for (int i = 0; i < ccAndText.length; i += 2) {
+      byte[] text = ((String) ccAndText[i + 1]).getBytes(config.getAfpCharSet());
+      int length = text.length + 5;
+      baos.write(length >> 8);
+      baos.write(length);
+      baos.write(0);
+      baos.write(0);
+      baos.write((Integer) ccAndText[i]);
+      baos.write(text, 0, text.length);
+    }
+    return baos.toByteArray();
+  }
+
+  private static byte[] format(LineDataFormatter formatter, byte[] records) throws Exception {
+    LineDataRecordReader reader = new LineDataRecordReader(ByteBuffer.wrap(records), RecordFormat.RDW).setCarriageControl(true);
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    formatter.format(reader, os);
+    return os.toByteArray();
+  }
+
+  private static List<StructuredField> parse(byte[] afp) throws Exception {
+    AFPParserConfiguration pc = new AFPParserConfiguration();
+    pc.setInputStream(new ByteArrayInputStream(afp));
+    AFPParser parser = new AFPParser(pc);
+    List<StructuredField> sfs = new ArrayList<StructuredField>();
+    StructuredField sf;
+    while ((sf = parser.parseNextSF()) != null) {
+      sfs.add(sf);
+    }
+    return sfs;
+  }
+
+  /**
+   * Returns the transparent data of each page.
+   */
+  private static List<List<String>> pages(List<StructuredField> sfs) throws Exception {
+    List<List<String>> pages = new ArrayList<List<String>>();
+    List<String> page = null;
+    for (StructuredField sf : sfs) {
+      if (sf instanceof BPG_BeginPage) {
+        page = new ArrayList<String>();
+        pages.add(page);
+      } else if (sf instanceof PTX_PresentationTextData) {
+        for (PTOCAControlSequence cs : ((PTX_PresentationTextData) sf).getControlSequences()) {
+          if (cs instanceof TRN_TransparentData) {
+            page.add(((TRN_TransparentData) cs).getTransparentData());
+          }
+        }
+      }
+    }
+    return pages;
+  }
+
+  @Test
+  public void testSpacingAndSkipping() throws Exception {
+    LineDataFormatter formatter = new LineDataFormatter(pageDefinition("DM1", lnd(1, 3), lnd(2, 3), lnd(3, 3)), config);
+    byte[] afp = format(formatter, records(
+        SKIP_TO_CHANNEL_1, "A1", SPACE, "A2", SPACE, "A3", SPACE, "B1", SPACE, "B2",
+        SKIP_TO_CHANNEL_1, "C1", 0x4E, "C1+", SPACE, "C2"));
+
+    List<StructuredField> sfs = parse(afp);
+    List<List<String>> pages = pages(sfs);
+    assertEquals(3, pages.size());
+    assertEquals(Arrays.asList("A1", "A2", "A3"), pages.get(0));
+    assertEquals(Arrays.asList("B1", "B2"), pages.get(1));
+    assertEquals(Arrays.asList("C1", "C1+", "C2"), pages.get(2));
+    assertEquals(3, formatter.getNrOfPages());
+    assertEquals(8, formatter.getNrOfRecords());
+    assertEquals(SFTypeID.BPG_BeginPage, sfs.get(0).getStructuredFieldIntroducer().getSFTypeID());
+    assertEquals(SFTypeID.EPG_EndPage, sfs.get(sfs.size() - 1).getStructuredFieldIntroducer().getSFTypeID());
+  }
+
+  @Test
+  public void testReuseAndFixedData() throws Exception {
+    LND_LineDescriptor first = lnd(1, 2);
+    first.getFlags().add(LND_Flag.ReuseRecord_DoReuse);
+    first.setNextLNDIfReusingData(3);
+    first.setDataLength(3);
+    LND_LineDescriptor second = lnd(2, 2);
+    // Presents the fields of the first and the fixed data of the second LND.
+    LND_LineDescriptor reuse = lnd(3, 2);
+    reuse.getFlags().add(LND_Flag.ReuseRecord_DoReuse);
+    reuse.getFlags().add(LND_Flag.SetTextColor_AsSpecified);
+    reuse.setTextColor(AFPColorValue.Red_0x02);
+    reuse.setDataStartPosition(3);
+    reuse.setNextLNDIfReusingData(4);
+    LND_LineDescriptor fixed = lnd(4, 2);
+    fixed.getFlags().add(LND_Flag.UseFixedData_DoPresent);
+    fixed.setDataStartPosition(6);
+    fixed.setDataLength(5);
+
+    List<StructuredField> pageDefinition = pageDefinition("DM1", first, second, reuse, fixed);
+    FDX_FixedDataText fdx = new FDX_FixedDataText();
+    fdx.setText("PAGE: FIXED");
+    pageDefinition.add(pageDefinition.size() - 1, fdx);
+
+    LineDataFormatter formatter = new LineDataFormatter(pageDefinition, config);
+    List<List<String>> pages = pages(parse(format(formatter, records(SPACE, "ABCDEF", SPACE, "GHIJKL"))));
+    assertEquals(1, pages.size());
+    assertEquals(Arrays.asList("ABC", "DEF", "FIXED", "GHIJKL"), pages.get(0));
+  }
+
+  @Test
+  public void testConditionalProcessing() throws Exception {
+    CCP_RepeatingGroup rg = new CCP_RepeatingGroup();
+    rg.setTimingOfAction(CCP_TimingOfAction.Immediately);
+    rg.setMediumMapAction(CCP_MediumMapAction.InvokeNamedMediumMap);
+    rg.setMediumMapName("MM2");
+    rg.setDataMapAction(CCP_DataMapAction.InvokeNamedDataMap);
+    rg.setDataMapName("DM2");
+    rg.setComparison(CCP_Comparison.EqualTo);
+    rg.setComparisonString("NEW");
+    CCP_ConditionalProcessingControl ccp = new CCP_ConditionalProcessingControl();
+    ccp.setCcpIdentifier(1);
+    ccp.setLengthOfComparisonString(3);
+    ccp.setRepeatingGroups(Arrays.asList(rg));
+
+    LND_LineDescriptor[] lnds = new LND_LineDescriptor[]{lnd(1, 5), lnd(2, 5), lnd(3, 5), lnd(4, 5), lnd(5, 5)};
+    for (LND_LineDescriptor lnd : lnds) {
+      lnd.getFlags().add(LND_Flag.ConditionalProcessing_DoPerformCP);
+      lnd.setCcpIdentifier(1);
+    }
+    List<StructuredField> pageDefinition = new ArrayList<StructuredField>();
+    pageDefinition.add(ccp);
+    pageDefinition.addAll(pageDefinition("DM1", lnds));
+    pageDefinition.addAll(pageDefinition("DM2", lnd(1, 2), lnd(2, 2)));
+
+    LineDataFormatter formatter = new LineDataFormatter(pageDefinition, config);
+    List<StructuredField> sfs = parse(format(formatter, records(
+        SPACE, "OLD 1", SPACE, "OLD 2", SPACE, "NEW 3", SPACE, "OLD 4", SPACE, "OLD 5")));
+
+    // The CCP invokes DM2, which has two lines per page, before NEW 3.
+    List<List<String>> pages = pages(sfs);
+    assertEquals(Arrays.asList(Arrays.asList("OLD 1", "OLD 2"), Arrays.asList("NEW 3", "OLD 4"), Arrays.asList("OLD 5")), pages);
+
+    int nrOfIMMs = 0;
+    for (StructuredField sf : sfs) {
+      if (sf instanceof IMM_InvokeMediumMap) {
+        nrOfIMMs++;
+        assertEquals("MM2", ((IMM_InvokeMediumMap) sf).getName().trim());
+      }
+    }
+    assertEquals(1, nrOfIMMs);
+  }
+
+  @Test
+  public void testMixedMode() throws Exception {
+    List<StructuredField> pageDefinition = pageDefinition("DM1", lnd(1, 5), lnd(2, 5), lnd(3, 5), lnd(4, 5), lnd(5, 5));
+    pageDefinition.addAll(pageDefinition("DM2", lnd(1, 1)));
+    LineDataFormatter formatter = new LineDataFormatter(pageDefinition, config);
+
+    byte[] idm = {0x5A, 0x00, 0x10, (byte) 0xD3, (byte) 0xAB, (byte) 0xCA, 0x00, 0x00, 0x00,
+        (byte) 0xC4, (byte) 0xD4, (byte) 0xF2, 0x40, 0x40, 0x40, 0x40, 0x40};
+    byte[] nop = {0x5A, 0x00, 0x09, (byte) 0xD3, (byte) 0xEE, (byte) 0xEE, 0x00, 0x00, 0x00, (byte) 0xC1};
+    ByteArrayOutputStream records = new ByteArrayOutputStream();
+    records.write(records(SPACE, "L1", SPACE, "L2"));
+    records.write(0);
+    records.write(nop.length + 4);
+    records.write(new byte[2]);
+    records.write(nop);
+    records.write(0);
+    records.write(idm.length + 4);
+    records.write(new byte[2]);
+    records.write(idm);
+    records.write(records(SPACE, "L3", SPACE, "L4"));
+
+    List<StructuredField> sfs = parse(format(formatter, records.toByteArray()));
+    assertEquals(Arrays.asList(Arrays.asList("L1", "L2"), Arrays.asList("L3"), Arrays.asList("L4")), pages(sfs));
+    int nopIndex = -1;
+    int firstEPG = -1;
+    for (int i = 0; i < sfs.size(); i++) {
+      SFTypeID type = sfs.get(i).getStructuredFieldIntroducer().getSFTypeID();
+      if (type == SFTypeID.NOP_NoOperation) {
+        nopIndex = i;
+      } else if (type == SFTypeID.EPG_EndPage && firstEPG < 0) {
+        firstEPG = i;
+      }
+    }
+    assertTrue(nopIndex >= 0 && nopIndex < firstEPG);
+  }
+
+  @Test
+  public void testRecordFormat() throws Exception {
+    RCD_RecordDescriptor trailer = rcd("FOOT", RCD_XMD_RecordTypeElementType.PageTrailer, 280, false);
+    RCD_RecordDescriptor body = rcd("BODY", RCD_XMD_RecordTypeElementType.Body, 50, true);
+    body.setEndSpace(50);
+    RCD_RecordDescriptor newPage = rcd("CHAPTER", RCD_XMD_RecordTypeElementType.Body, 50, true);
+    newPage.getFlags().remove(RCD_Flag.NewPage_NoEffect);
+    newPage.getFlags().add(RCD_Flag.NewPage_LogicalPageEject);
+    LineDataFormatter formatter = new LineDataFormatter(pageDefinition("DM1", 300,
+        rcd("HEADER", RCD_XMD_RecordTypeElementType.PageHeader, 100, false), trailer, body, newPage), config);
+
+    List<List<String>> pages = pages(parse(format(formatter, records(
+        SPACE, "HEADER    TITLE", SPACE, "FOOT      END", SPACE, "UNKNOWN   X",
+        SPACE, "BODY      L1", SPACE, "BODY      L2", SPACE, "BODY      L3", SPACE, "BODY      L4",
+        SPACE, "CHAPTER   C1", SPACE, "BODY      L5"))));
+
+    // Three body records fit between the header at 100 and the end space of 50 to the depth of 300.
+    assertEquals(Arrays.asList(
+        Arrays.asList("TITLE", "L1", "L2", "L3", "END"),
+        Arrays.asList("TITLE", "L4", "END"),
+        Arrays.asList("TITLE", "C1", "L5", "END")), pages);
+  }
+
+  @Test
+  public void testRecordFormatFields() throws Exception {
+    int delimiter = ";".getBytes(config.getAfpCharSet())[0] & 0xFF;
+    RCD_RecordDescriptor row = rcd("ROW", RCD_XMD_RecordTypeElementType.Body, 150, false);
+    row.setFieldRCDPointer(2);
+    RCD_RecordDescriptor second = rcd("", RCD_XMD_RecordTypeElementType.Body, 0, true);
+    second.getFlags().remove(RCD_Flag.FieldRCD_RecordRCD);
+    second.getFlags().add(RCD_Flag.FieldRCD_FieldRCD);
+    second.setFieldDelimiter(delimiter);
+    second.setFieldNumber(2);
+    second.setFieldRCDPointer(3);
+    RCD_RecordDescriptor first = rcd("", RCD_XMD_RecordTypeElementType.Body, 0, true);
+    first.getFlags().remove(RCD_Flag.FieldRCD_RecordRCD);
+    first.getFlags().add(RCD_Flag.FieldRCD_FieldRCD);
+    first.setFieldDelimiter(delimiter);
+    first.setFieldNumber(1);
+    first.setDataLength(1);
+    LineDataFormatter formatter = new LineDataFormatter(pageDefinition("DM1", 0, row, second, first), config);
+
+    List<List<String>> pages = pages(parse(format(formatter, records(SPACE, "ROW       AA;BB;CC", SPACE, "ROW       ;DD"))));
+    // The empty first field of the second record presents no text.
+    assertEquals(Arrays.asList(Arrays.asList("BB", "A", "DD")), pages);
+  }
+
+  @Test
+  public void testRecordFormatConditionalProcessing() throws Exception {
+    CCP_RepeatingGroup rg = new CCP_RepeatingGroup();
+    rg.setTimingOfAction(CCP_TimingOfAction.Immediately);
+    rg.setDataMapAction(CCP_DataMapAction.InvokeNamedDataMap);
+    rg.setDataMapName("DM2");
+    rg.setComparison(CCP_Comparison.EqualTo);
+    rg.setComparisonString("NEW");
+    CCP_ConditionalProcessingControl ccp = new CCP_ConditionalProcessingControl();
+    ccp.setCcpIdentifier(1);
+    ccp.setLengthOfComparisonString(3);
+    ccp.setRepeatingGroups(Arrays.asList(rg));
+
+    RCD_RecordDescriptor row = rcd("ROW", RCD_XMD_RecordTypeElementType.Body, 50, true);
+    row.getFlags().remove(RCD_Flag.ConditionalProcessing_DoNotPerformCP);
+    row.getFlags().add(RCD_Flag.ConditionalProcessing_DoPerformCP);
+    row.setCcpIdentifier(1);
+    List<StructuredField> pageDefinition = new ArrayList<StructuredField>();
+    pageDefinition.add(ccp);
+    pageDefinition.addAll(pageDefinition("DM1", 0, row));
+    pageDefinition.addAll(pageDefinition("DM2", lnd(1, 2), lnd(2, 2)));
+
+    LineDataFormatter formatter = new LineDataFormatter(pageDefinition, config);
+    List<List<String>> pages = pages(parse(format(formatter, records(
+        SPACE, "ROW       OLD 1", SPACE, "ROW       OLD 2", SPACE, "ROW       NEW 3", SPACE, "ROW       OLD 4"))));
+
+    // The CCP invokes DM2 of traditional line data, whose LNDs present the whole record.
+    assertEquals(Arrays.asList(Arrays.asList("OLD 1", "OLD 2"), Arrays.asList("ROW       NEW 3", "ROW       OLD 4")), pages);
+  }
+
+  @Test(expected = AFPParserException.class)
+  public void testXMLDataMapIsRejected() throws Exception {
+    List<StructuredField> pageDefinition = pageDefinition("DM1", lnd(1, 1));
+    pageDefinition.add(pageDefinition.size() - 1, new XMD_XMLDescriptor());
+    new LineDataFormatter(pageDefinition, config);
+  }
+
+  @Test
+  public void testSharedByThreads() throws Exception {
+    List<StructuredField> pageDefinition = pageDefinition("DM1", lnd(1, 4), lnd(2, 4), lnd(3, 4), lnd(4, 4));
+    Object[] ccAndText = new Object[4000];
+    for (int i = 0; i < ccAndText.length; i += 2) {
+      ccAndText[i] = i % 26 == 0 ? SKIP_TO_CHANNEL_1 : SPACE;
+      ccAndText[i + 1] = "LINE " + i / 2;
+    }
+    final byte[] records = records(ccAndText);
+
+    byte[] expected = format(new LineDataFormatter(pageDefinition, config), records);
+    final LineDataFormatter shared = new LineDataFormatter(pageDefinition, config);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<byte[]>> results = new ArrayList<Future<byte[]>>();
+      for (int i = 0; i < 8; i++) {
+        results.add(executor.submit(new Callable<byte[]>() {
+          @Override
+          public byte[] call() throws Exception {
+            return format(shared, records);
+          }
+        }));
+      }
+      for (Future<byte[]> result : results) {
+        assertArrayEquals(expected, result.get());
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    int nrOfLines = 0;
+    List<List<String>> pages = pages(parse(expected));
+    for (List<String> page : pages) {
+      nrOfLines += page.size();
+    }
+    assertEquals(2000, nrOfLines);
+    assertEquals(8 * pages.size(), shared.getNrOfPages());
+    assertEquals(8 * 2000, shared.getNrOfRecords());
+  }
+}
@@ -0,0 +1,169 @@
+/*
+Copyright 2015 Rudolf Fiala
+
+This file is part of Alpheus AFP Parser.
+
+Alpheus AFP Parser is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Alpheus AFP Parser is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Alpheus AFP Parser.  If not, see <http://www.gnu.org/licenses/>
+*/
+package com.mgz.afp.parser;
+
+import com.mgz.afp.base.StructuredField;
+import com.mgz.afp.base.StructuredFieldBaseName;
+import com.mgz.afp.base.StructuredFieldIntroducer;
+import com.mgz.afp.enums.SFTypeID;
+import com.mgz.afp.modca.BDT_BeginDocument;
+import com.mgz.afp.modca.BPG_BeginPage;
+import com.mgz.afp.modca.EDT_EndDocument;
+import com.mgz.afp.modca.EPG_EndPage;
+import com.mgz.afp.modca.NOP_NoOperation;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+
+public class AFPParserMemoryMappedTest {
+  private static final int NR_OF_PAGES = 20;
+  private static File afpFile;
+
+  @BeforeClass
+  public static void createAFPFile() throws Exception {
+    afpFile = File.createTempFile(AFPParserMemoryMappedTest.class.getSimpleName(), ".afp");
+    AFPParserConfiguration pc = new AFPParserConfiguration();
+    OutputStream os = new FileOutputStream(afpFile);
+    try {
+      writeNamedSF(os, new BDT_BeginDocument(), SFTypeID.BDT_BeginDocument, "DOC00001", pc);
+      for (int i = 0; i < NR_OF_PAGES; i++) {
+        writeNamedSF(os, new BPG_BeginPage(), SFTypeID.BPG_BeginPage, "PAGE" + (1000 + i), pc);
+
+        // Large NOPs make the file span several mapped windows of minimal size.
+        NOP_NoOperation nop = new NOP_NoOperation();
+        nop.setStructuredFieldIntroducer(createSFI(SFTypeID.NOP_NoOperation));
+        byte[] data = new byte[10000 + i];
+        for (int j = 0; j < data.length; j++) {
+          data[j] = (byte) (i + j);
+        }
+        nop.setData(data);
+        if (i % 2 == 0) {
+          nop.setPadding(new byte[] {0x00, 0x00, 0x03});
+        }
+        nop.writeAFP(os, pc);
+
+        writeNamedSF(os, new EPG_EndPage(), SFTypeID.EPG_EndPage, "PAGE" + (1000 + i), pc);
+      }
+      writeNamedSF(os, new EDT_EndDocument(), SFTypeID.EDT_EndDocument, "DOC00001", pc);
+    } finally {
+      os.close();
+    }
+  }
+
+  @AfterClass
+  public static void deleteAFPFile() {
+    if (afpFile != null) {
+      afpFile.delete();
+    }
+  }
+
+  private static StructuredFieldIntroducer createSFI(SFTypeID sfTypeID) {
+    StructuredFieldIntroducer sfi = new StructuredFieldIntroducer();
+    sfi.setSFTypeID(sfTypeID);
+    return sfi;
+  }
+
+  private static void writeNamedSF(OutputStream os, StructuredFieldBaseName sf, SFTypeID sfTypeID, String name, AFPParserConfiguration pc) throws Exception {
+    sf.setStructuredFieldIntroducer(createSFI(sfTypeID));
+    sf.setName(name);
+    sf.writeAFP(os, pc);
+  }
+
+  private static List<StructuredField> parseAll(AFPParserConfiguration pc) throws Exception {
+    List<StructuredField> sfs = new ArrayList<StructuredField>();
+    AFPParser parser = new AFPParser(pc);
+    try {
+      StructuredField sf;
+      while ((sf = parser.parseNextSF()) != null) {
+        sfs.add(sf);
+      }
+    } finally {
+      parser.quitParsing();
+    }
+    return sfs;
+  }
+
+  @Test
+  public void testMappedParsingEqualsStreamParsing() throws Exception {
+    AFPParserConfiguration streamConf = new AFPParserConfiguration();
+    streamConf.setInputStream(new FileInputStream(afpFile));
+    List<StructuredField> expected = parseAll(streamConf);
+
+    AFPParserConfiguration mappedConf = new AFPParserConfiguration();
+    mappedConf.setAFPFile(afpFile);
+    mappedConf.setMemoryMapped(true);
+    mappedConf.setMemoryMappedWindowSize(MappedAFPFile.MIN_WINDOW_SIZE);
+    List<StructuredField> actual = parseAll(mappedConf);
+
+    assertEquals(2 + 3 * NR_OF_PAGES, actual.size());
+    assertEquals(expected.size(), actual.size());
+
+    ByteArrayOutputStream expectedBytes = new ByteArrayOutputStream();
+    ByteArrayOutputStream actualBytes = new ByteArrayOutputStream();
+    for (int i = 0; i < expected.size(); i++) {
+      StructuredField e = expected.get(i);
+      StructuredField a = actual.get(i);
+      assertEquals(e.getClass(), a.getClass());
+      assertEquals(e.getStructuredFieldIntroducer().getFileOffset(), a.getStructuredFieldIntroducer().getFileOffset());
+      assertEquals(e.getStructuredFieldIntroducer().getSFLength(), a.getStructuredFieldIntroducer().getSFLength());
+      assertArrayEquals(e.getPadding(), a.getPadding());
+
+      expectedBytes.reset();
+      actualBytes.reset();
+      e.writeAFP(expectedBytes, streamConf);
+      a.writeAFP(actualBytes, mappedConf);
+      assertArrayEquals(expectedBytes.toByteArray(), actualBytes.toByteArray());
+    }
+    assertEquals("PAGE1000", ((BPG_BeginPage) actual.get(1)).getName());
+  }
+
+  @Test
+  public void testMappedParsingShallow() throws Exception {
+    AFPParserConfiguration mappedConf = new AFPParserConfiguration();
+    mappedConf.setAFPFile(afpFile);
+    mappedConf.setMemoryMapped(true);
+    mappedConf.setBuildShallow(true);
+    List<StructuredField> actual = parseAll(mappedConf);
+
+    assertEquals(2 + 3 * NR_OF_PAGES, actual.size());
+    BPG_BeginPage bpg = (BPG_BeginPage) actual.get(1);
+    assertTrue(bpg.isShallow());
+    assertNull(bpg.getName());
+
+    AFPParser.reload(bpg);
+    assertNotNull(bpg.getName());
+    assertEquals("PAGE1000", bpg.getName());
+  }
+}
@@ -0,0 +1,216 @@
+/*
+Copyright 2015 Rudolf Fiala
+
+This file is part of Alpheus AFP Parser.
+
+Alpheus AFP Parser is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Alpheus AFP Parser is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Alpheus AFP Parser.  If not, see <http://www.gnu.org/licenses/>
+*/
+package com.mgz.afp.parser;
+
+import com.mgz.afp.base.StructuredField;
+import com.mgz.afp.base.StructuredFieldIntroducer;
+import com.mgz.afp.enums.SFTypeID;
+import com.mgz.afp.modca.NOP_NoOperation;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+
+public class AFPParserReloadTest {
+  private static final int NR_OF_SFS = 200;
+  private static File afpFile;
+
+  @BeforeClass
+  public static void createAFPFile() throws Exception {
+    afpFile = File.createTempFile(AFPParserReloadTest.class.getSimpleName(), ".afp");
+    AFPParserConfiguration pc = new AFPParserConfiguration();
+    OutputStream os = new FileOutputStream(afpFile);
+    try {
+      for (int i = 0; i < NR_OF_SFS; i++) {
+        NOP_NoOperation nop = new NOP_NoOperation();
+        StructuredFieldIntroducer sfi = new StructuredFieldIntroducer();
+        sfi.setSFTypeID(SFTypeID.NOP_NoOperation);
+        nop.setStructuredFieldIntroducer(sfi);
+        nop.setData(createData(i));
+        if (i % 3 == 0) {
+          // Padding length > 127.
+          byte[] padding = new byte[200];
+          padding[padding.length - 1] = (byte) padding.length;
+          nop.setPadding(padding);
+        }
+        nop.writeAFP(os, pc);
+      }
+    } finally {
+      os.close();
+    }
+  }
+
+  @AfterClass
+  public static void deleteAFPFile() {
+    if (afpFile != null) {
+      afpFile.delete();
+    }
+  }
+
+  private static byte[] createData(int i) {
+    byte[] data = new byte[50 + i * 7];
+    for (int j = 0; j < data.length; j++) {
+      data[j] = (byte) (i * 31 + j);
+    }
+    return data;
+  }
+
+  private static List<StructuredField> parseShallow(boolean isMemoryMapped) throws Exception {
+    AFPParserConfiguration pc = new AFPParserConfiguration();
+    pc.setAFPFile(afpFile);
+    pc.setMemoryMapped(isMemoryMapped);
+    pc.setBuildShallow(true);
+    List<StructuredField> sfs = new ArrayList<StructuredField>();
+    AFPParser parser = new AFPParser(pc);
+    StructuredField sf;
+    while ((sf = parser.parseNextSF()) != null) {
+      sfs.add(sf);
+    }
+    parser.quitParsing();
+    assertEquals(NR_OF_SFS, sfs.size());
+    return sfs;
+  }
+
+  private static void assertReloaded(List<StructuredField> sfs) {
+    for (StructuredField sf : sfs) {
+      NOP_NoOperation nop = (NOP_NoOperation) sf;
+      // The data length identifies the SF.
+      int i = (nop.getData().length - 50) / 7;
+      assertArrayEquals(createData(i), nop.getData());
+      assertEquals(i % 3 == 0 ? 200 : 0, nop.getPadding() == null ? 0 : nop.getPadding().length);
+    }
+  }
+
+  @Test
+  public void testReloadSingle() throws Exception {
+    for (boolean isMemoryMapped : new boolean[] {false, true}) {
+      List<StructuredField> sfs = parseShallow(isMemoryMapped);
+      assertNull(((NOP_NoOperation) sfs.get(5)).getData());
+      for (int i = sfs.size() - 1; i >= 0; i--) {
+        AFPParser.reload(sfs.get(i));
+      }
+      assertReloaded(sfs);
+      sfs.get(0).getStructuredFieldIntroducer().getActualConfig().closeReloadChannel();
+    }
+  }
+
+  @Test
+  public void testReloadBatch() throws Exception {
+    List<StructuredField> sfs = parseShallow(true);
+    List<StructuredField> shuffled = new ArrayList<StructuredField>(sfs);
+    Collections.shuffle(shuffled, new java.util.Random(4711));
+    List<StructuredField> subset = shuffled.subList(0, NR_OF_SFS / 2);
+    AFPParser.reload(subset);
+    assertReloaded(subset);
+
+    // Closed channels are reopened.
+    sfs.get(0).getStructuredFieldIntroducer().getActualConfig().closeReloadChannel();
+    AFPParser.reload(sfs);
+    assertReloaded(sfs);
+    sfs.get(0).getStructuredFieldIntroducer().getActualConfig().closeReloadChannel();
+  }
+
+  @Test
+  public void testQuitParsingClosesReloadChannel() throws Exception {
+    AFPParserConfiguration pc = new AFPParserConfiguration();
+    pc.setAFPFile(afpFile);
+    pc.setBuildShallow(true);
+    AFPParser parser = new AFPParser(pc);
+    StructuredField first = parser.parseNextSF();
+    AFPParser.reload(first);
+    SharedFileChannel channel = first.getStructuredFieldIntroducer().getActualConfig().getReloadChannel();
+    assertTrue(channel.isOpen());
+
+    parser.quitParsing();
+    assertFalse(channel.isOpen());
+    // The channel is reopened by the next reload.
+    AFPParser.reload(first);
+    assertReloaded(Collections.singletonList(first));
+    pc.closeReloadChannel();
+    assertFalse(channel.isOpen());
+  }
+
+  @Test
+  public void testReloadConcurrent() throws Exception {
+    final List<StructuredField> sfs = parseShallow(false);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<Void>> futures = new ArrayList<Future<Void>>();
+      for (int t = 0; t < 4; t++) {
+        final int thread = t;
+        futures.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            for (int i = thread; i < sfs.size(); i += 4) {
+              AFPParser.reload(sfs.get(i));
+            }
+            return null;
+          }
+        }));
+      }
+      for (Future<Void> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+    assertReloaded(sfs);
+    sfs.get(0).getStructuredFieldIntroducer().getActualConfig().closeReloadChannel();
+  }
+
+  @Test
+  public void testReloadEqualsFullParsing() throws Exception {
+    AFPParserConfiguration pc = new AFPParserConfiguration();
+    pc.setInputStream(new FileInputStream(afpFile));
+    AFPParser parser = new AFPParser(pc);
+    List<StructuredField> expected = new ArrayList<StructuredField>();
+    StructuredField sf;
+    while ((sf = parser.parseNextSF()) != null) {
+      expected.add(sf);
+    }
+    parser.quitParsing();
+
+    List<StructuredField> actual = parseShallow(false);
+    AFPParser.reload(actual);
+    for (int i = 0; i < NR_OF_SFS; i++) {
+      assertArrayEquals(((NOP_NoOperation) expected.get(i)).getData(), ((NOP_NoOperation) actual.get(i)).getData());
+      assertArrayEquals(expected.get(i).getPadding(), actual.get(i).getPadding());
+    }
+    actual.get(0).getStructuredFieldIntroducer().getActualConfig().closeReloadChannel();
+  }
+}
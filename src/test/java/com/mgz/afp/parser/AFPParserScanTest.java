@@ -0,0 +1,185 @@
+/*
+Copyright 2015 Rudolf Fiala
+
+This file is part of Alpheus AFP Parser.
+
+Alpheus AFP Parser is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Alpheus AFP Parser is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Alpheus AFP Parser.  If not, see <http://www.gnu.org/licenses/>
+*/
+package com.mgz.afp.parser;
+
+import com.mgz.afp.base.StructuredField;
+import com.mgz.afp.base.StructuredFieldIntroducer;
+import com.mgz.afp.base.StructuredFieldIntroducerView;
+import com.mgz.afp.enums.SFFlag;
+import com.mgz.afp.enums.SFTypeID;
+import com.mgz.afp.exceptions.AFPParserException;
+import com.mgz.afp.modca.NOP_NoOperation;
+import com.mgz.afp.writer.AFPCorpusGenerator;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+public class AFPParserScanTest {
+  private static final byte[] EXTENSION = {1, 2, 3, 4, 5};
+  private static File afpFile;
+  private static List<StructuredFieldIntroducer> expected;
+
+  @BeforeClass
+  public static void createAFPFile() throws Exception {
+    afpFile = File.createTempFile(AFPParserScanTest.class.getSimpleName(), ".afp");
+    AFPCorpusGenerator generator = new AFPCorpusGenerator(11);
+    generator.setNrOfPageGroups(2);
+    generator.setNrOfPages(2);
+    OutputStream os = new FileOutputStream(afpFile);
+    try {
+      generator.generate(os);
+
+      NOP_NoOperation nop = new NOP_NoOperation();
+      StructuredFieldIntroducer sfi = new StructuredFieldIntroducer();
+      sfi.setSFTypeID(SFTypeID.NOP_NoOperation);
+      sfi.setExtensionData(EXTENSION);
+      nop.setStructuredFieldIntroducer(sfi);
+      nop.setData(new byte[100]);
+      nop.writeAFP(os, new AFPParserConfiguration());
+    } finally {
+      os.close();
+    }
+
+    AFPParserConfiguration pc = new AFPParserConfiguration();
+    pc.setInputStream(new FileInputStream(afpFile));
+    pc.setParseToStructuredFieldsBaseData(true);
+    AFPParser parser = new AFPParser(pc);
+    expected = new ArrayList<StructuredFieldIntroducer>();
+    StructuredField sf;
+    while ((sf = parser.parseNextSF()) != null) {
+      expected.add(sf.getStructuredFieldIntroducer());
+    }
+    pc.getInputStream().close();
+  }
+
+  @AfterClass
+  public static void deleteAFPFile() {
+    if (afpFile != null) {
+      afpFile.delete();
+    }
+  }
+
+  private static void assertScan(AFPParserConfiguration pc) throws Exception {
+    AFPParser parser = new AFPParser(pc);
+    StructuredFieldIntroducerView first = null;
+    int i = 0;
+    StructuredFieldIntroducerView view;
+    while ((view = parser.scanNextSF()) != null) {
+      if (first == null) {
+        first = view;
+      }
+      assertSame("The view is reused.", first, view);
+      StructuredFieldIntroducer sfi = expected.get(i++);
+      assertEquals(sfi.getFileOffset(), view.getFileOffset());
+      assertEquals(sfi.getSFLength(), view.getSFLength());
+      assertEquals(sfi.getSFTypeID(), view.getSFTypeID());
+      assertEquals(sfi.getLengthOfStructuredFieldIntroducerIncludingExtension(), view.getLengthOfStructuredFieldIntroducerIncludingExtension());
+    }
+    assertEquals(expected.size(), i);
+    assertEquals(afpFile.length(), parser.getCountReadByte());
+    assertNull(parser.scanNextSF());
+    parser.quitParsing();
+  }
+
+  @Test
+  public void testScanStream() throws Exception {
+    AFPParserConfiguration pc = new AFPParserConfiguration();
+    pc.setInputStream(new FileInputStream(afpFile));
+    try {
+      assertScan(pc);
+    } finally {
+      pc.getInputStream().close();
+    }
+  }
+
+  @Test
+  public void testScanMemoryMapped() throws Exception {
+    AFPParserConfiguration pc = new AFPParserConfiguration();
+    pc.setAFPFile(afpFile);
+    pc.setMemoryMapped(true);
+    assertScan(pc);
+  }
+
+  @Test
+  public void testScanStreamWithLongPayload() throws Exception {
+    // A NOP with the maximum SF length, followed by a truncated NOP.
+    int sfLength = 0xFFFF;
+    byte[] data = new byte[1 + sfLength + 9 + 10];
+    byte[] nop = {0x5A, (byte) (sfLength >> 8), (byte) sfLength, (byte) 0xD3, (byte) 0xEE, (byte) 0xEE, 0x00, 0x00, 0x00};
+    System.arraycopy(nop, 0, data, 0, nop.length);
+    data[sfLength] = 0x01;
+    nop[2] = (byte) 0x20;
+    System.arraycopy(nop, 0, data, 1 + sfLength, nop.length);
+
+    AFPParserConfiguration pc = new AFPParserConfiguration();
+    pc.setInputStream(new ByteArrayInputStream(data));
+    AFPParser parser = new AFPParser(pc);
+    assertEquals(sfLength, parser.scanNextSFWithPayload().getSFLength());
+    ByteBuffer payload = parser.getScannedPayload();
+    assertEquals(sfLength - 8, payload.remaining());
+    assertEquals(0x01, payload.get(payload.limit() - 1));
+    try {
+      parser.scanNextSFWithPayload();
+      fail();
+    } catch (AFPParserException e) {
+      assertEquals("Reached end of file before end of structured field.", e.getMessage());
+    }
+  }
+
+  @Test
+  public void testMaterializeExtension() throws Exception {
+    StructuredFieldIntroducer last = expected.get(expected.size() - 1);
+    assertTrue(last.isFlagSet(SFFlag.hasExtension));
+    assertArrayEquals(EXTENSION, last.getExtensionData());
+
+    AFPParserConfiguration pc = new AFPParserConfiguration();
+    pc.setAFPFile(afpFile);
+    pc.setMemoryMapped(true);
+    AFPParser parser = new AFPParser(pc);
+    StructuredFieldIntroducerView view;
+    StructuredFieldIntroducer sfi = null;
+    while ((view = parser.scanNextSF()) != null) {
+      sfi = view.toStructuredFieldIntroducer();
+    }
+    parser.quitParsing();
+
+    assertEquals(last.getFileOffset(), sfi.getFileOffset());
+    assertEquals(last.getFlagByte(), sfi.getFlagByte());
+    assertArrayEquals(EXTENSION, sfi.getExtensionData());
+    assertArrayEquals(last.toBytes(), sfi.toBytes());
+  }
+}
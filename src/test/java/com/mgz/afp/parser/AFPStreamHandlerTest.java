@@ -0,0 +1,188 @@
+/*
+Copyright 2015 Rudolf Fiala
+
+This file is part of Alpheus AFP Parser.
+
+Alpheus AFP Parser is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Alpheus AFP Parser is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Alpheus AFP Parser.  If not, see <http://www.gnu.org/licenses/>
+*/
+package com.mgz.afp.parser;
+
+import com.mgz.afp.base.StructuredField;
+import com.mgz.afp.base.StructuredFieldBaseName;
+import com.mgz.afp.base.StructuredFieldIntroducer;
+import com.mgz.afp.enums.SFTypeID;
+import com.mgz.afp.modca.BNG_BeginNamedPageGroup;
+import com.mgz.afp.modca.BPG_BeginPage;
+import com.mgz.afp.modca.ENG_EndNamedPageGroup;
+import com.mgz.afp.modca.EPG_EndPage;
+import com.mgz.afp.modca.NOP_NoOperation;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+public class AFPStreamHandlerTest {
+  private static final int NR_OF_GROUPS = 4;
+  private static final int NR_OF_PAGES_PER_GROUP = 5;
+  private static File afpFile;
+
+  @BeforeClass
+  public static void createAFPFile() throws Exception {
+    afpFile = File.createTempFile(AFPStreamHandlerTest.class.getSimpleName(), ".afp");
+    AFPParserConfiguration pc = new AFPParserConfiguration();
+    OutputStream os = new FileOutputStream(afpFile);
+    try {
+      for (int g = 0; g < NR_OF_GROUPS; g++) {
+        writeNamedSF(os, new BNG_BeginNamedPageGroup(), SFTypeID.BNG_BeginNamedPageGroup, "GROUP" + g, pc);
+        for (int p = 0; p < NR_OF_PAGES_PER_GROUP; p++) {
+          writeNamedSF(os, new BPG_BeginPage(), SFTypeID.BPG_BeginPage, "PAGE" + p, pc);
+          NOP_NoOperation nop = new NOP_NoOperation();
+          StructuredFieldIntroducer sfi = new StructuredFieldIntroducer();
+          sfi.setSFTypeID(SFTypeID.NOP_NoOperation);
+          nop.setStructuredFieldIntroducer(sfi);
+          nop.setData(new byte[1000 + p]);
+          nop.writeAFP(os, pc);
+          writeNamedSF(os, new EPG_EndPage(), SFTypeID.EPG_EndPage, "PAGE" + p, pc);
+        }
+        writeNamedSF(os, new ENG_EndNamedPageGroup(), SFTypeID.ENG_EndNamedPageGroup, "GROUP" + g, pc);
+      }
+    } finally {
+      os.close();
+    }
+  }
+
+  @AfterClass
+  public static void deleteAFPFile() {
+    if (afpFile != null) {
+      afpFile.delete();
+    }
+  }
+
+  private static void writeNamedSF(OutputStream os, StructuredFieldBaseName sf, SFTypeID sfTypeID, String name, AFPParserConfiguration pc) throws Exception {
+    StructuredFieldIntroducer sfi = new StructuredFieldIntroducer();
+    sfi.setSFTypeID(sfTypeID);
+    sf.setStructuredFieldIntroducer(sfi);
+    sf.setName(name);
+    sf.writeAFP(os, pc);
+  }
+
+  private static AFPParserConfiguration createConfiguration(boolean isMemoryMapped) throws Exception {
+    AFPParserConfiguration pc = new AFPParserConfiguration();
+    if (isMemoryMapped) {
+      pc.setAFPFile(afpFile);
+      pc.setMemoryMapped(true);
+    } else {
+      pc.setInputStream(new FileInputStream(afpFile));
+    }
+    return pc;
+  }
+
+  @Test
+  public void testHandlerCallbacks() throws Exception {
+    final List<String> events = new ArrayList<String>();
+    AFPParser parser = new AFPParser(createConfiguration(false));
+    parser.parse(new AFPStreamHandler() {
+      @Override
+      public void onBegin(StructuredField sf) {
+        events.add("B" + sf.getStructuredFieldIntroducer().getSFTypeID().name().substring(0, 3));
+      }
+
+      @Override
+      public void onEnd(StructuredField sf) {
+        events.add("E" + sf.getStructuredFieldIntroducer().getSFTypeID().name().substring(0, 3));
+      }
+
+      @Override
+      public void onField(StructuredField sf) {
+        events.add("F" + sf.getStructuredFieldIntroducer().getSFTypeID().name().substring(0, 3));
+      }
+
+      @Override
+      public void onEndOfStream() {
+        events.add("EOS");
+      }
+    });
+    parser.quitParsing();
+
+    assertEquals(NR_OF_GROUPS * (2 + 3 * NR_OF_PAGES_PER_GROUP) + 1, events.size());
+    assertEquals("BBNG", events.get(0));
+    assertEquals("BBPG", events.get(1));
+    assertEquals("FNOP", events.get(2));
+    assertEquals("EEPG", events.get(3));
+    assertEquals("EOS", events.get(events.size() - 1));
+  }
+
+  @Test
+  public void testFilter() throws Exception {
+    // Offsets of all SFs.
+    List<Long> allOffsets = new ArrayList<Long>();
+    AFPParser parser = new AFPParser(createConfiguration(false));
+    StructuredField sf;
+    while ((sf = parser.parseNextSF()) != null) {
+      allOffsets.add(sf.getStructuredFieldIntroducer().getFileOffset());
+    }
+    parser.quitParsing();
+
+    for (boolean isMemoryMapped : new boolean[] {false, true}) {
+      AFPParserConfiguration pc = createConfiguration(isMemoryMapped);
+      pc.setSFTypeIDFilter(EnumSet.of(SFTypeID.BPG_BeginPage, SFTypeID.ENG_EndNamedPageGroup));
+
+      final List<Long> offsets = new ArrayList<Long>();
+      final int[] counts = new int[2];
+      parser = new AFPParser(pc);
+      parser.parse(new AFPStreamHandler() {
+        @Override
+        public void onBegin(StructuredField sf) {
+          assertTrue(sf instanceof BPG_BeginPage);
+          assertTrue(((BPG_BeginPage) sf).getName().startsWith("PAGE"));
+          offsets.add(sf.getStructuredFieldIntroducer().getFileOffset());
+          counts[0]++;
+        }
+
+        @Override
+        public void onEnd(StructuredField sf) {
+          assertTrue(sf instanceof ENG_EndNamedPageGroup);
+          offsets.add(sf.getStructuredFieldIntroducer().getFileOffset());
+          counts[1]++;
+        }
+
+        @Override
+        public void onSkippedField(SFTypeID sfTypeID, long fileOffset, int sfLength) {
+          assertTrue(sfTypeID != SFTypeID.BPG_BeginPage && sfTypeID != SFTypeID.ENG_EndNamedPageGroup);
+          offsets.add(fileOffset);
+        }
+      });
+      parser.quitParsing();
+
+      assertEquals(NR_OF_GROUPS * NR_OF_PAGES_PER_GROUP, counts[0]);
+      assertEquals(NR_OF_GROUPS, counts[1]);
+      assertEquals(allOffsets, offsets);
+      assertEquals(allOffsets.size() - counts[0] - counts[1], parser.getNrOfSFSkipped());
+      assertEquals(counts[0] + counts[1], parser.getNrOfSFBuilt());
+      assertEquals(afpFile.length(), parser.getCountReadByte());
+    }
+  }
+}
@@ -0,0 +1,122 @@
+/*
+Copyright 2015 Rudolf Fiala
+
+This file is part of Alpheus AFP Parser.
+
+Alpheus AFP Parser is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Alpheus AFP Parser is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Alpheus AFP Parser.  If not, see <http://www.gnu.org/licenses/>
+*/
+package com.mgz.afp.parser;
+
+import com.mgz.afp.base.StructuredFieldIntroducer;
+import com.mgz.afp.enums.SFTypeID;
+import com.mgz.afp.modca.BPG_BeginPage;
+import com.mgz.afp.triplets.Triplet;
+import com.mgz.afp.triplets.Triplet.FullyQualifiedName;
+import com.mgz.afp.triplets.Triplet.TripletID;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+
+public class LazyTripletListTest {
+  // Two filler bytes, page name "PAGE0001", Comment triplet "ABC", FQN triplet "RESOURCE".
+  private static final byte[] DATA = {
+      0x00, 0x00,
+      (byte) 0xD7, (byte) 0xC1, (byte) 0xC7, (byte) 0xC5, (byte) 0xF0, (byte) 0xF0, (byte) 0xF0, (byte) 0xF1,
+      0x05, 0x65, (byte) 0xC1, (byte) 0xC2, (byte) 0xC3,
+      0x0C, 0x02, 0x0B, 0x00, (byte) 0xD9, (byte) 0xC5, (byte) 0xE2, (byte) 0xD6, (byte) 0xE4, (byte) 0xD9, (byte) 0xC3, (byte) 0xC5
+  };
+
+  private static BPG_BeginPage decode() throws Exception {
+    BPG_BeginPage bpg = new BPG_BeginPage();
+    StructuredFieldIntroducer sfi = new StructuredFieldIntroducer();
+    sfi.setSFTypeID(SFTypeID.BPG_BeginPage);
+    bpg.setStructuredFieldIntroducer(sfi);
+    bpg.decodeAFP(DATA, 2, DATA.length - 2, new AFPParserConfiguration());
+    return bpg;
+  }
+
+  private static byte[] writtenPayload(BPG_BeginPage bpg) throws Exception {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    bpg.writeAFP(baos, new AFPParserConfiguration());
+    byte[] sf = baos.toByteArray();
+    return Arrays.copyOfRange(sf, 9, sf.length);
+  }
+
+  @Test
+  public void testTripletsAreDecodedLazily() throws Exception {
+    BPG_BeginPage bpg = decode();
+    assertEquals("PAGE0001", bpg.getName());
+    LazyTripletList lazyTriplets = (LazyTripletList) bpg.getTriplets();
+    assertFalse(lazyTriplets.isMaterialized());
+
+    Triplet fqn = bpg.getTriplet(TripletID.FullyQualifiedName);
+    assertEquals("RESOURCE", ((FullyQualifiedName) fqn).getNameAsString());
+    assertNull(bpg.getTriplet(TripletID.MeasurementUnits));
+    assertFalse(lazyTriplets.isMaterialized());
+    assertArrayEquals(Arrays.copyOfRange(DATA, 2, DATA.length), writtenPayload(bpg));
+    assertFalse(lazyTriplets.isMaterialized());
+
+    List<Triplet> triplets = bpg.getTriplets();
+    assertEquals(2, triplets.size());
+    assertTrue(lazyTriplets.isMaterialized());
+    assertEquals(TripletID.Comment, triplets.get(0).getTripletID());
+    assertEquals(TripletID.FullyQualifiedName, bpg.getTriplet(TripletID.FullyQualifiedName).getTripletID());
+
+    triplets.remove(0);
+    byte[] expected = new byte[8 + 12];
+    System.arraycopy(DATA, 2, expected, 0, 8);
+    System.arraycopy(DATA, 15, expected, 8, 12);
+    assertArrayEquals(expected, writtenPayload(bpg));
+  }
+
+  @Test
+  public void testChangesToFetchedTripletsAreWritten() throws Exception {
+    BPG_BeginPage bpg = decode();
+    FullyQualifiedName fqn = (FullyQualifiedName) bpg.getTriplet(TripletID.FullyQualifiedName);
+    assertTrue(fqn == bpg.getTriplet(TripletID.FullyQualifiedName));
+    byte[] name = fqn.getNameAsBytes().clone();
+    name[7] = (byte) 0xF2;
+    fqn.setNameAsBytes(name);
+
+    byte[] expected = Arrays.copyOfRange(DATA, 2, DATA.length);
+    expected[expected.length - 1] = (byte) 0xF2;
+    assertArrayEquals(expected, writtenPayload(bpg));
+    assertFalse(((LazyTripletList) bpg.getTriplets()).isMaterialized());
+
+    // The fetched triplet takes the place of the decoded one.
+    assertTrue(fqn == bpg.getTriplets().get(1));
+    assertArrayEquals(expected, writtenPayload(bpg));
+  }
+
+  @Test
+  public void testUndefinedTripletKeepsOnlyItsData() throws Exception {
+    // Comment triplet, truncated Object Classification triplet, Comment triplet.
+    byte[] data = {0x03, 0x65, (byte) 0xC1, 0x06, 0x10, 0x00, 0x01, 0x00, 0x00, 0x03, 0x65, (byte) 0xC1};
+    List<Triplet> triplets = TripletParser.parseTriplets(data, 0, data.length, new AFPParserConfiguration());
+    assertEquals(3, triplets.size());
+    assertEquals(TripletID.Undefined, triplets.get(1).getTripletID());
+    assertArrayEquals(Arrays.copyOfRange(data, 3, 9), ((Triplet.Undefined) triplets.get(1)).getTripletData());
+    assertEquals(TripletID.Comment, triplets.get(2).getTripletID());
+  }
+}
@@ -0,0 +1,214 @@
+/*
+Copyright 2015 Rudolf Fiala
+
+This file is part of Alpheus AFP Parser.
+
+Alpheus AFP Parser is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Alpheus AFP Parser is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Alpheus AFP Parser.  If not, see <http://www.gnu.org/licenses/>
+*/
+package com.mgz.afp.parser;
+
+import com.mgz.afp.base.StructuredField;
+import com.mgz.afp.enums.SFTypeID;
+import com.mgz.afp.exceptions.AFPParserException;
+import com.mgz.afp.modca.NOP_NoOperation;
+import com.mgz.afp.parser.LineDataRecordReader.RecordFormat;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class LineDataRecordReaderTest {
+  /**
+   * A NOP structured field, whose payload contains a line feed.
+   */
+  private static final byte[] NOP = new byte[]{0x5A, 0x00, 0x0B, (byte) 0xD3, (byte) 0xEE, (byte) 0xEE, 0x00, 0x00, 0x00, (byte) 0xC1, 0x0A, (byte) 0xC3};
+
+  private static byte[] line(int cc, int trc, int length, int fill) {
+    byte[] line = new byte[length + 2];
+    line[0] = (byte) cc;
+    line[1] = (byte) trc;
+    Arrays.fill(line, 2, line.length, (byte) fill);
+    return line;
+  }
+
+  private static byte[] rdw(byte[]... records) {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    for (byte[] record : records) {
+      int length = record.length + 4;
+      baos.write(length >> 8);
+      baos.write(length);
+      baos.write(0);
+      baos.write(0);
+      baos.write(record, 0, record.length);
+    }
+    return baos.toByteArray();
+  }
+
+  private static byte[] data(LineDataRecordReader reader) {
+    ByteBuffer buffer = reader.getDataAsBuffer();
+    byte[] data = new byte[buffer.remaining()];
+    buffer.get(data);
+    return data;
+  }
+
+  @Test
+  public void testRDW() throws Exception {
+    byte[][] records = new byte[300][];
+    for (int r = 0; r < records.length; r++) {
+      records[r] = r % 10 == 0 ? NOP : line(0xF1 + r % 3, r % 4, r == 150 ? 1000 : r % 50, 0x40 + r % 0x80);
+    }
+    byte[] file = rdw(records);
+
+    // A small buffer, which has to be refilled, compacted and grown.
+    LineDataRecordReader reader = new LineDataRecordReader(new ByteArrayInputStream(file), RecordFormat.RDW, 64)
+        .setCarriageControl(true)
+        .setTableReferenceCharacter(true);
+    long fileOffset = 0;
+    for (int r = 0; r < records.length; r++) {
+      assertTrue(reader.next());
+      assertEquals(fileOffset, reader.getRecordFileOffset());
+      fileOffset += records[r].length + 4;
+      assertEquals(records[r].length, reader.getRecordLength());
+      if (records[r] == NOP) {
+        assertTrue(reader.isStructuredField());
+        assertEquals(0x5A, reader.getCarriageControl());
+        assertEquals(-1, reader.getTableReferenceCharacter());
+        assertEquals(SFTypeID.NOP_NoOperation, reader.getStructuredFieldIntroducer().getSFTypeID());
+        assertEquals(reader.getRecordFileOffset() + 4, reader.getStructuredFieldIntroducer().getFileOffset());
+        assertArrayEquals(Arrays.copyOfRange(NOP, 1, NOP.length), data(reader));
+      } else {
+        assertFalse(reader.isStructuredField());
+        assertNull(reader.getStructuredFieldIntroducer());
+        assertEquals(records[r][0] & 0xFF, reader.getCarriageControl());
+        assertEquals(records[r][1], reader.getTableReferenceCharacter());
+        assertArrayEquals(Arrays.copyOfRange(records[r], 2, records[r].length), data(reader));
+        assertEquals(reader.getRecordOffset() + 2, reader.getDataOffset());
+        assertEquals(records[r][2 % records[r].length], reader.getData()[reader.getRecordOffset() + 2 % records[r].length]);
+      }
+    }
+    assertFalse(reader.next());
+    assertEquals(records.length, reader.getNrOfRecords());
+    assertEquals(30, reader.getNrOfStructuredFields());
+  }
+
+  @Test
+  public void testDelimited() throws Exception {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    baos.write(line(0xF1, 0x00, 3, 0xC1));
+    baos.write(0x0D);
+    baos.write(0x0A);
+    baos.write(NOP);
+    baos.write(0x0A);
+    baos.write(NOP);
+    baos.write(0x40);
+    baos.write(0x0A);
+    baos.write(0x0A);
+    baos.write(line(0x40, 0x01, 2, 0xC2));
+    byte[] file = baos.toByteArray();
+
+    ByteBuffer direct = ByteBuffer.allocateDirect(file.length + 2);
+    direct.position(2);
+    direct.put(file);
+    direct.position(2);
+    ByteBuffer[] buffers = new ByteBuffer[]{ByteBuffer.wrap(file), direct};
+    for (ByteBuffer buffer : buffers) {
+      int position = buffer.position();
+      LineDataRecordReader reader = new LineDataRecordReader(buffer, RecordFormat.Delimited).setCarriageControl(true);
+      assertTrue(reader.next());
+      assertEquals(0xF1, reader.getCarriageControl());
+      assertArrayEquals(new byte[]{0x00, (byte) 0xC1, (byte) 0xC1, (byte) 0xC1}, data(reader));
+
+      assertTrue(reader.next());
+      assertTrue(reader.isStructuredField());
+      assertEquals(7, reader.getRecordFileOffset());
+      assertEquals(NOP.length, reader.getRecordLength());
+
+      assertTrue(reader.next());
+      assertTrue(reader.isStructuredField());
+
+      // The byte following the second NOP is no delimiter, and starts a record.
+      assertTrue(reader.next());
+      assertEquals(0x40, reader.getCarriageControl());
+      assertEquals(0, reader.getDataLength());
+
+      assertTrue(reader.next());
+      assertEquals(-1, reader.getCarriageControl());
+      assertEquals(0, reader.getRecordLength());
+
+      assertTrue(reader.next());
+      assertEquals(0x40, reader.getCarriageControl());
+      assertArrayEquals(new byte[]{0x01, (byte) 0xC2, (byte) 0xC2}, data(reader));
+      assertFalse(reader.next());
+      assertEquals(position, buffer.position());
+    }
+  }
+
+  @Test
+  public void testFixed() throws Exception {
+    byte[] file = new byte[3 * 20 + 5];
+    Arrays.fill(file, (byte) 0x40);
+    System.arraycopy(NOP, 0, file, 20, NOP.length);
+    LineDataRecordReader reader = new LineDataRecordReader(new ByteArrayInputStream(file), RecordFormat.Fixed)
+        .setFixedRecordLength(20)
+        .setTableReferenceCharacter(true);
+    assertTrue(reader.next());
+    assertEquals(0x40, reader.getTableReferenceCharacter());
+    assertEquals(19, reader.getDataLength());
+
+    assertTrue(reader.next());
+    assertEquals(20, reader.getRecordLength());
+    assertEquals(NOP.length - 1, reader.getDataLength());
+    StructuredField sf = reader.parseStructuredField(new AFPParserConfiguration());
+    assertTrue(sf instanceof NOP_NoOperation);
+    assertArrayEquals(new byte[]{(byte) 0xC1, 0x0A, (byte) 0xC3}, ((NOP_NoOperation) sf).getData());
+    assertEquals(20, sf.getStructuredFieldIntroducer().getFileOffset());
+
+    assertTrue(reader.next());
+    try {
+      reader.parseStructuredField(new AFPParserConfiguration());
+      fail();
+    } catch (AFPParserException e) {
+      // Expected, a line data record.
+    }
+    try {
+      reader.next();
+      fail();
+    } catch (AFPParserException e) {
+      // Expected, the last record is truncated.
+    }
+  }
+
+  @Test
+  public void testLineDataOnly() throws Exception {
+    byte[] file = rdw(NOP, line(0x09, 0x00, 4, 0xC1));
+    LineDataRecordReader reader = new LineDataRecordReader(ByteBuffer.wrap(file), RecordFormat.RDW).setMixedMode(false).setCarriageControl(true);
+    assertTrue(reader.next());
+    assertFalse(reader.isStructuredField());
+    assertEquals(0x5A, reader.getCarriageControl());
+    assertTrue(reader.next());
+    assertEquals(0x09, reader.getCarriageControl());
+    assertFalse(reader.next());
+    assertEquals(0, reader.getNrOfStructuredFields());
+  }
+}
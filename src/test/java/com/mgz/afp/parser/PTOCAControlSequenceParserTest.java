@@ -0,0 +1,56 @@
+/*
+Copyright 2015 Rudolf Fiala
+
+This file is part of Alpheus AFP Parser.
+
+Alpheus AFP Parser is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Alpheus AFP Parser is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Alpheus AFP Parser.  If not, see <http://www.gnu.org/licenses/>
+*/
+package com.mgz.afp.parser;
+
+import com.mgz.afp.ptoca.controlSequence.PTOCAControlSequence;
+import com.mgz.afp.ptoca.controlSequence.PTOCAControlSequence.ControlSequenceFunctionType;
+import com.mgz.afp.ptoca.controlSequence.PTOCAControlSequence.ControlSequenceIntroducer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+
+public class PTOCAControlSequenceParserTest {
+
+  @Test
+  public void testFunctionTypeValueOf() throws Exception {
+    for (short code = -1; code <= 0x100; code++) {
+      ControlSequenceFunctionType expected = ControlSequenceFunctionType.Undefined;
+      for (ControlSequenceFunctionType csft : ControlSequenceFunctionType.values()) {
+        if (csft.toByte(false) == code || csft.toByte(true) == code) {
+          expected = csft;
+          break;
+        }
+      }
+      assertEquals("0x" + Integer.toHexString(code), expected, ControlSequenceFunctionType.valueOf(code));
+    }
+  }
+
+  @Test
+  public void testCreateControlSequenceInstance() throws Exception {
+    for (ControlSequenceFunctionType csft : ControlSequenceFunctionType.values()) {
+      ControlSequenceIntroducer csi = new ControlSequenceIntroducer();
+      csi.setControlSequenceFunctionType(csft);
+      PTOCAControlSequence cs = PTOCAControlSequenceParser.createControlSequenceInstance(csi);
+      assertEquals(PTOCAControlSequence.class.getName() + "$" + csft.name(), cs.getClass().getName());
+      assertEquals(csi, cs.getCsi());
+    }
+  }
+}
@@ -0,0 +1,118 @@
+/*
+Copyright 2015 Rudolf Fiala
+
+This file is part of Alpheus AFP Parser.
+
+Alpheus AFP Parser is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Alpheus AFP Parser is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Alpheus AFP Parser.  If not, see <http://www.gnu.org/licenses/>
+*/
+package com.mgz.afp.parser;
+
+import com.mgz.afp.exceptions.AFPParserException;
+import com.mgz.afp.ptoca.controlSequence.PTOCAControlSequence;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+public class PTOCACursorTest {
+  // 2BD3, chained SCFL 1, AMB 0x0100, AMI 0x0010, TRN "AFP", RMI -8, unchained TRN "X".
+  private static final byte[] PAYLOAD = {
+      0x2B, (byte) 0xD3, 0x03, (byte) 0xF1, 0x01,
+      0x04, (byte) 0xD3, 0x01, 0x00,
+      0x04, (byte) 0xC7, 0x00, 0x10,
+      0x05, (byte) 0xDB, (byte) 0xC1, (byte) 0xC6, (byte) 0xD7,
+      0x04, (byte) 0xC8, (byte) 0xFF, (byte) 0xF8,
+      0x2B, (byte) 0xD3, 0x03, (byte) 0xDA, (byte) 0xE7
+  };
+
+  @Test
+  public void testCursorMatchesControlSequenceParser() throws Exception {
+    List<PTOCAControlSequence> controlSequences = PTOCAControlSequenceParser.parseControlSequences(PAYLOAD, 0, -1, new AFPParserConfiguration());
+
+    PTOCACursor cursor = new PTOCACursor().reset(PAYLOAD, 0, -1);
+    for (PTOCAControlSequence cs : controlSequences) {
+      assertTrue(cursor.next());
+      assertEquals(cs.getCsi().getControlSequenceFunctionType(), cursor.getFunctionType());
+      assertTrue(cursor.is(cs.getCsi().getControlSequenceFunctionType()));
+      assertEquals(cs.getCsi().isChained(), cursor.isChained());
+      assertEquals(cs.getCsi().getLength() - 2, cursor.getParameterLength());
+    }
+    assertFalse(cursor.next());
+
+    cursor.reset(PAYLOAD, 0, PAYLOAD.length);
+    assertTrue(cursor.next());
+    assertEquals(0, cursor.getControlSequenceOffset());
+    assertEquals(4, cursor.getParameterOffset());
+    assertEquals(1, cursor.getParameterByte(0));
+    assertTrue(cursor.next());
+    assertEquals(5, cursor.getControlSequenceOffset());
+    assertEquals(0x0100, cursor.getParameterShort(0));
+  }
+
+  @Test
+  public void testTextRunExtractor() throws Exception {
+    PTOCATextRunExtractor extractor = new PTOCATextRunExtractor(new AFPParserConfiguration().getAfpCharSet());
+
+    // Read from a direct buffer with position and limit not covering the whole buffer.
+    ByteBuffer buffer = ByteBuffer.allocateDirect(PAYLOAD.length + 4);
+    buffer.position(2);
+    buffer.put(PAYLOAD);
+    buffer.position(2).limit(2 + PAYLOAD.length);
+
+    for (int i = 0; i < 2; i++) {
+      if (i == 0) {
+        extractor.reset(PAYLOAD, 0, -1);
+      } else {
+        extractor.resetState();
+        extractor.reset(buffer);
+      }
+      assertTrue(extractor.nextTextRun());
+      assertEquals("AFP", extractor.getText().toString());
+      assertEquals(0x10, extractor.getInlinePosition());
+      assertEquals(0x100, extractor.getBaselinePosition());
+      assertEquals(1, extractor.getFontLocalID());
+
+      assertTrue(extractor.nextTextRun());
+      assertEquals("X", extractor.getText().toString());
+      assertEquals(0x08, extractor.getInlinePosition());
+      assertFalse(extractor.nextTextRun());
+    }
+    assertEquals(2, buffer.position());
+    assertEquals(2 + PAYLOAD.length, buffer.limit());
+  }
+
+  @Test
+  public void testInvalidData() throws Exception {
+    PTOCACursor cursor = new PTOCACursor().reset(new byte[]{0x03, (byte) 0xF1, 0x01}, 0, -1);
+    try {
+      cursor.next();
+      fail("Missing 0x2BD3 prefix must be reported.");
+    } catch (AFPParserException expected) {
+    }
+
+    cursor.reset(new byte[]{0x2B, (byte) 0xD3, 0x08, (byte) 0xDA, (byte) 0xC1}, 0, -1);
+    try {
+      cursor.next();
+      fail("Control sequence exceeding the data must be reported.");
+    } catch (AFPParserException expected) {
+    }
+  }
+}
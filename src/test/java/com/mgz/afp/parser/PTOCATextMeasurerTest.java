@@ -0,0 +1,340 @@
+/*
+Copyright 2015 Rudolf Fiala
+
+This file is part of Alpheus AFP Parser.
+
+Alpheus AFP Parser is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Alpheus AFP Parser is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Alpheus AFP Parser.  If not, see <http://www.gnu.org/licenses/>
+*/
+package com.mgz.afp.parser;
+
+import com.mgz.afp.base.StructuredField;
+import com.mgz.afp.enums.AFPUnitBase;
+import com.mgz.afp.exceptions.AFPParserException;
+import com.mgz.afp.foca.BCP_BeginCodePage;
+import com.mgz.afp.foca.BFN_BeginFont;
+import com.mgz.afp.foca.ECP_EndCodePage;
+import com.mgz.afp.foca.EFN_EndFont;
+import com.mgz.afp.foca.FNC_FontControl;
+import com.mgz.afp.foca.FNC_FontControl.FontUnitBase;
+import com.mgz.afp.foca.FOCA_CodePageTable;
+import com.mgz.afp.foca.FOCA_CodedFontMetrics;
+import com.mgz.afp.foca.FOCA_FontMetricsTable;
+import com.mgz.afp.foca.FontResourceCache;
+import com.mgz.afp.modca.MCF_MapCodedFont_Format2;
+import com.mgz.afp.ptoca.BPT_BeginPresentationTextObject;
+import com.mgz.afp.ptoca.EPT_EndPresentationTextObject;
+import com.mgz.afp.ptoca.PTD_PresentationTextDataDescriptor_Format2;
+import com.mgz.afp.ptoca.PTX_PresentationTextData;
+import com.mgz.afp.writer.AFPCorpusGenerator;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PTOCATextMeasurerTest {
+
+  @Test
+  public void testCorpus() throws Exception {
+    AFPCorpusGenerator generator = new AFPCorpusGenerator(5);
+    generator.setNrOfDocuments(1);
+    generator.setNrOfPageGroups(1);
+    generator.setNrOfPages(3);
+    generator.setNrOfFonts(2);
+    generator.setNrOfTextLines(40);
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    generator.generate(baos);
+
+    AFPParserConfiguration pc = new AFPParserConfiguration();
+    pc.setInputStream(new ByteArrayInputStream(baos.toByteArray()));
+    AFPParser parser = new AFPParser(pc);
+    FontResourceCache cache = new FontResourceCache();
+    Map<String, FOCA_CodePageTable> codePages = new HashMap<String, FOCA_CodePageTable>();
+    Map<String, FOCA_FontMetricsTable> fontCharacterSets = new HashMap<String, FOCA_FontMetricsTable>();
+    PTOCATextMeasurer measurer = new PTOCATextMeasurer();
+    List<StructuredField> resource = null;
+    List<PTX_PresentationTextData> ptxs = new ArrayList<PTX_PresentationTextData>();
+    FOCA_CodedFontMetrics firstFont = null;
+    int nrOfTextObjects = 0;
+
+    StructuredField sf;
+    while ((sf = parser.parseNextSF()) != null) {
+      if (sf instanceof BCP_BeginCodePage || sf instanceof BFN_BeginFont) {
+        resource = new ArrayList<StructuredField>();
+      }
+      if (resource != null) {
+        resource.add(sf);
+      }
+      if (sf instanceof ECP_EndCodePage) {
+        FOCA_CodePageTable codePage = cache.getCodePage(resource);
+        codePages.put(codePage.getName(), codePage);
+        resource = null;
+      } else if (sf instanceof EFN_EndFont) {
+        FOCA_FontMetricsTable fontCharacterSet = cache.getFontCharacterSet(resource);
+        fontCharacterSets.put(fontCharacterSet.getName(), fontCharacterSet);
+        resource = null;
+      } else if (sf instanceof PTD_PresentationTextDataDescriptor_Format2) {
+        PTD_PresentationTextDataDescriptor_Format2 ptd = (PTD_PresentationTextDataDescriptor_Format2) sf;
+        measurer.setTextUnits(ptd.getxUnitBase(), ptd.getxUnitsPerUnitBase());
+      } else if (sf instanceof MCF_MapCodedFont_Format2) {
+        measurer.clearFonts();
+        assertEquals(2, measurer.mapCodedFonts(sf, codePages, fontCharacterSets));
+        // The fonts have the resolution of the presentation text.
+        assertEquals(1, measurer.getFont(1).getScale(), 0);
+        // The coded fonts of the first page are reused by the later pages.
+        if (firstFont == null) {
+          firstFont = measurer.getFont(1);
+        }
+        assertSame(firstFont, measurer.getFont(1));
+      } else if (sf instanceof BPT_BeginPresentationTextObject) {
+        measurer.resetState();
+        ptxs.clear();
+      } else if (sf instanceof PTX_PresentationTextData) {
+        PTX_PresentationTextData ptx = (PTX_PresentationTextData) sf;
+        measurer.measure(ptx.getOriginalPayload(), 0, ptx.getOriginalPayload().length);
+        ptxs.add(ptx);
+      } else if (sf instanceof EPT_EndPresentationTextObject) {
+        assertEquals(40, measurer.getNrOfLines());
+        assertEquals(0, measurer.getNrOfUnmappedCharacters());
+        assertMeasuredLines(measurer, ptxs);
+        nrOfTextObjects++;
+      }
+    }
+    assertEquals(3, nrOfTextObjects);
+  }
+
+  /**
+   * Measures the text runs independently, by GCGID lookups per character.
+   */
+  private static void assertMeasuredLines(PTOCATextMeasurer measurer, List<PTX_PresentationTextData> ptxs) throws Exception {
+    PTOCATextRunExtractor extractor = new PTOCATextRunExtractor(new AFPParserConfiguration().getAfpCharSet());
+    int line = 0;
+    for (PTX_PresentationTextData ptx : ptxs) {
+      extractor.reset(ptx.getOriginalPayload(), 0, ptx.getOriginalPayload().length);
+      while (extractor.nextTextRun()) {
+        FOCA_CodedFontMetrics font = measurer.getFont(extractor.getFontLocalID());
+        PTOCACursor cursor = extractor.getCursor();
+        int width = 0;
+        for (int i = 0; i < cursor.getParameterLength(); i++) {
+          int codePoint = cursor.getData()[cursor.getParameterOffset() + i] & 0xFF;
+          width += Math.max(font.getFontCharacterSet().getCharacterIncrement(0, font.getCodePage().getGCGID(codePoint)), 0);
+        }
+        assertTrue(width > 0);
+        assertEquals(extractor.getBaselinePosition(), measurer.getLineBaselinePosition(line));
+        assertEquals(extractor.getInlinePosition(), measurer.getLineStartPosition(line));
+        assertEquals(width, measurer.getLineAdvance(line));
+        assertEquals(extractor.getInlinePosition() + width, measurer.getLineEndPosition(line));
+        line++;
+      }
+    }
+    assertEquals(measurer.getNrOfLines(), line);
+  }
+
+  @Test
+  public void testControlSequences() throws Exception {
+    PTOCATextMeasurer measurer = new PTOCATextMeasurer();
+    FOCA_CodedFontMetrics font = new FontFixture().font;
+    measurer.setFont(1, font);
+    int a = font.getIncrement(0xC1);
+    int space = font.getIncrement(0x40);
+
+    byte[] ptoca = new byte[]{
+        0x2B, (byte) 0xD3,
+        0x04, (byte) 0xC1, 0x00, 0x10, // SIM 16
+        0x04, (byte) 0xD1, 0x00, 0x20, // SBI 32
+        0x04, (byte) 0xD3, 0x00, 0x40, // AMB 64
+        0x04, (byte) 0xC7, 0x00, 0x10, // AMI 16
+        0x03, (byte) 0xF1, 0x01, // SCFL 1
+        0x05, (byte) 0xDB, (byte) 0xC1, 0x40, (byte) 0xC1, // TRN "A A"
+        0x04, (byte) 0xC9, 0x00, 0x05, // RMI 5
+        0x04, (byte) 0xC5, 0x00, 0x03, // SVI 3
+        0x05, (byte) 0xC3, 0x00, 0x02, 0x00, // SIA +2
+        0x05, (byte) 0xDB, (byte) 0xC1, 0x40, (byte) 0xC1, // TRN "A A"
+        0x02, (byte) 0xD9, // BLN
+        0x05, (byte) 0xEF, 0x00, 0x14, (byte) 0xC1, // RPS 20 times "A"
+        0x02, (byte) 0xD9, // BLN
+        0x02, (byte) 0xF9 // NOP
+    };
+    measurer.measure(ptoca, 0, ptoca.length);
+
+    assertEquals(2, measurer.getNrOfLines());
+    assertEquals(64, measurer.getLineBaselinePosition(0));
+    assertEquals(16, measurer.getLineStartPosition(0));
+    int firstRun = 2 * a + space;
+    int secondRun = 2 * (a + 2) + 3 + 2;
+    assertEquals(firstRun + secondRun, measurer.getLineAdvance(0));
+    assertEquals(16 + firstRun + 5 + secondRun, measurer.getLineEndPosition(0));
+
+    assertEquals(96, measurer.getLineBaselinePosition(1));
+    assertEquals(16, measurer.getLineStartPosition(1));
+    assertEquals(20 * (a + 2), measurer.getLineAdvance(1));
+    assertEquals(128, measurer.getBaselinePosition());
+    assertEquals(16, measurer.getInlinePosition());
+
+    assertEquals(0, measurer.getNrOfExceedingLines());
+    measurer.setInlineExtent(measurer.getLineEndPosition(0));
+    assertFalse(measurer.isLineExceeding(0));
+    assertTrue(measurer.isLineExceeding(1));
+    assertEquals(1, measurer.getNrOfExceedingLines());
+    assertEquals(1, measurer.nextExceedingLine(0));
+    assertEquals(-1, measurer.nextExceedingLine(2));
+
+    // A ByteBuffer continues the presentation state, a text run without font is not measured.
+    byte[] next = new byte[]{0x2B, (byte) 0xD3, 0x03, (byte) 0xF1, 0x02, 0x04, (byte) 0xDA, (byte) 0xC1, (byte) 0xC1};
+    measurer.measure(ByteBuffer.wrap(next));
+    assertEquals(3, measurer.getNrOfLines());
+    assertEquals(0, measurer.getLineAdvance(2));
+    assertEquals(2, measurer.getNrOfUnmappedCharacters());
+
+    measurer.resetState();
+    assertEquals(0, measurer.getNrOfLines());
+    assertEquals(font, measurer.getFont(1));
+  }
+
+  @Test
+  public void testScaledFonts() throws Exception {
+    FontFixture fixture = new FontFixture();
+    int a = fixture.font.getIncrement(0xC1);
+
+    // The font character set has 2400 units per 10 inches.
+    FOCA_CodedFontMetrics font = FOCA_CodedFontMetrics.build(fixture.codePage, fixture.fontCharacterSet, null, AFPUnitBase.Inches10, 14400, 0);
+    assertEquals(6, font.getScale(), 0);
+    assertEquals(6 * a, font.getIncrement(0xC1));
+    font = FOCA_CodedFontMetrics.build(fixture.codePage, fixture.fontCharacterSet, null, AFPUnitBase.Centimeter10, 2400, 0);
+    assertEquals(Math.round(a * 2.54), font.getIncrement(0xC1));
+
+    FOCA_FontMetricsTable relative = fixture.buildFontCharacterSet(FontUnitBase.BaseIsRelativ, 1000);
+    assertTrue(relative.isRelativeMetrics());
+    try {
+      FOCA_CodedFontMetrics.build(fixture.codePage, relative, null, AFPUnitBase.Inches10, 2400, 0);
+      fail();
+    } catch (AFPParserException e) {
+      // Expected, relative metrics need a font size.
+    }
+    // An em square of 720/1440 inch has 1000 font units and 120 text units.
+    font = FOCA_CodedFontMetrics.build(fixture.codePage, relative, null, AFPUnitBase.Inches10, 2400, 720);
+    assertEquals(Math.round(a * 0.12), font.getIncrement(0xC1));
+
+    Map<String, FOCA_CodePageTable> codePages = new HashMap<String, FOCA_CodePageTable>();
+    codePages.put("T1", fixture.codePage);
+    Map<String, FOCA_FontMetricsTable> fontCharacterSets = new HashMap<String, FOCA_FontMetricsTable>();
+    fontCharacterSets.put("C0", relative);
+    PTOCATextMeasurer measurer = new PTOCATextMeasurer();
+    measurer.setTextUnits(AFPUnitBase.Inches10, 2400);
+    assertEquals(0, measurer.mapCodedFonts(mapCodedFont(1, 0), codePages, fontCharacterSets));
+    assertEquals(null, measurer.getFont(1));
+    assertEquals(1, measurer.mapCodedFonts(mapCodedFont(1, 720), codePages, fontCharacterSets));
+    assertEquals(font.getIncrement(0xC1), measurer.getFont(1).getIncrement(0xC1));
+    FOCA_CodedFontMetrics mapped = measurer.getFont(1);
+    measurer.clearFonts();
+    assertEquals(1, measurer.mapCodedFonts(mapCodedFont(1, 720), codePages, fontCharacterSets));
+    assertSame(mapped, measurer.getFont(1));
+    assertEquals(1, measurer.mapCodedFonts(mapCodedFont(1, 1440), codePages, fontCharacterSets));
+    assertEquals(Math.round(a * 0.24), measurer.getFont(1).getIncrement(0xC1));
+  }
+
+  /**
+   * Returns a MCF of code page T1 and font character set C0, with a Font Descriptor Specification
+   * of the given font size if not 0.
+   */
+  private static MCF_MapCodedFont_Format2 mapCodedFont(int localID, int fontSize) throws Exception {
+    AFPParserConfiguration config = new AFPParserConfiguration();
+    ByteArrayOutputStream triplets = new ByteArrayOutputStream();
+    triplets.write(new byte[]{0x06, 0x02, (byte) 0x85, 0x00});
+    triplets.write("T1".getBytes(config.getAfpCharSet()));
+    triplets.write(new byte[]{0x06, 0x02, (byte) 0x86, 0x00});
+    triplets.write("C0".getBytes(config.getAfpCharSet()));
+    triplets.write(new byte[]{0x04, 0x24, 0x05, (byte) localID});
+    if (fontSize != 0) {
+      triplets.write(new byte[]{0x09, 0x1F, 0x00, 0x00, (byte) (fontSize >> 8), (byte) fontSize, 0x00, 0x00, 0x00});
+    }
+    ByteArrayOutputStream rg = new ByteArrayOutputStream();
+    rg.write(0x00);
+    rg.write(2 + triplets.size());
+    triplets.writeTo(rg);
+
+    MCF_MapCodedFont_Format2 mcf = new MCF_MapCodedFont_Format2();
+    mcf.decodeAFP(rg.toByteArray(), 0, -1, config);
+    return mcf;
+  }
+
+  private static class FontFixture {
+    final FOCA_CodePageTable codePage;
+    final FOCA_FontMetricsTable fontCharacterSet;
+    final List<StructuredField> fontResource;
+    final FOCA_CodedFontMetrics font;
+
+    FontFixture() throws Exception {
+      AFPCorpusGenerator generator = new AFPCorpusGenerator(3);
+      generator.setNrOfDocuments(1);
+      generator.setNrOfPageGroups(1);
+      generator.setNrOfFonts(1);
+      ByteArrayOutputStream baos = new ByteArrayOutputStream();
+      generator.generate(baos);
+
+      AFPParserConfiguration pc = new AFPParserConfiguration();
+      pc.setInputStream(new ByteArrayInputStream(baos.toByteArray()));
+      AFPParser parser = new AFPParser(pc);
+      List<StructuredField> resource = null;
+      FOCA_CodePageTable codePage = null;
+      FOCA_FontMetricsTable fontCharacterSet = null;
+      List<StructuredField> fontResource = null;
+      StructuredField sf;
+      while ((sf = parser.parseNextSF()) != null) {
+        if (sf instanceof BCP_BeginCodePage || sf instanceof BFN_BeginFont) {
+          resource = new ArrayList<StructuredField>();
+        }
+        if (resource != null) {
+          resource.add(sf);
+        }
+        if (sf instanceof ECP_EndCodePage) {
+          codePage = FOCA_CodePageTable.build("T1", 0, resource);
+          resource = null;
+        } else if (sf instanceof EFN_EndFont) {
+          fontCharacterSet = FOCA_FontMetricsTable.build("C0", 0, resource);
+          fontResource = resource;
+          resource = null;
+        }
+      }
+      this.codePage = codePage;
+      this.fontCharacterSet = fontCharacterSet;
+      this.fontResource = fontResource;
+      font = FOCA_CodedFontMetrics.build(codePage, fontCharacterSet, null);
+    }
+
+    /**
+     * Builds the font character set with the given units of measure.
+     */
+    FOCA_FontMetricsTable buildFontCharacterSet(FontUnitBase unitBase, int unitsPerUnitBase) throws AFPParserException {
+      for (StructuredField sf : fontResource) {
+        if (sf instanceof FNC_FontControl) {
+          ((FNC_FontControl) sf).setxUnitBase(unitBase);
+          ((FNC_FontControl) sf).setxUnitsPerUnitBase((short) unitsPerUnitBase);
+        }
+      }
+      return FOCA_FontMetricsTable.build("C0", 0, fontResource);
+    }
+  }
+}
@@ -0,0 +1,170 @@
+/*
+Copyright 2015 Rudolf Fiala
+
+This file is part of Alpheus AFP Parser.
+
+Alpheus AFP Parser is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Alpheus AFP Parser is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Alpheus AFP Parser.  If not, see <http://www.gnu.org/licenses/>
+*/
+package com.mgz.afp.parser;
+
+import com.mgz.afp.base.StructuredField;
+import com.mgz.afp.base.StructuredFieldBaseData;
+import com.mgz.afp.base.StructuredFieldIntroducer;
+import com.mgz.afp.enums.SFTypeID;
+import com.mgz.afp.foca.CPC_CodePageControl;
+import com.mgz.afp.foca.CPI_CodePageIndex;
+import com.mgz.afp.modca.NOP_NoOperation;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+
+public class ParallelAFPParserTest {
+
+  private static StructuredFieldIntroducer createSFI(SFTypeID sfTypeID) {
+    StructuredFieldIntroducer sfi = new StructuredFieldIntroducer();
+    sfi.setSFTypeID(sfTypeID);
+    return sfi;
+  }
+
+  /**
+   * Code pages with alternating single and double byte CPIs. The CPIs can only be decoded with
+   * the preceding CPC.
+   */
+  private static byte[] createAFP() throws Exception {
+    AFPParserConfiguration pc = new AFPParserConfiguration();
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    for (int cp = 0; cp < 20; cp++) {
+      boolean isDoubleByte = cp % 2 == 1;
+
+      CPC_CodePageControl cpc = new CPC_CodePageControl();
+      cpc.setStructuredFieldIntroducer(createSFI(SFTypeID.CPC_CodePageControl));
+      cpc.setDefaultGraphicCharacterGlobalID("SP010000");
+      cpc.setDefaultCharacterUseFlags(EnumSet.noneOf(CPC_CodePageControl.DefaultCharacterUseFlag.class));
+      cpc.setCpiRepeatingGroupLength(isDoubleByte ? CPC_CodePageControl.CPIRepeatingGroupLength.DoubleByteCodePage : CPC_CodePageControl.CPIRepeatingGroupLength.SingleByteCodePage);
+      cpc.setCodePageUseFlags(EnumSet.noneOf(CPC_CodePageControl.CodePageUseFlag.class));
+      cpc.writeAFP(os, pc);
+
+      for (int n = 0; n < 7; n++) {
+        NOP_NoOperation nop = new NOP_NoOperation();
+        nop.setStructuredFieldIntroducer(createSFI(SFTypeID.NOP_NoOperation));
+        nop.setData(new byte[] {(byte) cp, (byte) n});
+        nop.writeAFP(os, pc);
+      }
+
+      ByteArrayOutputStream cpiData = new ByteArrayOutputStream();
+      for (int cpt = 0; cpt < 5; cpt++) {
+        cpiData.write(new byte[] {(byte) 0xC1, (byte) 0xC1, (byte) 0xF0, (byte) 0xF1, (byte) 0xF0, (byte) 0xF0, (byte) 0xF0, (byte) 0xF0, 0x00});
+        if (isDoubleByte) {
+          cpiData.write(cp);
+        }
+        cpiData.write(cpt);
+      }
+      StructuredFieldBaseData cpi = new StructuredFieldBaseData();
+      cpi.setStructuredFieldIntroducer(createSFI(SFTypeID.CPI_CodePageIndex));
+      cpi.setData(cpiData.toByteArray());
+      cpi.writeAFP(os, pc);
+    }
+    return os.toByteArray();
+  }
+
+  private static List<StructuredField> parseSequential(byte[] afp) throws Exception {
+    AFPParserConfiguration pc = new AFPParserConfiguration();
+    pc.setInputStream(new ByteArrayInputStream(afp));
+    AFPParser parser = new AFPParser(pc);
+    List<StructuredField> sfs = new ArrayList<StructuredField>();
+    StructuredField sf;
+    while ((sf = parser.parseNextSF()) != null) {
+      sfs.add(sf);
+    }
+    parser.quitParsing();
+    return sfs;
+  }
+
+  private static void assertSameSFs(List<StructuredField> expected, List<StructuredField> actual) {
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      StructuredField e = expected.get(i);
+      StructuredField a = actual.get(i);
+      assertEquals(e.getClass(), a.getClass());
+      assertEquals(e.getStructuredFieldIntroducer().getFileOffset(), a.getStructuredFieldIntroducer().getFileOffset());
+      if (e instanceof CPI_CodePageIndex) {
+        List<CPI_CodePageIndex.CPI_RepeatingGroup> eRGs = ((CPI_CodePageIndex) e).getRepeatingGroups();
+        List<CPI_CodePageIndex.CPI_RepeatingGroup> aRGs = ((CPI_CodePageIndex) a).getRepeatingGroups();
+        assertEquals(eRGs.size(), aRGs.size());
+        for (int j = 0; j < eRGs.size(); j++) {
+          assertEquals(eRGs.get(j).getCodePoint(), aRGs.get(j).getCodePoint());
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testParallelEqualsSequential() throws Exception {
+    byte[] afp = createAFP();
+    List<StructuredField> expected = parseSequential(afp);
+    assertEquals(20 * 9, expected.size());
+    // The second code page is double byte, code points are (cp << 8) + cpt.
+    assertEquals(0x0104, ((CPI_CodePageIndex) expected.get(17)).getRepeatingGroups().get(4).getCodePoint());
+
+    for (int batchSize : new int[] {1, 3, 8, 1000}) {
+      AFPParserConfiguration pc = new AFPParserConfiguration();
+      pc.setInputStream(new ByteArrayInputStream(afp));
+      ParallelAFPParser parser = new ParallelAFPParser(pc);
+      parser.setBatchSize(batchSize);
+      List<StructuredField> actual = new ArrayList<StructuredField>();
+      StructuredField sf;
+      while ((sf = parser.parseNextSF()) != null) {
+        actual.add(sf);
+      }
+      parser.quitParsing();
+
+      assertSameSFs(expected, actual);
+      assertEquals(expected.size(), parser.getNrOfSFBuilt());
+      assertEquals(0, parser.getNrOfSFBuiltWithErrors());
+    }
+  }
+
+  @Test
+  public void testParallelWithExecutor() throws Exception {
+    byte[] afp = createAFP();
+    ExecutorService executor = Executors.newFixedThreadPool(3);
+    try {
+      AFPParserConfiguration pc = new AFPParserConfiguration();
+      pc.setInputStream(new ByteArrayInputStream(afp));
+      ParallelAFPParser parser = new ParallelAFPParser(pc, executor, 3);
+      parser.setBatchSize(4);
+      List<StructuredField> actual = new ArrayList<StructuredField>();
+      StructuredField sf;
+      while ((sf = parser.parseNextSF()) != null) {
+        actual.add(sf);
+      }
+      parser.quitParsing();
+      assertSameSFs(parseSequential(afp), actual);
+      assertNull(parser.parseNextSF());
+    } finally {
+      executor.shutdown();
+    }
+  }
+}
@@ -0,0 +1,54 @@
+/*
+Copyright 2015 Rudolf Fiala
+
+This file is part of Alpheus AFP Parser.
+
+Alpheus AFP Parser is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Alpheus AFP Parser is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Alpheus AFP Parser.  If not, see <http://www.gnu.org/licenses/>
+*/
+package com.mgz.afp.parser;
+
+import com.mgz.afp.base.StructuredField;
+import com.mgz.afp.base.StructuredFieldIntroducer;
+import com.mgz.afp.enums.SFTypeID;
+import com.mgz.afp.modca.NOP_NoOperation;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+
+public class StructuredFieldRegistryTest {
+
+  @Test
+  public void testRegisterCustomStructuredField() {
+    StructuredFieldIntroducer sfi = new StructuredFieldIntroducer();
+    sfi.setSFTypeID(SFTypeID.NOP_NoOperation);
+
+    StructuredFieldRegistry.register(SFTypeID.NOP_NoOperation, CustomNOP.class);
+    try {
+      StructuredField sf = AFPParser.createSFInstance(sfi);
+      assertTrue(sf instanceof CustomNOP);
+      assertTrue(sf.getStructuredFieldIntroducer() == sfi);
+      assertEquals(CustomNOP.class, StructuredFieldRegistry.getStructuredFieldClass(SFTypeID.NOP_NoOperation));
+    } finally {
+      StructuredFieldRegistry.unregister(SFTypeID.NOP_NoOperation);
+    }
+
+    assertEquals(NOP_NoOperation.class, AFPParser.createSFInstance(sfi).getClass());
+  }
+
+  public static class CustomNOP extends NOP_NoOperation {
+  }
+}
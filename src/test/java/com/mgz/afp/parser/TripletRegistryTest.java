@@ -0,0 +1,90 @@
+/*
+Copyright 2015 Rudolf Fiala
+
+This file is part of Alpheus AFP Parser.
+
+Alpheus AFP Parser is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Alpheus AFP Parser is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Alpheus AFP Parser.  If not, see <http://www.gnu.org/licenses/>
+*/
+package com.mgz.afp.parser;
+
+import com.mgz.afp.exceptions.AFPParserException;
+import com.mgz.afp.triplets.Triplet;
+import com.mgz.afp.triplets.Triplet.TripletID;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+public class TripletRegistryTest {
+  // Private triplet 0xFE with one data byte, followed by a Comment triplet.
+  private static final byte[] DATA = {0x03, (byte) 0xFE, 0x2A, 0x03, 0x65, (byte) 0xC1};
+
+  public static class PrivateTriplet extends Triplet {
+    int value;
+
+    @Override
+    public void decodeAFP(byte[] sfData, int offset, int length, AFPParserConfiguration config) throws AFPParserException {
+      value = sfData[offset + 2];
+    }
+
+    @Override
+    public void writeAFP(OutputStream os, AFPParserConfiguration config) throws IOException {
+      os.write(new byte[]{0x03, (byte) 0xFE, (byte) value});
+    }
+  }
+
+  public static class MyComment extends Triplet.Comment {
+  }
+
+  @Test
+  public void testBuiltInTriplets() {
+    assertEquals(Triplet.FullyQualifiedName.class, TripletRegistry.getTripletClass(TripletID.FullyQualifiedName));
+    assertEquals(Triplet.Comment.class, TripletParser.createTripletInstance(TripletID.Comment).getClass());
+    assertEquals(Triplet.Undefined.class, TripletRegistry.getTripletClass(TripletID.Undefined));
+  }
+
+  @Test
+  public void testRegisterTriplets() {
+    AFPParserConfiguration config = new AFPParserConfiguration();
+    List<Triplet> triplets = TripletParser.parseTriplets(DATA, 0, -1, config);
+    assertTrue(triplets.get(0) instanceof Triplet.Undefined);
+
+    TripletRegistry.register(0xFE, PrivateTriplet.class);
+    TripletRegistry.register(TripletID.Comment, MyComment.class);
+    try {
+      triplets = TripletParser.parseTriplets(DATA, 0, -1, config);
+      assertEquals(2, triplets.size());
+      assertEquals(0x2A, ((PrivateTriplet) triplets.get(0)).value);
+      assertEquals(TripletID.Undefined, triplets.get(0).getTripletID());
+      assertEquals(MyComment.class, triplets.get(1).getClass());
+    } finally {
+      TripletRegistry.unregister(0xFE);
+      TripletRegistry.unregister(TripletID.Comment);
+    }
+    assertEquals(Triplet.Comment.class, TripletParser.createTripletInstance(TripletID.Comment).getClass());
+
+    try {
+      TripletRegistry.register(TripletID.Comment.toByte(), PrivateTriplet.class);
+      fail("Defined triplet IDs must be registered by TripletID.");
+    } catch (IllegalArgumentException expected) {
+    }
+  }
+}
@@ -0,0 +1,140 @@
+/*
+Copyright 2015 Rudolf Fiala
+
+This file is part of Alpheus AFP Parser.
+
+Alpheus AFP Parser is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Alpheus AFP Parser is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Alpheus AFP Parser.  If not, see <http://www.gnu.org/licenses/>
+*/
+package com.mgz.afp.ptoca;
+
+import com.mgz.afp.base.StructuredFieldIntroducer;
+import com.mgz.afp.enums.SFTypeID;
+import com.mgz.afp.exceptions.AFPParserException;
+import com.mgz.afp.parser.AFPParserConfiguration;
+import com.mgz.afp.ptoca.controlSequence.PTOCAControlSequence;
+import com.mgz.afp.ptoca.controlSequence.PTOCAControlSequence.TRN_TransparentData;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+public class PTX_PresentationTextDataTest {
+  // 2BD3, chained AMB, AMI, and TRN "AFP" (unchained code of TRN is 0xDA).
+  private static final byte[] PAYLOAD = {
+      0x2B, (byte) 0xD3, 0x04, (byte) 0xD3, 0x01, 0x00, 0x04, (byte) 0xC7, 0x00, 0x10, 0x05, (byte) 0xDA, (byte) 0xC1, (byte) 0xC6, (byte) 0xD7
+  };
+
+  private static PTX_PresentationTextData decode(byte[] payload) throws Exception {
+    PTX_PresentationTextData ptx = new PTX_PresentationTextData();
+    StructuredFieldIntroducer sfi = new StructuredFieldIntroducer();
+    sfi.setSFTypeID(SFTypeID.PTX_PresentationTextData);
+    ptx.setStructuredFieldIntroducer(sfi);
+    ptx.decodeAFP(payload, 0, -1, new AFPParserConfiguration());
+    return ptx;
+  }
+
+  private static byte[] writtenPayload(PTX_PresentationTextData ptx) throws Exception {
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    ptx.writeAFP(baos, new AFPParserConfiguration());
+    byte[] sf = baos.toByteArray();
+    return Arrays.copyOfRange(sf, 9, sf.length);
+  }
+
+  @Test
+  public void testControlSequencesAreDecodedLazily() throws Exception {
+    PTX_PresentationTextData ptx = decode(PAYLOAD);
+    assertNull(ptx.controlSequences);
+    assertArrayEquals(PAYLOAD, writtenPayload(ptx));
+    assertNull(ptx.controlSequences);
+
+    List<PTOCAControlSequence> controlSequences = ptx.getControlSequences();
+    assertEquals(3, controlSequences.size());
+    assertTrue(controlSequences.get(2) instanceof TRN_TransparentData);
+    assertEquals("AFP", ((TRN_TransparentData) controlSequences.get(2)).getTransparentData());
+    assertNull(ptx.getControlSequenceException());
+
+    // Inspecting the control sequences doesn't modify them.
+    assertFalse(ptx.isModified());
+    assertArrayEquals(PAYLOAD, writtenPayload(ptx));
+  }
+
+  @Test
+  public void testChangedListIsEncodedWhenMarked() throws Exception {
+    PTX_PresentationTextData ptx = decode(PAYLOAD);
+    ptx.getControlSequences().remove(1);
+    assertArrayEquals(PAYLOAD, writtenPayload(ptx));
+    ptx.markModified();
+    assertEquals(PAYLOAD.length - 4, writtenPayload(ptx).length);
+  }
+
+  @Test
+  public void testLazyDecodingUsesCharsetOfDecodeAFP() throws Exception {
+    AFPParserConfiguration config = new AFPParserConfiguration();
+    PTX_PresentationTextData ptx = new PTX_PresentationTextData();
+    ptx.decodeAFP(PAYLOAD, 0, -1, config);
+    // The parser's configuration changes after the PTX has been decoded.
+    config.setAfpCharSet(Charset.forName("ISO-8859-1"));
+
+    TRN_TransparentData trn = (TRN_TransparentData) ptx.getControlSequences().get(2);
+    assertEquals("AFP", trn.getTransparentData());
+  }
+
+  @Test
+  public void testModifiedControlSequencesAreEncoded() throws Exception {
+    PTX_PresentationTextData ptx = decode(PAYLOAD);
+    ptx.removeControlSequence(ptx.getControlSequences().get(1));
+    byte[] written = writtenPayload(ptx);
+    assertEquals(PAYLOAD.length - 4, written.length);
+    assertEquals(2, decode(written).getControlSequences().size());
+  }
+
+  @Test
+  public void testInvalidControlSequencesAreWrittenUnchanged() throws Exception {
+    // TRN is longer than the payload.
+    byte[] invalid = Arrays.copyOf(PAYLOAD, PAYLOAD.length - 2);
+    PTX_PresentationTextData ptx = decode(invalid);
+    assertNull(ptx.getControlSequences());
+    assertNotNull(ptx.getControlSequenceException());
+    assertArrayEquals(invalid, writtenPayload(ptx));
+    assertFalse(Arrays.equals(PAYLOAD, writtenPayload(ptx)));
+  }
+
+  @Test
+  public void testAddAfterFailedDecodingKeepsPayload() throws Exception {
+    byte[] invalid = Arrays.copyOf(PAYLOAD, PAYLOAD.length - 2);
+    PTX_PresentationTextData ptx = decode(invalid);
+    PTOCAControlSequence trn = decode(PAYLOAD).getControlSequences().get(2);
+    try {
+      ptx.addControlSequence(trn);
+      fail();
+    } catch (AFPParserException e) {
+      assertEquals(ptx.getControlSequenceException(), e.getCause());
+    }
+    assertNull(ptx.getControlSequences());
+    assertFalse(ptx.isModified());
+    assertArrayEquals(invalid, writtenPayload(ptx));
+  }
+}
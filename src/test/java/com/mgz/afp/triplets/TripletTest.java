@@ -45,4 +45,15 @@ public class TripletTest {
     }
   }
 
+  @Test
+  public void testTripletIDLookup() throws Exception {
+    for (TripletID tID : TripletID.values()) {
+      if (tID == TripletID.ObjectFunctionSetSpecification_Retired) {
+        // Shares its ID with ResourceObjectType, see TripletParser.
+        continue;
+      }
+      assertEquals(tID, TripletID.valueOf((short) tID.toByte()));
+    }
+  }
+
 }
@@ -0,0 +1,112 @@
+/*
+Copyright 2015 Rudolf Fiala
+
+This file is part of Alpheus AFP Parser.
+
+Alpheus AFP Parser is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Alpheus AFP Parser is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Alpheus AFP Parser.  If not, see <http://www.gnu.org/licenses/>
+*/
+package com.mgz.afp.writer;
+
+import com.mgz.afp.base.StructuredField;
+import com.mgz.afp.base.StructuredFieldErrornouslyBuilt;
+import com.mgz.afp.base.Undefined;
+import com.mgz.afp.enums.SFTypeID;
+import com.mgz.afp.goca.EGR_EndGraphicsObject;
+import com.mgz.afp.goca.GAD_GraphicsData;
+import com.mgz.afp.goca.GOCA_DrawingOrderReader;
+import com.mgz.afp.parser.AFPParser;
+import com.mgz.afp.parser.AFPParserConfiguration;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.EnumMap;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+public class AFPCorpusGeneratorTest {
+
+  private static byte[] generate(long seed) throws Exception {
+    AFPCorpusGenerator generator = new AFPCorpusGenerator(seed);
+    generator.setNrOfDocuments(2);
+    generator.setNrOfPageGroups(3);
+    generator.setNrOfPages(2);
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+    long nrOfBytes = generator.generate(baos);
+    assertEquals(baos.size(), nrOfBytes);
+    return baos.toByteArray();
+  }
+
+  @Test
+  public void testDeterministic() throws Exception {
+    byte[] afp = generate(42);
+    assertArrayEquals(afp, generate(42));
+    assertFalse(Arrays.equals(afp, generate(43)));
+  }
+
+  @Test
+  public void testParseAndRoundTrip() throws Exception {
+    byte[] afp = generate(4711);
+
+    AFPParserConfiguration pc = new AFPParserConfiguration();
+    pc.setInputStream(new ByteArrayInputStream(afp));
+    AFPParser parser = new AFPParser(pc);
+    EnumMap<SFTypeID, Integer> counts = new EnumMap<SFTypeID, Integer>(SFTypeID.class);
+    ByteArrayOutputStream bytesSerialized = new ByteArrayOutputStream();
+    GOCA_DrawingOrderReader gocaReader = new GOCA_DrawingOrderReader(pc);
+    int nrOfDrawingOrders = 0;
+
+    StructuredField sf;
+    while ((sf = parser.parseNextSF()) != null) {
+      SFTypeID sfTypeID = sf.getStructuredFieldIntroducer().getSFTypeID();
+      assertFalse(sfTypeID + " is undefined.", sf instanceof Undefined);
+      assertFalse(sfTypeID + " is erroneously built.", sf instanceof StructuredFieldErrornouslyBuilt);
+      Integer count = counts.get(sfTypeID);
+      counts.put(sfTypeID, count == null ? 1 : count + 1);
+
+      if (sf instanceof GAD_GraphicsData) {
+        gocaReader.addGraphicsData((GAD_GraphicsData) sf);
+        while (gocaReader.nextDrawingOrder() != null) {
+          nrOfDrawingOrders++;
+        }
+      } else if (sf instanceof EGR_EndGraphicsObject) {
+        gocaReader.end();
+      }
+
+      int offset = (int) sf.getStructuredFieldIntroducer().getFileOffset();
+      byte[] bytesOriginal = Arrays.copyOfRange(afp, offset, offset + sf.getStructuredFieldIntroducer().getSFLength() + 1);
+      bytesSerialized.reset();
+      sf.writeAFP(bytesSerialized, pc);
+      assertArrayEquals(sfTypeID + " at 0x" + Long.toHexString(offset), bytesOriginal, bytesSerialized.toByteArray());
+    }
+
+    assertEquals(Integer.valueOf(2), counts.get(SFTypeID.BDT_BeginDocument));
+    assertEquals(Integer.valueOf(2 * 3), counts.get(SFTypeID.BNG_BeginNamedPageGroup));
+    assertEquals(Integer.valueOf(2 * 3 * 2), counts.get(SFTypeID.BPG_BeginPage));
+    assertEquals(Integer.valueOf(2 * 3 * 2), counts.get(SFTypeID.EPG_EndPage));
+    assertEquals(Integer.valueOf(2), counts.get(SFTypeID.CPI_CodePageIndex));
+    assertEquals(Integer.valueOf(2), counts.get(SFTypeID.FNI_FontIndex));
+    assertTrue(counts.get(SFTypeID.PTX_PresentationTextData) >= 2 * 3 * 2);
+    assertTrue(counts.get(SFTypeID.GAD_GraphicsData) >= 2 * 3 * 2);
+    assertTrue(nrOfDrawingOrders >= 2 * 3 * 2);
+    assertTrue(counts.get(SFTypeID.IPD_ImagePictureData) >= 2 * 3 * 2);
+    assertEquals(Integer.valueOf(2 * 3 * 8), counts.get(SFTypeID.TLE_TagLogicalElement));
+  }
+}
@@ -0,0 +1,81 @@
+/*
+Copyright 2015 Rudolf Fiala
+
+This file is part of Alpheus AFP Parser.
+
+Alpheus AFP Parser is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Alpheus AFP Parser is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Alpheus AFP Parser.  If not, see <http://www.gnu.org/licenses/>
+*/
+package com.mgz.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+
+public class NameInternPoolTest {
+  private static final SingleByteCodec CODEC = SingleByteCodec.forCharset(Constants.cpIBM500);
+
+  @Test
+  public void testIntern() {
+    NameInternPool pool = new NameInternPool(CODEC, 16);
+    pool.setCounting(true);
+    assertEquals(16, pool.getCapacity());
+
+    byte[] data = "C0H200000T1V10500".getBytes(Constants.cpIBM500);
+    String font = pool.intern(data, 0, 8);
+    String codePage = pool.intern(data, 8, 8);
+    assertEquals("C0H20000", font);
+    assertEquals("0T1V1050", codePage);
+    assertEquals(0, pool.getHits());
+    assertEquals(2, pool.getMisses());
+
+    assertSame(font, pool.intern(data.clone(), 0, 8));
+    assertSame(codePage, pool.intern(data, 8, 8));
+    assertEquals(2, pool.getHits());
+
+    // Same packed value, different length.
+    assertEquals("\u0000C0H2000", pool.intern(new byte[]{0, (byte) 0xC3, (byte) 0xF0, (byte) 0xC8, (byte) 0xF2, (byte) 0xF0, (byte) 0xF0, (byte) 0xF0}, 0, 8));
+    assertEquals("C0H2000", pool.intern(data, 0, 7));
+
+    // Longer names are not pooled.
+    assertNotSame(pool.intern(data, 0, 16), pool.intern(data, 0, 16));
+
+    pool.clear();
+    assertEquals(0, pool.getHits());
+    assertEquals(0, pool.getMisses());
+    assertNotSame(font, pool.intern(data, 0, 8));
+
+    pool.setCounting(false);
+    pool.intern(data, 0, 8);
+    assertEquals(0, pool.getHits());
+    assertEquals(1, pool.getMisses());
+  }
+
+  @Test
+  public void testPoolIsBounded() {
+    NameInternPool pool = new NameInternPool(CODEC, 4);
+    pool.setCounting(true);
+    byte[] name = new byte[8];
+    for (int i = 0; i < 1000; i++) {
+      name[7] = (byte) i;
+      name[6] = (byte) (i >> 8);
+      assertEquals(NameInternPool.pack(name, 0, 8), i);
+      pool.intern(name, 0, 8);
+    }
+    assertEquals(4, pool.getCapacity());
+    assertEquals(1000, pool.getMisses());
+  }
+}
@@ -0,0 +1,73 @@
+/*
+Copyright 2015 Rudolf Fiala
+
+This file is part of Alpheus AFP Parser.
+
+Alpheus AFP Parser is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation, either version 3 of the License, or
+(at your option) any later version.
+
+Alpheus AFP Parser is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+GNU General Public License for more details.
+
+You should have received a copy of the GNU General Public License
+along with Alpheus AFP Parser.  If not, see <http://www.gnu.org/licenses/>
+*/
+package com.mgz.util;
+
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+
+public class SingleByteCodecTest {
+
+  @Test
+  public void testCodecMatchesCharset() {
+    byte[] allBytes = new byte[256];
+    for (int i = 0; i < allBytes.length; i++) {
+      allBytes[i] = (byte) i;
+    }
+    StringBuilder allChars = new StringBuilder();
+    for (int c = 0; c < 0x10000; c++) {
+      allChars.append((char) c);
+    }
+    // Surrogate pair and lone surrogates.
+    allChars.append("\uD83D\uDE00\uD800x\uDC00");
+
+    for (String name : new String[]{"IBM500", "IBM273", "IBM037", "ISO-8859-1"}) {
+      Charset charset = Charset.forName(name);
+      SingleByteCodec codec = SingleByteCodec.forCharset(charset);
+      assertNotNull(name, codec);
+      assertSame(codec, SingleByteCodec.forCharset(charset));
+
+      assertEquals(name, new String(allBytes, charset), codec.decode(allBytes, 0, allBytes.length));
+      assertArrayEquals(name, allChars.toString().getBytes(charset), codec.encode(allChars));
+    }
+  }
+
+  @Test
+  public void testMultiByteCharset() {
+    assertNull(SingleByteCodec.forCharset(Charset.forName("UTF-8")));
+    assertEquals("\u00E4", UtilCharacterEncoding.decode(new byte[]{(byte) 0xC3, (byte) 0xA4}, 0, 2, Charset.forName("UTF-8")));
+  }
+
+  @Test
+  public void testDecodeName() {
+    SingleByteCodec codec = SingleByteCodec.forCharset(Constants.cpIBM500);
+    byte[] data = "XXC0H200000X".getBytes(Constants.cpIBM500);
+    String name = codec.decodeName(data, 2, 8);
+    assertEquals("C0H20000", name);
+    assertSame(name, codec.decodeName(data.clone(), 2, 8));
+    assertEquals("C0H2000", codec.decodeName(data, 2, 7));
+  }
+}